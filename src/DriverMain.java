@@ -1,19 +1,61 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import controller.DungeonGameController;
+import controller.GameJournal;
+import controller.GameReplay;
+import controller.ViewEventBus;
+import controller.ViewEventMetrics;
+import controller.ViewEventRecorder;
 import dungeonmodel.dungeon.Dungeon;
 import dungeonmodel.dungeon.DungeonImpl;
+import dungeonmodel.dungeon.DungeonSettings;
+import dungeonmodel.persistence.DungeonCatalogue;
 import dungeonmodel.player.DungeonPlayer;
 import dungeonmodel.player.Player;
+import server.GameServer;
+import server.GameSession;
+import server.HttpGameApi;
+import server.LatencyHistogram;
+import view.BatchView;
 import view.ConsoleView;
 import view.GameView;
+import view.RemoteSwingView;
 import view.SwingView;
 
 /**
  * Driver class to show functionality of dungeon model.
  */
 public class DriverMain {
+
+  private static final long SERVER_REPORT_MILLIS = 10_000;
+
   /**
    * Main function which runs the sample run.
    *
@@ -21,9 +63,22 @@ public class DriverMain {
    */
   public static void main(String[] args) {
     if (args[0].equals("--gui")) {
-      SwingView gameGUI = new SwingView();
+      DungeonCatalogue catalogue = null;
+      if (args.length > 1) {
+        try {
+          catalogue = DungeonCatalogue.open(Paths.get(args[1]));
+        }
+        catch (IOException | IllegalArgumentException e) {
+          System.out.println("Could not open catalogue, dungeons will be generated: "
+                  + e.getMessage());
+        }
+      }
+      SwingView gameGUI = new SwingView(catalogue);
       gameGUI.setVisible(true);
     }
+    else if (args[0].equals("--build-catalogue")) {
+      buildCatalogue(args);
+    }
     else if (args[0].equals("--text")) {
       Readable inputStream = new InputStreamReader(System.in);
       Appendable output = System.out;
@@ -58,15 +113,304 @@ public class DriverMain {
           System.out.println("Invalid integer input, try again");
         }
       }
+      if (args.length > 2 && args[1].equals("--record")) {
+        playRecorded(Paths.get(args[2]), new DungeonSettings(rows, columns, interconnectivity,
+                wrapping, percentage, monsters).createDungeon(), name, inputStream, output);
+        return;
+      }
+      if (args.length > 1) {
+        playJournalled(Paths.get(args[1]), new DungeonSettings(rows, columns, interconnectivity,
+                wrapping, percentage, monsters), name, inputStream, output);
+        return;
+      }
       Dungeon dungeon = new DungeonImpl(rows, columns, interconnectivity,
               wrapping, percentage, monsters);
       Player player = new DungeonPlayer(name, dungeon);
       GameView view = new ConsoleView(inputStream, output, player);
       new DungeonGameController(player, view).playGame();
     }
+    else if (args[0].equals("--server") && args.length > 2) {
+      serve(args[1], args[2]);
+    }
+    else if (args[0].equals("--watch") && args.length > 2) {
+      watch(args[1], args[2]);
+    }
+    else if (args[0].equals("--http") && args.length > 1) {
+      serveHttp(args[1]);
+    }
+    else if (args[0].equals("--http-benchmark") && args.length > 1) {
+      benchmarkHttp(Integer.parseInt(args[1]));
+    }
+    else if (args[0].equals("--replay") && args.length > 1) {
+      replay(Paths.get(args[1]));
+    }
+    else if (args[0].equals("--batch") && args.length > 2) {
+      runBatch(Paths.get(args[1]), args[2], args.length > 3 ? args[3] : null);
+    }
     else {
-      System.out.println("Invalid argument given to jar, should be either --gui or --text.");
+      System.out.println("Invalid argument given to jar, should be either --gui, --text, "
+              + "--server, --watch, --http, --http-benchmark, --replay, --batch or "
+              + "--build-catalogue.");
       System.exit(0);
     }
   }
+
+  // Plays a text game created from a random seed, recording every action in a journal
+  private static void playJournalled(Path file, DungeonSettings settings, String name,
+                                     Readable input, Appendable output) {
+    long seed = new Random().nextLong();
+    try (GameJournal journal = GameJournal.create(file, settings, name, seed)) {
+      Player player = GameJournal.createPlayer(settings, name, seed);
+      GameView view = new ConsoleView(input, output, player);
+      new DungeonGameController(player, view, journal).playGame();
+    }
+    catch (IOException | IllegalArgumentException e) {
+      System.out.println("Could not play journalled game: " + e.getMessage());
+    }
+  }
+
+  // Plays a text game whose messages and refreshes are also recorded to a file and measured, each
+  // on a thread of its own which the game never waits for
+  private static void playRecorded(Path file, Dungeon dungeon, String name, Readable input,
+                                   Appendable output) {
+    try (Writer writer = Files.newBufferedWriter(file)) {
+      Player player = new DungeonPlayer(name, dungeon);
+      ViewEventMetrics metrics = new ViewEventMetrics();
+      try (ViewEventBus bus = new ViewEventBus(new ConsoleView(input, output, player))) {
+        bus.subscribe(new ViewEventRecorder(writer), "view-recorder");
+        bus.subscribe(metrics, "view-metrics");
+        new DungeonGameController(player, bus).playGame();
+      }
+      System.out.printf("%d messages and %d refreshes recorded, %d dropped, p99 lag %.3f ms%n",
+              metrics.getMessageCount(), metrics.getRefreshCount(), metrics.getDroppedCount(),
+              metrics.getLag().getPercentile(99) / 1e6);
+    }
+    catch (IOException | IllegalArgumentException e) {
+      System.out.println("Could not play recorded game: " + e.getMessage());
+    }
+  }
+
+  // Plays a script of console commands as fast as possible, in a game created from the settings
+  // and a seed, or a random seed if none is given, and reports how fast it ran and how much it
+  // allocated
+  private static void runBatch(Path script, String settings, String seedText) {
+    try (InputStream in = Files.newInputStream(script)) {
+      long seed = seedText == null ? new Random().nextLong() : Long.parseLong(seedText);
+      Player player = GameJournal.createPlayer(parseSettings(settings), "Batch", seed);
+      Writer output = new BufferedWriter(new OutputStreamWriter(System.out,
+              StandardCharsets.UTF_8), 1 << 16);
+      BatchView view = new BatchView(in, output, player);
+      long allocatedBefore = allocatedBytes();
+      long started = System.nanoTime();
+      new DungeonGameController(player, view).playGame();
+      long elapsed = Math.max(1, System.nanoTime() - started);
+      long allocated = allocatedBytes() - allocatedBefore;
+      System.out.printf("Played %d commands in %.3f ms (%.0f commands/s), seed %d%n",
+              view.getCommandCount(), elapsed / 1e6, view.getCommandCount() * 1e9 / elapsed,
+              seed);
+      if (allocatedBefore >= 0) {
+        System.out.printf("Allocated %d bytes (%.1f bytes/command)%n", allocated,
+                (double) allocated / Math.max(1, view.getCommandCount()));
+      }
+    }
+    catch (IOException | IllegalArgumentException | IllegalStateException e) {
+      System.out.println("Could not run batch: " + e.getMessage());
+    }
+  }
+
+  // Bytes allocated by this thread so far, or -1 if the JVM cannot tell
+  private static long allocatedBytes() {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (threads instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean counting = (com.sun.management.ThreadMXBean) threads;
+      if (counting.isThreadAllocatedMemorySupported()
+              && counting.isThreadAllocatedMemoryEnabled()) {
+        return counting.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    }
+    return -1;
+  }
+
+  // Replays a journal as fast as possible and reports how long it took
+  private static void replay(Path file) {
+    try {
+      GameReplay replay = GameReplay.open(file);
+      long started = System.nanoTime();
+      Player player = replay.replay();
+      long elapsed = Math.max(1, System.nanoTime() - started);
+      System.out.printf("Replayed %d actions of %s in %.3f ms (%.0f actions/s)%n",
+              replay.getActionCount(), replay.getPlayerName(), elapsed / 1e6,
+              replay.getActionCount() * 1e9 / elapsed);
+      System.out.printf("Player at %s, alive: %b, won: %b, state hash %016x%n",
+              player.getCurrentCoordinates(), player.isPlayerAlive(), player.hasPlayerWon(),
+              player.getStateHash());
+    }
+    catch (IOException | IllegalArgumentException e) {
+      System.out.println("Could not replay journal: " + e.getMessage());
+    }
+  }
+
+  // Runs a game server until the process is stopped, reporting its sessions and latencies
+  private static void serve(String port, String settings) {
+    try (GameServer server = new GameServer(Integer.parseInt(port), parseSettings(settings))) {
+      System.out.println("Game server listening on port " + server.getPort());
+      while (true) {
+        Thread.sleep(SERVER_REPORT_MILLIS);
+        LatencyHistogram latencies = server.getLatencies();
+        System.out.printf("%d sessions, %d commands, p50 %.3f ms, p99 %.3f ms%n",
+                server.getRegistry().getSessionCount(), latencies.getCount(),
+                latencies.getPercentile(50) / 1e6, latencies.getPercentile(99) / 1e6);
+      }
+    }
+    catch (IOException | IllegalArgumentException e) {
+      System.out.println("Could not run server: " + e.getMessage());
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // Watches a session of the game server on this machine in a remote view, until the game ends.
+  // Sessions are numbered from one in the order they connected
+  private static void watch(String port, String session) {
+    try {
+      Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(port));
+      InputStream frames = new BufferedInputStream(socket.getInputStream());
+      // the prompt for a name comes before the frames
+      int next = frames.read();
+      while (next >= 0 && next != '\n') {
+        next = frames.read();
+      }
+      OutputStream out = socket.getOutputStream();
+      out.write((GameSession.WATCH_COMMAND + session + "\n").getBytes(StandardCharsets.UTF_8));
+      out.flush();
+      new RemoteSwingView(frames).startView();
+    }
+    catch (IOException | IllegalArgumentException e) {
+      System.out.println("Could not watch session: " + e.getMessage());
+    }
+  }
+
+  // Runs the HTTP API until the process is stopped
+  private static void serveHttp(String port) {
+    disableHttpDelay();
+    try {
+      HttpGameApi api = new HttpGameApi(Integer.parseInt(port),
+              Runtime.getRuntime().availableProcessors() * 2);
+      System.out.println("HTTP API listening on http://localhost:" + api.getPort() + "/games");
+    }
+    catch (IOException | IllegalArgumentException e) {
+      System.out.println("Could not run HTTP API: " + e.getMessage());
+    }
+  }
+
+  // The JDK HTTP server writes the headers and body of a reply separately, which Nagle's algorithm
+  // holds back until the client acknowledges, so turn it off unless set on the command line. It
+  // applies to every HTTP server in the process, which is only the API here
+  private static void disableHttpDelay() {
+    if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+      System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+  }
+
+  // Measures how many requests per second the HTTP API serves on localhost, with one game per
+  // client thread alternating between fetching the state and picking up an arrow
+  private static void benchmarkHttp(int requests) {
+    disableHttpDelay();
+    int clients = Math.max(4, Runtime.getRuntime().availableProcessors());
+    try (HttpGameApi api = new HttpGameApi(0, clients * 2)) {
+      HttpClient client = HttpClient.newHttpClient();
+      String games = "http://localhost:" + api.getPort() + "/games";
+      ExecutorService pool = Executors.newFixedThreadPool(clients);
+      try {
+        List<Future<Integer>> results = new ArrayList<>();
+        long started = System.nanoTime();
+        for (int thread = 0; thread < clients; thread++) {
+          results.add(pool.submit(() -> {
+            HttpResponse<String> created = client.send(HttpRequest.newBuilder(URI.create(games
+                    + "?rows=10&columns=10&interconnectivity=2&percent=50&monsters=2"))
+                    .POST(HttpRequest.BodyPublishers.noBody()).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            long id = parseGameId(created.body());
+            HttpRequest state = HttpRequest.newBuilder(URI.create(games + "/" + id)).build();
+            HttpRequest pickup = HttpRequest.newBuilder(URI.create(games + "/" + id
+                    + "/pickup?item=arrow")).POST(HttpRequest.BodyPublishers.noBody()).build();
+            int sent = 0;
+            for (int request = 0; request < requests / clients; request++) {
+              client.send(request % 2 == 0 ? state : pickup,
+                      HttpResponse.BodyHandlers.discarding());
+              sent++;
+            }
+            return sent;
+          }));
+        }
+        int sent = 0;
+        for (Future<Integer> result : results) {
+          sent += result.get();
+        }
+        long elapsed = System.nanoTime() - started;
+        System.out.printf("%d requests from %d clients in %.1f ms (%.0f requests/s)%n", sent,
+                clients, elapsed / 1e6, sent * 1e9 / elapsed);
+      }
+      finally {
+        pool.shutdownNow();
+      }
+    }
+    catch (IOException | ExecutionException | IllegalArgumentException e) {
+      System.out.println("Could not benchmark HTTP API: " + e.getMessage());
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // Reads the id field of the state of a created game, which the API writes as a number
+  private static long parseGameId(String state) throws IllegalArgumentException {
+    String field = "\"id\":";
+    int start = state.indexOf(field);
+    if (start < 0) {
+      throw new IllegalArgumentException("No game id in " + state);
+    }
+    start += field.length();
+    int end = start;
+    while (end < state.length() && Character.isDigit(state.charAt(end))) {
+      end++;
+    }
+    if (end == start) {
+      throw new IllegalArgumentException("No game id in " + state);
+    }
+    return Long.parseLong(state.substring(start, end));
+  }
+
+  // Parses settings given as rows,columns,interconnectivity,yes|no,percentage,monsters
+  private static DungeonSettings parseSettings(String settings) throws IllegalArgumentException {
+    String[] values = settings.split(",");
+    if (values.length != 6) {
+      throw new IllegalArgumentException("Invalid settings " + settings);
+    }
+    return new DungeonSettings(Integer.parseInt(values[0]), Integer.parseInt(values[1]),
+            Integer.parseInt(values[2]), values[3].equalsIgnoreCase("yes"),
+            Integer.parseInt(values[4]), Integer.parseInt(values[5]));
+  }
+
+  // Builds a catalogue from --build-catalogue file count settings..., where every settings is
+  // rows,columns,interconnectivity,yes|no,percentage,monsters
+  private static void buildCatalogue(String[] args) {
+    if (args.length < 4) {
+      System.out.println("Usage: --build-catalogue <file> <dungeons per settings> "
+              + "<rows,columns,interconnectivity,yes|no,percentage,monsters>...");
+      System.exit(0);
+    }
+    try {
+      List<DungeonSettings> settings = new ArrayList<>();
+      for (int arg = 3; arg < args.length; arg++) {
+        settings.add(parseSettings(args[arg]));
+      }
+      DungeonCatalogue.build(Paths.get(args[1]), settings, Integer.parseInt(args[2]));
+      System.out.println("Catalogue written to " + args[1]);
+    }
+    catch (IOException | IllegalArgumentException e) {
+      System.out.println("Could not build catalogue: " + e.getMessage());
+    }
+  }
 }
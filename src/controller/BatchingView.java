@@ -0,0 +1,51 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import view.GameView;
+
+// Package private view which holds back the messages and refreshes of a batch of commands and
+// passes them on to the real view once the batch is done: every message in order, then a single
+// refresh if any command asked for one. Only the model thread uses it.
+final class BatchingView implements GameView {
+
+  private final GameView view;
+  private final List<String> messages;
+  private boolean needsRefresh;
+
+  BatchingView(GameView view) {
+    this.view = view;
+    this.messages = new ArrayList<>();
+  }
+
+  @Override
+  public void startView(GameController controller) {
+    this.view.startView(controller);
+  }
+
+  @Override
+  public void displayMessage(String message) {
+    if (message == null) {
+      throw new IllegalArgumentException("Message cannot be null");
+    }
+    this.messages.add(message);
+  }
+
+  @Override
+  public void refresh() {
+    this.needsRefresh = true;
+  }
+
+  // Passes on what the batch held back
+  void flush() {
+    for (String message : this.messages) {
+      this.view.displayMessage(message);
+    }
+    this.messages.clear();
+    if (this.needsRefresh) {
+      this.needsRefresh = false;
+      this.view.refresh();
+    }
+  }
+}
@@ -14,7 +14,7 @@ public class DungeonGameController implements GameController {
 
   private final Player player;
   private final GameView view;
-
+  private final GameJournal journal;
 
   /**
    * Constructor of the Game Controller.
@@ -23,12 +23,26 @@ public class DungeonGameController implements GameController {
    * @throws IllegalArgumentException if either player/view is null.
    */
   public DungeonGameController(Player player, GameView view) throws IllegalArgumentException {
+    this(player, view, null);
+  }
+
+  /**
+   * Constructor of a Game Controller which records every action in a journal before taking it.
+   * The player should be created by {@link GameJournal#createPlayer} with the settings and seed
+   * the journal was created with, so the game can be replayed from the journal.
+   * @param player player of the game
+   * @param view view of the game
+   * @param journal journal to record actions in, or null to not record them
+   * @throws IllegalArgumentException if either player/view is null.
+   */
+  public DungeonGameController(Player player, GameView view, GameJournal journal)
+          throws IllegalArgumentException {
     if (player == null || view == null) {
       throw new IllegalArgumentException("Player and view can't be null");
     }
     this.player = player;
     this.view = view;
-
+    this.journal = journal;
   }
 
   @Override
@@ -38,6 +52,9 @@ public class DungeonGameController implements GameController {
 
   @Override
   public void pickupArrow() {
+    if (this.journal != null) {
+      this.journal.recordPickupArrow();
+    }
     boolean result = this.player.pickUpArrow();
 
     if (result) {
@@ -52,6 +69,9 @@ public class DungeonGameController implements GameController {
 
   @Override
   public void pickupTreasure() {
+    if (this.journal != null) {
+      this.journal.recordPickupTreasure();
+    }
     boolean result = this.player.pickUpTreasure();
 
     if (result) {
@@ -68,6 +88,9 @@ public class DungeonGameController implements GameController {
     if (direction == null) {
       throw new IllegalArgumentException("Direction cannot be null!");
     }
+    if (this.journal != null) {
+      this.journal.recordMove(this.player, direction);
+    }
     try {
       this.player.moveTo(direction);
       if (!this.player.isPlayerAlive()) {
@@ -86,6 +109,9 @@ public class DungeonGameController implements GameController {
     if (direction == null) {
       throw new IllegalArgumentException("Direction cannot be null!");
     }
+    if (this.journal != null) {
+      this.journal.recordShoot(this.player, direction, distance);
+    }
     try {
       Coordinates landed = this.player.shootArrow(distance, direction);
       this.view.displayMessage(String.format("Arrow has landed in %s", landed.toString()));
@@ -99,8 +125,30 @@ public class DungeonGameController implements GameController {
     }
   }
 
+  @Override
+  public void takeStairs() {
+    if (this.journal != null) {
+      this.journal.recordStairs();
+    }
+    try {
+      if (this.player.takeStairs()) {
+        this.view.displayMessage("Player has taken the stairs\n");
+      }
+      else {
+        this.view.displayMessage("No stairs to take\n");
+      }
+    }
+    catch (IllegalArgumentException iEx) {
+      this.view.displayMessage(String.format("Could not take stairs: %s \n", iEx.getMessage()));
+    }
+    this.view.refresh();
+  }
+
   @Override
   public void resetPlayerAndDungeon() {
+    if (this.journal != null) {
+      this.journal.recordReset();
+    }
     this.player.resetPlayer();
     this.view.refresh();
   }
@@ -38,6 +38,11 @@ public interface GameController {
    */
   Coordinates shootArrow(Coordinates direction, int distance);
 
+  /**
+   * Take the stairs at the player's location to another floor of the dungeon.
+   */
+  void takeStairs();
+
   /**
    * Reset the game by resetting player and dungeon.
    */
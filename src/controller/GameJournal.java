@@ -0,0 +1,245 @@
+package controller;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.DungeonSettings;
+import dungeonmodel.player.DungeonPlayer;
+import dungeonmodel.player.Player;
+
+/**
+ * Append-only journal of the actions taken in a game, from which {@link GameReplay} rebuilds the
+ * game. The journal starts with the settings of the dungeon, the name of the player and the seed
+ * every random choice of the game is drawn from, so only the actions need to be recorded after.
+ * Every number is written as a variable length integer of seven bits per byte, and an action is
+ * one byte when it moves or shoots towards a neighbour of the player, which is almost always.
+ * Each action is written to the file as soon as it is recorded, so a journal cut short by a crash
+ * still replays every action recorded before it.
+ */
+public final class GameJournal implements Closeable {
+
+  static final int MAGIC = 0x4C4A474E;
+  static final int VERSION = 2;
+
+  static final int PICKUP_ARROW = 0;
+  static final int PICKUP_TREASURE = 1;
+  static final int RESET = 2;
+  static final int MOVE = 3;
+  static final int SHOOT = 4;
+  static final int STAIRS = 5;
+  static final int MOVE_TOWARDS = 8;
+  static final int SHOOT_TOWARDS = 12;
+
+  private static final int MAX_RECORD_BYTES = 32;
+  private static final long SEED_SALT = 0x9E3779B97F4A7C15L;
+
+  private final OutputStream output;
+  private final byte[] record;
+  private int length;
+
+  // Opened through create, or by GameReplay to keep recording a recovered game
+  GameJournal(OutputStream output) {
+    this.output = output;
+    this.record = new byte[MAX_RECORD_BYTES];
+  }
+
+  /**
+   * Creates a journal for a new game, replacing the file if it exists, and writes the settings,
+   * player name and seed the game is created from.
+   *
+   * @param file       file to write the journal to
+   * @param settings   settings of the dungeon
+   * @param playerName name of the player
+   * @param seed       seed of the game
+   * @return journal to record the actions of the game in
+   * @throws IllegalArgumentException if any of the given arguments are null or blank
+   * @throws IOException              if the file cannot be written
+   */
+  public static GameJournal create(Path file, DungeonSettings settings, String playerName,
+                                   long seed) throws IllegalArgumentException, IOException {
+    if (file == null || settings == null) {
+      throw new IllegalArgumentException("File and settings cannot be null");
+    }
+    if (playerName == null || playerName.trim().equals("")) {
+      throw new IllegalArgumentException("Player name cannot be blank or null");
+    }
+    byte[] name = playerName.getBytes(StandardCharsets.UTF_8);
+    byte[] header = new byte[8 + MAX_RECORD_BYTES * 2 + name.length];
+    int length = 0;
+    for (int shift = 0; shift < Integer.SIZE; shift += Byte.SIZE) {
+      header[length++] = (byte) (MAGIC >>> shift);
+    }
+    length = putVarint(header, length, VERSION);
+    length = putVarint(header, length, settings.getRows());
+    length = putVarint(header, length, settings.getColumns());
+    length = putVarint(header, length, settings.getInterconnectivity());
+    length = putVarint(header, length, settings.isWrapping() ? 1 : 0);
+    length = putVarint(header, length, settings.getTreasureAndArrowPercent());
+    length = putVarint(header, length, settings.getNumberOfMonsters());
+    length = putVarint(header, length, zigZag(seed));
+    length = putVarint(header, length, name.length);
+    System.arraycopy(name, 0, header, length, name.length);
+    length += name.length;
+
+    OutputStream output = Files.newOutputStream(file);
+    try {
+      output.write(header, 0, length);
+      output.flush();
+    } catch (IOException e) {
+      output.close();
+      throw e;
+    }
+    return new GameJournal(output);
+  }
+
+  /**
+   * Creates the player of a journalled game, in a {@link dungeonmodel.dungeon.DungeonImpl}
+   * generated from the seed, the same model games which are not journalled are played in. The
+   * same settings, name and seed always give the same game, and the same actions taken in it
+   * always end the same way.
+   *
+   * @param settings   settings of the dungeon
+   * @param playerName name of the player
+   * @param seed       seed of the game
+   * @return player at the start cave of the new dungeon
+   * @throws IllegalArgumentException if any of the given arguments are invalid, or no dungeon can
+   *                                  be generated with the settings
+   */
+  public static Player createPlayer(DungeonSettings settings, String playerName, long seed)
+          throws IllegalArgumentException {
+    if (settings == null) {
+      throw new IllegalArgumentException("Settings cannot be null");
+    }
+    return new DungeonPlayer(playerName, settings.createDungeon(seed),
+            new Random(seed ^ SEED_SALT));
+  }
+
+  /**
+   * Closes the journal file. Every recorded action is already written to it.
+   *
+   * @throws IOException if the file cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    this.output.close();
+  }
+
+  // Records picking up an arrow
+  void recordPickupArrow() {
+    this.begin(PICKUP_ARROW);
+    this.write();
+  }
+
+  // Records picking up treasure
+  void recordPickupTreasure() {
+    this.begin(PICKUP_TREASURE);
+    this.write();
+  }
+
+  // Records resetting the player and dungeon
+  void recordReset() {
+    this.begin(RESET);
+    this.write();
+  }
+
+  // Records taking the stairs, whether or not there were stairs to take
+  void recordStairs() {
+    this.begin(STAIRS);
+    this.write();
+  }
+
+  // Records a move, as the direction of the move if it is towards a neighbour of the player
+  void recordMove(Player player, Coordinates target) {
+    int direction = directionOf(player, target);
+    if (direction >= 0) {
+      this.begin(MOVE_TOWARDS + direction);
+    } else {
+      this.begin(MOVE);
+      this.putCoordinates(target);
+    }
+    this.write();
+  }
+
+  // Records a shot, as the direction of the shot if it is towards a neighbour of the player
+  void recordShoot(Player player, Coordinates target, int distance) {
+    int direction = directionOf(player, target);
+    if (direction >= 0) {
+      this.begin(SHOOT_TOWARDS + direction);
+    } else {
+      this.begin(SHOOT);
+      this.putCoordinates(target);
+    }
+    this.length = putVarint(this.record, this.length, zigZag(distance));
+    this.write();
+  }
+
+  /**
+   * Finds which neighbour of the player the given coordinates are.
+   *
+   * @param player      player whose neighbours are checked
+   * @param coordinates coordinates to find
+   * @return 0 to 3 for north, south, east and west, or -1 if they are not a neighbour
+   */
+  static int directionOf(Player player, Coordinates coordinates) {
+    Coordinates[] neighbours = neighboursOf(player);
+    for (int direction = 0; direction < neighbours.length; direction++) {
+      if (coordinates.equals(neighbours[direction])) {
+        return direction;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Get the neighbours of the player in the order directions are journalled in.
+   *
+   * @param player player whose neighbours are needed
+   * @return north, south, east and west neighbours, each null if there is no path that way
+   */
+  static Coordinates[] neighboursOf(Player player) {
+    return new Coordinates[] {player.getNorth(), player.getSouth(), player.getEast(),
+        player.getWest()};
+  }
+
+  static long zigZag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  static long unZigZag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  // Writes a value seven bits at a time, lowest first, with the top bit set on all but the last
+  static int putVarint(byte[] buffer, int position, long value) {
+    while ((value & ~0x7FL) != 0) {
+      buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    buffer[position++] = (byte) value;
+    return position;
+  }
+
+  private void begin(int action) {
+    this.record[0] = (byte) action;
+    this.length = 1;
+  }
+
+  private void putCoordinates(Coordinates coordinates) {
+    this.length = putVarint(this.record, this.length, zigZag(coordinates.getXCoordinates()));
+    this.length = putVarint(this.record, this.length, zigZag(coordinates.getYCoordinates()));
+  }
+
+  private void write() {
+    try {
+      this.output.write(this.record, 0, this.length);
+    } catch (IOException ioe) {
+      throw new IllegalStateException("Journal write failed", ioe);
+    }
+  }
+}
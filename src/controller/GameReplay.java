@@ -0,0 +1,269 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import dungeonmodel.coordinates.CaveCoordinates;
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.DungeonSettings;
+import dungeonmodel.dungeon.DungeonTopology;
+import dungeonmodel.player.Player;
+import view.GameView;
+
+/**
+ * Rebuilds a game from a {@link GameJournal}, by creating the game from the settings and seed at
+ * the start of the journal and taking every recorded action through a controller again.
+ * Replaying gives exactly the game that was recorded, so it can recover a game after a crash,
+ * reproduce a bug from the journal of the game it happened in, or replay recorded games as fast as
+ * the controller and model allow to measure them. An action cut short at the end of the journal is
+ * left out, along with anything after it.
+ */
+public final class GameReplay {
+
+  private final Path file;
+  private final byte[] journal;
+  private final DungeonSettings settings;
+  private final String playerName;
+  private final long seed;
+  private final int firstAction;
+  private final int end;
+  private final int actionCount;
+  private int position;
+
+  // Opened only through open
+  private GameReplay(Path file, byte[] journal) throws IllegalArgumentException {
+    this.file = file;
+    this.journal = journal;
+    if (journal.length < Integer.BYTES || readMagic(journal) != GameJournal.MAGIC) {
+      throw new IllegalArgumentException("File is not a game journal");
+    }
+    this.position = Integer.BYTES;
+    int version = (int) this.nextVarint();
+    if (version != GameJournal.VERSION) {
+      throw new IllegalArgumentException("Unsupported journal version " + version);
+    }
+    this.settings = new DungeonSettings((int) this.nextVarint(), (int) this.nextVarint(),
+            (int) this.nextVarint(), this.nextVarint() != 0, (int) this.nextVarint(),
+            (int) this.nextVarint());
+    this.seed = GameJournal.unZigZag(this.nextVarint());
+    int nameLength = (int) this.nextVarint();
+    if (nameLength < 0 || nameLength > journal.length - this.position) {
+      throw new IllegalArgumentException("Journal is damaged");
+    }
+    this.playerName = new String(journal, this.position, nameLength, StandardCharsets.UTF_8);
+    this.position += nameLength;
+    this.firstAction = this.position;
+
+    int count = 0;
+    int complete = this.position;
+    try {
+      while (this.position < journal.length) {
+        this.skipAction();
+        complete = this.position;
+        count++;
+      }
+    } catch (IllegalArgumentException e) {
+      // the last action was cut short, so the journal ends before it
+    }
+    this.end = complete;
+    this.actionCount = count;
+  }
+
+  /**
+   * Reads a journal into memory so it can be replayed.
+   *
+   * @param file journal file
+   * @return replay of the journal
+   * @throws IllegalArgumentException if the file is null, is not a journal, or was written in an
+   *                                  unsupported version
+   * @throws IOException              if the file cannot be read
+   */
+  public static GameReplay open(Path file) throws IllegalArgumentException, IOException {
+    if (file == null) {
+      throw new IllegalArgumentException("File cannot be null");
+    }
+    return new GameReplay(file, Files.readAllBytes(file));
+  }
+
+  /**
+   * Get the settings of the recorded dungeon.
+   *
+   * @return dungeon settings
+   */
+  public DungeonSettings getSettings() {
+    return this.settings;
+  }
+
+  /**
+   * Get the name of the recorded player.
+   *
+   * @return player name
+   */
+  public String getPlayerName() {
+    return this.playerName;
+  }
+
+  /**
+   * Get the seed the recorded game was created from.
+   *
+   * @return seed of the game
+   */
+  public long getSeed() {
+    return this.seed;
+  }
+
+  /**
+   * Get the number of complete actions in the journal.
+   *
+   * @return number of actions
+   */
+  public int getActionCount() {
+    return this.actionCount;
+  }
+
+  /**
+   * Replays every action without showing anything, as fast as the model allows.
+   *
+   * @return player in the state after the last action
+   * @throws IllegalArgumentException if the game cannot be created from the journal
+   */
+  public Player replay() throws IllegalArgumentException {
+    return this.replay(new SilentView());
+  }
+
+  /**
+   * Replays every action through a controller showing its messages on the given view. The view is
+   * not started, so it only receives messages and refreshes.
+   *
+   * @param view view to show the replayed game on
+   * @return player in the state after the last action
+   * @throws IllegalArgumentException if the view is null or the game cannot be created from the
+   *                                  journal
+   */
+  public Player replay(GameView view) throws IllegalArgumentException {
+    if (view == null) {
+      throw new IllegalArgumentException("View cannot be null");
+    }
+    Player player = GameJournal.createPlayer(this.settings, this.playerName, this.seed);
+    GameController controller = new DungeonGameController(player, view);
+    this.position = this.firstAction;
+    while (this.position < this.end) {
+      int action = this.journal[this.position++];
+      if (action == GameJournal.PICKUP_ARROW) {
+        controller.pickupArrow();
+      } else if (action == GameJournal.PICKUP_TREASURE) {
+        controller.pickupTreasure();
+      } else if (action == GameJournal.RESET) {
+        controller.resetPlayerAndDungeon();
+      } else if (action == GameJournal.STAIRS) {
+        controller.takeStairs();
+      } else if (action == GameJournal.MOVE) {
+        controller.movePlayer(this.nextCoordinates());
+      } else if (action == GameJournal.SHOOT) {
+        Coordinates target = this.nextCoordinates();
+        controller.shootArrow(target, (int) GameJournal.unZigZag(this.nextVarint()));
+      } else if (action < GameJournal.SHOOT_TOWARDS) {
+        controller.movePlayer(this.neighbour(player, action - GameJournal.MOVE_TOWARDS));
+      } else {
+        Coordinates target = this.neighbour(player, action - GameJournal.SHOOT_TOWARDS);
+        controller.shootArrow(target, (int) GameJournal.unZigZag(this.nextVarint()));
+      }
+    }
+    return player;
+  }
+
+  /**
+   * Opens the journal to record more actions after the ones in it, so a game recovered after a
+   * crash by replaying it keeps being recorded in the same journal. An action cut short at the end
+   * of the journal is removed from the file first.
+   *
+   * @return journal to record the actions of the recovered game in
+   * @throws IOException if the journal cannot be opened for writing
+   */
+  public GameJournal reopen() throws IOException {
+    FileChannel channel = FileChannel.open(this.file, StandardOpenOption.WRITE);
+    try {
+      channel.truncate(this.end);
+      channel.position(this.end);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    return new GameJournal(Channels.newOutputStream(channel));
+  }
+
+  // Neighbour of the player a journalled direction points to
+  private Coordinates neighbour(Player player, int direction) throws IllegalArgumentException {
+    Coordinates neighbour = GameJournal.neighboursOf(player)[direction];
+    if (neighbour == null) {
+      throw new IllegalArgumentException("Journal does not match the replayed game");
+    }
+    return neighbour;
+  }
+
+  // Moves past one action, checking it is complete
+  private void skipAction() throws IllegalArgumentException {
+    int action = this.journal[this.position++];
+    if (action == GameJournal.MOVE) {
+      this.nextCoordinates();
+    } else if (action == GameJournal.SHOOT) {
+      this.nextCoordinates();
+      this.nextVarint();
+    } else if (action >= GameJournal.SHOOT_TOWARDS
+            && action < GameJournal.SHOOT_TOWARDS + DungeonTopology.DIRECTIONS) {
+      this.nextVarint();
+    } else if (action < 0 || action > GameJournal.STAIRS && action < GameJournal.MOVE_TOWARDS
+            || action >= GameJournal.SHOOT_TOWARDS + DungeonTopology.DIRECTIONS) {
+      throw new IllegalArgumentException("Unknown journal action " + action);
+    }
+  }
+
+  private Coordinates nextCoordinates() {
+    return new CaveCoordinates((int) GameJournal.unZigZag(this.nextVarint()),
+            (int) GameJournal.unZigZag(this.nextVarint()));
+  }
+
+  private long nextVarint() throws IllegalArgumentException {
+    long value = 0;
+    for (int shift = 0; shift < Long.SIZE; shift += 7) {
+      if (this.position >= this.journal.length) {
+        throw new IllegalArgumentException("Journal is cut short");
+      }
+      byte next = this.journal[this.position++];
+      value |= (long) (next & 0x7F) << shift;
+      if (next >= 0) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("Journal is damaged");
+  }
+
+  private static int readMagic(byte[] journal) {
+    return (journal[0] & 0xFF) | (journal[1] & 0xFF) << 8 | (journal[2] & 0xFF) << 16
+            | (journal[3] & 0xFF) << 24;
+  }
+
+  // View which ignores everything, so replaying only costs the controller and model
+  private static final class SilentView implements GameView {
+
+    @Override
+    public void startView(GameController controller) {
+      // nothing to start
+    }
+
+    @Override
+    public void displayMessage(String message) {
+      // messages are not shown
+    }
+
+    @Override
+    public void refresh() {
+      // nothing to refresh
+    }
+  }
+}
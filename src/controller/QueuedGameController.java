@@ -0,0 +1,305 @@
+package controller;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.DungeonTopology;
+import dungeonmodel.player.Player;
+import view.GameView;
+
+/**
+ * Controller which runs every action on a model thread of its own. Input threads, such as the
+ * Swing thread, only put commands on a queue and go back to their input; the model thread takes
+ * all the commands waiting, up to {@value #MAX_BATCH} at a time, runs them one after the other
+ * through a {@link DungeonGameController}, and then passes their messages on to the view followed
+ * by a single refresh for the whole batch. A burst of input, such as a held arrow key or a
+ * script, therefore redraws the view once per batch rather than once per command.
+ * Moving, picking up and taking the stairs return as soon as the command is queued. Shooting and
+ * resetting wait for the model thread, as their callers need the result, and return once the
+ * view has been given their messages and refresh. Errors of queued commands are shown to the
+ * view as messages. Moves towards a direction find the neighbour when they run, so queued moves
+ * follow on from each other.
+ */
+public final class QueuedGameController implements GameController, Closeable {
+
+  /**
+   * Largest number of commands run between two refreshes of the view.
+   */
+  public static final int MAX_BATCH = 64;
+
+  private static final Runnable STOP = () -> { };
+
+  private final GameView view;
+  private final Player player;
+  private final BatchingView batchingView;
+  private final DungeonGameController controller;
+  private final BlockingQueue<Runnable> queue;
+  private final Thread modelThread;
+  private volatile boolean isClosed;
+  private volatile long commandCount;
+  private volatile long batchCount;
+
+  /**
+   * Creates a controller and starts its model thread.
+   *
+   * @param player player of the game
+   * @param view   view of the game
+   * @throws IllegalArgumentException if either player or view is null
+   */
+  public QueuedGameController(Player player, GameView view) throws IllegalArgumentException {
+    this(player, view, null);
+  }
+
+  /**
+   * Creates a controller which records every action in a journal before taking it, and starts
+   * its model thread.
+   *
+   * @param player  player of the game
+   * @param view    view of the game
+   * @param journal journal to record actions in, or null to not record them
+   * @throws IllegalArgumentException if either player or view is null
+   */
+  public QueuedGameController(Player player, GameView view, GameJournal journal)
+          throws IllegalArgumentException {
+    if (player == null || view == null) {
+      throw new IllegalArgumentException("Player and view can't be null");
+    }
+    this.view = view;
+    this.player = player;
+    this.batchingView = new BatchingView(view);
+    this.controller = new DungeonGameController(player, this.batchingView, journal);
+    this.queue = new LinkedBlockingQueue<>();
+    this.modelThread = new Thread(this::runCommands, "game-model");
+    this.modelThread.setDaemon(true);
+    this.modelThread.start();
+  }
+
+  @Override
+  public void playGame() throws IllegalArgumentException {
+    this.view.startView(this);
+  }
+
+  @Override
+  public void pickupArrow() throws IllegalStateException {
+    this.submit(this.controller::pickupArrow);
+  }
+
+  @Override
+  public void pickupTreasure() throws IllegalStateException {
+    this.submit(this.controller::pickupTreasure);
+  }
+
+  @Override
+  public void takeStairs() throws IllegalStateException {
+    this.submit(this.controller::takeStairs);
+  }
+
+  @Override
+  public void movePlayer(Coordinates direction)
+          throws IllegalArgumentException, IllegalStateException {
+    if (direction == null) {
+      throw new IllegalArgumentException("Direction cannot be null!");
+    }
+    this.submit(() -> this.controller.movePlayer(direction));
+  }
+
+  /**
+   * Queues a move to the neighbour of the player in a direction, found when the move runs, so it
+   * follows on from the moves queued before it. Nothing happens if there is no path that way.
+   *
+   * @param direction one of the direction constants of {@link DungeonTopology}
+   * @throws IllegalArgumentException if the direction is not one of the constants
+   * @throws IllegalStateException    if the controller is closed
+   */
+  public void movePlayerTowards(int direction)
+          throws IllegalArgumentException, IllegalStateException {
+    checkDirection(direction);
+    this.submit(() -> {
+      Coordinates next = this.neighbour(direction);
+      if (next != null) {
+        this.controller.movePlayer(next);
+      }
+    });
+  }
+
+  @Override
+  public Coordinates shootArrow(Coordinates direction, int distance)
+          throws IllegalArgumentException, IllegalStateException {
+    if (direction == null) {
+      throw new IllegalArgumentException("Direction cannot be null!");
+    }
+    return this.call(() -> this.controller.shootArrow(direction, distance));
+  }
+
+  /**
+   * Shoots an arrow towards the neighbour of the player in a direction, found after the commands
+   * queued before it have run, and waits for it to land.
+   *
+   * @param direction one of the direction constants of {@link DungeonTopology}
+   * @param distance  distance the arrow flies
+   * @return location where the arrow landed, or null if it could not be shot
+   * @throws IllegalArgumentException if the direction is not one of the constants
+   * @throws IllegalStateException    if the controller is closed
+   */
+  public Coordinates shootArrowTowards(int direction, int distance)
+          throws IllegalArgumentException, IllegalStateException {
+    checkDirection(direction);
+    return this.call(() -> {
+      Coordinates next = this.neighbour(direction);
+      if (next == null) {
+        this.batchingView.displayMessage("Can't shoot in that direction!");
+        return null;
+      }
+      return this.controller.shootArrow(next, distance);
+    });
+  }
+
+  @Override
+  public void resetPlayerAndDungeon() throws IllegalStateException {
+    this.call(() -> {
+      this.controller.resetPlayerAndDungeon();
+      return null;
+    });
+  }
+
+  /**
+   * Get the number of commands run so far.
+   *
+   * @return number of commands run
+   */
+  public long getCommandCount() {
+    return this.commandCount;
+  }
+
+  /**
+   * Get the number of batches run so far, each followed by at most one refresh of the view.
+   *
+   * @return number of batches run
+   */
+  public long getBatchCount() {
+    return this.batchCount;
+  }
+
+  /**
+   * Stops taking commands, runs those already queued and stops the model thread.
+   */
+  @Override
+  public void close() {
+    if (this.isClosed) {
+      return;
+    }
+    this.isClosed = true;
+    this.queue.add(STOP);
+    if (Thread.currentThread() != this.modelThread) {
+      try {
+        this.modelThread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private static void checkDirection(int direction) throws IllegalArgumentException {
+    if (direction < 0 || direction >= DungeonTopology.DIRECTIONS) {
+      throw new IllegalArgumentException("Direction must be one of the four directions");
+    }
+  }
+
+  // Finds the neighbour of the player in a direction, on the model thread
+  private Coordinates neighbour(int direction) {
+    switch (direction) {
+      case DungeonTopology.NORTH:
+        return this.player.getNorth();
+      case DungeonTopology.SOUTH:
+        return this.player.getSouth();
+      case DungeonTopology.EAST:
+        return this.player.getEast();
+      default:
+        return this.player.getWest();
+    }
+  }
+
+  private void submit(Runnable command) throws IllegalStateException {
+    if (this.isClosed) {
+      throw new IllegalStateException("Controller has been closed");
+    }
+    this.queue.add(command);
+  }
+
+  // Queues a command and waits for its result, or runs it at once on the model thread itself.
+  // What the batch has shown up to and including the command is passed on before the result, so
+  // the caller finds the view already refreshed with it
+  private <T> T call(Callable<T> command) throws IllegalStateException {
+    FutureTask<T> task = new FutureTask<>(() -> {
+      T result = command.call();
+      this.batchingView.flush();
+      return result;
+    });
+    if (Thread.currentThread() == this.modelThread) {
+      task.run();
+    } else {
+      this.submit(task);
+    }
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for the model", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    } catch (CancellationException e) {
+      throw new IllegalStateException("Controller has been closed", e);
+    }
+  }
+
+  // Runs the commands in batches, passing on what each batch showed once it is done
+  private void runCommands() {
+    List<Runnable> batch = new ArrayList<>(MAX_BATCH);
+    boolean stopping = false;
+    while (!stopping) {
+      try {
+        batch.add(this.queue.take());
+      } catch (InterruptedException e) {
+        break;
+      }
+      this.queue.drainTo(batch, MAX_BATCH - 1);
+      int run = 0;
+      for (Runnable command : batch) {
+        if (command == STOP) {
+          stopping = true;
+          continue;
+        }
+        run++;
+        try {
+          command.run();
+        } catch (RuntimeException e) {
+          this.batchingView.displayMessage(String.format("Command failed: %s \n",
+                  e.getMessage()));
+        }
+        this.commandCount++;
+      }
+      if (run > 0) {
+        this.batchCount++;
+        this.batchingView.flush();
+      }
+      batch.clear();
+    }
+    for (Runnable command : this.queue) {
+      if (command instanceof Future) {
+        ((Future<?>) command).cancel(false);
+      }
+    }
+  }
+}
@@ -0,0 +1,289 @@
+package controller;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import view.GameView;
+
+/**
+ * View which lets several views and listeners follow one game. The controller talks to the bus as
+ * its only view: the main view, which takes the input, is called at once as before, and every
+ * message and refresh is then published once to a ring of preallocated slots which each
+ * subscriber reads on a thread of its own, at its own pace.
+ * Publishing never waits for subscribers. A subscriber which falls more than the capacity of the
+ * ring behind has the events it missed overwritten, is told how many it missed and carries on
+ * from the oldest event left, so a slow recorder can lose events but never slow the game down.
+ * Events must be published from one thread, the one the controller runs on. A subscriber which
+ * throws is unsubscribed and reported on the standard error stream, without affecting the game
+ * or other subscribers.
+ */
+public final class ViewEventBus implements GameView, Closeable {
+
+  /**
+   * Number of slots in the ring when none is given.
+   */
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  private static final long WRITING = -1;
+  private static final long PARK_NANOS = 1_000_000;
+
+  private final GameView view;
+  private final int mask;
+  private final AtomicLongArray sequences;
+  private final AtomicLongArray times;
+  private final AtomicReferenceArray<String> messages;
+  private final AtomicLong cursor;
+  private final List<Subscriber> subscribers;
+  private volatile boolean isClosed;
+
+  /**
+   * Creates a bus of the default capacity in front of a main view.
+   *
+   * @param view main view of the game, which takes the input
+   * @throws IllegalArgumentException if the view is null
+   */
+  public ViewEventBus(GameView view) throws IllegalArgumentException {
+    this(view, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Creates a bus in front of a main view.
+   *
+   * @param view     main view of the game, which takes the input
+   * @param capacity number of events a subscriber may fall behind without missing any, a power
+   *                 of two
+   * @throws IllegalArgumentException if the view is null or the capacity not a power of two
+   */
+  public ViewEventBus(GameView view, int capacity) throws IllegalArgumentException {
+    if (view == null) {
+      throw new IllegalArgumentException("View cannot be null");
+    }
+    if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Capacity must be a power of two");
+    }
+    this.view = view;
+    this.mask = capacity - 1;
+    this.sequences = new AtomicLongArray(capacity);
+    this.times = new AtomicLongArray(capacity);
+    this.messages = new AtomicReferenceArray<>(capacity);
+    for (int slot = 0; slot < capacity; slot++) {
+      this.sequences.set(slot, WRITING);
+    }
+    this.cursor = new AtomicLong(-1);
+    this.subscribers = new CopyOnWriteArrayList<>();
+  }
+
+  /**
+   * Subscribes a listener to every event published from now on, read on a thread of its own.
+   *
+   * @param listener listener to subscribe
+   * @param name     name of the thread reading for it
+   * @throws IllegalArgumentException if the listener or name is null
+   * @throws IllegalStateException    if the bus is closed
+   */
+  public void subscribe(ViewEventListener listener, String name)
+          throws IllegalArgumentException, IllegalStateException {
+    if (listener == null || name == null) {
+      throw new IllegalArgumentException("Listener and name cannot be null");
+    }
+    if (this.isClosed) {
+      throw new IllegalStateException("Bus has been closed");
+    }
+    Subscriber subscriber = new Subscriber(listener, this.cursor.get() + 1, name);
+    this.subscribers.add(subscriber);
+    subscriber.thread.start();
+  }
+
+  /**
+   * Subscribes another view, which is given the messages and refreshes on a thread of its own,
+   * and a refresh after it missed events so that it shows the game as it is. It must read the
+   * game in a way which is safe while the game changes on another thread. It is not started.
+   *
+   * @param view view to subscribe
+   * @param name name of the thread reading for it
+   * @throws IllegalArgumentException if the view or name is null
+   * @throws IllegalStateException    if the bus is closed
+   */
+  public void subscribe(GameView view, String name)
+          throws IllegalArgumentException, IllegalStateException {
+    if (view == null) {
+      throw new IllegalArgumentException("View cannot be null");
+    }
+    this.subscribe(new ViewEventListener() {
+      @Override
+      public void messageDisplayed(long sequence, long published, String message) {
+        view.displayMessage(message);
+      }
+
+      @Override
+      public void refreshed(long sequence, long published) {
+        view.refresh();
+      }
+
+      @Override
+      public void eventsDropped(long count) {
+        view.refresh();
+      }
+    }, name);
+  }
+
+  /**
+   * Get the number of events published so far.
+   *
+   * @return number of events published
+   */
+  public long getPublishedCount() {
+    return this.cursor.get() + 1;
+  }
+
+  /**
+   * Get the number of slots in the ring.
+   *
+   * @return capacity of the ring
+   */
+  public int getCapacity() {
+    return this.mask + 1;
+  }
+
+  /**
+   * Get the number of subscribers still receiving events.
+   *
+   * @return number of subscribers
+   */
+  public int getSubscriberCount() {
+    return this.subscribers.size();
+  }
+
+  @Override
+  public void startView(GameController controller) {
+    this.view.startView(controller);
+  }
+
+  @Override
+  public void displayMessage(String message) {
+    if (message == null) {
+      throw new IllegalArgumentException("Message cannot be null");
+    }
+    this.view.displayMessage(message);
+    this.publish(message);
+  }
+
+  @Override
+  public void refresh() {
+    this.view.refresh();
+    this.publish(null);
+  }
+
+  /**
+   * Stops publishing, lets every subscriber read the events left for it and waits for their
+   * threads to end.
+   */
+  @Override
+  public void close() {
+    this.isClosed = true;
+    for (Subscriber subscriber : this.subscribers) {
+      LockSupport.unpark(subscriber.thread);
+    }
+    for (Subscriber subscriber : this.subscribers) {
+      try {
+        subscriber.thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  // Writes an event into its slot, a null message standing for a refresh, and wakes the
+  // subscribers waiting for one
+  private void publish(String message) {
+    if (this.isClosed) {
+      return;
+    }
+    long sequence = this.cursor.get() + 1;
+    int slot = (int) sequence & this.mask;
+    this.sequences.set(slot, WRITING);
+    this.messages.set(slot, message);
+    this.times.set(slot, System.nanoTime());
+    this.sequences.set(slot, sequence);
+    this.cursor.set(sequence);
+    for (Subscriber subscriber : this.subscribers) {
+      if (subscriber.isWaiting) {
+        LockSupport.unpark(subscriber.thread);
+      }
+    }
+  }
+
+  // A listener and the thread reading the ring for it, with the next event it will read
+  private final class Subscriber {
+
+    private final ViewEventListener listener;
+    private final Thread thread;
+    private long next;
+    private volatile boolean isWaiting;
+
+    private Subscriber(ViewEventListener listener, long next, String name) {
+      this.listener = listener;
+      this.next = next;
+      this.thread = new Thread(this::read, name);
+      this.thread.setDaemon(true);
+    }
+
+    // Reads events until the bus is closed and every event has been read, or the listener throws,
+    // which unsubscribes it
+    private void read() {
+      try {
+        this.readEvents();
+      } catch (RuntimeException e) {
+        // reported before leaving the subscribers, so closing the bus still waits for it
+        System.err.printf("Subscriber %s stopped at event %d: %s%n", this.thread.getName(),
+                this.next, e);
+        ViewEventBus.this.subscribers.remove(this);
+      }
+    }
+
+    private void readEvents() {
+      int capacity = ViewEventBus.this.mask + 1;
+      while (true) {
+        long available = ViewEventBus.this.cursor.get();
+        if (this.next > available) {
+          if (ViewEventBus.this.isClosed) {
+            return;
+          }
+          this.isWaiting = true;
+          if (ViewEventBus.this.cursor.get() < this.next && !ViewEventBus.this.isClosed) {
+            LockSupport.parkNanos(PARK_NANOS);
+          }
+          this.isWaiting = false;
+          continue;
+        }
+        if (available - this.next >= capacity) {
+          long oldest = available - capacity + 1;
+          this.listener.eventsDropped(oldest - this.next);
+          this.next = oldest;
+        }
+        int slot = (int) this.next & ViewEventBus.this.mask;
+        if (ViewEventBus.this.sequences.get(slot) != this.next) {
+          continue;
+        }
+        String message = ViewEventBus.this.messages.get(slot);
+        long published = ViewEventBus.this.times.get(slot);
+        if (ViewEventBus.this.sequences.get(slot) != this.next) {
+          // overwritten while it was read, so this subscriber has been lapped
+          continue;
+        }
+        if (message == null) {
+          this.listener.refreshed(this.next, published);
+        } else {
+          this.listener.messageDisplayed(this.next, published, message);
+        }
+        this.next++;
+      }
+    }
+  }
+}
@@ -0,0 +1,33 @@
+package controller;
+
+/**
+ * Listener subscribed to a {@link ViewEventBus}, told of what the controller showed the view on
+ * a thread of its own, at its own pace.
+ */
+public interface ViewEventListener {
+
+  /**
+   * Called for a message the controller displayed.
+   *
+   * @param sequence  number of the event, counting up from zero for every event on the bus
+   * @param published {@link System#nanoTime()} when the event was published
+   * @param message   message displayed
+   */
+  void messageDisplayed(long sequence, long published, String message);
+
+  /**
+   * Called for a refresh the controller asked for.
+   *
+   * @param sequence  number of the event, counting up from zero for every event on the bus
+   * @param published {@link System#nanoTime()} when the event was published
+   */
+  void refreshed(long sequence, long published);
+
+  /**
+   * Called when the listener fell so far behind that events were overwritten before it read
+   * them, before it is given the oldest event still on the bus.
+   *
+   * @param count number of events missed
+   */
+  void eventsDropped(long count);
+}
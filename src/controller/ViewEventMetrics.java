@@ -0,0 +1,76 @@
+package controller;
+
+import server.LatencyHistogram;
+
+/**
+ * Listener which counts the events of a {@link ViewEventBus} and how long each waited on the bus
+ * before this listener read it, to see how far behind the game the subscribers run. Its counts
+ * can be read from any thread.
+ */
+public final class ViewEventMetrics implements ViewEventListener {
+
+  private final LatencyHistogram lag;
+  private volatile long messages;
+  private volatile long refreshes;
+  private volatile long dropped;
+
+  /**
+   * Creates metrics with nothing counted.
+   */
+  public ViewEventMetrics() {
+    this.lag = new LatencyHistogram();
+  }
+
+  /**
+   * Get the number of messages read.
+   *
+   * @return number of messages
+   */
+  public long getMessageCount() {
+    return this.messages;
+  }
+
+  /**
+   * Get the number of refreshes read.
+   *
+   * @return number of refreshes
+   */
+  public long getRefreshCount() {
+    return this.refreshes;
+  }
+
+  /**
+   * Get the number of events missed because they were overwritten before being read.
+   *
+   * @return number of events missed
+   */
+  public long getDroppedCount() {
+    return this.dropped;
+  }
+
+  /**
+   * Get the time events waited on the bus before being read, in nanoseconds.
+   *
+   * @return histogram of the waits
+   */
+  public LatencyHistogram getLag() {
+    return this.lag;
+  }
+
+  @Override
+  public void messageDisplayed(long sequence, long published, String message) {
+    this.lag.record(System.nanoTime() - published);
+    this.messages++;
+  }
+
+  @Override
+  public void refreshed(long sequence, long published) {
+    this.lag.record(System.nanoTime() - published);
+    this.refreshes++;
+  }
+
+  @Override
+  public void eventsDropped(long count) {
+    this.dropped += count;
+  }
+}
@@ -0,0 +1,69 @@
+package controller;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Listener which writes every event of a {@link ViewEventBus} to an appendable as a line of its
+ * number, the milliseconds since the recorder was created, and the message or a refresh, so a
+ * game can be followed or checked afterwards. Events missed are written as a line saying how
+ * many, which is not an event and is not counted as one. Times are written the same whatever the
+ * default locale.
+ */
+public final class ViewEventRecorder implements ViewEventListener {
+
+  private final Appendable out;
+  private final long created;
+  private volatile long recorded;
+
+  /**
+   * Creates a recorder writing to an appendable.
+   *
+   * @param out appendable to write the events to
+   * @throws IllegalArgumentException if the appendable is null
+   */
+  public ViewEventRecorder(Appendable out) throws IllegalArgumentException {
+    if (out == null) {
+      throw new IllegalArgumentException("Appendable can't be null");
+    }
+    this.out = out;
+    this.created = System.nanoTime();
+  }
+
+  /**
+   * Get the number of events written, leaving out the lines saying how many were dropped.
+   *
+   * @return number of events written
+   */
+  public long getRecordedCount() {
+    return this.recorded;
+  }
+
+  @Override
+  public void messageDisplayed(long sequence, long published, String message) {
+    this.append(String.format(Locale.ROOT, "%d\t%.3f\tmessage\t%s\n", sequence,
+            (published - this.created) / 1e6, message.strip().replace('\n', ' ')));
+    this.recorded++;
+  }
+
+  @Override
+  public void refreshed(long sequence, long published) {
+    this.append(String.format(Locale.ROOT, "%d\t%.3f\trefresh\n", sequence,
+            (published - this.created) / 1e6));
+    this.recorded++;
+  }
+
+  @Override
+  public void eventsDropped(long count) {
+    this.append("dropped\t" + count + "\n");
+  }
+
+  // Writes one line
+  private void append(String line) {
+    try {
+      this.out.append(line);
+    } catch (IOException e) {
+      throw new IllegalStateException("Append failed", e);
+    }
+  }
+}
@@ -0,0 +1,214 @@
+package dungeonmodel.dungeon;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Read only graph of the caves of a dungeon, in which every chain of tunnels between two caves is
+ * a single edge weighted by the number of moves along it. Caves are the locations which are not
+ * tunnels, and are numbered as nodes in the order of their locations.
+ * Edges are kept from both ends, one per direction leaving a cave, together with the tunnels
+ * walked through, so a path over the graph can be expanded back into every location. Tunnels
+ * which only lead to other tunnels in a loop cannot be reached from a cave and are left out.
+ */
+public final class CaveGraph {
+
+  private final DungeonTopology topology;
+  private final int[] locations;
+  private final int[] nodeOf;
+  private final int[] targets;
+  private final int[] weights;
+  private final int[] tunnelStarts;
+  private final int[] tunnels;
+
+  // Creates the graph from its arrays, with edges indexed by node and direction
+  private CaveGraph(DungeonTopology topology, int[] locations, int[] nodeOf, int[] targets,
+                    int[] weights, int[] tunnelStarts, int[] tunnels) {
+    this.topology = topology;
+    this.locations = locations;
+    this.nodeOf = nodeOf;
+    this.targets = targets;
+    this.weights = weights;
+    this.tunnelStarts = tunnelStarts;
+    this.tunnels = tunnels;
+  }
+
+  /**
+   * Creates the cave graph of the given dungeon.
+   *
+   * @param dungeon dungeon whose paths are read
+   * @return cave graph of the dungeon
+   * @throws IllegalArgumentException if the dungeon is null
+   */
+  public static CaveGraph of(ReadOnlyDungeon dungeon) throws IllegalArgumentException {
+    return of(DungeonTopology.of(dungeon));
+  }
+
+  /**
+   * Creates the cave graph of the given topology.
+   *
+   * @param topology topology whose paths are read
+   * @return cave graph of the topology
+   * @throws IllegalArgumentException if the topology is null
+   */
+  public static CaveGraph of(DungeonTopology topology) throws IllegalArgumentException {
+    if (topology == null) {
+      throw new IllegalArgumentException("Topology cannot be null");
+    }
+    int[] nodeOf = new int[topology.size()];
+    int nodes = 0;
+    for (int index = 0; index < topology.size(); index++) {
+      nodeOf[index] = topology.isTunnel(index) ? -1 : nodes++;
+    }
+    int[] locations = new int[nodes];
+    for (int index = 0; index < topology.size(); index++) {
+      if (nodeOf[index] >= 0) {
+        locations[nodeOf[index]] = index;
+      }
+    }
+
+    int edges = nodes * DungeonTopology.DIRECTIONS;
+    int[] targets = new int[edges];
+    int[] weights = new int[edges];
+    int[] tunnelStarts = new int[edges + 1];
+    int[] tunnels = new int[16];
+    int tunnelCount = 0;
+    Arrays.fill(targets, -1);
+    for (int node = 0; node < nodes; node++) {
+      for (int direction = 0; direction < DungeonTopology.DIRECTIONS; direction++) {
+        int edge = node * DungeonTopology.DIRECTIONS + direction;
+        tunnelStarts[edge] = tunnelCount;
+        int current = topology.neighbour(locations[node], direction);
+        if (current < 0) {
+          continue;
+        }
+        int heading = direction;
+        int weight = 1;
+        while (nodeOf[current] < 0) {
+          if (tunnelCount == tunnels.length) {
+            tunnels = Arrays.copyOf(tunnels, tunnels.length * 2);
+          }
+          tunnels[tunnelCount++] = current;
+          int exits = topology.getPaths(current) & ~(1 << DungeonTopology.opposite(heading));
+          heading = Integer.numberOfTrailingZeros(exits);
+          current = topology.neighbour(current, heading);
+          weight++;
+        }
+        targets[edge] = nodeOf[current];
+        weights[edge] = weight;
+      }
+    }
+    tunnelStarts[edges] = tunnelCount;
+    return new CaveGraph(topology, locations, nodeOf, targets, weights, tunnelStarts,
+            Arrays.copyOf(tunnels, tunnelCount));
+  }
+
+  /**
+   * Get the topology the graph was built from.
+   *
+   * @return topology of the dungeon
+   */
+  public DungeonTopology getTopology() {
+    return this.topology;
+  }
+
+  /**
+   * Get the number of caves in the graph.
+   *
+   * @return number of nodes
+   */
+  public int getNodeCount() {
+    return this.locations.length;
+  }
+
+  /**
+   * Get the location of a cave.
+   *
+   * @param node node of the cave
+   * @return index of the location in the topology
+   */
+  public int getLocation(int node) {
+    return this.locations[node];
+  }
+
+  /**
+   * Get the node of a location.
+   *
+   * @param location index of the location in the topology
+   * @return node of the cave, or -1 if the location is a tunnel
+   */
+  public int nodeOf(int location) {
+    return this.nodeOf[location];
+  }
+
+  /**
+   * Get the cave reached by leaving a cave in a direction and following the tunnels after it.
+   *
+   * @param node      node of the cave
+   * @param direction one of the direction constants of {@link DungeonTopology}
+   * @return node of the cave reached, or -1 if there is no path in that direction
+   */
+  public int getTarget(int node, int direction) {
+    return this.targets[node * DungeonTopology.DIRECTIONS + direction];
+  }
+
+  /**
+   * Get the number of moves from a cave to the cave reached in a direction.
+   *
+   * @param node      node of the cave
+   * @param direction one of the direction constants of {@link DungeonTopology}
+   * @return number of moves, or 0 if there is no path in that direction
+   */
+  public int getWeight(int node, int direction) {
+    return this.weights[node * DungeonTopology.DIRECTIONS + direction];
+  }
+
+  /**
+   * Get the tunnels walked through when leaving a cave in a direction, in the order they are
+   * walked.
+   *
+   * @param node      node of the cave
+   * @param direction one of the direction constants of {@link DungeonTopology}
+   * @return indexes of the tunnel locations, empty if the next location is a cave
+   */
+  public int[] getTunnels(int node, int direction) {
+    int edge = node * DungeonTopology.DIRECTIONS + direction;
+    return Arrays.copyOfRange(this.tunnels, this.tunnelStarts[edge], this.tunnelStarts[edge + 1]);
+  }
+
+  /**
+   * Get the number of moves from a cave to every other cave.
+   *
+   * @param source node of the cave the moves start from
+   * @return number of moves to each node, -1 for caves which cannot be reached
+   */
+  public int[] distancesFrom(int source) {
+    int[] distances = new int[this.locations.length];
+    Arrays.fill(distances, Integer.MAX_VALUE);
+    PriorityQueue<Long> queue = new PriorityQueue<>();
+    distances[source] = 0;
+    queue.add((long) source);
+    while (!queue.isEmpty()) {
+      long entry = queue.poll();
+      int distance = (int) (entry >>> 32);
+      int node = (int) entry;
+      if (distance > distances[node]) {
+        continue;
+      }
+      for (int direction = 0; direction < DungeonTopology.DIRECTIONS; direction++) {
+        int next = this.getTarget(node, direction);
+        int nextDistance = distance + this.getWeight(node, direction);
+        if (next >= 0 && nextDistance < distances[next]) {
+          distances[next] = nextDistance;
+          queue.add(((long) nextDistance << 32) | next);
+        }
+      }
+    }
+    for (int node = 0; node < distances.length; node++) {
+      if (distances[node] == Integer.MAX_VALUE) {
+        distances[node] = -1;
+      }
+    }
+    return distances;
+  }
+}
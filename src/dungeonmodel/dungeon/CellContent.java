@@ -0,0 +1,63 @@
+package dungeonmodel.dungeon;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import dungeonmodel.treasure.Treasure;
+
+// Package private immutable value holding the items and monster of a single location.
+// Every change returns a new instance so instances can be shared between dungeons.
+final class CellContent {
+
+  static final CellContent EMPTY = new CellContent(Collections.emptyList(), false, false, 0);
+
+  private final List<Treasure> treasure;
+  private final boolean arrow;
+  private final boolean monster;
+  private final int monsterHits;
+
+  // Creates the content of a cell, copying the given treasure
+  CellContent(List<Treasure> treasure, boolean arrow, boolean monster, int monsterHits) {
+    this.treasure = Collections.unmodifiableList(new ArrayList<>(treasure));
+    this.arrow = arrow;
+    this.monster = monster;
+    this.monsterHits = monsterHits;
+  }
+
+  List<Treasure> getTreasure() {
+    return this.treasure;
+  }
+
+  boolean hasArrow() {
+    return this.arrow;
+  }
+
+  boolean hasMonster() {
+    return this.monster;
+  }
+
+  boolean isMonsterAlive() {
+    return this.monster && this.monsterHits < 2;
+  }
+
+  int getMonsterHits() {
+    return this.monsterHits;
+  }
+
+  CellContent withoutTreasure() {
+    return new CellContent(Collections.emptyList(), this.arrow, this.monster, this.monsterHits);
+  }
+
+  CellContent withoutArrow() {
+    return new CellContent(this.treasure, false, this.monster, this.monsterHits);
+  }
+
+  CellContent withMonsterHit() {
+    return new CellContent(this.treasure, this.arrow, this.monster, this.monsterHits + 1);
+  }
+
+  boolean isEmpty() {
+    return this.treasure.isEmpty() && !this.arrow && !this.monster;
+  }
+}
@@ -0,0 +1,125 @@
+package dungeonmodel.dungeon;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.treasure.Treasure;
+import dungeonmodel.treasure.TreasureFactory;
+
+// Package private layout of the 32 bit word describing one location in a cell store.
+// Bits 0 to 3 are the paths north, south, east and west, bit 4 an arrow and bit 5 a monster.
+// Bit 6 marks the contents of a dungeon with lazy contents as already placed.
+// Bits 8 to 15 count the arrows which hit the monster, and bits 16 to 24 are the treasure, one bit
+// per treasure in the order of TreasureFactory.
+final class CellLayout {
+
+  static final int PATHS = 0xF;
+  static final int ARROW = 1 << 4;
+  static final int MONSTER = 1 << 5;
+  static final int LOADED = 1 << 6;
+  static final int HITS_SHIFT = 8;
+  static final int HITS = 0xFF << HITS_SHIFT;
+  static final int TREASURE_SHIFT = 16;
+  static final int TREASURE_KINDS = 9;
+  static final int TREASURE = ((1 << TREASURE_KINDS) - 1) << TREASURE_SHIFT;
+
+  private static final List<Treasure> ALL_TREASURE =
+          Collections.unmodifiableList(TreasureFactory.getAllPossibleTreasure());
+
+  private CellLayout() {
+    // only static helpers
+  }
+
+  static int path(int direction) {
+    return 1 << direction;
+  }
+
+  static boolean hasPath(int cell, int direction) {
+    return (cell & path(direction)) != 0;
+  }
+
+  static boolean isTunnel(int cell) {
+    return Integer.bitCount(cell & PATHS) == 2;
+  }
+
+  static boolean hasArrow(int cell) {
+    return (cell & ARROW) != 0;
+  }
+
+  static boolean isLoaded(int cell) {
+    return (cell & LOADED) != 0;
+  }
+
+  static boolean hasMonster(int cell) {
+    return (cell & MONSTER) != 0;
+  }
+
+  static int hits(int cell) {
+    return (cell & HITS) >>> HITS_SHIFT;
+  }
+
+  static boolean isMonsterAlive(int cell) {
+    return hasMonster(cell) && hits(cell) < 2;
+  }
+
+  // Returns the cell with the monster hit once more, counting up to the largest number stored
+  static int withHit(int cell) {
+    int hits = Math.min(hits(cell) + 1, HITS >>> HITS_SHIFT);
+    return (cell & ~HITS) | (hits << HITS_SHIFT);
+  }
+
+  static int treasureBits(int cell) {
+    return (cell & TREASURE) >>> TREASURE_SHIFT;
+  }
+
+  static int withTreasureBits(int cell, int bits) {
+    return (cell & ~TREASURE) | (bits << TREASURE_SHIFT);
+  }
+
+  static int clearContents(int cell) {
+    return cell & PATHS;
+  }
+
+  static Treasure treasureAt(int bit) {
+    return ALL_TREASURE.get(bit);
+  }
+
+  static int treasureBit(Treasure treasure) {
+    int bit = ALL_TREASURE.indexOf(treasure);
+    if (bit < 0) {
+      throw new IllegalArgumentException("Unknown treasure " + treasure);
+    }
+    return bit;
+  }
+
+  static List<Treasure> treasureOf(int cell) {
+    List<Treasure> treasure = new ArrayList<>();
+    for (int bits = treasureBits(cell); bits != 0; bits &= bits - 1) {
+      treasure.add(treasureAt(Integer.numberOfTrailingZeros(bits)));
+    }
+    return treasure;
+  }
+
+  // Returns the arrow, monster, hits and treasure of a location of any dungeon, without its paths
+  static int contentsOf(ReadOnlyDungeon dungeon, Coordinates coordinates) {
+    int cell = 0;
+    if (dungeon.hasArrow(coordinates)) {
+      cell |= ARROW;
+    }
+    int hits = dungeon.monsterArrowCount(coordinates);
+    if (dungeon.hasMonster(coordinates) || hits > 0) {
+      cell |= MONSTER | hits << HITS_SHIFT;
+    }
+    return withTreasureBits(cell, treasureBits(dungeon.viewTreasureInCave(coordinates)));
+  }
+
+  static int treasureBits(List<Treasure> treasure) {
+    int bits = 0;
+    for (Treasure item : treasure) {
+      bits |= 1 << treasureBit(item);
+    }
+    return bits;
+  }
+}
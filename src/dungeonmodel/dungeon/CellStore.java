@@ -0,0 +1,268 @@
+package dungeonmodel.dungeon;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Fixed size array of 32 bit cell words kept outside the Java heap, either in direct memory or in
+ * a memory mapped file. Cells are indexed by long, and the memory is split into pages of at most
+ * {@link #PAGE_CELLS} cells since a single buffer cannot be larger than two gigabytes.
+ * A mapped store is written straight to its file by the operating system, so stores much larger
+ * than the heap can be created and read back later by mapping the same file. A store can also be
+ * mapped copy on write, reading the cells of a file without copying them while keeping every
+ * change in memory and leaving the file untouched.
+ */
+public final class CellStore implements Closeable {
+
+  /**
+   * Number of bytes used by each cell.
+   */
+  public static final int CELL_BYTES = 4;
+
+  /**
+   * Largest number of cells kept in one page.
+   */
+  public static final int PAGE_CELLS = 1 << 28;
+
+  private static final int PAGE_SHIFT = 28;
+
+  private final long cells;
+  private final ByteBuffer[] pages;
+  private final FileChannel channel;
+  private final boolean isCopyOnWrite;
+
+  // Creates a store over the given pages
+  private CellStore(long cells, ByteBuffer[] pages, FileChannel channel, boolean isCopyOnWrite) {
+    this.cells = cells;
+    this.pages = pages;
+    this.channel = channel;
+    this.isCopyOnWrite = isCopyOnWrite;
+  }
+
+  /**
+   * Creates a store in direct memory with every cell set to zero.
+   *
+   * @param cells number of cells
+   * @return new store
+   * @throws IllegalArgumentException if the number of cells is not positive
+   */
+  public static CellStore allocate(long cells) throws IllegalArgumentException {
+    ByteBuffer[] pages = new ByteBuffer[pageCount(cells)];
+    for (int page = 0; page < pages.length; page++) {
+      pages[page] = ByteBuffer.allocateDirect(pageBytes(cells, page))
+              .order(ByteOrder.LITTLE_ENDIAN);
+    }
+    return new CellStore(cells, pages, null, false);
+  }
+
+  /**
+   * Creates a store mapped onto a file, creating the file if needed. Cells already in the file are
+   * kept, and cells past its end start as zero.
+   *
+   * @param file  file holding the cells
+   * @param cells number of cells
+   * @return new store
+   * @throws IllegalArgumentException if the file is null or the number of cells is not positive
+   * @throws IOException              if the file cannot be opened or mapped
+   */
+  public static CellStore map(Path file, long cells)
+          throws IllegalArgumentException, IOException {
+    return map(file, 0, cells, false);
+  }
+
+  /**
+   * Creates a store mapped onto the part of a file starting at the given byte offset. A store
+   * mapped copy on write must lie inside the existing file, and its changes are never written
+   * back. Otherwise the file is created or grown if needed.
+   *
+   * @param file          file holding the cells
+   * @param offset        byte offset of the first cell in the file
+   * @param cells         number of cells
+   * @param isCopyOnWrite true to keep changes in memory, false to write them to the file
+   * @return new store
+   * @throws IllegalArgumentException if the file is null, the offset is negative, the number of
+   *                                  cells is not positive, or a copy on write store would reach
+   *                                  past the end of the file
+   * @throws IOException              if the file cannot be opened or mapped
+   */
+  public static CellStore map(Path file, long offset, long cells, boolean isCopyOnWrite)
+          throws IllegalArgumentException, IOException {
+    if (file == null) {
+      throw new IllegalArgumentException("File cannot be null");
+    }
+    if (offset < 0) {
+      throw new IllegalArgumentException("Offset cannot be negative");
+    }
+    ByteBuffer[] pages = new ByteBuffer[pageCount(cells)];
+    FileChannel channel = isCopyOnWrite
+            ? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)
+            : FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    try {
+      if (isCopyOnWrite && channel.size() < offset + cells * CELL_BYTES) {
+        throw new IllegalArgumentException("File is too short for the cells");
+      }
+      FileChannel.MapMode mode = isCopyOnWrite
+              ? FileChannel.MapMode.PRIVATE : FileChannel.MapMode.READ_WRITE;
+      for (int page = 0; page < pages.length; page++) {
+        long position = offset + ((long) page << PAGE_SHIFT) * CELL_BYTES;
+        pages[page] = channel.map(mode, position, pageBytes(cells, page))
+                .order(ByteOrder.LITTLE_ENDIAN);
+      }
+    } catch (IOException | IllegalArgumentException e) {
+      channel.close();
+      throw e;
+    }
+    return new CellStore(cells, pages, channel, isCopyOnWrite);
+  }
+
+  private static int pageCount(long cells) {
+    if (cells <= 0) {
+      throw new IllegalArgumentException("Number of cells must be positive");
+    }
+    return (int) ((cells + PAGE_CELLS - 1) >>> PAGE_SHIFT);
+  }
+
+  private static int pageBytes(long cells, int page) {
+    long first = (long) page << PAGE_SHIFT;
+    return (int) Math.min(PAGE_CELLS, cells - first) * CELL_BYTES;
+  }
+
+  /**
+   * Get the number of cells.
+   *
+   * @return number of cells
+   */
+  public long size() {
+    return this.cells;
+  }
+
+  /**
+   * Get the word of a cell.
+   *
+   * @param cell index of the cell
+   * @return word stored in the cell
+   * @throws IllegalArgumentException if the index is outside the store
+   */
+  public int get(long cell) throws IllegalArgumentException {
+    this.checkIndex(cell);
+    return this.pages[(int) (cell >>> PAGE_SHIFT)]
+            .getInt((int) (cell & (PAGE_CELLS - 1)) * CELL_BYTES);
+  }
+
+  /**
+   * Set the word of a cell.
+   *
+   * @param cell  index of the cell
+   * @param value word to store in the cell
+   * @throws IllegalArgumentException if the index is outside the store
+   */
+  public void set(long cell, int value) throws IllegalArgumentException {
+    this.checkIndex(cell);
+    this.pages[(int) (cell >>> PAGE_SHIFT)]
+            .putInt((int) (cell & (PAGE_CELLS - 1)) * CELL_BYTES, value);
+  }
+
+  /**
+   * Check if the store is mapped onto a file.
+   *
+   * @return true if the cells live in a file, false if in direct memory
+   */
+  public boolean isMapped() {
+    return this.channel != null;
+  }
+
+  /**
+   * Writes every cell to a channel, starting at the given byte position, straight from the pages
+   * of the store.
+   *
+   * @param target   channel to write to
+   * @param position byte position in the channel of the first cell
+   * @throws IllegalArgumentException if the channel is null or the position is negative
+   * @throws IOException              if the channel cannot be written
+   */
+  public void writeTo(FileChannel target, long position)
+          throws IllegalArgumentException, IOException {
+    if (target == null) {
+      throw new IllegalArgumentException("Channel cannot be null");
+    }
+    if (position < 0) {
+      throw new IllegalArgumentException("Position cannot be negative");
+    }
+    for (ByteBuffer page : this.pages) {
+      ByteBuffer bytes = page.duplicate();
+      bytes.clear();
+      while (bytes.hasRemaining()) {
+        position += target.write(bytes, position);
+      }
+    }
+  }
+
+  /**
+   * Copies cells from a buffer of little endian words into the store, starting at the first cell.
+   * The buffer is read from its position to its limit and is left unchanged.
+   *
+   * @param source buffer holding four bytes per cell
+   * @throws IllegalArgumentException if the buffer is null or holds more cells than the store
+   */
+  public void readFrom(ByteBuffer source) throws IllegalArgumentException {
+    if (source == null) {
+      throw new IllegalArgumentException("Buffer cannot be null");
+    }
+    if (source.remaining() / CELL_BYTES > this.cells) {
+      throw new IllegalArgumentException("Buffer holds more cells than the store");
+    }
+    ByteBuffer bytes = source.duplicate();
+    for (ByteBuffer page : this.pages) {
+      if (!bytes.hasRemaining()) {
+        break;
+      }
+      ByteBuffer target = page.duplicate();
+      target.clear();
+      int length = Math.min(target.remaining(), bytes.remaining());
+      ByteBuffer chunk = bytes.duplicate();
+      chunk.limit(chunk.position() + length);
+      target.put(chunk);
+      bytes.position(bytes.position() + length);
+    }
+  }
+
+  /**
+   * Writes any changed cells of a mapped store to its file. Does nothing for a store in direct
+   * memory or mapped copy on write.
+   */
+  public void force() {
+    if (this.channel == null || this.isCopyOnWrite) {
+      return;
+    }
+    for (ByteBuffer page : this.pages) {
+      ((MappedByteBuffer) page).force();
+    }
+  }
+
+  /**
+   * Writes any changed cells to the file and closes it. The memory of the store is released once
+   * the store is no longer referenced.
+   *
+   * @throws IOException if the file cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    if (this.channel != null) {
+      this.force();
+      this.channel.close();
+    }
+  }
+
+  private void checkIndex(long cell) {
+    if (cell < 0 || cell >= this.cells) {
+      throw new IllegalArgumentException("Cell " + cell + " is outside the store");
+    }
+  }
+}
@@ -0,0 +1,537 @@
+package dungeonmodel.dungeon;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import dungeonmodel.coordinates.CaveCoordinates;
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.treasure.Treasure;
+import dungeonmodel.weapon.Arrow;
+import dungeonmodel.weapon.CrookedArrow;
+
+/**
+ * Endless dungeon made of square chunks of {@link #CHUNK_SIZE} locations on a side, arranged on a
+ * wrapping grid so far too large to ever walk around. A chunk is only generated the first time it
+ * is touched, from the seed and its position, so the same seed always gives the same dungeon.
+ * Inside a chunk the paths are a spanning tree built with Kruskal's algorithm. Each side between
+ * two chunks has one door whose position is derived from the chunk on its north or west, so both
+ * chunks agree on it and the whole dungeon stays connected.
+ * Recently used chunks are kept in a cache of bounded size. Chunks evicted from the cache are
+ * dropped if unchanged, as they can be generated again, and otherwise kept as compact bytes, so
+ * memory grows with the area the player has changed rather than with the size of the dungeon.
+ * The state hash only covers changes made since the dungeon was created or reset, as hashing the
+ * full contents would need every chunk generated.
+ * This is a model only class, played through the {@link Dungeon} interface, for example by a
+ * {@link dungeonmodel.player.DungeonPlayer}. The views, the snapshots they draw from and
+ * {@link DungeonTopology#of} go over every location, so they do not support it: they would
+ * generate every chunk of a small one, and refuse one with more locations than an int can number.
+ * No driver mode starts a chunked game.
+ */
+public class ChunkedDungeon implements Dungeon {
+
+  /**
+   * Number of locations along each side of a chunk.
+   */
+  public static final int CHUNK_SIZE = 16;
+
+  /**
+   * Largest number of chunks along each side of the dungeon.
+   */
+  public static final int MAX_CHUNKS_PER_SIDE = 1 << 20;
+
+  private static final int CHUNK_CELLS = CHUNK_SIZE * CHUNK_SIZE;
+  private static final long PATH_SALT = 0x5851F42D4C957F2DL;
+  private static final long DOOR_SALT = 0x14057B7EF767814FL;
+  private static final long CONTENT_SALT = 0x2545F4914F6CDD1DL;
+  private static final long EPOCH_SALT = 0x9E3779B97F4A7C15L;
+
+  private final long seed;
+  private final int chunksPerSide;
+  private final int treasureAndArrowPercent;
+  private final int monstersPerChunk;
+  private final int maxResidentChunks;
+  private final Coordinates startCave;
+  private final Coordinates endCave;
+  private final Map<Long, Chunk> residentChunks;
+  private final Map<Long, byte[]> savedChunks;
+  private long epoch;
+  private long stateHash;
+
+  /**
+   * Creates an endless dungeon. No chunk is generated until it is used.
+   *
+   * @param chunksPerSide           number of chunks along each side, at least four
+   * @param treasureAndArrowPercent percentage of caves in each chunk with treasure and arrows
+   * @param monstersPerChunk        number of monsters in each chunk
+   * @param maxResidentChunks       number of chunks kept in the cache
+   * @param seed                    seed the dungeon is generated from
+   * @throws IllegalArgumentException if any of the given arguments are invalid
+   */
+  public ChunkedDungeon(int chunksPerSide, int treasureAndArrowPercent, int monstersPerChunk,
+                        int maxResidentChunks, long seed) throws IllegalArgumentException {
+    if (chunksPerSide < 4 || chunksPerSide > MAX_CHUNKS_PER_SIDE) {
+      throw new IllegalArgumentException("Chunks per side must be between 4 and "
+              + MAX_CHUNKS_PER_SIDE);
+    }
+    if (treasureAndArrowPercent <= 0 || treasureAndArrowPercent > 100) {
+      throw new IllegalArgumentException("Treasure percentage must be between one and hundred");
+    }
+    if (monstersPerChunk < 0) {
+      throw new IllegalArgumentException("Number of monsters cannot be negative");
+    }
+    if (maxResidentChunks <= 0) {
+      throw new IllegalArgumentException("Number of cached chunks must be positive");
+    }
+    this.seed = seed;
+    this.chunksPerSide = chunksPerSide;
+    this.treasureAndArrowPercent = treasureAndArrowPercent;
+    this.monstersPerChunk = monstersPerChunk;
+    this.maxResidentChunks = maxResidentChunks;
+    this.residentChunks = new LinkedHashMap<>(16, 0.75f, true);
+    this.savedChunks = new HashMap<>();
+    this.startCave = this.caveInChunk(0, 0);
+    this.endCave = this.caveInChunk(chunksPerSide / 2, chunksPerSide / 2);
+    this.epoch = 0;
+    this.stateHash = 0;
+  }
+
+  /**
+   * Get the number of chunks currently generated and kept in the cache.
+   *
+   * @return number of resident chunks
+   */
+  public int getResidentChunkCount() {
+    return this.residentChunks.size();
+  }
+
+  /**
+   * Get the number of changed chunks evicted from the cache and kept as bytes.
+   *
+   * @return number of saved chunks
+   */
+  public int getSavedChunkCount() {
+    return this.savedChunks.size();
+  }
+
+  private long hashOf(long salt, int chunkRow, int chunkColumn) {
+    long chunk = (long) chunkRow << 32 | chunkColumn;
+    return ZobristKeys.mix(ZobristKeys.mix(this.seed ^ salt) ^ chunk);
+  }
+
+  // Position along a side of the door leading out of a chunk to the south or east
+  private int door(int chunkRow, int chunkColumn, int direction) {
+    int row = Math.floorMod(chunkRow, this.chunksPerSide);
+    int column = Math.floorMod(chunkColumn, this.chunksPerSide);
+    return Math.floorMod(this.hashOf(DOOR_SALT + direction, row, column), CHUNK_SIZE);
+  }
+
+  // Generates the paths of a chunk: a spanning tree inside it plus its four doors
+  private int[] chunkPaths(int chunkRow, int chunkColumn) {
+    int[] cells = new int[CHUNK_CELLS];
+    List<int[]> edges = new ArrayList<>();
+    for (int row = 0; row < CHUNK_SIZE; row++) {
+      for (int column = 0; column < CHUNK_SIZE; column++) {
+        if (row + 1 < CHUNK_SIZE) {
+          edges.add(new int[]{row * CHUNK_SIZE + column, DungeonTopology.SOUTH});
+        }
+        if (column + 1 < CHUNK_SIZE) {
+          edges.add(new int[]{row * CHUNK_SIZE + column, DungeonTopology.EAST});
+        }
+      }
+    }
+    Collections.shuffle(edges, new Random(this.hashOf(PATH_SALT, chunkRow, chunkColumn)));
+    int[] parents = new int[CHUNK_CELLS];
+    for (int cell = 0; cell < CHUNK_CELLS; cell++) {
+      parents[cell] = cell;
+    }
+    for (int[] edge : edges) {
+      int next = edge[0] + (edge[1] == DungeonTopology.SOUTH ? CHUNK_SIZE : 1);
+      int first = find(parents, edge[0]);
+      int second = find(parents, next);
+      if (first != second) {
+        parents[second] = first;
+        cells[edge[0]] |= CellLayout.path(edge[1]);
+        cells[next] |= CellLayout.path(DungeonTopology.opposite(edge[1]));
+      }
+    }
+
+    int east = this.door(chunkRow, chunkColumn, DungeonTopology.EAST);
+    int west = this.door(chunkRow, chunkColumn - 1, DungeonTopology.EAST);
+    int south = this.door(chunkRow, chunkColumn, DungeonTopology.SOUTH);
+    int north = this.door(chunkRow - 1, chunkColumn, DungeonTopology.SOUTH);
+    cells[east * CHUNK_SIZE + CHUNK_SIZE - 1] |= CellLayout.path(DungeonTopology.EAST);
+    cells[west * CHUNK_SIZE] |= CellLayout.path(DungeonTopology.WEST);
+    cells[(CHUNK_SIZE - 1) * CHUNK_SIZE + south] |= CellLayout.path(DungeonTopology.SOUTH);
+    cells[north] |= CellLayout.path(DungeonTopology.NORTH);
+    return cells;
+  }
+
+  private static int find(int[] parents, int cell) {
+    while (parents[cell] != cell) {
+      parents[cell] = parents[parents[cell]];
+      cell = parents[cell];
+    }
+    return cell;
+  }
+
+  // Picks a cave of a chunk from its paths alone, so the choice survives resetting
+  private Coordinates caveInChunk(int chunkRow, int chunkColumn) {
+    int[] cells = this.chunkPaths(chunkRow, chunkColumn);
+    int offset = Math.floorMod(this.hashOf(PATH_SALT + 1, chunkRow, chunkColumn), CHUNK_CELLS);
+    for (int step = 0; step < CHUNK_CELLS; step++) {
+      int cell = (offset + step) % CHUNK_CELLS;
+      if (!CellLayout.isTunnel(cells[cell])) {
+        return new CaveCoordinates(chunkRow * CHUNK_SIZE + cell / CHUNK_SIZE,
+                chunkColumn * CHUNK_SIZE + cell % CHUNK_SIZE);
+      }
+    }
+    throw new IllegalStateException("Chunk has no caves");
+  }
+
+  // Generates a chunk with fresh contents for the current epoch
+  private int[] generateChunk(int chunkRow, int chunkColumn) {
+    int[] cells = this.chunkPaths(chunkRow, chunkColumn);
+    Random random = new Random(this.hashOf(CONTENT_SALT ^ ZobristKeys.mix(this.epoch + EPOCH_SALT),
+            chunkRow, chunkColumn));
+    int start = this.localIndexIn(this.startCave, chunkRow, chunkColumn);
+    int end = this.localIndexIn(this.endCave, chunkRow, chunkColumn);
+    int caves = 0;
+    for (int cell : cells) {
+      caves += CellLayout.isTunnel(cell) ? 0 : 1;
+    }
+    int monsterCaves = caves - (start >= 0 ? 1 : 0) - (end >= 0 ? 1 : 0);
+    int arrowsLeft = (int) ((this.treasureAndArrowPercent / 100.0) * CHUNK_CELLS);
+    int treasureLeft = (int) ((this.treasureAndArrowPercent / 100.0) * caves);
+    int monstersLeft = Math.min(this.monstersPerChunk, monsterCaves);
+    int cavesLeft = caves;
+    int cellsLeft = CHUNK_CELLS;
+    for (int index = 0; index < CHUNK_CELLS; index++) {
+      if (random.nextInt(cellsLeft--) < arrowsLeft) {
+        cells[index] |= CellLayout.ARROW;
+        arrowsLeft--;
+      }
+      if (CellLayout.isTunnel(cells[index])) {
+        continue;
+      }
+      if (random.nextInt(cavesLeft--) < treasureLeft) {
+        cells[index] = CellLayout.withTreasureBits(cells[index], randomTreasure(random));
+        treasureLeft--;
+      }
+      if (index == end) {
+        cells[index] |= CellLayout.MONSTER;
+      } else if (index != start) {
+        if (random.nextInt(monsterCaves--) < monstersLeft) {
+          cells[index] |= CellLayout.MONSTER;
+          monstersLeft--;
+        }
+      }
+    }
+    return cells;
+  }
+
+  // Picks between one and eight distinct treasures, as DungeonImpl does
+  private static int randomTreasure(Random random) {
+    List<Integer> kinds = new ArrayList<>();
+    for (int kind = 0; kind < CellLayout.TREASURE_KINDS; kind++) {
+      kinds.add(kind);
+    }
+    Collections.shuffle(kinds, random);
+    int count = random.nextInt(CellLayout.TREASURE_KINDS);
+    if (count < 2) {
+      count += 1;
+    }
+    int bits = 0;
+    for (int kind : kinds.subList(0, count)) {
+      bits |= 1 << kind;
+    }
+    return bits;
+  }
+
+  // Index of a location inside the given chunk, or -1 if it lies in another chunk
+  private int localIndexIn(Coordinates coordinates, int chunkRow, int chunkColumn) {
+    if (coordinates == null || coordinates.getXCoordinates() / CHUNK_SIZE != chunkRow
+            || coordinates.getYCoordinates() / CHUNK_SIZE != chunkColumn) {
+      return -1;
+    }
+    return (coordinates.getXCoordinates() % CHUNK_SIZE) * CHUNK_SIZE
+            + coordinates.getYCoordinates() % CHUNK_SIZE;
+  }
+
+  // Returns the chunk holding a location, generating or restoring it if needed
+  private Chunk chunkOf(Coordinates coordinates) throws IllegalArgumentException {
+    if (coordinates == null) {
+      throw new IllegalArgumentException("Coordinates cant be null");
+    }
+    int size = this.chunksPerSide * CHUNK_SIZE;
+    int row = coordinates.getXCoordinates();
+    int column = coordinates.getYCoordinates();
+    if (row < 0 || column < 0 || row >= size || column >= size) {
+      throw new IllegalArgumentException("Coordinates are outside the dungeon");
+    }
+    int chunkRow = row / CHUNK_SIZE;
+    int chunkColumn = column / CHUNK_SIZE;
+    long key = (long) chunkRow * this.chunksPerSide + chunkColumn;
+    Chunk chunk = this.residentChunks.get(key);
+    if (chunk == null) {
+      byte[] saved = this.savedChunks.remove(key);
+      chunk = saved == null
+              ? new Chunk(this.generateChunk(chunkRow, chunkColumn), false)
+              : new Chunk(decode(saved), true);
+      this.residentChunks.put(key, chunk);
+      this.evictChunks();
+    }
+    return chunk;
+  }
+
+  // Drops the least recently used chunks beyond the cache size, keeping the changed ones as bytes
+  private void evictChunks() {
+    while (this.residentChunks.size() > this.maxResidentChunks) {
+      Map.Entry<Long, Chunk> eldest = this.residentChunks.entrySet().iterator().next();
+      if (eldest.getValue().changed) {
+        this.savedChunks.put(eldest.getKey(), encode(eldest.getValue().cells));
+      }
+      this.residentChunks.remove(eldest.getKey());
+    }
+  }
+
+  private static byte[] encode(int[] cells) {
+    ByteBuffer buffer = ByteBuffer.allocate(cells.length * Integer.BYTES)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    buffer.asIntBuffer().put(cells);
+    return buffer.array();
+  }
+
+  private static int[] decode(byte[] bytes) {
+    int[] cells = new int[bytes.length / Integer.BYTES];
+    ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(cells);
+    return cells;
+  }
+
+  private static int localIndex(Coordinates coordinates) {
+    return (coordinates.getXCoordinates() % CHUNK_SIZE) * CHUNK_SIZE
+            + coordinates.getYCoordinates() % CHUNK_SIZE;
+  }
+
+  private int cellAt(Coordinates coordinates) {
+    return this.chunkOf(coordinates).cells[localIndex(coordinates)];
+  }
+
+  // Replaces the cell of a location, updating the state hash with the change
+  private void change(Coordinates coordinates, int previous, int cell) {
+    Chunk chunk = this.chunkOf(coordinates);
+    chunk.cells[localIndex(coordinates)] = cell;
+    chunk.changed = true;
+    this.stateHash ^= cellHash(coordinates, previous) ^ cellHash(coordinates, cell);
+  }
+
+  // Returns the hash of every feature in a cell
+  private static long cellHash(Coordinates coordinates, int cell) {
+    int row = coordinates.getXCoordinates();
+    int column = coordinates.getYCoordinates();
+    long hash = 0;
+    for (Treasure treasure : CellLayout.treasureOf(cell)) {
+      hash ^= ZobristKeys.cellKey(row, column, ZobristKeys.treasureFeature(treasure));
+    }
+    if (CellLayout.hasArrow(cell)) {
+      hash ^= ZobristKeys.cellKey(row, column, ZobristKeys.ARROW);
+    }
+    if (CellLayout.hasMonster(cell)) {
+      hash ^= ZobristKeys.cellKey(row, column, ZobristKeys.MONSTER + CellLayout.hits(cell));
+    }
+    return hash;
+  }
+
+  // Returns the coordinates reached by following a path, or null if there is no path
+  private Coordinates neighbour(Coordinates coordinates, int direction) {
+    if (!CellLayout.hasPath(this.cellAt(coordinates), direction)) {
+      return null;
+    }
+    int size = this.chunksPerSide * CHUNK_SIZE;
+    int row = coordinates.getXCoordinates();
+    int column = coordinates.getYCoordinates();
+    switch (direction) {
+      case DungeonTopology.NORTH:
+        row = row == 0 ? size - 1 : row - 1;
+        break;
+      case DungeonTopology.SOUTH:
+        row = row == size - 1 ? 0 : row + 1;
+        break;
+      case DungeonTopology.EAST:
+        column = column == size - 1 ? 0 : column + 1;
+        break;
+      default:
+        column = column == 0 ? size - 1 : column - 1;
+        break;
+    }
+    return new CaveCoordinates(row, column);
+  }
+
+  @Override
+  public List<Integer> getDimensions() {
+    List<Integer> dimensions = new ArrayList<>();
+    dimensions.add(this.chunksPerSide * CHUNK_SIZE);
+    dimensions.add(this.chunksPerSide * CHUNK_SIZE);
+    return dimensions;
+  }
+
+  @Override
+  public List<Treasure> viewTreasureInCave(Coordinates coordinates) {
+    return CellLayout.treasureOf(this.cellAt(coordinates));
+  }
+
+  @Override
+  public Coordinates getStartCave() {
+    return new CaveCoordinates(this.startCave.getXCoordinates(),
+            this.startCave.getYCoordinates());
+  }
+
+  @Override
+  public Coordinates getEndCave() {
+    return new CaveCoordinates(this.endCave.getXCoordinates(), this.endCave.getYCoordinates());
+  }
+
+  @Override
+  public List<Coordinates> getAdjacent(Coordinates coordinates) {
+    List<Coordinates> adjacent = new ArrayList<>();
+    for (int direction : new int[]{DungeonTopology.SOUTH, DungeonTopology.NORTH,
+        DungeonTopology.EAST, DungeonTopology.WEST}) {
+      Coordinates next = this.neighbour(coordinates, direction);
+      if (next != null) {
+        adjacent.add(next);
+      }
+    }
+    return adjacent;
+  }
+
+  @Override
+  public boolean hasArrow(Coordinates coordinates) {
+    return CellLayout.hasArrow(this.cellAt(coordinates));
+  }
+
+  @Override
+  public boolean hasMonster(Coordinates coordinates) {
+    return CellLayout.isMonsterAlive(this.cellAt(coordinates));
+  }
+
+  @Override
+  public MonsterSmell getSmell(Coordinates coordinates) throws IllegalArgumentException {
+    if (this.hasMonster(coordinates)) {
+      return MonsterSmell.STRONG;
+    }
+
+    int monsterCount = 0;
+    Set<Coordinates> nextAdjacents = new HashSet<>();
+    for (Coordinates adjacent : this.getAdjacent(coordinates)) {
+      if (this.hasMonster(adjacent)) {
+        return MonsterSmell.STRONG;
+      }
+      nextAdjacents.add(adjacent);
+    }
+    for (Coordinates next : nextAdjacents) {
+      for (Coordinates adjacent : this.getAdjacent(next)) {
+        if (this.hasMonster(adjacent)) {
+          monsterCount += 1;
+        }
+      }
+    }
+    if (monsterCount > 1) {
+      return MonsterSmell.STRONG;
+    } else if (monsterCount == 1) {
+      return MonsterSmell.WEAK;
+    }
+    return MonsterSmell.NONE;
+  }
+
+  @Override
+  public int monsterArrowCount(Coordinates coordinates) {
+    return CellLayout.hits(this.cellAt(coordinates));
+  }
+
+  @Override
+  public Coordinates getNorth(Coordinates coordinates) {
+    return this.neighbour(coordinates, DungeonTopology.NORTH);
+  }
+
+  @Override
+  public Coordinates getSouth(Coordinates coordinates) {
+    return this.neighbour(coordinates, DungeonTopology.SOUTH);
+  }
+
+  @Override
+  public Coordinates getEast(Coordinates coordinates) {
+    return this.neighbour(coordinates, DungeonTopology.EAST);
+  }
+
+  @Override
+  public Coordinates getWest(Coordinates coordinates) {
+    return this.neighbour(coordinates, DungeonTopology.WEST);
+  }
+
+  @Override
+  public List<Treasure> pickupTreasureInCave(Coordinates coordinates) {
+    int cell = this.cellAt(coordinates);
+    if (CellLayout.treasureBits(cell) != 0) {
+      this.change(coordinates, cell, CellLayout.withTreasureBits(cell, 0));
+    }
+    return CellLayout.treasureOf(cell);
+  }
+
+  @Override
+  public Arrow pickUpArrow(Coordinates coordinates) {
+    int cell = this.cellAt(coordinates);
+    if (!CellLayout.hasArrow(cell)) {
+      return null;
+    }
+    this.change(coordinates, cell, cell & ~CellLayout.ARROW);
+    return new CrookedArrow();
+  }
+
+  @Override
+  public void arrowStrike(Arrow arrow) {
+    if (arrow == null) {
+      throw new IllegalArgumentException("Arrow cannot be null");
+    }
+    Coordinates location = arrow.getCurrentLocation();
+    int cell = this.cellAt(location);
+    if (CellLayout.hasMonster(cell)) {
+      this.change(location, cell, CellLayout.withHit(cell));
+    }
+  }
+
+  /**
+   * Drops every chunk so that chunks are generated again with new contents. The paths and the
+   * start and end caves stay the same.
+   */
+  @Override
+  public void resetDungeon() {
+    this.residentChunks.clear();
+    this.savedChunks.clear();
+    this.epoch++;
+    this.stateHash = 0;
+  }
+
+  @Override
+  public long getStateHash() {
+    return this.stateHash ^ ZobristKeys.mix(this.epoch + EPOCH_SALT);
+  }
+
+  // Cells of a generated chunk, and whether any have changed since it was generated
+  private static final class Chunk {
+    private final int[] cells;
+    private boolean changed;
+
+    private Chunk(int[] cells, boolean changed) {
+      this.cells = cells;
+      this.changed = changed;
+    }
+  }
+}
@@ -0,0 +1,361 @@
+package dungeonmodel.dungeon;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import dungeonmodel.coordinates.CaveCoordinates;
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.treasure.Treasure;
+import dungeonmodel.weapon.Arrow;
+import dungeonmodel.weapon.CrookedArrow;
+
+/**
+ * Dungeon which many players can explore at the same time from different threads. The paths never
+ * change, so they are kept in a read only {@link DungeonTopology}, and the contents of every
+ * location are packed into one word of an atomic array in the cell layout of
+ * {@link OffHeapDungeon}. Taking treasure or an arrow and hitting a monster each replace the word
+ * of the location with a compare and swap, retrying if another player changed it first, so two
+ * players can never both take the same treasure or arrow and no hit on a monster is lost. No locks
+ * are held while playing.
+ * The state hash is kept up to date with every change, which stays correct under concurrent
+ * changes because changes are combined with exclusive or in any order. Resetting replaces every
+ * word in turn; resets are taken one at a time, and a player acting during a reset sees each
+ * location either as it was or as it is after the reset.
+ */
+public final class ConcurrentDungeon implements Dungeon {
+
+  private final DungeonTopology topology;
+  private final AtomicIntegerArray cells;
+  private final Coordinates startCave;
+  private final Coordinates endCave;
+  private final int treasureAndArrowPercent;
+  private final int numberOfMonsters;
+  private final int caveCount;
+  private final AtomicLong stateHash;
+  private final Random random;
+
+  /**
+   * Generates a new dungeon, as {@link DungeonImpl} does, which can be shared between players.
+   *
+   * @param rows                    number of rows
+   * @param columns                 number of columns
+   * @param interconnectivity       the degree of interconnectivity
+   * @param isWrapping              true if the dungeon should be wrapping, false otherwise
+   * @param treasureAndArrowPercent percentage of caves which will have treasure and arrows
+   * @param numberOfMonsters        number of monsters to be added in the dungeon
+   * @throws IllegalArgumentException if any of the given arguments are invalid
+   */
+  public ConcurrentDungeon(int rows, int columns, int interconnectivity, boolean isWrapping,
+                           int treasureAndArrowPercent, int numberOfMonsters)
+          throws IllegalArgumentException {
+    this(new DungeonImpl(rows, columns, interconnectivity, isWrapping, treasureAndArrowPercent,
+            numberOfMonsters), treasureAndArrowPercent, numberOfMonsters);
+  }
+
+  /**
+   * Copies the paths and contents of a dungeon into a dungeon which can be shared between players.
+   *
+   * @param dungeon                 dungeon to copy
+   * @param treasureAndArrowPercent percentage of caves with treasure and arrows after resetting
+   * @param numberOfMonsters        number of monsters after resetting
+   * @throws IllegalArgumentException if any of the given arguments are invalid
+   */
+  public ConcurrentDungeon(ReadOnlyDungeon dungeon, int treasureAndArrowPercent,
+                           int numberOfMonsters) throws IllegalArgumentException {
+    if (dungeon == null) {
+      throw new IllegalArgumentException("Dungeon cannot be null");
+    }
+    if (treasureAndArrowPercent <= 0 || treasureAndArrowPercent > 100) {
+      throw new IllegalArgumentException("Treasure percentage must be between one and hundred");
+    }
+    if (numberOfMonsters <= 0) {
+      throw new IllegalArgumentException("Number of monsters must always be positive");
+    }
+    this.topology = DungeonTopology.of(dungeon);
+    this.cells = new AtomicIntegerArray(this.topology.size());
+    this.startCave = dungeon.getStartCave();
+    this.endCave = dungeon.getEndCave();
+    this.treasureAndArrowPercent = treasureAndArrowPercent;
+    this.numberOfMonsters = numberOfMonsters;
+    this.random = new Random();
+
+    int caves = 0;
+    long hash = 0;
+    for (int index = 0; index < this.topology.size(); index++) {
+      int cell = CellLayout.contentsOf(dungeon, this.topology.coordinatesOf(index));
+      this.cells.set(index, cell);
+      hash ^= this.hashOf(index, cell);
+      if (!this.topology.isTunnel(index)) {
+        caves++;
+      }
+    }
+    this.caveCount = caves;
+    this.stateHash = new AtomicLong(hash);
+  }
+
+  // Returns the hash of every feature in a cell
+  private long hashOf(int index, int cell) {
+    int row = index / this.topology.getColumns();
+    int column = index % this.topology.getColumns();
+    long hash = 0;
+    for (int bits = CellLayout.treasureBits(cell); bits != 0; bits &= bits - 1) {
+      Treasure treasure = CellLayout.treasureAt(Integer.numberOfTrailingZeros(bits));
+      hash ^= ZobristKeys.cellKey(row, column, ZobristKeys.treasureFeature(treasure));
+    }
+    if (CellLayout.hasArrow(cell)) {
+      hash ^= ZobristKeys.cellKey(row, column, ZobristKeys.ARROW);
+    }
+    if (CellLayout.hasMonster(cell)) {
+      hash ^= ZobristKeys.cellKey(row, column, ZobristKeys.MONSTER + CellLayout.hits(cell));
+    }
+    return hash;
+  }
+
+  // Folds the change of one cell into the state hash
+  private void hashChange(int index, int previous, int cell) {
+    long change = this.hashOf(index, previous) ^ this.hashOf(index, cell);
+    this.stateHash.accumulateAndGet(change, (hash, delta) -> hash ^ delta);
+  }
+
+  private Coordinates neighbour(Coordinates coordinates, int direction) {
+    int next = this.topology.neighbour(this.topology.indexOf(coordinates), direction);
+    return next < 0 ? null : this.topology.coordinatesOf(next);
+  }
+
+  @Override
+  public List<Integer> getDimensions() {
+    List<Integer> dimensions = new ArrayList<>();
+    dimensions.add(this.topology.getRows());
+    dimensions.add(this.topology.getColumns());
+    return dimensions;
+  }
+
+  @Override
+  public List<Treasure> viewTreasureInCave(Coordinates coordinates) {
+    return CellLayout.treasureOf(this.cells.get(this.topology.indexOf(coordinates)));
+  }
+
+  @Override
+  public Coordinates getStartCave() {
+    return new CaveCoordinates(this.startCave.getXCoordinates(),
+            this.startCave.getYCoordinates());
+  }
+
+  @Override
+  public Coordinates getEndCave() {
+    return new CaveCoordinates(this.endCave.getXCoordinates(), this.endCave.getYCoordinates());
+  }
+
+  @Override
+  public List<Coordinates> getAdjacent(Coordinates coordinates) {
+    List<Coordinates> adjacent = new ArrayList<>();
+    for (int direction : new int[]{DungeonTopology.SOUTH, DungeonTopology.NORTH,
+        DungeonTopology.EAST, DungeonTopology.WEST}) {
+      Coordinates next = this.neighbour(coordinates, direction);
+      if (next != null) {
+        adjacent.add(next);
+      }
+    }
+    return adjacent;
+  }
+
+  @Override
+  public boolean hasArrow(Coordinates coordinates) {
+    return CellLayout.hasArrow(this.cells.get(this.topology.indexOf(coordinates)));
+  }
+
+  @Override
+  public boolean hasMonster(Coordinates coordinates) {
+    return CellLayout.isMonsterAlive(this.cells.get(this.topology.indexOf(coordinates)));
+  }
+
+  @Override
+  public MonsterSmell getSmell(Coordinates coordinates) throws IllegalArgumentException {
+    if (this.hasMonster(coordinates)) {
+      return MonsterSmell.STRONG;
+    }
+
+    int monsterCount = 0;
+    Set<Coordinates> nextAdjacents = new HashSet<>();
+    for (Coordinates adjacent : this.getAdjacent(coordinates)) {
+      if (this.hasMonster(adjacent)) {
+        return MonsterSmell.STRONG;
+      }
+      nextAdjacents.add(adjacent);
+    }
+    for (Coordinates next : nextAdjacents) {
+      for (Coordinates adjacent : this.getAdjacent(next)) {
+        if (this.hasMonster(adjacent)) {
+          monsterCount += 1;
+        }
+      }
+    }
+    if (monsterCount > 1) {
+      return MonsterSmell.STRONG;
+    } else if (monsterCount == 1) {
+      return MonsterSmell.WEAK;
+    }
+    return MonsterSmell.NONE;
+  }
+
+  @Override
+  public int monsterArrowCount(Coordinates coordinates) {
+    return CellLayout.hits(this.cells.get(this.topology.indexOf(coordinates)));
+  }
+
+  @Override
+  public Coordinates getNorth(Coordinates coordinates) {
+    return this.neighbour(coordinates, DungeonTopology.NORTH);
+  }
+
+  @Override
+  public Coordinates getSouth(Coordinates coordinates) {
+    return this.neighbour(coordinates, DungeonTopology.SOUTH);
+  }
+
+  @Override
+  public Coordinates getEast(Coordinates coordinates) {
+    return this.neighbour(coordinates, DungeonTopology.EAST);
+  }
+
+  @Override
+  public Coordinates getWest(Coordinates coordinates) {
+    return this.neighbour(coordinates, DungeonTopology.WEST);
+  }
+
+  /**
+   * Takes all the treasure in a cave. When players take treasure from the same cave at the same
+   * time, exactly one of them gets it and the others get nothing.
+   *
+   * @param coordinates coordinates of the cave
+   * @return treasure taken, empty if there was none
+   */
+  @Override
+  public List<Treasure> pickupTreasureInCave(Coordinates coordinates) {
+    int index = this.topology.indexOf(coordinates);
+    while (true) {
+      int cell = this.cells.get(index);
+      if (CellLayout.treasureBits(cell) == 0) {
+        return new ArrayList<>();
+      }
+      int taken = CellLayout.withTreasureBits(cell, 0);
+      if (this.cells.compareAndSet(index, cell, taken)) {
+        this.hashChange(index, cell, taken);
+        return CellLayout.treasureOf(cell);
+      }
+    }
+  }
+
+  /**
+   * Takes the arrow in a location. When players take the same arrow at the same time, exactly one
+   * of them gets it.
+   *
+   * @param coordinates coordinates of the location
+   * @return arrow taken, or null if there was none
+   */
+  @Override
+  public Arrow pickUpArrow(Coordinates coordinates) {
+    int index = this.topology.indexOf(coordinates);
+    while (true) {
+      int cell = this.cells.get(index);
+      if (!CellLayout.hasArrow(cell)) {
+        return null;
+      }
+      int taken = cell & ~CellLayout.ARROW;
+      if (this.cells.compareAndSet(index, cell, taken)) {
+        this.hashChange(index, cell, taken);
+        return new CrookedArrow();
+      }
+    }
+  }
+
+  /**
+   * Hits the monster where an arrow landed, if there is one. Every hit counts, however many
+   * players shoot the same monster at the same time.
+   *
+   * @param arrow arrow which landed
+   * @throws IllegalArgumentException if the arrow is null
+   */
+  @Override
+  public void arrowStrike(Arrow arrow) throws IllegalArgumentException {
+    if (arrow == null) {
+      throw new IllegalArgumentException("Arrow cannot be null");
+    }
+    int index = this.topology.indexOf(arrow.getCurrentLocation());
+    while (true) {
+      int cell = this.cells.get(index);
+      if (!CellLayout.hasMonster(cell)) {
+        return;
+      }
+      int hit = CellLayout.withHit(cell);
+      if (this.cells.compareAndSet(index, cell, hit)) {
+        this.hashChange(index, cell, hit);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Clears every location and places new treasure, arrows and monsters, keeping the paths and the
+   * start and end caves. Every player in the dungeon sees the new contents.
+   *
+   * @throws IllegalArgumentException if there are too few caves for the monsters
+   */
+  @Override
+  public synchronized void resetDungeon() throws IllegalArgumentException {
+    if (this.caveCount - 1 < this.numberOfMonsters) {
+      throw new IllegalArgumentException("Number of monsters exceeds number of available caves");
+    }
+    int start = this.topology.indexOf(this.startCave);
+    int end = this.topology.indexOf(this.endCave);
+    int locations = this.topology.size();
+    long treasureLeft = (long) ((this.treasureAndArrowPercent / 100.0) * this.caveCount);
+    long arrowsLeft = (long) ((this.treasureAndArrowPercent / 100.0) * locations);
+    long monstersLeft = this.numberOfMonsters - 1;
+    long cavesLeft = this.caveCount;
+    long monsterCavesLeft = this.caveCount - (start == end ? 1 : 2);
+
+    for (int index = 0; index < locations; index++) {
+      int cell = 0;
+      if (this.select(arrowsLeft, locations - index)) {
+        cell |= CellLayout.ARROW;
+        arrowsLeft--;
+      }
+      if (!this.topology.isTunnel(index)) {
+        if (this.select(treasureLeft, cavesLeft)) {
+          cell = CellLayout.withTreasureBits(cell, OffHeapDungeon.randomTreasure(this.random));
+          treasureLeft--;
+        }
+        cavesLeft--;
+        if (index == end) {
+          cell |= CellLayout.MONSTER;
+        } else if (index != start) {
+          if (this.select(monstersLeft, monsterCavesLeft)) {
+            cell |= CellLayout.MONSTER;
+            monstersLeft--;
+          }
+          monsterCavesLeft--;
+        }
+      }
+      this.hashChange(index, this.cells.getAndSet(index, cell), cell);
+    }
+  }
+
+  // Selection sampling, as OffHeapDungeon places contents
+  private boolean select(long needed, long remaining) {
+    if (needed <= 0) {
+      return false;
+    }
+    return (long) (this.random.nextDouble() * remaining) < needed;
+  }
+
+  @Override
+  public long getStateHash() {
+    return this.stateHash.get();
+  }
+}
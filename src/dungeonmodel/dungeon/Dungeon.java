@@ -43,4 +43,23 @@ public interface Dungeon extends ReadOnlyDungeon {
    */
   void resetDungeon();
 
+  /**
+   * Get the coordinates of the stairs down to another floor. A dungeon of one floor has none, and
+   * a player only wins by reaching the end cave when it holds no stairs down.
+   *
+   * @return coordinates of the stairs down, or null if there are none
+   */
+  default Coordinates getStairsDown() {
+    return null;
+  }
+
+  /**
+   * Takes the stairs at the given coordinates to another floor. A dungeon of one floor has none.
+   *
+   * @param coordinates coordinates of the player
+   * @return true if the stairs were taken, false if there are no stairs at the coordinates
+   */
+  default boolean takeStairs(Coordinates coordinates) {
+    return false;
+  }
 }
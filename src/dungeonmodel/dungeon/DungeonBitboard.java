@@ -0,0 +1,545 @@
+package dungeonmodel.dungeon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import dungeonmodel.coordinates.Coordinates;
+
+/**
+ * Sets of dungeon locations kept as bits, so questions about the whole dungeon are answered by a
+ * few operations on each 64 bit word rather than by walking caves one at a time.
+ * A set is a long array in which bit i % 64 of word i / 64 stands for the location with index i
+ * in the {@link DungeonTopology}. Moving a whole set one step in a direction shifts its words,
+ * following the paths and wrapping edges of the dungeon. A move reads the words of the set
+ * straight through the path and column masks into its result, which the caller may reuse, and
+ * repeated moves reuse their working sets, so walking a set across the dungeon allocates nothing
+ * per step.
+ * The bitboard is a snapshot of the monsters, arrows and treasure when it was made, and of the
+ * monster smell at every location, worked out the same way as {@link Dungeon#getSmell}.
+ */
+public final class DungeonBitboard {
+
+  private final DungeonTopology topology;
+  private final int size;
+  private final int words;
+  private final long[][] paths;
+  private final long[][] repeated;
+  private final long[] firstColumn;
+  private final long[] lastColumn;
+  private final long[] monsters;
+  private final long[] arrows;
+  private final long[] treasure;
+  private final long[] strongSmell;
+  private final long[] weakSmell;
+
+  // Creates a bitboard from the masks of a topology and the contents of a dungeon
+  private DungeonBitboard(DungeonTopology topology, long[][] paths, long[][] repeated,
+                          long[] firstColumn, long[] lastColumn, ReadOnlyDungeon dungeon) {
+    this.topology = topology;
+    this.size = topology.size();
+    this.words = (this.size + 63) >>> 6;
+    this.paths = paths;
+    this.repeated = repeated;
+    this.firstColumn = firstColumn;
+    this.lastColumn = lastColumn;
+    this.monsters = new long[this.words];
+    this.arrows = new long[this.words];
+    this.treasure = new long[this.words];
+    for (int index = 0; index < this.size; index++) {
+      Coordinates coordinates = topology.coordinatesOf(index);
+      if (dungeon.hasMonster(coordinates)) {
+        this.monsters[index >>> 6] |= 1L << index;
+      }
+      if (dungeon.hasArrow(coordinates)) {
+        this.arrows[index >>> 6] |= 1L << index;
+      }
+      if (!dungeon.viewTreasureInCave(coordinates).isEmpty()) {
+        this.treasure[index >>> 6] |= 1L << index;
+      }
+    }
+    this.strongSmell = new long[this.words];
+    this.weakSmell = new long[this.words];
+    this.fillSmell();
+  }
+
+  /**
+   * Creates a bitboard of the given dungeon.
+   *
+   * @param dungeon dungeon to read
+   * @return bitboard of the dungeon
+   * @throws IllegalArgumentException if the dungeon is null
+   */
+  public static DungeonBitboard of(ReadOnlyDungeon dungeon) throws IllegalArgumentException {
+    DungeonTopology topology = DungeonTopology.of(dungeon);
+    int size = topology.size();
+    int words = (size + 63) >>> 6;
+    long[][] paths = new long[DungeonTopology.DIRECTIONS][words];
+    long[][] repeated = new long[DungeonTopology.DIRECTIONS][words];
+    long[] firstColumn = new long[words];
+    long[] lastColumn = new long[words];
+    for (int index = 0; index < size; index++) {
+      long bit = 1L << index;
+      for (int direction = 0; direction < DungeonTopology.DIRECTIONS; direction++) {
+        int next = topology.neighbour(index, direction);
+        if (next < 0) {
+          continue;
+        }
+        paths[direction][index >>> 6] |= bit;
+        for (int earlier = 0; earlier < direction; earlier++) {
+          if (topology.neighbour(index, earlier) == next) {
+            repeated[direction][index >>> 6] |= bit;
+          }
+        }
+      }
+      if (index % topology.getColumns() == 0) {
+        firstColumn[index >>> 6] |= bit;
+      }
+      if (index % topology.getColumns() == topology.getColumns() - 1) {
+        lastColumn[index >>> 6] |= bit;
+      }
+    }
+    return new DungeonBitboard(topology, paths, repeated, firstColumn, lastColumn, dungeon);
+  }
+
+  /**
+   * Creates a bitboard of the current contents of a dungeon with the same paths as this one,
+   * reusing the path masks.
+   *
+   * @param dungeon dungeon to read, with the same paths as the dungeon of this bitboard
+   * @return bitboard of the dungeon
+   * @throws IllegalArgumentException if the dungeon is null or of a different size
+   */
+  public DungeonBitboard refresh(ReadOnlyDungeon dungeon) throws IllegalArgumentException {
+    if (dungeon == null) {
+      throw new IllegalArgumentException("Dungeon cannot be null");
+    }
+    if (dungeon.getDimensions().get(0) != this.topology.getRows()
+            || dungeon.getDimensions().get(1) != this.topology.getColumns()) {
+      throw new IllegalArgumentException("Dungeon has different dimensions");
+    }
+    return new DungeonBitboard(this.topology, this.paths, this.repeated, this.firstColumn,
+            this.lastColumn, dungeon);
+  }
+
+  /**
+   * Get the topology whose location indexes the sets use.
+   *
+   * @return topology of the dungeon
+   */
+  public DungeonTopology getTopology() {
+    return this.topology;
+  }
+
+  /**
+   * Get the locations with a live monster.
+   *
+   * @return set of locations
+   */
+  public long[] getMonsters() {
+    return this.monsters.clone();
+  }
+
+  /**
+   * Get the locations with an arrow.
+   *
+   * @return set of locations
+   */
+  public long[] getArrows() {
+    return this.arrows.clone();
+  }
+
+  /**
+   * Get the locations with treasure.
+   *
+   * @return set of locations
+   */
+  public long[] getTreasure() {
+    return this.treasure.clone();
+  }
+
+  /**
+   * Get the locations with a strong monster smell.
+   *
+   * @return set of locations
+   */
+  public long[] getStrongSmell() {
+    return this.strongSmell.clone();
+  }
+
+  /**
+   * Get the locations with a weak monster smell.
+   *
+   * @return set of locations
+   */
+  public long[] getWeakSmell() {
+    return this.weakSmell.clone();
+  }
+
+  /**
+   * Get the monster smell at a location.
+   *
+   * @param coordinates coordinates of the location
+   * @return smell at the location
+   * @throws IllegalArgumentException if coordinates are null or outside the dungeon
+   */
+  public MonsterSmell getSmell(Coordinates coordinates) throws IllegalArgumentException {
+    int index = this.topology.indexOf(coordinates);
+    if (isSet(this.strongSmell, index)) {
+      return MonsterSmell.STRONG;
+    }
+    return isSet(this.weakSmell, index) ? MonsterSmell.WEAK : MonsterSmell.NONE;
+  }
+
+  /**
+   * Creates an empty set of locations of this dungeon.
+   *
+   * @return empty set
+   */
+  public long[] emptySet() {
+    return new long[this.words];
+  }
+
+  /**
+   * Creates a set of the given locations.
+   *
+   * @param locations coordinates of the locations
+   * @return set of the locations
+   * @throws IllegalArgumentException if locations are null or outside the dungeon
+   */
+  public long[] setOf(Collection<Coordinates> locations) throws IllegalArgumentException {
+    if (locations == null) {
+      throw new IllegalArgumentException("Locations cannot be null");
+    }
+    long[] set = new long[this.words];
+    for (Coordinates coordinates : locations) {
+      int index = this.topology.indexOf(coordinates);
+      set[index >>> 6] |= 1L << index;
+    }
+    return set;
+  }
+
+  /**
+   * Get the coordinates of every location in a set, in index order.
+   *
+   * @param set set of locations
+   * @return coordinates of the locations
+   * @throws IllegalArgumentException if the set is not a set of this dungeon
+   */
+  public List<Coordinates> toCoordinates(long[] set) throws IllegalArgumentException {
+    this.checkSet(set);
+    List<Coordinates> locations = new ArrayList<>();
+    for (int word = 0; word < this.words; word++) {
+      for (long bits = set[word]; bits != 0; bits &= bits - 1) {
+        locations.add(this.topology.coordinatesOf((word << 6) + Long.numberOfTrailingZeros(bits)));
+      }
+    }
+    return locations;
+  }
+
+  /**
+   * Check if a location is in a set.
+   *
+   * @param set         set of locations
+   * @param coordinates coordinates of the location
+   * @return true if the location is in the set, false otherwise
+   * @throws IllegalArgumentException if the set is not a set of this dungeon, or the
+   *                                  coordinates are null or outside the dungeon
+   */
+  public boolean contains(long[] set, Coordinates coordinates) throws IllegalArgumentException {
+    this.checkSet(set);
+    return isSet(set, this.topology.indexOf(coordinates));
+  }
+
+  /**
+   * Get the number of locations in a set.
+   *
+   * @param set set of locations
+   * @return number of locations
+   */
+  public static int count(long[] set) {
+    int count = 0;
+    for (long word : set) {
+      count += Long.bitCount(word);
+    }
+    return count;
+  }
+
+  /**
+   * Get the locations in both of two sets.
+   *
+   * @param first  first set
+   * @param second second set
+   * @return intersection of the sets
+   */
+  public static long[] and(long[] first, long[] second) {
+    long[] result = first.clone();
+    for (int word = 0; word < result.length; word++) {
+      result[word] &= second[word];
+    }
+    return result;
+  }
+
+  /**
+   * Get the locations in either of two sets.
+   *
+   * @param first  first set
+   * @param second second set
+   * @return union of the sets
+   */
+  public static long[] or(long[] first, long[] second) {
+    long[] result = first.clone();
+    for (int word = 0; word < result.length; word++) {
+      result[word] |= second[word];
+    }
+    return result;
+  }
+
+  /**
+   * Get the locations in the first set but not the second.
+   *
+   * @param first  first set
+   * @param second second set
+   * @return difference of the sets
+   */
+  public static long[] andNot(long[] first, long[] second) {
+    long[] result = first.clone();
+    for (int word = 0; word < result.length; word++) {
+      result[word] &= ~second[word];
+    }
+    return result;
+  }
+
+  /**
+   * Get the locations reached by one move in a direction from every location in a set which has a
+   * path in that direction.
+   *
+   * @param set       set of locations
+   * @param direction one of the direction constants of {@link DungeonTopology}
+   * @return set of locations reached
+   * @throws IllegalArgumentException if the set is not a set of this dungeon or the direction is
+   *                                  not one of the constants
+   */
+  public long[] move(long[] set, int direction) throws IllegalArgumentException {
+    long[] result = new long[this.words];
+    this.move(set, direction, result);
+    return result;
+  }
+
+  /**
+   * Writes the locations reached by one move in a direction from every location in a set which
+   * has a path in that direction into another set, without allocating, so the same sets can be
+   * reused move after move.
+   *
+   * @param set       set of locations
+   * @param direction one of the direction constants of {@link DungeonTopology}
+   * @param result    set overwritten with the locations reached, which must not be the same
+   *                  array as the set moved
+   * @throws IllegalArgumentException if either set is not a set of this dungeon, they are the
+   *                                  same array or the direction is not one of the constants
+   */
+  public void move(long[] set, int direction, long[] result) throws IllegalArgumentException {
+    this.checkSet(set);
+    this.checkSet(result);
+    if (set == result) {
+      throw new IllegalArgumentException("Result must not be the set moved");
+    }
+    if (direction < 0 || direction >= DungeonTopology.DIRECTIONS) {
+      throw new IllegalArgumentException("Direction must be one of the four directions");
+    }
+    Arrays.fill(result, 0);
+    this.addMove(set, direction, result);
+  }
+
+  /**
+   * Get the locations of a set together with every location one move away from them.
+   *
+   * @param set set of locations
+   * @return expanded set of locations
+   * @throws IllegalArgumentException if the set is not a set of this dungeon
+   */
+  public long[] expand(long[] set) throws IllegalArgumentException {
+    this.checkSet(set);
+    long[] result = new long[this.words];
+    this.expand(set, result);
+    return result;
+  }
+
+  // Overwrites a result with the locations of a set and every location one move away
+  private void expand(long[] set, long[] result) {
+    System.arraycopy(set, 0, result, 0, this.words);
+    for (int direction = 0; direction < DungeonTopology.DIRECTIONS; direction++) {
+      this.addMove(set, direction, result);
+    }
+  }
+
+  /**
+   * Get every location at most the given number of moves away from a location in a set.
+   *
+   * @param set   set of locations
+   * @param moves largest number of moves
+   * @return set of locations within reach
+   * @throws IllegalArgumentException if the set is not a set of this dungeon or moves are
+   *                                  negative
+   */
+  public long[] withinMoves(long[] set, int moves) throws IllegalArgumentException {
+    if (moves < 0) {
+      throw new IllegalArgumentException("Moves cannot be negative");
+    }
+    this.checkSet(set);
+    long[] result = set.clone();
+    long[] next = new long[this.words];
+    for (int move = 0; move < moves; move++) {
+      this.expand(result, next);
+      if (Arrays.equals(next, result)) {
+        break;
+      }
+      long[] previous = result;
+      result = next;
+      next = previous;
+    }
+    return result;
+  }
+
+  /**
+   * Get every location which can be reached from a set by moving only through passable
+   * locations. The locations of the starting set are always included.
+   *
+   * @param from     set of locations to start from
+   * @param passable set of locations which may be entered
+   * @return set of locations reached
+   * @throws IllegalArgumentException if either set is not a set of this dungeon
+   */
+  public long[] reachable(long[] from, long[] passable) throws IllegalArgumentException {
+    this.checkSet(from);
+    this.checkSet(passable);
+    long[] result = from.clone();
+    long[] next = new long[this.words];
+    while (true) {
+      this.expand(result, next);
+      boolean grew = false;
+      for (int word = 0; word < this.words; word++) {
+        long reached = result[word] | (next[word] & passable[word]);
+        grew |= reached != result[word];
+        result[word] = reached;
+      }
+      if (!grew) {
+        return result;
+      }
+    }
+  }
+
+  // Works out the smell of every location. A location smells strongly if it or a neighbour has a
+  // monster, and otherwise by counting monsters two moves away through each distinct neighbour,
+  // kept as saturating two bit counters over every pair of directions.
+  private void fillSmell() {
+    long[] near = this.expand(this.monsters);
+    long[] ones = new long[this.words];
+    long[] twos = new long[this.words];
+    for (int second = 0; second < DungeonTopology.DIRECTIONS; second++) {
+      long[] besideMonster = this.move(this.monsters, DungeonTopology.opposite(second));
+      for (int first = 0; first < DungeonTopology.DIRECTIONS; first++) {
+        long[] found = andNot(this.move(besideMonster, DungeonTopology.opposite(first)),
+                this.repeated[first]);
+        for (int word = 0; word < this.words; word++) {
+          twos[word] |= ones[word] & found[word];
+          ones[word] |= found[word];
+        }
+      }
+    }
+    for (int word = 0; word < this.words; word++) {
+      this.strongSmell[word] = near[word] | twos[word];
+      this.weakSmell[word] = ones[word] & ~this.strongSmell[word];
+    }
+  }
+
+  // Adds to a result the locations reached by one move in a direction from a set. North and
+  // south move every bit by a row, wrapping round the ends; east and west move by one, except
+  // for the bits in the last or first column, which wrap round to the other side of their row
+  private void addMove(long[] set, int direction, long[] result) {
+    int columns = this.topology.getColumns();
+    switch (direction) {
+      case DungeonTopology.NORTH:
+        this.addRotated(set, direction, null, true, this.size - columns, result);
+        break;
+      case DungeonTopology.SOUTH:
+        this.addRotated(set, direction, null, true, columns, result);
+        break;
+      case DungeonTopology.EAST:
+        this.addRotated(set, direction, this.lastColumn, false, 1, result);
+        this.addRotated(set, direction, this.lastColumn, true, this.size - columns + 1, result);
+        break;
+      default:
+        this.addRotated(set, direction, this.firstColumn, false, this.size - 1, result);
+        this.addRotated(set, direction, this.firstColumn, true, columns - 1, result);
+        break;
+    }
+  }
+
+  // Adds to a result the bits of a set with a path in a direction, and inside or outside a
+  // column mask if one is given, each moved from bit i to bit (i + distance) % size
+  private void addRotated(long[] set, int direction, long[] columnMask, boolean inside,
+                          int distance, long[] result) {
+    distance %= this.size;
+    // bits below size - distance move up by distance
+    int wordShift = distance >>> 6;
+    int bitShift = distance & 63;
+    for (int word = this.words - 1; word >= wordShift; word--) {
+      long value = this.leaving(set, direction, columnMask, inside, word - wordShift)
+              << bitShift;
+      if (bitShift != 0) {
+        value |= this.leaving(set, direction, columnMask, inside, word - wordShift - 1)
+                >>> (64 - bitShift);
+      }
+      if (word == this.words - 1) {
+        value &= this.lastWordMask();
+      }
+      result[word] |= value;
+    }
+    if (distance == 0) {
+      return;
+    }
+    // the rest move down by size - distance, wrapping round to the start
+    wordShift = (this.size - distance) >>> 6;
+    bitShift = (this.size - distance) & 63;
+    for (int word = 0; word + wordShift < this.words; word++) {
+      long value = this.leaving(set, direction, columnMask, inside, word + wordShift)
+              >>> bitShift;
+      if (bitShift != 0) {
+        value |= this.leaving(set, direction, columnMask, inside, word + wordShift + 1)
+                << (64 - bitShift);
+      }
+      result[word] |= value;
+    }
+  }
+
+  // Word of a set holding the locations which have a path in a direction, and are inside or
+  // outside a column mask if one is given, or 0 past either end of the set
+  private long leaving(long[] set, int direction, long[] columnMask, boolean inside, int word) {
+    if (word < 0 || word >= this.words) {
+      return 0;
+    }
+    long bits = set[word] & this.paths[direction][word];
+    if (columnMask != null) {
+      bits &= inside ? columnMask[word] : ~columnMask[word];
+    }
+    return bits;
+  }
+
+  // Bits of the last word which stand for locations
+  private long lastWordMask() {
+    int spare = this.words * 64 - this.size;
+    return spare == 0 ? -1L : -1L >>> spare;
+  }
+
+  private void checkSet(long[] set) {
+    if (set == null || set.length != this.words) {
+      throw new IllegalArgumentException("Set does not belong to this dungeon");
+    }
+  }
+
+  private static boolean isSet(long[] set, int index) {
+    return (set[index >>> 6] & (1L << index)) != 0;
+  }
+}
@@ -20,6 +20,9 @@ import dungeonmodel.weapon.CrookedArrow;
 
 /**
  * Class representing a dungeon, with a two-dimensional grid of caves in it.
+ * A dungeon created with a seed draws every random choice of its paths and contents from that
+ * seed, including the contents placed when it is reset, so the same seed always gives the same
+ * dungeon.
  */
 public class DungeonImpl implements Dungeon {
 
@@ -30,6 +33,8 @@ public class DungeonImpl implements Dungeon {
   private final Cave endCave;
   private final int treasureAndArrowPercent;
   private final int numberOfMonsters;
+  private final Random random;
+  private long stateHash;
 
   /**
    * Constructor to initialize a dungeon.
@@ -46,6 +51,34 @@ public class DungeonImpl implements Dungeon {
   public DungeonImpl(int rows, int columns, int interconnectivity, boolean isWrapping,
                      int treasureAndArrowPercent, int numberOfMonsters)
           throws IllegalArgumentException {
+    this(rows, columns, interconnectivity, isWrapping, treasureAndArrowPercent, numberOfMonsters,
+            new Random());
+  }
+
+  /**
+   * Constructor to initialize a dungeon whose paths and contents are drawn from a seed.
+   *
+   * @param rows                    number of rows
+   * @param columns                 number of columns
+   * @param interconnectivity       the degree of interconnectivity
+   * @param isWrapping              true if the dungeon should be wrapping, false otherwise
+   * @param treasureAndArrowPercent percentage of caves which will have treasure and arrows
+   *                                present in them
+   * @param numberOfMonsters        number of monsters to be added in the dungeon
+   * @param seed                    seed every random choice of the dungeon is drawn from
+   * @throws IllegalArgumentException if any of the given arguments are invalid
+   */
+  public DungeonImpl(int rows, int columns, int interconnectivity, boolean isWrapping,
+                     int treasureAndArrowPercent, int numberOfMonsters, long seed)
+          throws IllegalArgumentException {
+    this(rows, columns, interconnectivity, isWrapping, treasureAndArrowPercent, numberOfMonsters,
+            new Random(seed));
+  }
+
+  // Creates the dungeon, drawing every random choice from the given source
+  private DungeonImpl(int rows, int columns, int interconnectivity, boolean isWrapping,
+                      int treasureAndArrowPercent, int numberOfMonsters, Random random)
+          throws IllegalArgumentException {
     if (rows <= 0 || columns <= 0) {
       throw new IllegalArgumentException("Rows/columns cannot be zero/negative");
     }
@@ -66,6 +99,7 @@ public class DungeonImpl implements Dungeon {
       throw new IllegalArgumentException("Number of monsters must always be positive");
     }
 
+    this.random = random;
     this.allCaves = new DungeonCave[rows][columns];
     this.rows = rows;
     this.columns = columns;
@@ -96,26 +130,26 @@ public class DungeonImpl implements Dungeon {
   // Iterates through all caves and adds arrows to a given percentage of them
   private void addArrowsToGivenPercentage() {
     List<Cave> caves = this.getAllCaves();
-    Collections.shuffle(caves);
+    Collections.shuffle(caves, this.random);
     int numCavesWithArrows = (int) ((this.treasureAndArrowPercent / 100.0) * caves.size());
     List<Cave> cavesToAddArrows = caves.subList(0, numCavesWithArrows);
     for (Cave cave :
             cavesToAddArrows) {
       cave.addArrow(new CrookedArrow());
+      this.hashFeature(cave.getCoordinates(), ZobristKeys.ARROW);
     }
   }
 
   // Iterates through all caves and adds treasure to a given percentage of them
   private void addTreasureToGivenPercentage(List<Treasure> allPossibleTreasure) {
     List<Cave> cavesNotTunnels = this.getAllCavesNotTunnels();
-    Collections.shuffle(cavesNotTunnels);
-    Random randomSelector = new Random();
+    Collections.shuffle(cavesNotTunnels, this.random);
     int cavesWithTreasure = (int) ((this.treasureAndArrowPercent / 100.0) * cavesNotTunnels.size());
     List<Cave> cavesToAddTreasure = cavesNotTunnels.subList(0, cavesWithTreasure);
     for (Cave cave :
             cavesToAddTreasure) {
-      Collections.shuffle(allPossibleTreasure);
-      int upperBound = randomSelector.nextInt(allPossibleTreasure.size());
+      Collections.shuffle(allPossibleTreasure, this.random);
+      int upperBound = this.random.nextInt(allPossibleTreasure.size());
       if (upperBound < 2) {
         upperBound += 1;
       }
@@ -123,6 +157,7 @@ public class DungeonImpl implements Dungeon {
       for (Treasure treasure :
               sublist) {
         cave.addTreasure(treasure);
+        this.hashFeature(cave.getCoordinates(), ZobristKeys.treasureFeature(treasure));
       }
     }
   }
@@ -130,18 +165,20 @@ public class DungeonImpl implements Dungeon {
   // Adds monsters to a specified number of caves
   private void addMonsters() throws IllegalArgumentException {
     List<Cave> cavesNotTunnels = this.getAllCavesNotTunnels();
-    Collections.shuffle(cavesNotTunnels);
+    Collections.shuffle(cavesNotTunnels, this.random);
 
     if (cavesNotTunnels.size() - 1 < this.numberOfMonsters) {
       throw new IllegalArgumentException("Number of monsters exceeds number of available caves");
     }
     this.endCave.addMonster(new Otyugh(this.endCave.getCoordinates()));
+    this.hashFeature(this.endCave.getCoordinates(), ZobristKeys.MONSTER);
     cavesNotTunnels.remove(this.endCave);
     cavesNotTunnels.remove(this.startCave);
     List<Cave> cavesToAddMonsters = cavesNotTunnels.subList(0, this.numberOfMonsters - 1);
 
     for (Cave cave : cavesToAddMonsters) {
       cave.addMonster(new Otyugh(cave.getCoordinates()));
+      this.hashFeature(cave.getCoordinates(), ZobristKeys.MONSTER);
     }
 
   }
@@ -155,13 +192,13 @@ public class DungeonImpl implements Dungeon {
     Cave finalEndCave = null;
     Cave finalStartCave = null;
 
-    Collections.shuffle(startList);
+    Collections.shuffle(startList, this.random);
     boolean found = false;
     while (!startList.isEmpty() && !found) {
       Cave potentialStart = startList.remove(0);
       List<Cave> listOfCaves = this.getAllCavesNotTunnels();
       listOfCaves.remove(potentialStart);
-      Collections.shuffle(listOfCaves);
+      Collections.shuffle(listOfCaves, this.random);
       for (Cave potentialEndCave : listOfCaves) {
         Set<Cave> visited = new HashSet<>();
         List<Cave> visitedOrder = new ArrayList<>();
@@ -274,8 +311,7 @@ public class DungeonImpl implements Dungeon {
     }
 
     for (int size = 0; size < interconnectivity; size++) {
-      Random random = new Random();
-      int randomIndex = random.nextInt(discardedEdges.size());
+      int randomIndex = this.random.nextInt(discardedEdges.size());
       Set<Coordinates> edge = (Set<Coordinates>) discardedEdges.toArray()[randomIndex];
       Coordinates c1 = (Coordinates) edge.toArray()[0];
       Coordinates c2 = (Coordinates) edge.toArray()[1];
@@ -352,8 +388,12 @@ public class DungeonImpl implements Dungeon {
     if (coordinates == null) {
       throw new IllegalArgumentException("Coordinates cant be null");
     }
-    return this.allCaves[coordinates.getXCoordinates()]
+    List<Treasure> removed = this.allCaves[coordinates.getXCoordinates()]
             [coordinates.getYCoordinates()].removeTreasure();
+    for (Treasure treasure : removed) {
+      this.hashFeature(coordinates, ZobristKeys.treasureFeature(treasure));
+    }
+    return removed;
   }
 
   @Override
@@ -398,8 +438,12 @@ public class DungeonImpl implements Dungeon {
     if (coordinates == null) {
       throw new IllegalArgumentException("Coordinates cant be null");
     }
-    return this.allCaves[coordinates.getXCoordinates()]
+    Arrow arrow = this.allCaves[coordinates.getXCoordinates()]
             [coordinates.getYCoordinates()].removeArrow();
+    if (arrow != null) {
+      this.hashFeature(coordinates, ZobristKeys.ARROW);
+    }
+    return arrow;
   }
 
   @Override
@@ -450,8 +494,13 @@ public class DungeonImpl implements Dungeon {
     int xArrow = arrow.getCurrentLocation().getXCoordinates();
     int yArrow = arrow.getCurrentLocation().getYCoordinates();
 
+    int hitsBefore = this.allCaves[xArrow][yArrow].monsterArrowCount();
     this.allCaves[xArrow][yArrow].hitMonster(arrow);
-
+    int hitsAfter = this.allCaves[xArrow][yArrow].monsterArrowCount();
+    if (hitsAfter != hitsBefore) {
+      this.hashFeature(arrow.getCurrentLocation(), ZobristKeys.MONSTER + hitsBefore);
+      this.hashFeature(arrow.getCurrentLocation(), ZobristKeys.MONSTER + hitsAfter);
+    }
   }
 
   @Override
@@ -502,11 +551,23 @@ public class DungeonImpl implements Dungeon {
         this.allCaves[row][column].resetCave();
       }
     }
+    this.stateHash = 0;
     this.addTreasureToGivenPercentage(TreasureFactory.getAllPossibleTreasure());
     this.addArrowsToGivenPercentage();
     this.addMonsters();
   }
 
+  @Override
+  public long getStateHash() {
+    return this.stateHash;
+  }
+
+  // Adds or removes a feature at a location from the state hash
+  private void hashFeature(Coordinates coordinates, int feature) {
+    this.stateHash ^= ZobristKeys.cellKey(coordinates.getXCoordinates(),
+            coordinates.getYCoordinates(), feature);
+  }
+
   @Override
   public String toString() {
     StringBuilder result = new StringBuilder();
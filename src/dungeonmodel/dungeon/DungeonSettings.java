@@ -0,0 +1,160 @@
+package dungeonmodel.dungeon;
+
+import java.util.Objects;
+
+/**
+ * Settings a dungeon is generated from, the same as the arguments of {@link DungeonImpl}. Two
+ * settings are equal when every setting is equal, so settings can be used to look up dungeons
+ * generated ahead of time.
+ */
+public final class DungeonSettings {
+
+  private final int rows;
+  private final int columns;
+  private final int interconnectivity;
+  private final boolean isWrapping;
+  private final int treasureAndArrowPercent;
+  private final int numberOfMonsters;
+
+  /**
+   * Creates settings for a dungeon.
+   *
+   * @param rows                    number of rows
+   * @param columns                 number of columns
+   * @param interconnectivity       the degree of interconnectivity
+   * @param isWrapping              true if the dungeon should be wrapping, false otherwise
+   * @param treasureAndArrowPercent percentage of caves which will have treasure and arrows
+   * @param numberOfMonsters        number of monsters to be added in the dungeon
+   * @throws IllegalArgumentException if any of the settings are out of range
+   */
+  public DungeonSettings(int rows, int columns, int interconnectivity, boolean isWrapping,
+                         int treasureAndArrowPercent, int numberOfMonsters)
+          throws IllegalArgumentException {
+    if (rows <= 0 || columns <= 0) {
+      throw new IllegalArgumentException("Rows/columns cannot be zero/negative");
+    }
+    if (interconnectivity < 0) {
+      throw new IllegalArgumentException("Interconnectivity cannot be negative");
+    }
+    if (treasureAndArrowPercent <= 0 || treasureAndArrowPercent > 100) {
+      throw new IllegalArgumentException("Treasure percentage must be between one and hundred");
+    }
+    if (numberOfMonsters <= 0) {
+      throw new IllegalArgumentException("Number of monsters must always be positive");
+    }
+    this.rows = rows;
+    this.columns = columns;
+    this.interconnectivity = interconnectivity;
+    this.isWrapping = isWrapping;
+    this.treasureAndArrowPercent = treasureAndArrowPercent;
+    this.numberOfMonsters = numberOfMonsters;
+  }
+
+  /**
+   * Generates a new dungeon with these settings.
+   *
+   * @return new dungeon
+   * @throws IllegalArgumentException if no dungeon can be generated with these settings
+   */
+  public Dungeon createDungeon() throws IllegalArgumentException {
+    return new DungeonImpl(this.rows, this.columns, this.interconnectivity, this.isWrapping,
+            this.treasureAndArrowPercent, this.numberOfMonsters);
+  }
+
+  /**
+   * Generates a new dungeon with these settings from a seed, so the same seed always gives the
+   * same dungeon.
+   *
+   * @param seed seed every random choice of the dungeon is drawn from
+   * @return new dungeon
+   * @throws IllegalArgumentException if no dungeon can be generated with these settings
+   */
+  public Dungeon createDungeon(long seed) throws IllegalArgumentException {
+    return new DungeonImpl(this.rows, this.columns, this.interconnectivity, this.isWrapping,
+            this.treasureAndArrowPercent, this.numberOfMonsters, seed);
+  }
+
+  /**
+   * Get the number of rows.
+   *
+   * @return number of rows
+   */
+  public int getRows() {
+    return this.rows;
+  }
+
+  /**
+   * Get the number of columns.
+   *
+   * @return number of columns
+   */
+  public int getColumns() {
+    return this.columns;
+  }
+
+  /**
+   * Get the degree of interconnectivity.
+   *
+   * @return degree of interconnectivity
+   */
+  public int getInterconnectivity() {
+    return this.interconnectivity;
+  }
+
+  /**
+   * Check if the dungeon wraps around its edges.
+   *
+   * @return true if the dungeon is wrapping
+   */
+  public boolean isWrapping() {
+    return this.isWrapping;
+  }
+
+  /**
+   * Get the percentage of caves with treasure and arrows.
+   *
+   * @return percentage of caves with treasure and arrows
+   */
+  public int getTreasureAndArrowPercent() {
+    return this.treasureAndArrowPercent;
+  }
+
+  /**
+   * Get the number of monsters.
+   *
+   * @return number of monsters
+   */
+  public int getNumberOfMonsters() {
+    return this.numberOfMonsters;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof DungeonSettings)) {
+      return false;
+    }
+    DungeonSettings that = (DungeonSettings) o;
+    return this.rows == that.rows && this.columns == that.columns
+            && this.interconnectivity == that.interconnectivity
+            && this.isWrapping == that.isWrapping
+            && this.treasureAndArrowPercent == that.treasureAndArrowPercent
+            && this.numberOfMonsters == that.numberOfMonsters;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(this.rows, this.columns, this.interconnectivity, this.isWrapping,
+            this.treasureAndArrowPercent, this.numberOfMonsters);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%dx%d, interconnectivity %d, %s, %d%% treasure, %d monsters",
+            this.rows, this.columns, this.interconnectivity,
+            this.isWrapping ? "wrapping" : "not wrapping", this.treasureAndArrowPercent,
+            this.numberOfMonsters);
+  }
+}
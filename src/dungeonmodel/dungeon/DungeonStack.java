@@ -0,0 +1,520 @@
+package dungeonmodel.dungeon;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import dungeonmodel.coordinates.CaveCoordinates;
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.treasure.Treasure;
+import dungeonmodel.weapon.Arrow;
+
+/**
+ * Dungeon of several floors of the same size stacked on top of each other and linked by stairs.
+ * The end cave of every floor but the last holds the stairs down, and the floor below is shifted
+ * so that its start cave, holding the stairs back up, lies at the same coordinates. A player can
+ * therefore take the stairs without moving, and only wins by reaching the end cave of the last
+ * floor. As on a single floor, the end cave of every floor holds a monster, so a player has to
+ * get past it to go further down. Every method of the dungeon works on the current floor.
+ * Only the current floor and the floors right above and below it are kept in memory. A floor
+ * further away is written to a file in the spill directory, four bytes per location in the layout
+ * of {@link OffHeapDungeon}, and read back over a memory mapped file when the player comes near
+ * it again. Floors are generated, written and read on a background thread, so the next floor is
+ * usually ready by the time the player reaches the stairs, and memory stays bounded however deep
+ * the dungeon goes.
+ */
+public class DungeonStack implements Dungeon, Closeable {
+
+  private static final int RESIDENT_DISTANCE = 1;
+  private static final long FLOOR_STEP = 0x9E3779B97F4A7C15L;
+  private static final long CURRENT_FLOOR_SALT = 0x5851F42D4C957F2DL;
+
+  private final int rows;
+  private final int columns;
+  private final int interconnectivity;
+  private final boolean isWrapping;
+  private final int treasureAndArrowPercent;
+  private final int numberOfMonsters;
+  private final int depth;
+  private final Path spillDirectory;
+  private final ExecutorService loader;
+  private final Map<Integer, Floor> floors;
+  private final Map<Integer, Future<Dungeon>> resident;
+  private final Set<Integer> spilled;
+  private final Map<Integer, Future<?>> writes;
+  private int currentFloor;
+  private int deepestFloor;
+
+  /**
+   * Creates a stack of floors, generating the first one now and the others as they are needed.
+   *
+   * @param rows                    number of rows of every floor
+   * @param columns                 number of columns of every floor
+   * @param interconnectivity       the degree of interconnectivity of every floor
+   * @param isWrapping              true if the floors should be wrapping, false otherwise
+   * @param treasureAndArrowPercent percentage of caves which will have treasure and arrows
+   * @param numberOfMonsters        number of monsters on every floor
+   * @param depth                   number of floors
+   * @param spillDirectory          existing directory to write the floors kept out of memory to
+   * @throws IllegalArgumentException if any of the given arguments are invalid
+   */
+  public DungeonStack(int rows, int columns, int interconnectivity, boolean isWrapping,
+                      int treasureAndArrowPercent, int numberOfMonsters, int depth,
+                      Path spillDirectory) throws IllegalArgumentException {
+    if (depth <= 0) {
+      throw new IllegalArgumentException("Depth must always be positive");
+    }
+    if (spillDirectory == null || !Files.isDirectory(spillDirectory)) {
+      throw new IllegalArgumentException("Spill directory must be an existing directory");
+    }
+    Dungeon first = new DungeonImpl(rows, columns, interconnectivity, isWrapping,
+            treasureAndArrowPercent, numberOfMonsters);
+    this.rows = rows;
+    this.columns = columns;
+    this.interconnectivity = interconnectivity;
+    this.isWrapping = isWrapping;
+    this.treasureAndArrowPercent = treasureAndArrowPercent;
+    this.numberOfMonsters = numberOfMonsters;
+    this.depth = depth;
+    this.spillDirectory = spillDirectory;
+    this.loader = Executors.newSingleThreadExecutor(task -> {
+      Thread thread = new Thread(task, "dungeon-floor-loader");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.floors = new HashMap<>();
+    this.resident = new HashMap<>();
+    this.spilled = new HashSet<>();
+    this.writes = new HashMap<>();
+    this.resident.put(0, CompletableFuture.completedFuture(first));
+    this.floorOf(0).isPlaced = true;
+    this.currentFloor = 0;
+    this.deepestFloor = 0;
+    this.keepNearbyFloors();
+  }
+
+  /**
+   * Get the number of floors.
+   *
+   * @return number of floors
+   */
+  public int getDepth() {
+    return this.depth;
+  }
+
+  /**
+   * Get the floor the player is on, counting down from zero at the top.
+   *
+   * @return current floor
+   */
+  public int getCurrentFloor() {
+    return this.currentFloor;
+  }
+
+  /**
+   * Get the coordinates of the stairs down on the current floor.
+   *
+   * @return coordinates of the stairs down, or null on the last floor
+   */
+  @Override
+  public Coordinates getStairsDown() {
+    if (this.currentFloor == this.depth - 1) {
+      return null;
+    }
+    return this.toStack(this.currentFloor, this.floors.get(this.currentFloor).end);
+  }
+
+  /**
+   * Get the coordinates of the stairs up on the current floor.
+   *
+   * @return coordinates of the stairs up, or null on the first floor
+   */
+  public Coordinates getStairsUp() {
+    if (this.currentFloor == 0) {
+      return null;
+    }
+    return this.toStack(this.currentFloor, this.floors.get(this.currentFloor).start);
+  }
+
+  /**
+   * Takes the stairs at the given coordinates, if there are any, moving to the floor below or
+   * above. The player stays at the same coordinates, which hold the matching stairs on the new
+   * floor. Waits for the new floor if it is still being loaded.
+   *
+   * @param coordinates coordinates of the player
+   * @return true if the stairs were taken, false if there are no stairs at the coordinates
+   * @throws IllegalArgumentException if the coordinates are null
+   */
+  @Override
+  public boolean takeStairs(Coordinates coordinates) throws IllegalArgumentException {
+    if (coordinates == null) {
+      throw new IllegalArgumentException("Coordinates cant be null");
+    }
+    if (coordinates.equals(this.getStairsDown())) {
+      int below = this.currentFloor + 1;
+      Floor floor = this.floorOf(below);
+      if (!floor.isPlaced) {
+        floor.rowOffset = Math.floorMod(coordinates.getXCoordinates()
+                - floor.start.getXCoordinates(), this.rows);
+        floor.columnOffset = Math.floorMod(coordinates.getYCoordinates()
+                - floor.start.getYCoordinates(), this.columns);
+        floor.isPlaced = true;
+      }
+      this.currentFloor = below;
+      this.deepestFloor = Math.max(this.deepestFloor, below);
+    } else if (coordinates.equals(this.getStairsUp())) {
+      this.currentFloor--;
+    } else {
+      return false;
+    }
+    this.keepNearbyFloors();
+    return true;
+  }
+
+  /**
+   * Get the number of floors kept in memory or being loaded.
+   *
+   * @return number of resident floors
+   */
+  public int getResidentFloorCount() {
+    return this.resident.size();
+  }
+
+  /**
+   * Stops the background thread, closes the floors read back and deletes the files of the floors
+   * written out.
+   *
+   * @throws IOException if a file cannot be deleted
+   */
+  @Override
+  public void close() throws IOException {
+    this.loader.shutdown();
+    try {
+      this.loader.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    for (Integer floor : this.resident.keySet()) {
+      if (this.resident.get(floor).isDone()) {
+        Dungeon dungeon = this.dungeonOf(floor);
+        if (dungeon instanceof OffHeapDungeon) {
+          ((OffHeapDungeon) dungeon).getStore().close();
+        }
+      }
+    }
+    for (int floor : this.spilled) {
+      Files.deleteIfExists(this.fileOf(floor));
+    }
+  }
+
+  // Loads the floors next to the current one and writes out the floors further away
+  private void keepNearbyFloors() {
+    for (Integer floor : new ArrayList<>(this.resident.keySet())) {
+      if (Math.abs(floor - this.currentFloor) > RESIDENT_DISTANCE) {
+        this.spill(floor);
+      }
+    }
+    int first = Math.max(0, this.currentFloor - RESIDENT_DISTANCE);
+    int last = Math.min(this.depth - 1, this.currentFloor + RESIDENT_DISTANCE);
+    for (int floor = first; floor <= last; floor++) {
+      if (!this.resident.containsKey(floor)) {
+        this.resident.put(floor, this.loader.submit(this.loadTask(floor)));
+      }
+    }
+  }
+
+  // Generates a floor never seen before, or reads a floor back from its file
+  private Callable<Dungeon> loadTask(int floor) {
+    if (!this.spilled.contains(floor)) {
+      return () -> new DungeonImpl(this.rows, this.columns, this.interconnectivity,
+              this.isWrapping, this.treasureAndArrowPercent, this.numberOfMonsters);
+    }
+    Floor known = this.floors.get(floor);
+    boolean isStale = known.isStale;
+    known.isStale = false;
+    Future<?> written = this.writes.remove(floor);
+    return () -> {
+      written.get();
+      CellStore store = CellStore.map(this.fileOf(floor), (long) this.rows * this.columns);
+      Dungeon dungeon = new OffHeapDungeon(store, this.rows, this.columns, known.start,
+              known.end, this.treasureAndArrowPercent, this.numberOfMonsters);
+      if (isStale) {
+        dungeon.resetDungeon();
+      }
+      return dungeon;
+    };
+  }
+
+  // Drops a floor from memory, writing it to its file in the background
+  private void spill(int floor) {
+    Dungeon dungeon = this.dungeonOf(floor);
+    this.floorOf(floor).hash = dungeon.getStateHash();
+    this.resident.remove(floor);
+    this.spilled.add(floor);
+    Path file = this.fileOf(floor);
+    this.writes.put(floor, this.loader.submit(() -> {
+      try {
+        if (dungeon instanceof OffHeapDungeon) {
+          CellStore store = ((OffHeapDungeon) dungeon).getStore();
+          store.force();
+          store.close();
+        } else {
+          try (CellStore store = CellStore.map(file, (long) this.rows * this.columns)) {
+            OffHeapDungeon.copyOf(dungeon, store, this.treasureAndArrowPercent,
+                    this.numberOfMonsters);
+          }
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return null;
+    }));
+  }
+
+  private Path fileOf(int floor) {
+    return this.spillDirectory.resolve("floor-" + floor + ".cells");
+  }
+
+  // Returns a resident floor, waiting for it if it is still being loaded
+  private Dungeon dungeonOf(int floor) {
+    try {
+      return this.resident.get(floor).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while loading floor " + floor, e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException("Could not load floor " + floor, e.getCause());
+    }
+  }
+
+  // Returns what is known about a resident floor, noting its start and end caves the first time
+  private Floor floorOf(int floor) {
+    Floor known = this.floors.get(floor);
+    if (known == null) {
+      Dungeon dungeon = this.dungeonOf(floor);
+      known = new Floor(dungeon.getStartCave(), dungeon.getEndCave());
+      this.floors.put(floor, known);
+    }
+    return known;
+  }
+
+  private Dungeon current() {
+    return this.dungeonOf(this.currentFloor);
+  }
+
+  // Converts coordinates of the stack to coordinates of the current floor
+  private Coordinates toFloor(Coordinates coordinates) throws IllegalArgumentException {
+    if (coordinates == null) {
+      throw new IllegalArgumentException("Coordinates cant be null");
+    }
+    int row = coordinates.getXCoordinates();
+    int column = coordinates.getYCoordinates();
+    if (row < 0 || column < 0 || row >= this.rows || column >= this.columns) {
+      throw new IllegalArgumentException("Coordinates are outside the dungeon");
+    }
+    Floor floor = this.floors.get(this.currentFloor);
+    return new CaveCoordinates(Math.floorMod(row - floor.rowOffset, this.rows),
+            Math.floorMod(column - floor.columnOffset, this.columns));
+  }
+
+  // Converts coordinates of a floor to coordinates of the stack, keeping null as null
+  private Coordinates toStack(int floor, Coordinates coordinates) {
+    if (coordinates == null) {
+      return null;
+    }
+    Floor known = this.floors.get(floor);
+    return new CaveCoordinates((coordinates.getXCoordinates() + known.rowOffset) % this.rows,
+            (coordinates.getYCoordinates() + known.columnOffset) % this.columns);
+  }
+
+  @Override
+  public List<Integer> getDimensions() {
+    List<Integer> dimensions = new ArrayList<>();
+    dimensions.add(this.rows);
+    dimensions.add(this.columns);
+    return dimensions;
+  }
+
+  @Override
+  public List<Treasure> viewTreasureInCave(Coordinates coordinates) {
+    return this.current().viewTreasureInCave(this.toFloor(coordinates));
+  }
+
+  /**
+   * Get the start cave of the first floor, where the player starts and is put back on reset.
+   *
+   * @return coordinates of the start cave
+   */
+  @Override
+  public Coordinates getStartCave() {
+    return this.toStack(0, this.floors.get(0).start);
+  }
+
+  /**
+   * Get the end cave of the current floor. It holds the stairs down on every floor but the last,
+   * and the player wins by reaching it on the last floor.
+   *
+   * @return coordinates of the end cave of the current floor
+   */
+  @Override
+  public Coordinates getEndCave() {
+    return this.toStack(this.currentFloor, this.floors.get(this.currentFloor).end);
+  }
+
+  @Override
+  public List<Coordinates> getAdjacent(Coordinates coordinates) {
+    List<Coordinates> adjacent = new ArrayList<>();
+    for (Coordinates next : this.current().getAdjacent(this.toFloor(coordinates))) {
+      adjacent.add(this.toStack(this.currentFloor, next));
+    }
+    return adjacent;
+  }
+
+  @Override
+  public boolean hasArrow(Coordinates coordinates) {
+    return this.current().hasArrow(this.toFloor(coordinates));
+  }
+
+  @Override
+  public boolean hasMonster(Coordinates coordinates) {
+    return this.current().hasMonster(this.toFloor(coordinates));
+  }
+
+  @Override
+  public MonsterSmell getSmell(Coordinates coordinates) {
+    return this.current().getSmell(this.toFloor(coordinates));
+  }
+
+  @Override
+  public int monsterArrowCount(Coordinates coordinates) {
+    return this.current().monsterArrowCount(this.toFloor(coordinates));
+  }
+
+  @Override
+  public Coordinates getNorth(Coordinates coordinates) {
+    return this.toStack(this.currentFloor, this.current().getNorth(this.toFloor(coordinates)));
+  }
+
+  @Override
+  public Coordinates getSouth(Coordinates coordinates) {
+    return this.toStack(this.currentFloor, this.current().getSouth(this.toFloor(coordinates)));
+  }
+
+  @Override
+  public Coordinates getEast(Coordinates coordinates) {
+    return this.toStack(this.currentFloor, this.current().getEast(this.toFloor(coordinates)));
+  }
+
+  @Override
+  public Coordinates getWest(Coordinates coordinates) {
+    return this.toStack(this.currentFloor, this.current().getWest(this.toFloor(coordinates)));
+  }
+
+  @Override
+  public List<Treasure> pickupTreasureInCave(Coordinates coordinates) {
+    return this.current().pickupTreasureInCave(this.toFloor(coordinates));
+  }
+
+  @Override
+  public Arrow pickUpArrow(Coordinates coordinates) {
+    return this.current().pickUpArrow(this.toFloor(coordinates));
+  }
+
+  @Override
+  public void arrowStrike(Arrow arrow) {
+    if (arrow == null) {
+      throw new IllegalArgumentException("Arrow cannot be null");
+    }
+    this.current().arrowStrike(new LandedArrow(this.toFloor(arrow.getCurrentLocation())));
+  }
+
+  /**
+   * Goes back to the first floor and places new treasure, arrows and monsters on every floor,
+   * keeping the paths and stairs. Floors written out are only reset when they are read back.
+   */
+  @Override
+  public void resetDungeon() {
+    this.currentFloor = 0;
+    this.deepestFloor = 0;
+    for (Floor floor : this.floors.values()) {
+      floor.isStale = true;
+    }
+    this.keepNearbyFloors();
+    for (Integer floor : this.resident.keySet()) {
+      this.dungeonOf(floor).resetDungeon();
+      this.floorOf(floor).isStale = false;
+    }
+  }
+
+  /**
+   * Get the hash of the current floor and the contents of every floor reached so far.
+   *
+   * @return hash of the state of the stack
+   */
+  @Override
+  public long getStateHash() {
+    long hash = ZobristKeys.mix(this.currentFloor + CURRENT_FLOOR_SALT);
+    for (int floor = 0; floor <= this.deepestFloor; floor++) {
+      long floorHash = this.resident.containsKey(floor)
+              ? this.dungeonOf(floor).getStateHash() : this.floors.get(floor).hash;
+      hash ^= ZobristKeys.mix(floorHash + floor * FLOOR_STEP);
+    }
+    return hash;
+  }
+
+  // What is kept about a floor whether or not it is in memory
+  private static final class Floor {
+
+    private final Coordinates start;
+    private final Coordinates end;
+    private int rowOffset;
+    private int columnOffset;
+    private boolean isPlaced;
+    private boolean isStale;
+    private long hash;
+
+    private Floor(Coordinates start, Coordinates end) {
+      this.start = start;
+      this.end = end;
+    }
+  }
+
+  // Arrow which has landed at a location of a floor, passed on to the floor when it strikes
+  private static final class LandedArrow implements Arrow {
+
+    private final Coordinates location;
+
+    private LandedArrow(Coordinates location) {
+      this.location = location;
+    }
+
+    @Override
+    public void shoot(int distance, Coordinates direction, Coordinates source,
+                      Dungeon dungeon) {
+      throw new IllegalStateException("Arrow has already landed");
+    }
+
+    @Override
+    public Coordinates getCurrentLocation() {
+      return this.location;
+    }
+  }
+}
@@ -0,0 +1,207 @@
+package dungeonmodel.dungeon;
+
+import dungeonmodel.coordinates.CaveCoordinates;
+import dungeonmodel.coordinates.Coordinates;
+
+/**
+ * Compact read only view of the paths between the locations of a dungeon.
+ * Locations are numbered row by row starting at zero, and the paths leaving each location are
+ * kept as a bit per direction, so graph searches can run over plain integers.
+ */
+public final class DungeonTopology {
+
+  public static final int NORTH = 0;
+  public static final int SOUTH = 1;
+  public static final int EAST = 2;
+  public static final int WEST = 3;
+  public static final int DIRECTIONS = 4;
+
+  private final int rows;
+  private final int columns;
+  private final byte[] paths;
+
+  // Creates a topology from the path bits of every location
+  private DungeonTopology(int rows, int columns, byte[] paths) {
+    this.rows = rows;
+    this.columns = columns;
+    this.paths = paths;
+  }
+
+  /**
+   * Creates the topology of the given dungeon.
+   *
+   * @param dungeon dungeon whose paths are read
+   * @return topology of the dungeon
+   * @throws IllegalArgumentException if the dungeon is null or has too many locations to number
+   *                                  them with an int
+   */
+  public static DungeonTopology of(ReadOnlyDungeon dungeon) throws IllegalArgumentException {
+    if (dungeon == null) {
+      throw new IllegalArgumentException("Dungeon cannot be null");
+    }
+    int rows = dungeon.getDimensions().get(0);
+    int columns = dungeon.getDimensions().get(1);
+    if ((long) rows * columns > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Dungeon has too many locations for a topology");
+    }
+    byte[] paths = new byte[rows * columns];
+    for (int row = 0; row < rows; row++) {
+      for (int column = 0; column < columns; column++) {
+        Coordinates coordinates = new CaveCoordinates(row, column);
+        int mask = 0;
+        if (dungeon.getNorth(coordinates) != null) {
+          mask |= 1 << NORTH;
+        }
+        if (dungeon.getSouth(coordinates) != null) {
+          mask |= 1 << SOUTH;
+        }
+        if (dungeon.getEast(coordinates) != null) {
+          mask |= 1 << EAST;
+        }
+        if (dungeon.getWest(coordinates) != null) {
+          mask |= 1 << WEST;
+        }
+        paths[row * columns + column] = (byte) mask;
+      }
+    }
+    return new DungeonTopology(rows, columns, paths);
+  }
+
+  /**
+   * Creates a topology from the paths of every location, as given by {@link #getPaths(int)},
+   * for instance when the paths were received from elsewhere rather than read from a dungeon.
+   *
+   * @param rows    number of rows
+   * @param columns number of columns
+   * @param paths   bits of the paths leaving each location, row by row
+   * @return topology with the given paths
+   * @throws IllegalArgumentException if the size is not positive or the paths do not fill it
+   */
+  public static DungeonTopology of(int rows, int columns, byte[] paths)
+          throws IllegalArgumentException {
+    if (rows <= 0 || columns <= 0 || paths == null || (long) rows * columns != paths.length) {
+      throw new IllegalArgumentException("Paths must be given for every location");
+    }
+    for (byte path : paths) {
+      if ((path & ~((1 << DIRECTIONS) - 1)) != 0) {
+        throw new IllegalArgumentException("Paths must only have the four directions");
+      }
+    }
+    return new DungeonTopology(rows, columns, paths.clone());
+  }
+
+  /**
+   * Get the number of rows.
+   *
+   * @return number of rows
+   */
+  public int getRows() {
+    return this.rows;
+  }
+
+  /**
+   * Get the number of columns.
+   *
+   * @return number of columns
+   */
+  public int getColumns() {
+    return this.columns;
+  }
+
+  /**
+   * Get the number of locations.
+   *
+   * @return number of locations
+   */
+  public int size() {
+    return this.paths.length;
+  }
+
+  /**
+   * Get the index of a location.
+   *
+   * @param coordinates coordinates of the location
+   * @return index of the location
+   * @throws IllegalArgumentException if coordinates are null or outside the dungeon
+   */
+  public int indexOf(Coordinates coordinates) throws IllegalArgumentException {
+    if (coordinates == null) {
+      throw new IllegalArgumentException("Coordinates cant be null");
+    }
+    if (coordinates.getXCoordinates() >= this.rows
+            || coordinates.getYCoordinates() >= this.columns) {
+      throw new IllegalArgumentException("Coordinates are outside the dungeon");
+    }
+    return coordinates.getXCoordinates() * this.columns + coordinates.getYCoordinates();
+  }
+
+  /**
+   * Get the coordinates of a location.
+   *
+   * @param index index of the location
+   * @return coordinates of the location
+   */
+  public Coordinates coordinatesOf(int index) {
+    return new CaveCoordinates(index / this.columns, index % this.columns);
+  }
+
+  /**
+   * Get the paths leaving a location as a bit per direction.
+   *
+   * @param index index of the location
+   * @return bits of the directions which have a path, indexed by the direction constants
+   */
+  public int getPaths(int index) {
+    return this.paths[index];
+  }
+
+  /**
+   * Check if a location is a tunnel, having exactly two paths.
+   *
+   * @param index index of the location
+   * @return true if the location is a tunnel, false otherwise
+   */
+  public boolean isTunnel(int index) {
+    return Integer.bitCount(this.paths[index]) == 2;
+  }
+
+  /**
+   * Get the location reached by following the path in a direction, wrapping around the edges.
+   *
+   * @param index     index of the location
+   * @param direction one of the direction constants
+   * @return index of the neighbouring location, or -1 if there is no path in that direction
+   */
+  public int neighbour(int index, int direction) {
+    if ((this.paths[index] & (1 << direction)) == 0) {
+      return -1;
+    }
+    int row = index / this.columns;
+    int column = index % this.columns;
+    switch (direction) {
+      case NORTH:
+        row = row == 0 ? this.rows - 1 : row - 1;
+        break;
+      case SOUTH:
+        row = row == this.rows - 1 ? 0 : row + 1;
+        break;
+      case EAST:
+        column = column == this.columns - 1 ? 0 : column + 1;
+        break;
+      default:
+        column = column == 0 ? this.columns - 1 : column - 1;
+        break;
+    }
+    return row * this.columns + column;
+  }
+
+  /**
+   * Get the direction which leads back from the given direction.
+   *
+   * @param direction one of the direction constants
+   * @return the opposite direction
+   */
+  public static int opposite(int direction) {
+    return direction ^ 1;
+  }
+}
@@ -0,0 +1,361 @@
+package dungeonmodel.dungeon;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import dungeonmodel.coordinates.CaveCoordinates;
+import dungeonmodel.coordinates.Coordinates;
+
+/**
+ * Generates dungeons one row at a time with Eller's algorithm, writing the paths straight into a
+ * {@link CellStore}. Only a few arrays as long as a row are kept while generating, so dungeons far
+ * larger than the heap can be generated into a memory mapped file.
+ * Each row tracks which set of connected locations every column belongs to. Neighbours in
+ * different sets are joined at random, and every set continues down into the next row at least
+ * once, so the paths form a spanning tree like the one {@link DungeonImpl} builds with Kruskal's
+ * algorithm. Every edge left out of the tree is counted as it goes by, and the extra paths for
+ * the interconnectivity are picked among them by selection sampling. Wrapping paths are added in
+ * a final stitching pass over the first and last rows and columns.
+ * The end cave is then picked uniformly among the caves at least five steps from a random start
+ * by a breadth-first search. The search keeps every location it sees in primitive arrays and
+ * stops after 2^20 of them, so it needs at most about 28 MB however large the
+ * dungeon is, and on larger dungeons the end is picked among the caves within that part.
+ */
+public class EllerDungeonGenerator {
+
+  private static final int MINIMUM_DISTANCE = 5;
+  private static final int SEARCH_LIMIT = 1 << 20;
+  private static final int START_ATTEMPTS = 64;
+
+  private final int rows;
+  private final int columns;
+  private final int interconnectivity;
+  private final boolean isWrapping;
+  private final int treasureAndArrowPercent;
+  private final int numberOfMonsters;
+  private final Random random;
+  private long extraEdgesLeft;
+  private long discardedEdgesLeft;
+
+  /**
+   * Creates a generator for dungeons of the given settings.
+   *
+   * @param rows                    number of rows
+   * @param columns                 number of columns
+   * @param interconnectivity       the degree of interconnectivity
+   * @param isWrapping              true if the dungeon should be wrapping, false otherwise
+   * @param treasureAndArrowPercent percentage of caves which will have treasure and arrows
+   * @param numberOfMonsters        number of monsters to be added in the dungeon
+   * @param seed                    seed of the random choices, so a seed always gives the same
+   *                                paths
+   * @throws IllegalArgumentException if any of the given arguments are invalid
+   */
+  public EllerDungeonGenerator(int rows, int columns, int interconnectivity, boolean isWrapping,
+                               int treasureAndArrowPercent, int numberOfMonsters, long seed)
+          throws IllegalArgumentException {
+    if (rows <= 0 || columns <= 0) {
+      throw new IllegalArgumentException("Rows/columns cannot be zero/negative");
+    }
+    if (interconnectivity < 0) {
+      throw new IllegalArgumentException("Interconnectivity cannot be negative");
+    }
+    if (treasureAndArrowPercent <= 0 || treasureAndArrowPercent > 100) {
+      throw new IllegalArgumentException("Treasure percentage must be between one and hundred");
+    }
+    if (numberOfMonsters <= 0) {
+      throw new IllegalArgumentException("Number of monsters must always be positive");
+    }
+    this.rows = rows;
+    this.columns = columns;
+    this.interconnectivity = interconnectivity;
+    this.isWrapping = isWrapping;
+    this.treasureAndArrowPercent = treasureAndArrowPercent;
+    this.numberOfMonsters = numberOfMonsters;
+    this.random = new Random(seed);
+    if (interconnectivity > this.discardedEdgeCount()) {
+      throw new IllegalArgumentException("Degree of interconnectivity "
+              + "not possible with current dimensions");
+    }
+  }
+
+  /**
+   * Get the number of cells a store needs to hold a generated dungeon.
+   *
+   * @return number of cells
+   */
+  public long requiredCells() {
+    return (long) this.rows * this.columns;
+  }
+
+  /**
+   * Generates a dungeon into a store, overwriting every cell, and places its contents.
+   *
+   * @param store store with at least {@link #requiredCells()} cells
+   * @return generated dungeon over the store
+   * @throws IllegalArgumentException if the store is null or too small, or no start and end
+   *                                  caves far enough apart are found
+   */
+  public OffHeapDungeon generate(CellStore store) throws IllegalArgumentException {
+    Coordinates[] startAndEnd = this.generatePaths(store);
+    OffHeapDungeon dungeon = new OffHeapDungeon(store, this.rows, this.columns, startAndEnd[0],
+            startAndEnd[1], this.treasureAndArrowPercent, this.numberOfMonsters);
+    dungeon.resetDungeon();
+    return dungeon;
+  }
+
+  /**
+   * Generates a dungeon into a store, overwriting every cell, and gives it lazy contents placed
+   * from the seed as the locations are first read, rather than placing them all now.
+   *
+   * @param store store with at least {@link #requiredCells()} cells
+   * @return generated dungeon over the store
+   * @throws IllegalArgumentException if the store is null or too small, or no start and end
+   *                                  caves far enough apart are found
+   */
+  public OffHeapDungeon generateWithLazyContent(CellStore store)
+          throws IllegalArgumentException {
+    Coordinates[] startAndEnd = this.generatePaths(store);
+    return new OffHeapDungeon(store, this.rows, this.columns, startAndEnd[0], startAndEnd[1],
+            this.treasureAndArrowPercent, this.numberOfMonsters, this.random.nextLong());
+  }
+
+  // Carves the paths into the store and returns the start and end caves
+  private Coordinates[] generatePaths(CellStore store) throws IllegalArgumentException {
+    if (store == null) {
+      throw new IllegalArgumentException("Store cannot be null");
+    }
+    if (store.size() < this.requiredCells()) {
+      throw new IllegalArgumentException("Store is too small for the dungeon");
+    }
+    this.extraEdgesLeft = this.interconnectivity;
+    this.discardedEdgesLeft = this.discardedEdgeCount();
+    this.carveRows(store);
+    if (this.isWrapping) {
+      this.stitchWrappingEdges(store);
+    }
+    return this.startAndEndCave(store);
+  }
+
+  // Number of edges left out of the spanning tree, including every wrapping edge
+  private long discardedEdgeCount() {
+    long locations = this.requiredCells();
+    long edges = (long) this.rows * (this.columns - 1) + (long) (this.rows - 1) * this.columns;
+    return edges - (locations - 1) + this.wrappingEdgeCount();
+  }
+
+  // Wrapping edges only exist where they do not repeat an edge inside the grid
+  private long wrappingEdgeCount() {
+    if (!this.isWrapping) {
+      return 0;
+    }
+    return (this.columns >= 3 ? this.rows : 0) + (this.rows >= 3 ? this.columns : 0);
+  }
+
+  // Builds the spanning tree row by row, keeping the set of every column of the current row
+  private void carveRows(CellStore store) {
+    int[] sets = new int[this.columns];
+    int[] parents = new int[this.columns];
+    int[] renumbered = new int[this.columns];
+    boolean[] continues = new boolean[this.columns];
+    boolean[] setContinues = new boolean[this.columns];
+    for (int column = 0; column < this.columns; column++) {
+      sets[column] = column;
+      store.set(column, 0);
+    }
+
+    for (int row = 0; row < this.rows; row++) {
+      boolean lastRow = row == this.rows - 1;
+      for (int column = 0; column < this.columns; column++) {
+        parents[column] = column;
+      }
+      for (int column = 0; column + 1 < this.columns; column++) {
+        int left = find(parents, sets[column]);
+        int right = find(parents, sets[column + 1]);
+        if (left != right && (lastRow || this.random.nextBoolean())) {
+          parents[right] = left;
+          this.carve(store, row, column, DungeonTopology.EAST);
+        } else {
+          this.considerExtraEdge(store, row, column, DungeonTopology.EAST);
+        }
+      }
+      if (lastRow) {
+        break;
+      }
+
+      for (int column = 0; column < this.columns; column++) {
+        store.set((long) (row + 1) * this.columns + column, 0);
+        setContinues[column] = false;
+      }
+      for (int column = 0; column < this.columns; column++) {
+        continues[column] = this.random.nextBoolean();
+        if (continues[column]) {
+          setContinues[find(parents, sets[column])] = true;
+        }
+      }
+      for (int column = 0; column < this.columns; column++) {
+        int set = find(parents, sets[column]);
+        if (!setContinues[set]) {
+          continues[column] = true;
+          setContinues[set] = true;
+        }
+      }
+
+      int nextSet = 0;
+      for (int column = 0; column < this.columns; column++) {
+        renumbered[column] = -1;
+      }
+      for (int column = 0; column < this.columns; column++) {
+        if (continues[column]) {
+          this.carve(store, row, column, DungeonTopology.SOUTH);
+          int set = find(parents, sets[column]);
+          if (renumbered[set] < 0) {
+            renumbered[set] = nextSet++;
+          }
+        } else {
+          this.considerExtraEdge(store, row, column, DungeonTopology.SOUTH);
+        }
+      }
+      for (int column = 0; column < this.columns; column++) {
+        sets[column] = continues[column] ? renumbered[find(parents, sets[column])] : nextSet++;
+      }
+    }
+  }
+
+  private static int find(int[] parents, int set) {
+    while (parents[set] != set) {
+      parents[set] = parents[parents[set]];
+      set = parents[set];
+    }
+    return set;
+  }
+
+  // Adds the wrapping edges around the first and last rows and columns as extra edge candidates
+  private void stitchWrappingEdges(CellStore store) {
+    if (this.columns >= 3) {
+      for (int row = 0; row < this.rows; row++) {
+        this.considerExtraEdge(store, row, this.columns - 1, DungeonTopology.EAST);
+      }
+    }
+    if (this.rows >= 3) {
+      for (int column = 0; column < this.columns; column++) {
+        this.considerExtraEdge(store, this.rows - 1, column, DungeonTopology.SOUTH);
+      }
+    }
+  }
+
+  // Adds an edge left out of the tree with the chance of the extra edges still needed out of
+  // the discarded edges still to come, which picks exactly the needed number
+  private void considerExtraEdge(CellStore store, int row, int column, int direction) {
+    if (this.extraEdgesLeft > 0
+            && (long) (this.random.nextDouble() * this.discardedEdgesLeft) < this.extraEdgesLeft) {
+      this.carve(store, row, column, direction);
+      this.extraEdgesLeft--;
+    }
+    this.discardedEdgesLeft--;
+  }
+
+  // Opens the path from a location going south or east, and the path back, wrapping at the edges
+  private void carve(CellStore store, int row, int column, int direction) {
+    long index = (long) row * this.columns + column;
+    long next;
+    if (direction == DungeonTopology.SOUTH) {
+      next = (long) ((row + 1) % this.rows) * this.columns + column;
+    } else {
+      next = (long) row * this.columns + (column + 1) % this.columns;
+    }
+    store.set(index, store.get(index) | CellLayout.path(direction));
+    store.set(next, store.get(next) | CellLayout.path(DungeonTopology.opposite(direction)));
+  }
+
+  // Picks a random cave as the start, then searches outwards from it and takes the end at random
+  // among all the caves it reaches at least the minimum distance away, as DungeonImpl does. The
+  // search is kept in primitive arrays and sees at most SEARCH_LIMIT locations, so on larger
+  // dungeons the end is picked among the caves within that many locations of the start
+  private Coordinates[] startAndEndCave(CellStore store) {
+    long locations = this.requiredCells();
+    int limit = (int) Math.min(locations, SEARCH_LIMIT);
+    long[] queue = new long[limit];
+    int[] distances = new int[limit];
+    long[] seen = new long[Integer.highestOneBit(Math.max(1, limit - 1)) << 2];
+    for (int attempt = 0; attempt < START_ATTEMPTS; attempt++) {
+      long start = (long) (this.random.nextDouble() * locations);
+      if (CellLayout.isTunnel(store.get(start))) {
+        continue;
+      }
+      Arrays.fill(seen, -1);
+      markSeen(seen, start);
+      queue[0] = start;
+      distances[0] = 0;
+      int head = 0;
+      int tail = 1;
+      long end = -1;
+      int candidates = 0;
+      while (head < tail) {
+        long current = queue[head];
+        int distance = distances[head];
+        head++;
+        int cell = store.get(current);
+        if (distance >= MINIMUM_DISTANCE && !CellLayout.isTunnel(cell)) {
+          candidates++;
+          if (this.random.nextInt(candidates) == 0) {
+            end = current;
+          }
+        }
+        for (int direction = 0; direction < DungeonTopology.DIRECTIONS && tail < limit;
+             direction++) {
+          if (CellLayout.hasPath(cell, direction)) {
+            long next = this.neighbour(current, direction);
+            if (markSeen(seen, next)) {
+              queue[tail] = next;
+              distances[tail] = distance + 1;
+              tail++;
+            }
+          }
+        }
+      }
+      if (end >= 0) {
+        return new Coordinates[]{this.coordinatesOf(start), this.coordinatesOf(end)};
+      }
+    }
+    throw new IllegalArgumentException("No paths of minimum distance 5 found");
+  }
+
+  // Adds a location to an open addressing set of locations, at most half full, whose free slots
+  // hold -1. Returns false if it was already there
+  private static boolean markSeen(long[] seen, long index) {
+    int mask = seen.length - 1;
+    int slot = (int) ((index * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    while (seen[slot] != -1) {
+      if (seen[slot] == index) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+    seen[slot] = index;
+    return true;
+  }
+
+  private long neighbour(long index, int direction) {
+    int row = (int) (index / this.columns);
+    int column = (int) (index % this.columns);
+    switch (direction) {
+      case DungeonTopology.NORTH:
+        row = row == 0 ? this.rows - 1 : row - 1;
+        break;
+      case DungeonTopology.SOUTH:
+        row = row == this.rows - 1 ? 0 : row + 1;
+        break;
+      case DungeonTopology.EAST:
+        column = column == this.columns - 1 ? 0 : column + 1;
+        break;
+      default:
+        column = column == 0 ? this.columns - 1 : column - 1;
+        break;
+    }
+    return (long) row * this.columns + column;
+  }
+
+  private Coordinates coordinatesOf(long index) {
+    return new CaveCoordinates((int) (index / this.columns), (int) (index % this.columns));
+  }
+}
@@ -0,0 +1,282 @@
+package dungeonmodel.dungeon;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import dungeonmodel.coordinates.CaveCoordinates;
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.treasure.Treasure;
+import dungeonmodel.weapon.Arrow;
+import dungeonmodel.weapon.CrookedArrow;
+
+/**
+ * Dungeon which can be forked cheaply, for searching ahead or undoing moves.
+ * Paths between caves are read from the dungeon this was created from and are shared by every
+ * fork. The contents of the caves are kept as the contents at creation plus a map of the cells
+ * that have changed since, so forking only copies the cells that have changed.
+ */
+public class ForkableDungeon implements Dungeon {
+
+  private final ReadOnlyDungeon topology;
+  private final int rows;
+  private final int columns;
+  private final CellContent[] initialContent;
+  private final Map<Integer, CellContent> changedContent;
+  private final long initialHash;
+  private long stateHash;
+
+  /**
+   * Creates a forkable dungeon with the same paths and contents as the given dungeon.
+   * The paths of the given dungeon are shared and must not change afterwards, which holds for
+   * every dungeon as resetting keeps the paths the same.
+   *
+   * @param dungeon dungeon to be copied
+   * @throws IllegalArgumentException if dungeon is null
+   */
+  public ForkableDungeon(ReadOnlyDungeon dungeon) throws IllegalArgumentException {
+    if (dungeon == null) {
+      throw new IllegalArgumentException("Dungeon cannot be null");
+    }
+    this.topology = dungeon;
+    this.rows = dungeon.getDimensions().get(0);
+    this.columns = dungeon.getDimensions().get(1);
+    this.initialContent = new CellContent[this.rows * this.columns];
+    long hash = 0;
+    for (int row = 0; row < this.rows; row++) {
+      for (int column = 0; column < this.columns; column++) {
+        Coordinates coordinates = new CaveCoordinates(row, column);
+        int hits = dungeon.monsterArrowCount(coordinates);
+        CellContent content = new CellContent(dungeon.viewTreasureInCave(coordinates),
+                dungeon.hasArrow(coordinates),
+                dungeon.hasMonster(coordinates) || hits > 0, hits);
+        this.initialContent[row * this.columns + column] =
+                content.isEmpty() ? CellContent.EMPTY : content;
+        hash ^= hashOf(row, column, content);
+      }
+    }
+    this.changedContent = new HashMap<>();
+    this.initialHash = hash;
+    this.stateHash = hash;
+  }
+
+  // Creates a fork of the given dungeon, sharing paths and initial contents
+  private ForkableDungeon(ForkableDungeon other) {
+    this.topology = other.topology;
+    this.rows = other.rows;
+    this.columns = other.columns;
+    this.initialContent = other.initialContent;
+    this.changedContent = new HashMap<>(other.changedContent);
+    this.initialHash = other.initialHash;
+    this.stateHash = other.stateHash;
+  }
+
+  // Returns the hash of every feature in the contents of a location
+  private static long hashOf(int row, int column, CellContent content) {
+    long hash = 0;
+    for (Treasure treasure : content.getTreasure()) {
+      hash ^= ZobristKeys.cellKey(row, column, ZobristKeys.treasureFeature(treasure));
+    }
+    if (content.hasArrow()) {
+      hash ^= ZobristKeys.cellKey(row, column, ZobristKeys.ARROW);
+    }
+    if (content.hasMonster()) {
+      hash ^= ZobristKeys.cellKey(row, column, ZobristKeys.MONSTER + content.getMonsterHits());
+    }
+    return hash;
+  }
+
+  // Replaces the contents of a location, updating the state hash with the change
+  private void change(int index, CellContent previous, CellContent content) {
+    int row = index / this.columns;
+    int column = index % this.columns;
+    this.stateHash ^= hashOf(row, column, previous) ^ hashOf(row, column, content);
+    this.changedContent.put(index, content);
+  }
+
+  /**
+   * Creates an independent copy of this dungeon. Changes to either dungeon afterwards are not
+   * seen by the other.
+   *
+   * @return forked dungeon
+   */
+  public ForkableDungeon fork() {
+    return new ForkableDungeon(this);
+  }
+
+  /**
+   * Get the number of caves whose contents have changed since this dungeon was created, which
+   * is the cost of forking it.
+   *
+   * @return number of changed caves
+   */
+  public int changedCaveCount() {
+    return this.changedContent.size();
+  }
+
+  // Returns the index of a location, validating it lies inside the dungeon
+  private int indexOf(Coordinates coordinates) throws IllegalArgumentException {
+    if (coordinates == null) {
+      throw new IllegalArgumentException("Coordinates cant be null");
+    }
+    int row = coordinates.getXCoordinates();
+    int column = coordinates.getYCoordinates();
+    if (row >= this.rows || column >= this.columns) {
+      throw new IllegalArgumentException("Coordinates are outside the dungeon");
+    }
+    return row * this.columns + column;
+  }
+
+  // Returns the current contents of a location
+  private CellContent contentAt(int index) {
+    CellContent changed = this.changedContent.get(index);
+    if (changed != null) {
+      return changed;
+    }
+    return this.initialContent[index];
+  }
+
+  @Override
+  public List<Integer> getDimensions() {
+    return this.topology.getDimensions();
+  }
+
+  @Override
+  public List<Treasure> viewTreasureInCave(Coordinates coordinates) {
+    return new ArrayList<>(this.contentAt(this.indexOf(coordinates)).getTreasure());
+  }
+
+  @Override
+  public Coordinates getStartCave() {
+    return this.topology.getStartCave();
+  }
+
+  @Override
+  public Coordinates getEndCave() {
+    return this.topology.getEndCave();
+  }
+
+  @Override
+  public List<Coordinates> getAdjacent(Coordinates coordinates) {
+    this.indexOf(coordinates);
+    return this.topology.getAdjacent(coordinates);
+  }
+
+  @Override
+  public boolean hasArrow(Coordinates coordinates) {
+    return this.contentAt(this.indexOf(coordinates)).hasArrow();
+  }
+
+  @Override
+  public boolean hasMonster(Coordinates coordinates) {
+    return this.contentAt(this.indexOf(coordinates)).isMonsterAlive();
+  }
+
+  @Override
+  public MonsterSmell getSmell(Coordinates coordinates) throws IllegalArgumentException {
+    if (this.contentAt(this.indexOf(coordinates)).isMonsterAlive()) {
+      return MonsterSmell.STRONG;
+    }
+
+    int monsterCount = 0;
+    Set<Coordinates> nextAdjacents = new HashSet<>();
+    for (Coordinates adjacent : this.getAdjacent(coordinates)) {
+      if (this.contentAt(this.indexOf(adjacent)).isMonsterAlive()) {
+        return MonsterSmell.STRONG;
+      }
+      nextAdjacents.add(adjacent);
+    }
+    for (Coordinates next : nextAdjacents) {
+      for (Coordinates adjacent : this.getAdjacent(next)) {
+        if (this.contentAt(this.indexOf(adjacent)).isMonsterAlive()) {
+          monsterCount += 1;
+        }
+      }
+    }
+    if (monsterCount > 1) {
+      return MonsterSmell.STRONG;
+    } else if (monsterCount == 1) {
+      return MonsterSmell.WEAK;
+    }
+    return MonsterSmell.NONE;
+  }
+
+  @Override
+  public int monsterArrowCount(Coordinates coordinates) {
+    return this.contentAt(this.indexOf(coordinates)).getMonsterHits();
+  }
+
+  @Override
+  public Coordinates getNorth(Coordinates coordinates) {
+    this.indexOf(coordinates);
+    return this.topology.getNorth(coordinates);
+  }
+
+  @Override
+  public Coordinates getSouth(Coordinates coordinates) {
+    this.indexOf(coordinates);
+    return this.topology.getSouth(coordinates);
+  }
+
+  @Override
+  public Coordinates getEast(Coordinates coordinates) {
+    this.indexOf(coordinates);
+    return this.topology.getEast(coordinates);
+  }
+
+  @Override
+  public Coordinates getWest(Coordinates coordinates) {
+    this.indexOf(coordinates);
+    return this.topology.getWest(coordinates);
+  }
+
+  @Override
+  public List<Treasure> pickupTreasureInCave(Coordinates coordinates) {
+    int index = this.indexOf(coordinates);
+    CellContent content = this.contentAt(index);
+    if (!content.getTreasure().isEmpty()) {
+      this.change(index, content, content.withoutTreasure());
+    }
+    return new ArrayList<>(content.getTreasure());
+  }
+
+  @Override
+  public Arrow pickUpArrow(Coordinates coordinates) {
+    int index = this.indexOf(coordinates);
+    CellContent content = this.contentAt(index);
+    if (!content.hasArrow()) {
+      return null;
+    }
+    this.change(index, content, content.withoutArrow());
+    return new CrookedArrow();
+  }
+
+  @Override
+  public void arrowStrike(Arrow arrow) {
+    if (arrow == null) {
+      throw new IllegalArgumentException("Arrow cannot be null");
+    }
+    int index = this.indexOf(arrow.getCurrentLocation());
+    CellContent content = this.contentAt(index);
+    if (content.hasMonster()) {
+      this.change(index, content, content.withMonsterHit());
+    }
+  }
+
+  /**
+   * Resets the dungeon to the contents it had when it was created.
+   */
+  @Override
+  public void resetDungeon() {
+    this.changedContent.clear();
+    this.stateHash = this.initialHash;
+  }
+
+  @Override
+  public long getStateHash() {
+    return this.stateHash;
+  }
+}
@@ -0,0 +1,675 @@
+package dungeonmodel.dungeon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import dungeonmodel.coordinates.CaveCoordinates;
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.treasure.Treasure;
+import dungeonmodel.weapon.Arrow;
+import dungeonmodel.weapon.CrookedArrow;
+
+/**
+ * Dungeon whose locations are kept as 32 bit words in a {@link CellStore} rather than as cave
+ * objects, so the paths and contents of very large dungeons can live in direct memory or in a
+ * memory mapped file without adding to the Java heap. Locations are indexed by long, so the
+ * number of locations is not limited by int arithmetic.
+ * Contents are placed in the same proportions as {@link DungeonImpl}, using selection sampling
+ * over the locations in order so placing them needs no memory beyond the store itself.
+ * A dungeon can instead be given lazy contents, where the contents of a location are only placed
+ * the first time they are read or changed. Whether a location gets an arrow, treasure or a monster
+ * is then decided by where a seeded random permutation moves the location, among all locations
+ * for arrows and among the caves for treasure and monsters, so exactly the same number of each is
+ * placed as by resetting normally. Creating and resetting such a dungeon no longer goes over every
+ * location. The rank of a cave among the caves is found from running counts of caves kept on the
+ * heap, a long every 65536 locations and two bytes every 64 locations, so it reads at most 63
+ * other locations however wide the rows are.
+ * Lazy contents or not, the state hash is the one {@link DungeonImpl} gives the same contents.
+ */
+public class OffHeapDungeon implements Dungeon {
+
+  private final CellStore store;
+  private final int rows;
+  private final int columns;
+  private final Coordinates startCave;
+  private final Coordinates endCave;
+  private final int treasureAndArrowPercent;
+  private final int numberOfMonsters;
+  private static final long EPOCH_STEP = 0x9E3779B97F4A7C15L;
+  private static final long ARROW_SALT = 0x5851F42D4C957F2DL;
+  private static final long TREASURE_SALT = 0x14057B7EF767814FL;
+  private static final long MONSTER_SALT = 0x2545F4914F6CDD1DL;
+  private static final long KIND_SALT = 0xD1B54A32D192ED03L;
+  private static final int RANK_BLOCK_BITS = 6;
+  private static final int RANK_SUPERBLOCK_BITS = 16;
+  private static final long RANK_BLOCK_MASK = (1L << RANK_BLOCK_BITS) - 1;
+  private static final long RANK_SUPERBLOCK_MASK = (1L << RANK_SUPERBLOCK_BITS) - 1;
+
+  private final long caveCount;
+  private final Random random;
+  private final boolean lazyContent;
+  private final long contentSeed;
+  private final long[] cavesBeforeSuperblock;
+  private final char[] cavesBeforeBlock;
+  private final long arrowCount;
+  private final long treasureCount;
+  private long startRank;
+  private long endRank;
+  private long epochSeed;
+  private long epoch;
+  private SeededPermutation arrowOrder;
+  private SeededPermutation treasureOrder;
+  private SeededPermutation monsterOrder;
+  private long[] materialised;
+  private int materialisedCount;
+  private long stateHash;
+  private long contentHash;
+  private boolean contentHashKnown;
+
+  /**
+   * Creates a dungeon over a store whose cells already hold the paths between the locations.
+   * Contents already in the store are kept, and the contents placed by resetting use the given
+   * percentage and number of monsters.
+   *
+   * @param store                   store holding a cell for every location, row by row
+   * @param rows                    number of rows
+   * @param columns                 number of columns
+   * @param startCave               coordinates of the start cave
+   * @param endCave                 coordinates of the end cave
+   * @param treasureAndArrowPercent percentage of caves which will have treasure and arrows
+   * @param numberOfMonsters        number of monsters, including the one in the end cave
+   * @throws IllegalArgumentException if any of the given arguments are invalid
+   */
+  public OffHeapDungeon(CellStore store, int rows, int columns, Coordinates startCave,
+                        Coordinates endCave, int treasureAndArrowPercent, int numberOfMonsters)
+          throws IllegalArgumentException {
+    this(store, rows, columns, startCave, endCave, treasureAndArrowPercent, numberOfMonsters,
+            false, 0);
+  }
+
+  /**
+   * Creates a dungeon with lazy contents over a store whose cells already hold the paths between
+   * the locations. Contents already in the store are ignored, and the contents of every location
+   * are placed from the seed the first time they are read or changed.
+   *
+   * @param store                   store holding a cell for every location, row by row
+   * @param rows                    number of rows
+   * @param columns                 number of columns
+   * @param startCave               coordinates of the start cave
+   * @param endCave                 coordinates of the end cave
+   * @param treasureAndArrowPercent percentage of caves which will have treasure and arrows
+   * @param numberOfMonsters        number of monsters, including the one in the end cave
+   * @param contentSeed             seed the contents are placed from, so a seed always gives the
+   *                                same contents
+   * @throws IllegalArgumentException if any of the given arguments are invalid, or there are more
+   *                                  than 2^37 locations to count caves over
+   */
+  public OffHeapDungeon(CellStore store, int rows, int columns, Coordinates startCave,
+                        Coordinates endCave, int treasureAndArrowPercent, int numberOfMonsters,
+                        long contentSeed) throws IllegalArgumentException {
+    this(store, rows, columns, startCave, endCave, treasureAndArrowPercent, numberOfMonsters,
+            true, contentSeed);
+  }
+
+  private OffHeapDungeon(CellStore store, int rows, int columns, Coordinates startCave,
+                         Coordinates endCave, int treasureAndArrowPercent, int numberOfMonsters,
+                         boolean lazyContent, long contentSeed) throws IllegalArgumentException {
+    if (store == null) {
+      throw new IllegalArgumentException("Store cannot be null");
+    }
+    if (rows <= 0 || columns <= 0) {
+      throw new IllegalArgumentException("Rows/columns cannot be zero/negative");
+    }
+    if (store.size() < (long) rows * columns) {
+      throw new IllegalArgumentException("Store is too small for the dungeon");
+    }
+    if (treasureAndArrowPercent <= 0 || treasureAndArrowPercent > 100) {
+      throw new IllegalArgumentException("Treasure percentage must be between one and hundred");
+    }
+    if (numberOfMonsters <= 0) {
+      throw new IllegalArgumentException("Number of monsters must always be positive");
+    }
+    this.store = store;
+    this.rows = rows;
+    this.columns = columns;
+    this.indexOf(startCave);
+    this.indexOf(endCave);
+    this.startCave = new CaveCoordinates(startCave.getXCoordinates(), startCave.getYCoordinates());
+    this.endCave = new CaveCoordinates(endCave.getXCoordinates(), endCave.getYCoordinates());
+    this.treasureAndArrowPercent = treasureAndArrowPercent;
+    this.numberOfMonsters = numberOfMonsters;
+    this.random = new Random();
+    this.lazyContent = lazyContent;
+    this.contentSeed = contentSeed;
+    if (lazyContent) {
+      long blocks = (this.locationCount() + RANK_BLOCK_MASK) >>> RANK_BLOCK_BITS;
+      if (blocks > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Too many locations for lazy contents");
+      }
+      this.cavesBeforeBlock = new char[(int) blocks];
+      this.cavesBeforeSuperblock = new long[(int) ((this.locationCount()
+              + RANK_SUPERBLOCK_MASK) >>> RANK_SUPERBLOCK_BITS)];
+    } else {
+      this.cavesBeforeBlock = null;
+      this.cavesBeforeSuperblock = null;
+    }
+
+    long caves = 0;
+    long hash = 0;
+    for (int row = 0; row < rows; row++) {
+      for (int column = 0; column < columns; column++) {
+        long index = (long) row * columns + column;
+        if (lazyContent && (index & RANK_BLOCK_MASK) == 0) {
+          this.countCavesBefore(index, caves);
+        }
+        int cell = store.get(index);
+        if (!CellLayout.isTunnel(cell)) {
+          caves++;
+        }
+        if (!lazyContent) {
+          hash ^= this.hashOf(index, cell);
+        } else if (CellLayout.isLoaded(cell)) {
+          store.set(index, cell & ~CellLayout.LOADED);
+        }
+      }
+    }
+    this.caveCount = caves;
+    this.stateHash = hash;
+    this.arrowCount = (long) ((treasureAndArrowPercent / 100.0) * this.locationCount());
+    this.treasureCount = (long) ((treasureAndArrowPercent / 100.0) * caves);
+    this.materialised = new long[0];
+    if (lazyContent) {
+      if (caves - 1 < numberOfMonsters) {
+        throw new IllegalArgumentException("Number of monsters exceeds number of available caves");
+      }
+      this.startRank = this.caveRankOf(this.indexOf(this.startCave));
+      this.endRank = this.caveRankOf(this.indexOf(this.endCave));
+      if (this.endRank == this.startRank) {
+        this.endRank = -1;
+      }
+      this.layOutContents();
+    }
+  }
+
+  /**
+   * Copies the paths and contents of a dungeon into a store and creates a dungeon over it.
+   *
+   * @param dungeon                 dungeon to copy
+   * @param store                   store with a cell for every location of the dungeon
+   * @param treasureAndArrowPercent percentage of caves with treasure and arrows after resetting
+   * @param numberOfMonsters        number of monsters after resetting
+   * @return dungeon over the store
+   * @throws IllegalArgumentException if any of the given arguments are invalid
+   */
+  public static OffHeapDungeon copyOf(ReadOnlyDungeon dungeon, CellStore store,
+                                      int treasureAndArrowPercent, int numberOfMonsters)
+          throws IllegalArgumentException {
+    if (dungeon == null || store == null) {
+      throw new IllegalArgumentException("Dungeon and store cannot be null");
+    }
+    int rows = dungeon.getDimensions().get(0);
+    int columns = dungeon.getDimensions().get(1);
+    if (store.size() < (long) rows * columns) {
+      throw new IllegalArgumentException("Store is too small for the dungeon");
+    }
+    for (int row = 0; row < rows; row++) {
+      for (int column = 0; column < columns; column++) {
+        Coordinates coordinates = new CaveCoordinates(row, column);
+        int cell = 0;
+        if (dungeon.getNorth(coordinates) != null) {
+          cell |= CellLayout.path(DungeonTopology.NORTH);
+        }
+        if (dungeon.getSouth(coordinates) != null) {
+          cell |= CellLayout.path(DungeonTopology.SOUTH);
+        }
+        if (dungeon.getEast(coordinates) != null) {
+          cell |= CellLayout.path(DungeonTopology.EAST);
+        }
+        if (dungeon.getWest(coordinates) != null) {
+          cell |= CellLayout.path(DungeonTopology.WEST);
+        }
+        cell |= CellLayout.contentsOf(dungeon, coordinates);
+        store.set((long) row * columns + column, cell);
+      }
+    }
+    return new OffHeapDungeon(store, rows, columns, dungeon.getStartCave(),
+            dungeon.getEndCave(), treasureAndArrowPercent, numberOfMonsters);
+  }
+
+  /**
+   * Get the store holding the locations of this dungeon.
+   *
+   * @return cell store
+   */
+  public CellStore getStore() {
+    return this.store;
+  }
+
+  /**
+   * Check if the contents of this dungeon are placed lazily, so the store does not yet hold the
+   * contents of every location.
+   *
+   * @return true if the dungeon has lazy contents, false otherwise
+   */
+  public boolean hasLazyContent() {
+    return this.lazyContent;
+  }
+
+  /**
+   * Get the number of locations whose lazy contents have been placed since the dungeon was
+   * created or last reset. This is always zero for a dungeon without lazy contents.
+   *
+   * @return number of locations with placed contents
+   */
+  public int getMaterialisedCount() {
+    return this.materialisedCount;
+  }
+
+  private long locationCount() {
+    return (long) this.rows * this.columns;
+  }
+
+  // Returns the index of a location, validating it lies inside the dungeon
+  private long indexOf(Coordinates coordinates) throws IllegalArgumentException {
+    if (coordinates == null) {
+      throw new IllegalArgumentException("Coordinates cant be null");
+    }
+    int row = coordinates.getXCoordinates();
+    int column = coordinates.getYCoordinates();
+    if (row < 0 || column < 0 || row >= this.rows || column >= this.columns) {
+      throw new IllegalArgumentException("Coordinates are outside the dungeon");
+    }
+    return (long) row * this.columns + column;
+  }
+
+  // Returns the hash of every feature in a cell
+  private long hashOf(long index, int cell) {
+    int row = (int) (index / this.columns);
+    int column = (int) (index % this.columns);
+    long hash = 0;
+    for (int bits = CellLayout.treasureBits(cell); bits != 0; bits &= bits - 1) {
+      Treasure treasure = CellLayout.treasureAt(Integer.numberOfTrailingZeros(bits));
+      hash ^= ZobristKeys.cellKey(row, column, ZobristKeys.treasureFeature(treasure));
+    }
+    if (CellLayout.hasArrow(cell)) {
+      hash ^= ZobristKeys.cellKey(row, column, ZobristKeys.ARROW);
+    }
+    if (CellLayout.hasMonster(cell)) {
+      hash ^= ZobristKeys.cellKey(row, column, ZobristKeys.MONSTER + CellLayout.hits(cell));
+    }
+    return hash;
+  }
+
+  // Returns a cell, first placing its contents if they are lazy and not placed yet
+  private int cell(long index) {
+    int cell = this.store.get(index);
+    if (this.lazyContent && !CellLayout.isLoaded(cell)) {
+      cell = this.lazyContentsOf(index, cell, this.caveRankOf(index));
+      this.store.set(index, cell);
+      if (this.materialisedCount == this.materialised.length) {
+        this.materialised = Arrays.copyOf(this.materialised,
+                Math.max(16, this.materialised.length * 2));
+      }
+      this.materialised[this.materialisedCount++] = index;
+    }
+    return cell;
+  }
+
+  // Works out the contents of a location, given its rank among the caves, from where the
+  // permutations of this epoch move it
+  private int lazyContentsOf(long index, int cell, long rank) {
+    int result = CellLayout.clearContents(cell) | CellLayout.LOADED;
+    if (this.arrowOrder.permute(index) < this.arrowCount) {
+      result |= CellLayout.ARROW;
+    }
+    if (CellLayout.isTunnel(cell)) {
+      return result;
+    }
+    if (this.treasureOrder.permute(rank) < this.treasureCount) {
+      Random kinds = new Random(ZobristKeys.mix(this.epochSeed ^ KIND_SALT) + index);
+      result = CellLayout.withTreasureBits(result, randomTreasure(kinds));
+    }
+    if (index == this.indexOf(this.endCave)) {
+      result |= CellLayout.MONSTER;
+    } else if (index != this.indexOf(this.startCave)) {
+      long monsterRank = rank;
+      if (this.startRank >= 0 && this.startRank < rank) {
+        monsterRank--;
+      }
+      if (this.endRank >= 0 && this.endRank < rank) {
+        monsterRank--;
+      }
+      if (this.monsterOrder.permute(monsterRank) < this.numberOfMonsters - 1) {
+        result |= CellLayout.MONSTER;
+      }
+    }
+    return result;
+  }
+
+  // Notes the number of caves before the block of locations starting at an index, relative to
+  // the superblock holding it so that it fits in two bytes
+  private void countCavesBefore(long index, long caves) {
+    int superblock = (int) (index >>> RANK_SUPERBLOCK_BITS);
+    if ((index & RANK_SUPERBLOCK_MASK) == 0) {
+      this.cavesBeforeSuperblock[superblock] = caves;
+    }
+    this.cavesBeforeBlock[(int) (index >>> RANK_BLOCK_BITS)] =
+            (char) (caves - this.cavesBeforeSuperblock[superblock]);
+  }
+
+  // Number of caves before a location, or -1 if the location is a tunnel
+  private long caveRankOf(long index) {
+    if (CellLayout.isTunnel(this.store.get(index))) {
+      return -1;
+    }
+    long rank = this.cavesBeforeSuperblock[(int) (index >>> RANK_SUPERBLOCK_BITS)]
+            + this.cavesBeforeBlock[(int) (index >>> RANK_BLOCK_BITS)];
+    for (long before = index & ~RANK_BLOCK_MASK; before < index; before++) {
+      if (!CellLayout.isTunnel(this.store.get(before))) {
+        rank++;
+      }
+    }
+    return rank;
+  }
+
+  // Sets up the permutations deciding the lazy contents of the current epoch
+  private void layOutContents() {
+    this.epochSeed = ZobristKeys.mix(this.contentSeed + this.epoch * EPOCH_STEP);
+    long monsterCaves = this.caveCount - (this.startRank >= 0 ? 1 : 0)
+            - (this.endRank >= 0 ? 1 : 0);
+    this.arrowOrder = new SeededPermutation(this.locationCount(), this.epochSeed ^ ARROW_SALT);
+    this.treasureOrder = new SeededPermutation(this.caveCount, this.epochSeed ^ TREASURE_SALT);
+    this.monsterOrder = new SeededPermutation(monsterCaves, this.epochSeed ^ MONSTER_SALT);
+    this.stateHash = 0;
+    this.contentHashKnown = false;
+  }
+
+  // Hash of the contents every location starts this epoch with, worked out in one pass over the
+  // locations without placing them
+  private long initialContentHash() {
+    long hash = 0;
+    long rank = 0;
+    for (long index = 0; index < this.locationCount(); index++) {
+      int cell = this.store.get(index);
+      hash ^= this.hashOf(index, this.lazyContentsOf(index, cell, rank));
+      if (!CellLayout.isTunnel(cell)) {
+        rank++;
+      }
+    }
+    return hash;
+  }
+
+  // Replaces a cell, updating the state hash with the change
+  private void change(long index, int previous, int cell) {
+    this.stateHash ^= this.hashOf(index, previous) ^ this.hashOf(index, cell);
+    this.store.set(index, cell);
+  }
+
+  // Returns the coordinates reached by following a path, or null if there is no path
+  private Coordinates neighbour(Coordinates coordinates, int direction) {
+    int cell = this.store.get(this.indexOf(coordinates));
+    if (!CellLayout.hasPath(cell, direction)) {
+      return null;
+    }
+    int row = coordinates.getXCoordinates();
+    int column = coordinates.getYCoordinates();
+    switch (direction) {
+      case DungeonTopology.NORTH:
+        row = row == 0 ? this.rows - 1 : row - 1;
+        break;
+      case DungeonTopology.SOUTH:
+        row = row == this.rows - 1 ? 0 : row + 1;
+        break;
+      case DungeonTopology.EAST:
+        column = column == this.columns - 1 ? 0 : column + 1;
+        break;
+      default:
+        column = column == 0 ? this.columns - 1 : column - 1;
+        break;
+    }
+    return new CaveCoordinates(row, column);
+  }
+
+  @Override
+  public List<Integer> getDimensions() {
+    List<Integer> dimensions = new ArrayList<>();
+    dimensions.add(this.rows);
+    dimensions.add(this.columns);
+    return dimensions;
+  }
+
+  @Override
+  public List<Treasure> viewTreasureInCave(Coordinates coordinates) {
+    return CellLayout.treasureOf(this.cell(this.indexOf(coordinates)));
+  }
+
+  @Override
+  public Coordinates getStartCave() {
+    return new CaveCoordinates(this.startCave.getXCoordinates(),
+            this.startCave.getYCoordinates());
+  }
+
+  @Override
+  public Coordinates getEndCave() {
+    return new CaveCoordinates(this.endCave.getXCoordinates(), this.endCave.getYCoordinates());
+  }
+
+  @Override
+  public List<Coordinates> getAdjacent(Coordinates coordinates) {
+    List<Coordinates> adjacent = new ArrayList<>();
+    for (int direction : new int[]{DungeonTopology.SOUTH, DungeonTopology.NORTH,
+        DungeonTopology.EAST, DungeonTopology.WEST}) {
+      Coordinates next = this.neighbour(coordinates, direction);
+      if (next != null) {
+        adjacent.add(next);
+      }
+    }
+    return adjacent;
+  }
+
+  @Override
+  public boolean hasArrow(Coordinates coordinates) {
+    return CellLayout.hasArrow(this.cell(this.indexOf(coordinates)));
+  }
+
+  @Override
+  public boolean hasMonster(Coordinates coordinates) {
+    return CellLayout.isMonsterAlive(this.cell(this.indexOf(coordinates)));
+  }
+
+  @Override
+  public MonsterSmell getSmell(Coordinates coordinates) throws IllegalArgumentException {
+    if (this.hasMonster(coordinates)) {
+      return MonsterSmell.STRONG;
+    }
+
+    int monsterCount = 0;
+    Set<Coordinates> nextAdjacents = new HashSet<>();
+    for (Coordinates adjacent : this.getAdjacent(coordinates)) {
+      if (this.hasMonster(adjacent)) {
+        return MonsterSmell.STRONG;
+      }
+      nextAdjacents.add(adjacent);
+    }
+    for (Coordinates next : nextAdjacents) {
+      for (Coordinates adjacent : this.getAdjacent(next)) {
+        if (this.hasMonster(adjacent)) {
+          monsterCount += 1;
+        }
+      }
+    }
+    if (monsterCount > 1) {
+      return MonsterSmell.STRONG;
+    } else if (monsterCount == 1) {
+      return MonsterSmell.WEAK;
+    }
+    return MonsterSmell.NONE;
+  }
+
+  @Override
+  public int monsterArrowCount(Coordinates coordinates) {
+    return CellLayout.hits(this.cell(this.indexOf(coordinates)));
+  }
+
+  @Override
+  public Coordinates getNorth(Coordinates coordinates) {
+    return this.neighbour(coordinates, DungeonTopology.NORTH);
+  }
+
+  @Override
+  public Coordinates getSouth(Coordinates coordinates) {
+    return this.neighbour(coordinates, DungeonTopology.SOUTH);
+  }
+
+  @Override
+  public Coordinates getEast(Coordinates coordinates) {
+    return this.neighbour(coordinates, DungeonTopology.EAST);
+  }
+
+  @Override
+  public Coordinates getWest(Coordinates coordinates) {
+    return this.neighbour(coordinates, DungeonTopology.WEST);
+  }
+
+  @Override
+  public List<Treasure> pickupTreasureInCave(Coordinates coordinates) {
+    long index = this.indexOf(coordinates);
+    int cell = this.cell(index);
+    if (CellLayout.treasureBits(cell) != 0) {
+      this.change(index, cell, CellLayout.withTreasureBits(cell, 0));
+    }
+    return CellLayout.treasureOf(cell);
+  }
+
+  @Override
+  public Arrow pickUpArrow(Coordinates coordinates) {
+    long index = this.indexOf(coordinates);
+    int cell = this.cell(index);
+    if (!CellLayout.hasArrow(cell)) {
+      return null;
+    }
+    this.change(index, cell, cell & ~CellLayout.ARROW);
+    return new CrookedArrow();
+  }
+
+  @Override
+  public void arrowStrike(Arrow arrow) {
+    if (arrow == null) {
+      throw new IllegalArgumentException("Arrow cannot be null");
+    }
+    long index = this.indexOf(arrow.getCurrentLocation());
+    int cell = this.cell(index);
+    if (CellLayout.hasMonster(cell)) {
+      this.change(index, cell, CellLayout.withHit(cell));
+    }
+  }
+
+  /**
+   * Clears every location and places new treasure, arrows and monsters, keeping the paths and the
+   * start and end caves. With lazy contents only the locations whose contents were placed are
+   * cleared, and new contents are placed as locations are read again.
+   *
+   * @throws IllegalArgumentException if there are too few caves for the monsters
+   */
+  @Override
+  public void resetDungeon() throws IllegalArgumentException {
+    if (this.caveCount - 1 < this.numberOfMonsters) {
+      throw new IllegalArgumentException("Number of monsters exceeds number of available caves");
+    }
+    if (this.lazyContent) {
+      for (int placed = 0; placed < this.materialisedCount; placed++) {
+        long index = this.materialised[placed];
+        this.store.set(index, this.store.get(index) & ~CellLayout.LOADED);
+      }
+      this.materialisedCount = 0;
+      this.epoch++;
+      this.layOutContents();
+      return;
+    }
+    long start = this.indexOf(this.startCave);
+    long end = this.indexOf(this.endCave);
+    long locations = this.locationCount();
+    long treasureLeft = (long) ((this.treasureAndArrowPercent / 100.0) * this.caveCount);
+    long arrowsLeft = (long) ((this.treasureAndArrowPercent / 100.0) * locations);
+    long monstersLeft = this.numberOfMonsters - 1;
+    long cavesLeft = this.caveCount;
+    long monsterCavesLeft = this.caveCount - (start == end ? 1 : 2);
+    this.stateHash = 0;
+
+    for (long index = 0; index < locations; index++) {
+      int cell = CellLayout.clearContents(this.store.get(index));
+      if (this.select(arrowsLeft, locations - index)) {
+        cell |= CellLayout.ARROW;
+        arrowsLeft--;
+      }
+      if (!CellLayout.isTunnel(cell)) {
+        if (this.select(treasureLeft, cavesLeft)) {
+          cell = CellLayout.withTreasureBits(cell, randomTreasure(this.random));
+          treasureLeft--;
+        }
+        cavesLeft--;
+        if (index == end) {
+          cell |= CellLayout.MONSTER;
+        } else if (index != start) {
+          if (this.select(monstersLeft, monsterCavesLeft)) {
+            cell |= CellLayout.MONSTER;
+            monstersLeft--;
+          }
+          monsterCavesLeft--;
+        }
+      }
+      this.store.set(index, cell);
+      this.stateHash ^= this.hashOf(index, cell);
+    }
+  }
+
+  // Selection sampling: picks the current item with the chance of needed out of remaining, which
+  // picks exactly the needed number of items with every choice equally likely
+  private boolean select(long needed, long remaining) {
+    if (needed <= 0) {
+      return false;
+    }
+    return (long) (this.random.nextDouble() * remaining) < needed;
+  }
+
+  // Picks between one and eight distinct treasures, as DungeonImpl does
+  static int randomTreasure(Random random) {
+    int count = random.nextInt(CellLayout.TREASURE_KINDS);
+    if (count < 2) {
+      count += 1;
+    }
+    int[] kinds = new int[CellLayout.TREASURE_KINDS];
+    for (int kind = 0; kind < kinds.length; kind++) {
+      kinds[kind] = kind;
+    }
+    int bits = 0;
+    for (int picked = 0; picked < count; picked++) {
+      int swap = picked + random.nextInt(kinds.length - picked);
+      int kind = kinds[swap];
+      kinds[swap] = kinds[picked];
+      kinds[picked] = kind;
+      bits |= 1 << kind;
+    }
+    return bits;
+  }
+
+  /**
+   * Returns a hash of the contents of this dungeon, the same as that of {@link DungeonImpl}
+   * holding the same contents. With lazy contents the first hash after creating or resetting the
+   * dungeon goes over every location once, and later ones are kept up to date on every change.
+   *
+   * @return 64 bit hash of the dungeon's contents
+   */
+  @Override
+  public long getStateHash() {
+    if (this.lazyContent && !this.contentHashKnown) {
+      this.contentHash = this.initialContentHash();
+      this.contentHashKnown = true;
+    }
+    return this.contentHash ^ this.stateHash;
+  }
+}
@@ -112,4 +112,12 @@ public interface ReadOnlyDungeon {
    */
   Coordinates getWest(Coordinates coordinates);
 
+  /**
+   * Returns a hash of the contents of this dungeon: treasure, arrows and monsters.
+   * The hash is kept up to date on every change, so getting it does not visit the caves.
+   *
+   * @return 64 bit hash of the dungeon's contents
+   */
+  long getStateHash();
+
 }
@@ -0,0 +1,57 @@
+package dungeonmodel.dungeon;
+
+// Package private random permutation of the numbers from zero up to a size, computed one number
+// at a time without storing it. A four round Feistel network shuffles the bits of the smallest
+// even width covering the size, and results at or beyond the size are fed back in until they
+// fall inside it. The network is a bijection, so this cycle walk is one as well, and as the width
+// covers at most four times the size it needs under four rounds on average.
+final class SeededPermutation {
+
+  private static final int ROUNDS = 4;
+
+  private final long size;
+  private final int halfBits;
+  private final long halfMask;
+  private final long[] keys;
+
+  SeededPermutation(long size, long seed) {
+    if (size < 0) {
+      throw new IllegalArgumentException("Size cannot be negative");
+    }
+    this.size = size;
+    int bits = Math.max(2, 64 - Long.numberOfLeadingZeros(Math.max(0, size - 1)));
+    this.halfBits = (bits + 1) / 2;
+    this.halfMask = (1L << this.halfBits) - 1;
+    this.keys = new long[ROUNDS];
+    for (int round = 0; round < ROUNDS; round++) {
+      seed = ZobristKeys.mix(seed + round);
+      this.keys[round] = seed;
+    }
+  }
+
+  long size() {
+    return this.size;
+  }
+
+  // Returns where a number is moved to by the permutation
+  long permute(long value) {
+    if (value < 0 || value >= this.size) {
+      throw new IllegalArgumentException("Value is outside the permutation");
+    }
+    do {
+      value = this.shuffle(value);
+    } while (value >= this.size);
+    return value;
+  }
+
+  private long shuffle(long value) {
+    long left = value >>> this.halfBits;
+    long right = value & this.halfMask;
+    for (long key : this.keys) {
+      long next = left ^ (ZobristKeys.mix(key ^ right) & this.halfMask);
+      left = right;
+      right = next;
+    }
+    return left << this.halfBits | right;
+  }
+}
@@ -0,0 +1,98 @@
+package dungeonmodel.dungeon;
+
+import dungeonmodel.treasure.Treasure;
+
+/**
+ * Provides the random 64 bit keys used to hash game states.
+ * A state's hash is the exclusive or of the keys of every feature present in it, so it can be
+ * updated on every change by adding or removing the keys of the changed features. Keys are
+ * derived from the feature itself by a mixing function rather than stored in tables, so they cost
+ * no memory however large the dungeon is.
+ */
+public final class ZobristKeys {
+
+  /**
+   * Feature of a location holding an arrow. Treasure uses the features below this one.
+   */
+  public static final int ARROW = 9;
+
+  /**
+   * Feature of a location holding the player.
+   */
+  public static final int PLAYER = 10;
+
+  /**
+   * Feature of a location holding a monster which has been hit by no arrows. A monster hit by
+   * some arrows uses this feature plus the number of hits.
+   */
+  public static final int MONSTER = 11;
+
+  /**
+   * Player feature for the first kind of treasure held. The player features start here, above
+   * every feature of a location, so that no feature is used for both. A kind of treasure held
+   * uses this feature plus its {@link #treasureFeature}.
+   */
+  public static final int HELD_TREASURE = 64;
+
+  /**
+   * Player feature for the number of arrows held.
+   */
+  public static final int ARROWS_HELD = HELD_TREASURE + ARROW;
+
+  /**
+   * Player feature for the player being alive.
+   */
+  public static final int ALIVE = ARROWS_HELD + 1;
+
+  /**
+   * Player feature for the player having won.
+   */
+  public static final int WON = ARROWS_HELD + 2;
+
+  private static final long CELL_SEED = 0x9E3779B97F4A7C15L;
+  private static final long PLAYER_SEED = 0xD1B54A32D192ED03L;
+
+  private ZobristKeys() {
+    // only static keys
+  }
+
+  /**
+   * Get the key of a feature at a location.
+   *
+   * @param row     row of the location
+   * @param column  column of the location
+   * @param feature feature present at the location
+   * @return key of the feature at the location
+   */
+  public static long cellKey(int row, int column, int feature) {
+    return mix(mix(mix(CELL_SEED + row) + column) + feature);
+  }
+
+  /**
+   * Get the key of a feature of the player having a given value.
+   *
+   * @param feature feature of the player
+   * @param value   value of the feature
+   * @return key of the feature with the value
+   */
+  public static long playerKey(int feature, long value) {
+    return mix(mix(PLAYER_SEED + feature) + value);
+  }
+
+  /**
+   * Get the feature of a treasure, one for each combination of gem type and quality.
+   *
+   * @param treasure treasure whose feature is needed
+   * @return feature of the treasure, always less than {@link #ARROW}
+   */
+  public static int treasureFeature(Treasure treasure) {
+    return treasure.getTreasureType().ordinal() * 3 + treasure.getTreasureQuality().ordinal();
+  }
+
+  // Mixing function of the SplitMix64 generator, shared by the seeded classes of the package
+  static long mix(long value) {
+    long result = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+    result = (result ^ (result >>> 27)) * 0x94D049BB133111EBL;
+    return result ^ (result >>> 31);
+  }
+}
@@ -0,0 +1,193 @@
+package dungeonmodel.environment;
+
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.MonsterSmell;
+import dungeonmodel.player.Player;
+import dungeonmodel.treasure.Treasure;
+
+/**
+ * Game environment over a single player and the dungeon the player is in.
+ * Observations are laid out as described by the index constants of this class.
+ */
+public class DungeonEnvironment implements GameEnvironment {
+
+  public static final int PATH_NORTH = 0;
+  public static final int PATH_SOUTH = 1;
+  public static final int PATH_EAST = 2;
+  public static final int PATH_WEST = 3;
+  public static final int SMELL = 4;
+  public static final int TREASURE_COUNT = 5;
+  public static final int ARROW_PRESENT = 6;
+  public static final int ARROWS_HELD = 7;
+  public static final int ALIVE = 8;
+  public static final int WON = 9;
+  public static final int OBSERVATION_SIZE = 10;
+
+  static final double STEP_REWARD = -1;
+  static final double INVALID_ACTION_REWARD = -5;
+  static final double DEATH_REWARD = -100;
+  static final double WIN_REWARD = 100;
+
+  private final Player player;
+  private final int shootDistance;
+
+  /**
+   * Creates an environment over the given player, shooting arrows a single cave far.
+   *
+   * @param player player controlled by the agent
+   * @throws IllegalArgumentException if player is null
+   */
+  public DungeonEnvironment(Player player) throws IllegalArgumentException {
+    this(player, 1);
+  }
+
+  /**
+   * Creates an environment over the given player.
+   *
+   * @param player        player controlled by the agent
+   * @param shootDistance distance arrows are shot to by the shoot actions
+   * @throws IllegalArgumentException if player is null or distance is not positive
+   */
+  public DungeonEnvironment(Player player, int shootDistance) throws IllegalArgumentException {
+    if (player == null) {
+      throw new IllegalArgumentException("Player cannot be null");
+    }
+    if (shootDistance <= 0) {
+      throw new IllegalArgumentException("Shoot distance must be positive");
+    }
+    this.player = player;
+    this.shootDistance = shootDistance;
+  }
+
+  @Override
+  public int getObservationSize() {
+    return OBSERVATION_SIZE;
+  }
+
+  @Override
+  public void reset(int[] observation, int offset) {
+    this.checkBuffer(observation, offset);
+    this.player.resetPlayer();
+    this.observe(observation, offset);
+  }
+
+  @Override
+  public double step(EnvironmentAction action, int[] observation, int offset)
+          throws IllegalArgumentException, IllegalStateException {
+    if (action == null) {
+      throw new IllegalArgumentException("Action cannot be null");
+    }
+    this.checkBuffer(observation, offset);
+    if (this.isDone()) {
+      throw new IllegalStateException("Episode has ended, environment needs to be reset");
+    }
+
+    double reward;
+    switch (action) {
+      case MOVE_NORTH:
+        reward = this.move(this.player.getNorth());
+        break;
+      case MOVE_SOUTH:
+        reward = this.move(this.player.getSouth());
+        break;
+      case MOVE_EAST:
+        reward = this.move(this.player.getEast());
+        break;
+      case MOVE_WEST:
+        reward = this.move(this.player.getWest());
+        break;
+      case SHOOT_NORTH:
+        reward = this.shoot(this.player.getNorth());
+        break;
+      case SHOOT_SOUTH:
+        reward = this.shoot(this.player.getSouth());
+        break;
+      case SHOOT_EAST:
+        reward = this.shoot(this.player.getEast());
+        break;
+      case SHOOT_WEST:
+        reward = this.shoot(this.player.getWest());
+        break;
+      case PICKUP_ARROW:
+        reward = this.player.pickUpArrow() ? STEP_REWARD : INVALID_ACTION_REWARD;
+        break;
+      default:
+        reward = this.pickupTreasure();
+        break;
+    }
+    this.observe(observation, offset);
+    return reward;
+  }
+
+  @Override
+  public boolean isDone() {
+    return !this.player.isPlayerAlive() || this.player.hasPlayerWon();
+  }
+
+  // Moves the player, rewarding reaching the end and penalising death
+  private double move(Coordinates direction) {
+    if (direction == null) {
+      return INVALID_ACTION_REWARD;
+    }
+    this.player.moveTo(direction);
+    if (!this.player.isPlayerAlive()) {
+      return DEATH_REWARD;
+    }
+    if (this.player.hasPlayerWon()) {
+      return WIN_REWARD;
+    }
+    return STEP_REWARD;
+  }
+
+  // Shoots an arrow, penalising shots with no path or no arrows left
+  private double shoot(Coordinates direction) {
+    if (direction == null || this.player.getArrowCount() == 0) {
+      return INVALID_ACTION_REWARD;
+    }
+    this.player.shootArrow(this.shootDistance, direction);
+    return STEP_REWARD;
+  }
+
+  // Picks up treasure, rewarding the total value of what was picked up
+  private double pickupTreasure() {
+    double value = 0;
+    for (Treasure treasure : this.player.viewTreasureAtCurrentLocation()) {
+      value += treasure.getTreasureValue();
+    }
+    if (!this.player.pickUpTreasure()) {
+      return INVALID_ACTION_REWARD;
+    }
+    return value;
+  }
+
+  // Writes the current observation into the given buffer
+  private void observe(int[] observation, int offset) {
+    observation[offset + PATH_NORTH] = this.player.getNorth() != null ? 1 : 0;
+    observation[offset + PATH_SOUTH] = this.player.getSouth() != null ? 1 : 0;
+    observation[offset + PATH_EAST] = this.player.getEast() != null ? 1 : 0;
+    observation[offset + PATH_WEST] = this.player.getWest() != null ? 1 : 0;
+    MonsterSmell smell = this.player.getSmellInCurrentCave();
+    if (smell == MonsterSmell.STRONG) {
+      observation[offset + SMELL] = 2;
+    } else if (smell == MonsterSmell.WEAK) {
+      observation[offset + SMELL] = 1;
+    } else {
+      observation[offset + SMELL] = 0;
+    }
+    observation[offset + TREASURE_COUNT] = this.player.viewTreasureAtCurrentLocation().size();
+    observation[offset + ARROW_PRESENT] = this.player.currentLocationHasArrow() ? 1 : 0;
+    observation[offset + ARROWS_HELD] = this.player.getArrowCount();
+    observation[offset + ALIVE] = this.player.isPlayerAlive() ? 1 : 0;
+    observation[offset + WON] = this.player.hasPlayerWon() ? 1 : 0;
+  }
+
+  // Helper method to validate an observation buffer
+  private void checkBuffer(int[] observation, int offset) throws IllegalArgumentException {
+    if (observation == null) {
+      throw new IllegalArgumentException("Observation buffer cannot be null");
+    }
+    if (offset < 0 || offset + OBSERVATION_SIZE > observation.length) {
+      throw new IllegalArgumentException("Observation buffer is too small");
+    }
+  }
+}
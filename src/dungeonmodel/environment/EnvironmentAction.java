@@ -0,0 +1,17 @@
+package dungeonmodel.environment;
+
+/**
+ * Enumerator of the actions an agent can take in a game environment in a single step.
+ */
+public enum EnvironmentAction {
+  MOVE_NORTH,
+  MOVE_SOUTH,
+  MOVE_EAST,
+  MOVE_WEST,
+  SHOOT_NORTH,
+  SHOOT_SOUTH,
+  SHOOT_EAST,
+  SHOOT_WEST,
+  PICKUP_ARROW,
+  PICKUP_TREASURE
+}
@@ -0,0 +1,41 @@
+package dungeonmodel.environment;
+
+/**
+ * Represents a game as an environment that an agent can be trained against.
+ * Every step takes an action and writes a fixed size observation into a buffer provided by the
+ * caller, so that buffers can be reused across steps and episodes.
+ */
+public interface GameEnvironment {
+
+  /**
+   * Get the number of values written into the observation buffer by this environment.
+   *
+   * @return size of a single observation
+   */
+  int getObservationSize();
+
+  /**
+   * Starts a new episode and writes the initial observation.
+   *
+   * @param observation buffer the observation is written to
+   * @param offset      position in the buffer where the observation starts
+   */
+  void reset(int[] observation, int offset);
+
+  /**
+   * Performs an action and writes the resulting observation.
+   *
+   * @param action      action to be performed
+   * @param observation buffer the observation is written to
+   * @param offset      position in the buffer where the observation starts
+   * @return reward obtained by performing the action
+   */
+  double step(EnvironmentAction action, int[] observation, int offset);
+
+  /**
+   * Check if the current episode has ended.
+   *
+   * @return true if the episode has ended and the environment needs a reset, false otherwise
+   */
+  boolean isDone();
+}
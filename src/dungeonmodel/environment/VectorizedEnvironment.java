@@ -0,0 +1,129 @@
+package dungeonmodel.environment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Steps several game environments in lockstep.
+ * State is kept as parallel arrays (observations, rewards and done flags) indexed by environment,
+ * which are allocated once and overwritten on every step. Environments whose episode ends are
+ * reset automatically, so the observation of such an environment is the first of a new episode.
+ */
+public class VectorizedEnvironment {
+
+  private final List<GameEnvironment> environments;
+  private final int observationSize;
+  private final int[] observations;
+  private final double[] rewards;
+  private final boolean[] dones;
+
+  /**
+   * Creates a vectorized environment over the given environments.
+   *
+   * @param environments environments to be stepped together
+   * @throws IllegalArgumentException if the list is null, empty or has environments with
+   *                                  different observation sizes
+   */
+  public VectorizedEnvironment(List<GameEnvironment> environments)
+          throws IllegalArgumentException {
+    if (environments == null || environments.isEmpty()) {
+      throw new IllegalArgumentException("Environments cannot be null or empty");
+    }
+    this.environments = new ArrayList<>(environments);
+    this.observationSize = this.environments.get(0).getObservationSize();
+    for (GameEnvironment environment : this.environments) {
+      if (environment == null) {
+        throw new IllegalArgumentException("Environment cannot be null");
+      }
+      if (environment.getObservationSize() != this.observationSize) {
+        throw new IllegalArgumentException("All environments must have the same observation size");
+      }
+    }
+    this.observations = new int[this.environments.size() * this.observationSize];
+    this.rewards = new double[this.environments.size()];
+    this.dones = new boolean[this.environments.size()];
+  }
+
+  /**
+   * Get the number of environments stepped together.
+   *
+   * @return number of environments
+   */
+  public int size() {
+    return this.environments.size();
+  }
+
+  /**
+   * Get the size of the observation of a single environment.
+   *
+   * @return size of a single observation
+   */
+  public int getObservationSize() {
+    return this.observationSize;
+  }
+
+  /**
+   * Resets every environment.
+   */
+  public void reset() {
+    for (int index = 0; index < this.environments.size(); index++) {
+      this.environments.get(index).reset(this.observations, index * this.observationSize);
+      this.rewards[index] = 0;
+      this.dones[index] = false;
+    }
+  }
+
+  /**
+   * Performs one action in every environment.
+   *
+   * @param actions actions to be performed, one per environment
+   * @throws IllegalArgumentException if actions are null or not one per environment
+   */
+  public void step(EnvironmentAction[] actions) throws IllegalArgumentException {
+    if (actions == null || actions.length != this.environments.size()) {
+      throw new IllegalArgumentException("Exactly one action is needed per environment");
+    }
+    for (int index = 0; index < actions.length; index++) {
+      GameEnvironment environment = this.environments.get(index);
+      int offset = index * this.observationSize;
+      if (environment.isDone()) {
+        environment.reset(this.observations, offset);
+      }
+      this.rewards[index] = environment.step(actions[index], this.observations, offset);
+      this.dones[index] = environment.isDone();
+      if (this.dones[index]) {
+        environment.reset(this.observations, offset);
+      }
+    }
+  }
+
+  /**
+   * Get the observations of all environments, one after another.
+   * The returned array is reused and overwritten by the next step.
+   *
+   * @return observations of all environments
+   */
+  public int[] getObservations() {
+    return this.observations;
+  }
+
+  /**
+   * Get the rewards of the last step, one per environment.
+   * The returned array is reused and overwritten by the next step.
+   *
+   * @return rewards of the last step
+   */
+  public double[] getRewards() {
+    return this.rewards;
+  }
+
+  /**
+   * Get whether the episode of each environment ended in the last step.
+   * The returned array is reused and overwritten by the next step.
+   *
+   * @return done flags of the last step
+   */
+  public boolean[] getDones() {
+    return this.dones;
+  }
+}
@@ -0,0 +1,72 @@
+package dungeonmodel.path;
+
+import java.util.Arrays;
+
+import dungeonmodel.dungeon.DungeonTopology;
+
+/**
+ * Breadth first search over the topology of a dungeon, finding the distance to every location
+ * and a tree of shortest paths back to the source.
+ */
+public final class BreadthFirstSearch {
+
+  private BreadthFirstSearch() {
+    // only static searches
+  }
+
+  /**
+   * Searches from a source, following every path.
+   *
+   * @param topology  topology to search
+   * @param source    index of the location the search starts from
+   * @param distances filled with the distance of every location, -1 if it cannot be reached
+   * @param parents   filled with the previous location on a shortest path from the source, -1
+   *                  for the source and locations which cannot be reached
+   */
+  public static void search(DungeonTopology topology, int source, int[] distances,
+                            int[] parents) {
+    search(topology, source, null, -1, distances, parents);
+  }
+
+  /**
+   * Searches from a source, never entering blocked locations. The target may be entered even if
+   * blocked, but the search does not continue through it.
+   *
+   * @param topology  topology to search
+   * @param source    index of the location the search starts from
+   * @param blocked   locations which cannot be entered, or null if none are blocked
+   * @param target    index of a location which can be entered but not walked through, or -1
+   * @param distances filled with the distance of every location, -1 if it cannot be reached
+   * @param parents   filled with the previous location on a shortest path from the source, -1
+   *                  for the source and locations which cannot be reached, or null if not needed
+   */
+  public static void search(DungeonTopology topology, int source, boolean[] blocked, int target,
+                            int[] distances, int[] parents) {
+    Arrays.fill(distances, -1);
+    if (parents != null) {
+      Arrays.fill(parents, -1);
+    }
+    int[] queue = new int[topology.size()];
+    int head = 0;
+    int tail = 0;
+    distances[source] = 0;
+    queue[tail++] = source;
+    while (head < tail) {
+      int current = queue[head++];
+      if (current == target && current != source) {
+        continue;
+      }
+      for (int direction = 0; direction < DungeonTopology.DIRECTIONS; direction++) {
+        int next = topology.neighbour(current, direction);
+        if (next >= 0 && distances[next] < 0
+                && (blocked == null || !blocked[next] || next == target)) {
+          distances[next] = distances[current] + 1;
+          if (parents != null) {
+            parents[next] = current;
+          }
+          queue[tail++] = next;
+        }
+      }
+    }
+  }
+}
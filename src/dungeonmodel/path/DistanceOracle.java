@@ -0,0 +1,197 @@
+package dungeonmodel.path;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.DungeonTopology;
+import dungeonmodel.dungeon.ReadOnlyDungeon;
+
+/**
+ * Answers distance and shortest path queries between locations of a dungeon, ignoring monsters.
+ * Dungeons with at most {@link #ALL_PAIRS_LIMIT} locations get a matrix of every distance, built
+ * on the first query. Larger dungeons keep the shortest path trees of the most recently queried
+ * locations, always including the end cave. Paths are rebuilt in time proportional to their
+ * length. Cached results are only dropped when the paths are read again by {@link #invalidate()}.
+ */
+public class DistanceOracle {
+
+  /**
+   * Largest number of locations for which every distance is kept in a matrix.
+   */
+  public static final int ALL_PAIRS_LIMIT = 1024;
+
+  private static final int CACHED_TREES = 16;
+
+  private final ReadOnlyDungeon dungeon;
+  private DungeonTopology topology;
+  private int endIndex;
+  private short[] allPairs;
+  private ShortestPathTree endTree;
+  private final Map<Integer, ShortestPathTree> trees;
+
+  /**
+   * Creates a distance oracle over a dungeon.
+   *
+   * @param dungeon dungeon whose distances are queried
+   * @throws IllegalArgumentException if the dungeon is null
+   */
+  public DistanceOracle(ReadOnlyDungeon dungeon) throws IllegalArgumentException {
+    if (dungeon == null) {
+      throw new IllegalArgumentException("Dungeon cannot be null");
+    }
+    this.dungeon = dungeon;
+    this.trees = new LinkedHashMap<>(CACHED_TREES, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, ShortestPathTree> eldest) {
+        return this.size() > CACHED_TREES;
+      }
+    };
+    this.invalidate();
+  }
+
+  /**
+   * Drops every cached result and reads the paths of the dungeon again.
+   */
+  public synchronized void invalidate() {
+    this.topology = DungeonTopology.of(this.dungeon);
+    this.endIndex = this.topology.indexOf(this.dungeon.getEndCave());
+    this.allPairs = null;
+    this.endTree = null;
+    this.trees.clear();
+  }
+
+  /**
+   * Get the topology the oracle answers queries over.
+   *
+   * @return topology of the dungeon
+   */
+  public synchronized DungeonTopology getTopology() {
+    return this.topology;
+  }
+
+  /**
+   * Get the number of moves on a shortest path between two locations.
+   *
+   * @param from location the path starts at
+   * @param to   location the path ends at
+   * @return number of moves, or -1 if there is no path
+   * @throws IllegalArgumentException if either location is null or outside the dungeon
+   */
+  public synchronized int distance(Coordinates from, Coordinates to)
+          throws IllegalArgumentException {
+    int source = this.topology.indexOf(from);
+    int target = this.topology.indexOf(to);
+    if (this.topology.size() <= ALL_PAIRS_LIMIT) {
+      return this.allPairsDistance(source, target);
+    }
+    ShortestPathTree tree = this.cachedTree(source, target);
+    return tree.distances[tree.root == target ? source : target];
+  }
+
+  /**
+   * Get a shortest path between two locations.
+   *
+   * @param from location the path starts at
+   * @param to   location the path ends at
+   * @return every location on the path, starting with from and ending with to, or an empty list
+   *         if there is no path
+   * @throws IllegalArgumentException if either location is null or outside the dungeon
+   */
+  public synchronized List<Coordinates> path(Coordinates from, Coordinates to)
+          throws IllegalArgumentException {
+    int source = this.topology.indexOf(from);
+    int target = this.topology.indexOf(to);
+    List<Coordinates> path = new ArrayList<>();
+    if (this.topology.size() <= ALL_PAIRS_LIMIT) {
+      if (this.allPairsDistance(source, target) < 0) {
+        return path;
+      }
+      int current = source;
+      path.add(this.topology.coordinatesOf(current));
+      while (current != target) {
+        current = this.nextStep(current, target);
+        path.add(this.topology.coordinatesOf(current));
+      }
+      return path;
+    }
+
+    ShortestPathTree tree = this.cachedTree(source, target);
+    int leaf = tree.root == target ? source : target;
+    if (tree.distances[leaf] < 0) {
+      return path;
+    }
+    for (int current = leaf; current >= 0; current = tree.parents[current]) {
+      path.add(this.topology.coordinatesOf(current));
+    }
+    if (tree.root == source) {
+      Collections.reverse(path);
+    }
+    return path;
+  }
+
+  // Returns the distance between two locations from the matrix, building it if needed
+  private int allPairsDistance(int source, int target) {
+    if (this.allPairs == null) {
+      int size = this.topology.size();
+      short[] matrix = new short[size * size];
+      int[] distances = new int[size];
+      for (int from = 0; from < size; from++) {
+        BreadthFirstSearch.search(this.topology, from, distances, null);
+        for (int to = 0; to < size; to++) {
+          matrix[from * size + to] = (short) distances[to];
+        }
+      }
+      this.allPairs = matrix;
+    }
+    return this.allPairs[source * this.topology.size() + target];
+  }
+
+  // Returns the neighbour of a location which is one move closer to the target
+  private int nextStep(int current, int target) {
+    int remaining = this.allPairsDistance(current, target);
+    for (int direction = 0; direction < DungeonTopology.DIRECTIONS; direction++) {
+      int next = this.topology.neighbour(current, direction);
+      if (next >= 0 && this.allPairsDistance(next, target) == remaining - 1) {
+        return next;
+      }
+    }
+    throw new IllegalStateException("Distance matrix is inconsistent");
+  }
+
+  // Returns a cached tree rooted at either location, building one rooted at the target if needed
+  private ShortestPathTree cachedTree(int source, int target) {
+    if (target == this.endIndex || source == this.endIndex) {
+      if (this.endTree == null) {
+        this.endTree = new ShortestPathTree(this.topology, this.endIndex);
+      }
+      return this.endTree;
+    }
+    ShortestPathTree tree = this.trees.get(target);
+    if (tree == null) {
+      tree = this.trees.get(source);
+    }
+    if (tree == null) {
+      tree = new ShortestPathTree(this.topology, target);
+      this.trees.put(target, tree);
+    }
+    return tree;
+  }
+
+  // Distances and parents of every location on shortest paths to a root location
+  private static final class ShortestPathTree {
+    private final int root;
+    private final int[] distances;
+    private final int[] parents;
+
+    private ShortestPathTree(DungeonTopology topology, int root) {
+      this.root = root;
+      this.distances = new int[topology.size()];
+      this.parents = new int[topology.size()];
+      BreadthFirstSearch.search(topology, root, this.distances, this.parents);
+    }
+  }
+}
@@ -0,0 +1,413 @@
+package dungeonmodel.path;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.DungeonTopology;
+import dungeonmodel.dungeon.ReadOnlyDungeon;
+
+/**
+ * Finds shortest paths in very large dungeons by searching a small graph of cluster entrances
+ * rather than every location. The dungeon is split into square clusters, and every location with
+ * a path into another cluster is an entrance. The distances between the entrances of each cluster
+ * are worked out once, in parallel, when the pathfinder is created.
+ * A query joins the start and goal to the entrances of their clusters, searches the entrance
+ * graph with A*, and then fills in the moves inside each cluster. The search is guided by the
+ * number of rows and columns between an entrance and the goal, counted around the edges where
+ * the dungeon wraps. Every move changes that count by at most one, so it never overestimates and
+ * paths found are shortest paths.
+ * Monsters are ignored, and the pathfinder must be created again if the paths of the dungeon
+ * change. Queries do not change the pathfinder, so they may be made from several threads.
+ */
+public class HierarchicalPathfinder {
+
+  private static final int UNREACHED = Integer.MAX_VALUE;
+
+  private final DungeonTopology topology;
+  private final int clusterSize;
+  private final int clusterColumns;
+  private final int[] entrances;
+  private final int[] nodeOf;
+  private final int[][] edges;
+  private final int[][] costs;
+  private final int[][] clusterNodes;
+  private final boolean wrapsRows;
+  private final boolean wrapsColumns;
+
+  /**
+   * Creates a pathfinder over a dungeon, building the tables of every cluster in parallel.
+   *
+   * @param dungeon     dungeon whose paths are searched
+   * @param clusterSize number of rows and columns of locations in a cluster
+   * @throws IllegalArgumentException if the dungeon is null or the cluster size is not positive
+   */
+  public HierarchicalPathfinder(ReadOnlyDungeon dungeon, int clusterSize)
+          throws IllegalArgumentException {
+    if (dungeon == null) {
+      throw new IllegalArgumentException("Dungeon cannot be null");
+    }
+    if (clusterSize <= 0) {
+      throw new IllegalArgumentException("Cluster size must be positive");
+    }
+    this.topology = DungeonTopology.of(dungeon);
+    this.clusterSize = clusterSize;
+    this.wrapsRows = this.wraps(DungeonTopology.NORTH);
+    this.wrapsColumns = this.wraps(DungeonTopology.WEST);
+    this.clusterColumns = (this.topology.getColumns() + clusterSize - 1) / clusterSize;
+    int clusterRows = (this.topology.getRows() + clusterSize - 1) / clusterSize;
+    int clusterCount = clusterRows * this.clusterColumns;
+
+    ClusterTable[] tables = new ClusterTable[clusterCount];
+    IntStream.range(0, clusterCount).parallel()
+            .forEach(cluster -> tables[cluster] = this.buildCluster(cluster));
+
+    int entranceCount = 0;
+    for (ClusterTable table : tables) {
+      entranceCount += table.entrances.length;
+    }
+    this.entrances = new int[entranceCount];
+    this.nodeOf = new int[this.topology.size()];
+    this.clusterNodes = new int[clusterCount][];
+    Arrays.fill(this.nodeOf, -1);
+    int node = 0;
+    for (int cluster = 0; cluster < clusterCount; cluster++) {
+      this.clusterNodes[cluster] = new int[tables[cluster].entrances.length];
+      for (int entrance = 0; entrance < tables[cluster].entrances.length; entrance++) {
+        this.entrances[node] = tables[cluster].entrances[entrance];
+        this.nodeOf[this.entrances[node]] = node;
+        this.clusterNodes[cluster][entrance] = node;
+        node++;
+      }
+    }
+
+    this.edges = new int[entranceCount][];
+    this.costs = new int[entranceCount][];
+    for (int cluster = 0; cluster < clusterCount; cluster++) {
+      ClusterTable table = tables[cluster];
+      for (int entrance = 0; entrance < table.entrances.length; entrance++) {
+        this.linkEntrance(table, entrance);
+      }
+    }
+  }
+
+  /**
+   * Get the number of rows and columns of locations in a cluster.
+   *
+   * @return size of a cluster
+   */
+  public int getClusterSize() {
+    return this.clusterSize;
+  }
+
+  /**
+   * Get the number of entrances in the graph searched by queries.
+   *
+   * @return number of entrances
+   */
+  public int getEntranceCount() {
+    return this.entrances.length;
+  }
+
+  /**
+   * Get the number of moves on a shortest path between two locations.
+   *
+   * @param from location the path starts at
+   * @param to   location the path ends at
+   * @return number of moves, or -1 if there is no path
+   * @throws IllegalArgumentException if either location is null or outside the dungeon
+   */
+  public int distance(Coordinates from, Coordinates to) throws IllegalArgumentException {
+    Query query = new Query(this.topology.indexOf(from), this.topology.indexOf(to));
+    return query.length == UNREACHED ? -1 : query.length;
+  }
+
+  /**
+   * Get a shortest path between two locations.
+   *
+   * @param from location the path starts at
+   * @param to   location the path ends at
+   * @return every location on the path, starting with from and ending with to, or an empty list
+   *         if there is no path
+   * @throws IllegalArgumentException if either location is null or outside the dungeon
+   */
+  public List<Coordinates> path(Coordinates from, Coordinates to)
+          throws IllegalArgumentException {
+    Query query = new Query(this.topology.indexOf(from), this.topology.indexOf(to));
+    List<Coordinates> path = new ArrayList<>();
+    if (query.length == UNREACHED) {
+      return path;
+    }
+    for (int index : query.locations()) {
+      path.add(this.topology.coordinatesOf(index));
+    }
+    return path;
+  }
+
+  // Whether any path leaves the first row or column in a direction towards the edge, wrapping
+  // around to the last one
+  private boolean wraps(int direction) {
+    boolean isNorth = direction == DungeonTopology.NORTH;
+    int count = isNorth ? this.topology.getColumns() : this.topology.getRows();
+    for (int position = 0; position < count; position++) {
+      int index = isNorth ? position : position * this.topology.getColumns();
+      if (this.topology.neighbour(index, direction) >= 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Fewest moves between two locations if every path were open, going around the edges where
+  // the dungeon wraps
+  private int gridDistance(int from, int to) {
+    int rows = this.topology.getRows();
+    int columns = this.topology.getColumns();
+    int rowGap = Math.abs(from / columns - to / columns);
+    int columnGap = Math.abs(from % columns - to % columns);
+    if (this.wrapsRows) {
+      rowGap = Math.min(rowGap, rows - rowGap);
+    }
+    if (this.wrapsColumns) {
+      columnGap = Math.min(columnGap, columns - columnGap);
+    }
+    return rowGap + columnGap;
+  }
+
+  private int clusterOf(int index) {
+    int row = index / this.topology.getColumns();
+    int column = index % this.topology.getColumns();
+    return (row / this.clusterSize) * this.clusterColumns + column / this.clusterSize;
+  }
+
+  // Index of a location among the locations of its cluster
+  private int localIndex(int index) {
+    int row = index / this.topology.getColumns();
+    int column = index % this.topology.getColumns();
+    return (row % this.clusterSize) * this.clusterSize + column % this.clusterSize;
+  }
+
+  // Breadth first search which never leaves the cluster of the source. Both arrays are indexed
+  // by local index, and parents hold the previous location towards the source, or -1.
+  private void clusterSearch(int source, int[] distances, int[] parents) {
+    Arrays.fill(distances, -1);
+    if (parents != null) {
+      Arrays.fill(parents, -1);
+    }
+    int cluster = this.clusterOf(source);
+    int[] queue = new int[distances.length];
+    int head = 0;
+    int tail = 0;
+    distances[this.localIndex(source)] = 0;
+    queue[tail++] = source;
+    while (head < tail) {
+      int current = queue[head++];
+      int distance = distances[this.localIndex(current)];
+      for (int direction = 0; direction < DungeonTopology.DIRECTIONS; direction++) {
+        int next = this.topology.neighbour(current, direction);
+        if (next < 0 || this.clusterOf(next) != cluster) {
+          continue;
+        }
+        int local = this.localIndex(next);
+        if (distances[local] < 0) {
+          distances[local] = distance + 1;
+          if (parents != null) {
+            parents[local] = current;
+          }
+          queue[tail++] = next;
+        }
+      }
+    }
+  }
+
+  // Finds the entrances of a cluster and the distances between them inside the cluster
+  private ClusterTable buildCluster(int cluster) {
+    int baseRow = (cluster / this.clusterColumns) * this.clusterSize;
+    int baseColumn = (cluster % this.clusterColumns) * this.clusterSize;
+    int lastRow = Math.min(baseRow + this.clusterSize, this.topology.getRows());
+    int lastColumn = Math.min(baseColumn + this.clusterSize, this.topology.getColumns());
+    List<Integer> found = new ArrayList<>();
+    for (int row = baseRow; row < lastRow; row++) {
+      for (int column = baseColumn; column < lastColumn; column++) {
+        int index = row * this.topology.getColumns() + column;
+        for (int direction = 0; direction < DungeonTopology.DIRECTIONS; direction++) {
+          int next = this.topology.neighbour(index, direction);
+          if (next >= 0 && this.clusterOf(next) != cluster) {
+            found.add(index);
+            break;
+          }
+        }
+      }
+    }
+
+    int[] clusterEntrances = found.stream().mapToInt(Integer::intValue).toArray();
+    int[][] distances = new int[clusterEntrances.length][clusterEntrances.length];
+    int[] local = new int[this.clusterSize * this.clusterSize];
+    for (int from = 0; from < clusterEntrances.length; from++) {
+      this.clusterSearch(clusterEntrances[from], local, null);
+      for (int to = 0; to < clusterEntrances.length; to++) {
+        distances[from][to] = local[this.localIndex(clusterEntrances[to])];
+      }
+    }
+    return new ClusterTable(clusterEntrances, distances);
+  }
+
+  // Connects an entrance to the entrances it reaches inside its cluster and to its neighbours in
+  // other clusters
+  private void linkEntrance(ClusterTable table, int entrance) {
+    int index = table.entrances[entrance];
+    int node = this.nodeOf[index];
+    List<Integer> targets = new ArrayList<>();
+    List<Integer> weights = new ArrayList<>();
+    for (int other = 0; other < table.entrances.length; other++) {
+      if (other != entrance && table.distances[entrance][other] > 0) {
+        targets.add(this.nodeOf[table.entrances[other]]);
+        weights.add(table.distances[entrance][other]);
+      }
+    }
+    for (int direction = 0; direction < DungeonTopology.DIRECTIONS; direction++) {
+      int next = this.topology.neighbour(index, direction);
+      if (next >= 0 && this.clusterOf(next) != this.clusterOf(index)) {
+        targets.add(this.nodeOf[next]);
+        weights.add(1);
+      }
+    }
+    this.edges[node] = targets.stream().mapToInt(Integer::intValue).toArray();
+    this.costs[node] = weights.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  // Entrances of a cluster and the distances between them inside the cluster, -1 if unreachable
+  private static final class ClusterTable {
+    private final int[] entrances;
+    private final int[][] distances;
+
+    private ClusterTable(int[] entrances, int[][] distances) {
+      this.entrances = entrances;
+      this.distances = distances;
+    }
+  }
+
+  // One shortest path query. The start and goal are joined to the entrances of their clusters,
+  // and the entrance graph is searched with A* until no shorter path can be found. Entries in the
+  // queue are ordered by the distance so far plus the grid distance left to the goal.
+  private final class Query {
+    private final int source;
+    private final int target;
+    private final int[] sourceParents;
+    private final int[] targetParents;
+    private final int[] nodeParents;
+    private int length;
+    private int lastNode;
+
+    private Query(int source, int target) {
+      this.source = source;
+      this.target = target;
+      int clusterCells = clusterSize * clusterSize;
+      int[] sourceDistances = new int[clusterCells];
+      int[] targetDistances = new int[clusterCells];
+      this.sourceParents = new int[clusterCells];
+      this.targetParents = new int[clusterCells];
+      clusterSearch(source, sourceDistances, this.sourceParents);
+      clusterSearch(target, targetDistances, this.targetParents);
+      this.nodeParents = new int[entrances.length];
+      this.length = UNREACHED;
+      this.lastNode = -1;
+
+      int sourceCluster = clusterOf(source);
+      int targetCluster = clusterOf(target);
+      if (sourceCluster == targetCluster && sourceDistances[localIndex(target)] >= 0) {
+        this.length = sourceDistances[localIndex(target)];
+      }
+
+      int[] nodeDistances = new int[entrances.length];
+      Arrays.fill(nodeDistances, UNREACHED);
+      Arrays.fill(this.nodeParents, -1);
+      PriorityQueue<Long> queue = new PriorityQueue<>();
+      for (int node : clusterNodes[sourceCluster]) {
+        int distance = sourceDistances[localIndex(entrances[node])];
+        if (distance >= 0) {
+          nodeDistances[node] = distance;
+          queue.add(((long) (distance + gridDistance(entrances[node], target)) << 32) | node);
+        }
+      }
+      while (!queue.isEmpty()) {
+        long entry = queue.poll();
+        int estimate = (int) (entry >>> 32);
+        int node = (int) entry;
+        int distance = estimate - gridDistance(entrances[node], target);
+        if (distance > nodeDistances[node]) {
+          continue;
+        }
+        if (estimate >= this.length) {
+          break;
+        }
+        if (clusterOf(entrances[node]) == targetCluster) {
+          int remaining = targetDistances[localIndex(entrances[node])];
+          if (remaining >= 0 && distance + remaining < this.length) {
+            this.length = distance + remaining;
+            this.lastNode = node;
+          }
+        }
+        for (int edge = 0; edge < edges[node].length; edge++) {
+          int next = edges[node][edge];
+          int nextDistance = distance + costs[node][edge];
+          if (nextDistance < nodeDistances[next]) {
+            nodeDistances[next] = nextDistance;
+            this.nodeParents[next] = node;
+            queue.add(((long) (nextDistance + gridDistance(entrances[next], target)) << 32)
+                    | next);
+          }
+        }
+      }
+    }
+
+    // Expands the path found into every location on it, from the source to the target
+    private List<Integer> locations() {
+      List<Integer> path = new ArrayList<>();
+      if (this.lastNode < 0) {
+        this.walkBack(path, this.sourceParents, this.target, this.source);
+        return path;
+      }
+      List<Integer> nodes = new ArrayList<>();
+      for (int node = this.lastNode; node >= 0; node = this.nodeParents[node]) {
+        nodes.add(node);
+      }
+      Collections.reverse(nodes);
+
+      this.walkBack(path, this.sourceParents, entrances[nodes.get(0)], this.source);
+      int[] local = new int[clusterSize * clusterSize];
+      int[] parents = new int[clusterSize * clusterSize];
+      for (int step = 1; step < nodes.size(); step++) {
+        int from = entrances[nodes.get(step - 1)];
+        int to = entrances[nodes.get(step)];
+        if (clusterOf(from) != clusterOf(to)) {
+          path.add(to);
+          continue;
+        }
+        clusterSearch(from, local, parents);
+        path.remove(path.size() - 1);
+        this.walkBack(path, parents, to, from);
+      }
+      for (int index = this.targetParents[localIndex(entrances[this.lastNode])]; index >= 0;
+           index = this.targetParents[localIndex(index)]) {
+        path.add(index);
+      }
+      return path;
+    }
+
+    // Appends the locations from the root of a cluster search to a location, in that order
+    private void walkBack(List<Integer> path, int[] parents, int from, int root) {
+      List<Integer> reversed = new ArrayList<>();
+      for (int index = from; index != root; index = parents[localIndex(index)]) {
+        reversed.add(index);
+      }
+      reversed.add(root);
+      Collections.reverse(reversed);
+      path.addAll(reversed);
+    }
+  }
+}
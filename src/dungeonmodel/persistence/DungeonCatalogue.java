@@ -0,0 +1,422 @@
+package dungeonmodel.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import dungeonmodel.coordinates.CaveCoordinates;
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.CellStore;
+import dungeonmodel.dungeon.Dungeon;
+import dungeonmodel.dungeon.DungeonSettings;
+import dungeonmodel.dungeon.DungeonTopology;
+import dungeonmodel.dungeon.OffHeapDungeon;
+import dungeonmodel.path.BreadthFirstSearch;
+
+/**
+ * Catalogue of dungeons generated ahead of time, kept in a single file and looked up by their
+ * settings and difficulty instead of being generated when a game starts. The difficulty of a
+ * dungeon is the length of the shortest path from its start cave to its end cave.
+ * The file starts with a header pointing at an index at its end. The dungeons of each settings
+ * are stored one after the other in the order they were generated, each as its start and end
+ * caves followed by its locations in the cell layout of {@link OffHeapDungeon}, so each can be
+ * written as soon as it is generated. The index lists every settings with the offset of its first
+ * dungeon, then the difficulties of its dungeons in increasing order and the number of the record
+ * holding each.
+ * An open catalogue maps the whole file read only and keeps only the index on the heap. Opening a
+ * dungeon copies its locations from the mapping into direct memory, so dungeons opened from the
+ * catalogue can be played and reset without touching the file or one another. As the file is
+ * mapped at once, a catalogue is never written larger than {@link Integer#MAX_VALUE} bytes.
+ */
+public final class DungeonCatalogue implements Closeable {
+
+  /**
+   * Version of the format written by this class.
+   */
+  public static final int VERSION = 2;
+
+  private static final int MAGIC = 0x54414344;
+  private static final int HEADER_BYTES = 24;
+  private static final int RECORD_HEADER_BYTES = 16;
+  private static final int INDEX_ENTRY_BYTES = 40;
+  private static final int ALIGNMENT = 8;
+
+  private final FileChannel channel;
+  private final MappedByteBuffer mapping;
+  private final Map<DungeonSettings, Entry> entries;
+
+  // Opened only through open
+  private DungeonCatalogue(FileChannel channel, MappedByteBuffer mapping,
+                           Map<DungeonSettings, Entry> entries) {
+    this.channel = channel;
+    this.mapping = mapping;
+    this.entries = entries;
+  }
+
+  /**
+   * Generates dungeons for every given settings and writes them to a new catalogue file,
+   * replacing the file if it exists. The dungeons of one settings are generated in parallel, and
+   * each is written to the file as soon as it is generated, so only the dungeons being generated
+   * and the index are held in memory.
+   *
+   * @param file               file to write the catalogue to
+   * @param settings           settings to generate dungeons for, each listed once
+   * @param dungeonsPerSetting number of dungeons to generate for each settings
+   * @throws IllegalArgumentException if any of the given arguments are invalid, dungeons cannot
+   *                                  be generated with some settings, or the catalogue would be
+   *                                  too large to map
+   * @throws IOException              if the file cannot be written
+   */
+  public static void build(Path file, List<DungeonSettings> settings, int dungeonsPerSetting)
+          throws IllegalArgumentException, IOException {
+    if (file == null || settings == null || settings.isEmpty() || settings.contains(null)) {
+      throw new IllegalArgumentException("File and settings cannot be null or empty");
+    }
+    if (dungeonsPerSetting <= 0) {
+      throw new IllegalArgumentException("Number of dungeons must always be positive");
+    }
+    Set<DungeonSettings> distinct = new LinkedHashSet<>(settings);
+    if (distinct.size() != settings.size()) {
+      throw new IllegalArgumentException("Settings cannot be listed twice");
+    }
+
+    long indexBytes = distinct.size() * (INDEX_ENTRY_BYTES
+            + 2 * align((long) dungeonsPerSetting * Integer.BYTES));
+    long fileBytes = HEADER_BYTES + indexBytes;
+    for (DungeonSettings setting : distinct) {
+      fileBytes += dungeonsPerSetting * recordBytes(setting);
+    }
+    if (fileBytes > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Catalogue would be too large to map");
+    }
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      long position = HEADER_BYTES;
+      ByteBuffer index = ByteBuffer.allocate((int) indexBytes).order(ByteOrder.LITTLE_ENDIAN);
+      for (DungeonSettings setting : distinct) {
+        long[] records = writeRecords(channel, setting, dungeonsPerSetting, position);
+        putSettings(index, setting, dungeonsPerSetting, position);
+        for (long record : records) {
+          index.putInt((int) (record >> Integer.SIZE));
+        }
+        index.position((int) align(index.position()));
+        for (long record : records) {
+          index.putInt((int) record);
+        }
+        index.position((int) align(index.position()));
+        position += dungeonsPerSetting * recordBytes(setting);
+      }
+
+      index.flip();
+      writeFully(channel, index, position);
+      ByteBuffer header = ByteBuffer.allocateDirect(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(MAGIC).putInt(VERSION).putInt(distinct.size()).putInt(0).putLong(position)
+              .flip();
+      writeFully(channel, header, 0);
+    }
+  }
+
+  // Generates the dungeons of one settings in parallel, writing each to the next free record
+  // from the given position as soon as it is generated and then releasing its cells. Returns
+  // the difficulty and number of every record, packed in the high and low halves of a long and
+  // sorted by difficulty
+  private static long[] writeRecords(FileChannel channel, DungeonSettings settings, int count,
+                                     long firstRecord) throws IOException {
+    long recordBytes = recordBytes(settings);
+    long[] records = new long[count];
+    AtomicInteger nextRecord = new AtomicInteger();
+    try {
+      IntStream.range(0, count).parallel().forEach(unused -> {
+        Generated dungeon = new Generated(settings);
+        int record = nextRecord.getAndIncrement();
+        long position = firstRecord + record * recordBytes;
+        try (CellStore cells = dungeon.cells) {
+          ByteBuffer caves = ByteBuffer.allocateDirect(RECORD_HEADER_BYTES)
+                  .order(ByteOrder.LITTLE_ENDIAN);
+          caves.putInt(dungeon.start.getXCoordinates()).putInt(dungeon.start.getYCoordinates())
+                  .putInt(dungeon.end.getXCoordinates()).putInt(dungeon.end.getYCoordinates())
+                  .flip();
+          writeFully(channel, caves, position);
+          cells.writeTo(channel, position + RECORD_HEADER_BYTES);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        records[record] = (long) dungeon.difficulty << Integer.SIZE | record;
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    Arrays.sort(records);
+    return records;
+  }
+
+  /**
+   * Opens a catalogue file, mapping it read only. The catalogue must be closed once no more
+   * dungeons are opened from it.
+   *
+   * @param file catalogue file
+   * @return open catalogue
+   * @throws IllegalArgumentException if the file is null, is not a catalogue, was written in an
+   *                                  unsupported version, or is too large to map at once
+   * @throws IOException              if the file cannot be read or mapped
+   */
+  public static DungeonCatalogue open(Path file) throws IllegalArgumentException, IOException {
+    if (file == null) {
+      throw new IllegalArgumentException("File cannot be null");
+    }
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("File is not a catalogue that can be mapped");
+      }
+      MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      mapping.order(ByteOrder.LITTLE_ENDIAN);
+      if (mapping.getInt(0) != MAGIC) {
+        throw new IllegalArgumentException("File is not a catalogue");
+      }
+      if (mapping.getInt(4) != VERSION) {
+        throw new IllegalArgumentException("Unsupported catalogue version " + mapping.getInt(4));
+      }
+      return new DungeonCatalogue(channel, mapping, readIndex(mapping));
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Get every settings with dungeons in the catalogue.
+   *
+   * @return settings in the catalogue
+   */
+  public Set<DungeonSettings> getSettings() {
+    return new LinkedHashSet<>(this.entries.keySet());
+  }
+
+  /**
+   * Check if the catalogue has dungeons of the given settings.
+   *
+   * @param settings settings to look up
+   * @return true if there are dungeons of the settings
+   */
+  public boolean contains(DungeonSettings settings) {
+    return this.entries.containsKey(settings);
+  }
+
+  /**
+   * Get the number of dungeons of the given settings with a difficulty in the given range.
+   *
+   * @param settings          settings to look up
+   * @param minimumDifficulty smallest difficulty, inclusive
+   * @param maximumDifficulty largest difficulty, inclusive
+   * @return number of matching dungeons, zero if the settings are not in the catalogue
+   */
+  public int count(DungeonSettings settings, int minimumDifficulty, int maximumDifficulty) {
+    Entry entry = this.entries.get(settings);
+    if (entry == null || minimumDifficulty > maximumDifficulty) {
+      return 0;
+    }
+    return entry.firstAbove(maximumDifficulty) - entry.firstAtLeast(minimumDifficulty);
+  }
+
+  /**
+   * Opens a dungeon of the given settings picked at random.
+   *
+   * @param settings settings of the dungeon
+   * @param random   source of the random pick
+   * @return dungeon from the catalogue, or null if the settings are not in the catalogue
+   * @throws IllegalArgumentException if the random source is null
+   */
+  public OffHeapDungeon open(DungeonSettings settings, Random random)
+          throws IllegalArgumentException {
+    return this.open(settings, 0, Integer.MAX_VALUE, random);
+  }
+
+  /**
+   * Opens a dungeon of the given settings with a difficulty in the given range, picked at random
+   * among the matching dungeons. Finding the range takes two binary searches over the index.
+   *
+   * @param settings          settings of the dungeon
+   * @param minimumDifficulty smallest difficulty, inclusive
+   * @param maximumDifficulty largest difficulty, inclusive
+   * @param random            source of the random pick
+   * @return dungeon from the catalogue, or null if no dungeon matches
+   * @throws IllegalArgumentException if the random source is null
+   */
+  public OffHeapDungeon open(DungeonSettings settings, int minimumDifficulty,
+                             int maximumDifficulty, Random random)
+          throws IllegalArgumentException {
+    if (random == null) {
+      throw new IllegalArgumentException("Random source cannot be null");
+    }
+    int matching = this.count(settings, minimumDifficulty, maximumDifficulty);
+    if (matching == 0) {
+      return null;
+    }
+    Entry entry = this.entries.get(settings);
+    int record = entry.records[entry.firstAtLeast(minimumDifficulty) + random.nextInt(matching)];
+    long offset = entry.firstRecord + record * recordBytes(settings);
+    ByteBuffer source = this.mapping.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    Coordinates start = new CaveCoordinates(source.getInt((int) offset),
+            source.getInt((int) offset + 4));
+    Coordinates end = new CaveCoordinates(source.getInt((int) offset + 8),
+            source.getInt((int) offset + 12));
+    long cells = (long) settings.getRows() * settings.getColumns();
+    source.position((int) offset + RECORD_HEADER_BYTES);
+    source.limit((int) (offset + RECORD_HEADER_BYTES + cells * CellStore.CELL_BYTES));
+    CellStore store = CellStore.allocate(cells);
+    store.readFrom(source);
+    return new OffHeapDungeon(store, settings.getRows(), settings.getColumns(), start, end,
+            settings.getTreasureAndArrowPercent(), settings.getNumberOfMonsters());
+  }
+
+  /**
+   * Closes the catalogue file. Dungeons already opened can still be played.
+   *
+   * @throws IOException if the file cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    this.channel.close();
+  }
+
+  private static void putSettings(ByteBuffer index, DungeonSettings settings, int count,
+                                  long firstRecord) {
+    index.putInt(settings.getRows()).putInt(settings.getColumns())
+            .putInt(settings.getInterconnectivity()).putInt(settings.isWrapping() ? 1 : 0)
+            .putInt(settings.getTreasureAndArrowPercent()).putInt(settings.getNumberOfMonsters())
+            .putInt(count).putInt(0).putLong(firstRecord);
+  }
+
+  // Reads the index, checking every count and offset in it lies inside the file
+  private static Map<DungeonSettings, Entry> readIndex(ByteBuffer mapping)
+          throws IllegalArgumentException {
+    int settingsCount = mapping.getInt(8);
+    long indexOffset = mapping.getLong(16);
+    if (settingsCount < 0 || indexOffset < HEADER_BYTES || indexOffset > mapping.limit()) {
+      throw new IllegalArgumentException("Catalogue is damaged");
+    }
+    ByteBuffer index = mapping.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    index.position((int) indexOffset);
+    Map<DungeonSettings, Entry> entries = new HashMap<>();
+    for (int entry = 0; entry < settingsCount; entry++) {
+      if (index.remaining() < INDEX_ENTRY_BYTES) {
+        throw new IllegalArgumentException("Catalogue is damaged");
+      }
+      DungeonSettings settings = new DungeonSettings(index.getInt(), index.getInt(),
+              index.getInt(), index.getInt() != 0, index.getInt(), index.getInt());
+      int count = index.getInt();
+      index.getInt();
+      long firstRecord = index.getLong();
+      long listBytes = align((long) count * Integer.BYTES);
+      if (count < 0 || 2 * listBytes > index.remaining() || firstRecord < HEADER_BYTES
+              || firstRecord + count * recordBytes(settings) > indexOffset) {
+        throw new IllegalArgumentException("Catalogue is damaged");
+      }
+      int[] difficulties = new int[count];
+      index.asIntBuffer().get(difficulties);
+      index.position((int) (index.position() + listBytes));
+      int[] records = new int[count];
+      index.asIntBuffer().get(records);
+      index.position((int) (index.position() + listBytes));
+      for (int record = 0; record < count; record++) {
+        if (records[record] < 0 || records[record] >= count
+                || record > 0 && difficulties[record - 1] > difficulties[record]) {
+          throw new IllegalArgumentException("Catalogue is damaged");
+        }
+      }
+      entries.put(settings, new Entry(firstRecord, difficulties, records));
+    }
+    return entries;
+  }
+
+  // Bytes taken by one dungeon of the given settings, keeping every record aligned
+  private static long recordBytes(DungeonSettings settings) {
+    return align(RECORD_HEADER_BYTES
+            + (long) settings.getRows() * settings.getColumns() * CellStore.CELL_BYTES);
+  }
+
+  private static long align(long bytes) {
+    return (bytes + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+          throws IOException {
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+  }
+
+  // Index of the dungeons of one settings, with the number of the record holding each difficulty
+  private static final class Entry {
+
+    private final long firstRecord;
+    private final int[] difficulties;
+    private final int[] records;
+
+    private Entry(long firstRecord, int[] difficulties, int[] records) {
+      this.firstRecord = firstRecord;
+      this.difficulties = difficulties;
+      this.records = records;
+    }
+
+    // Position of the first dungeon with a difficulty of at least the given one
+    private int firstAtLeast(int difficulty) {
+      return difficulty == Integer.MIN_VALUE ? 0 : this.firstAbove(difficulty - 1);
+    }
+
+    // Number of dungeons with a difficulty at most the given one, which is also the position of
+    // the first dungeon above it
+    private int firstAbove(int difficulty) {
+      int low = 0;
+      int high = this.difficulties.length;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (this.difficulties[middle] <= difficulty) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
+    }
+  }
+
+  // Dungeon generated for the catalogue, kept as compact cells until it is written
+  private static final class Generated {
+
+    private final Coordinates start;
+    private final Coordinates end;
+    private final CellStore cells;
+    private final int difficulty;
+
+    private Generated(DungeonSettings settings) {
+      Dungeon dungeon = settings.createDungeon();
+      this.start = dungeon.getStartCave();
+      this.end = dungeon.getEndCave();
+      this.cells = OffHeapDungeon.copyOf(dungeon,
+              CellStore.allocate((long) settings.getRows() * settings.getColumns()),
+              settings.getTreasureAndArrowPercent(), settings.getNumberOfMonsters()).getStore();
+      DungeonTopology topology = DungeonTopology.of(dungeon);
+      int[] distances = new int[topology.size()];
+      BreadthFirstSearch.search(topology, topology.indexOf(this.start), distances, null);
+      this.difficulty = distances[topology.indexOf(this.end)];
+    }
+  }
+}
@@ -0,0 +1,221 @@
+package dungeonmodel.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import dungeonmodel.coordinates.CaveCoordinates;
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.CellStore;
+import dungeonmodel.dungeon.Dungeon;
+import dungeonmodel.dungeon.OffHeapDungeon;
+import dungeonmodel.player.DungeonPlayer;
+import dungeonmodel.player.Player;
+import dungeonmodel.treasure.Treasure;
+import dungeonmodel.treasure.TreasureFactory;
+
+/**
+ * Saves games to files and loads them back, in a versioned little endian binary format.
+ * A file starts with a fixed header holding the format version, the dimensions, the start and end
+ * caves and the settings used to reset the dungeon, followed by the state of the player. The
+ * locations follow at the next multiple of eight bytes, four bytes each, row by row, in the cell
+ * layout of {@link OffHeapDungeon}: the paths out of a location as its lowest four bits, then its
+ * arrow and monster, the arrows which hit the monster, and one bit per treasure.
+ * Saving writes the cells straight from direct memory to a file channel. Loading maps the cells
+ * of the file copy on write, so the dungeon is played over the file without reading it into
+ * memory or generating it again, and the saved game is left as it was.
+ * A game is saved to a new file next to the one it replaces, which is moved over it once written,
+ * so a loaded game can be saved back to the file it is still mapped from.
+ */
+public final class GameFile {
+
+  /**
+   * Version of the format written by this class.
+   */
+  public static final int VERSION = 1;
+
+  private static final int MAGIC = 0x4E474E44;
+  private static final int HEADER_BYTES = 48;
+  private static final int CELL_ALIGNMENT = 8;
+  private static final List<Treasure> ALL_TREASURE = TreasureFactory.getAllPossibleTreasure();
+
+  private GameFile() {
+    // only static helpers
+  }
+
+  /**
+   * Saves a dungeon and the player in it to a file, replacing the file if it exists. The file is
+   * only replaced once the whole game has been written, so a failed save leaves it as it was.
+   *
+   * @param file                    file to save to
+   * @param dungeon                 dungeon to save
+   * @param player                  player in the dungeon
+   * @param treasureAndArrowPercent percentage of caves with treasure and arrows after resetting
+   *                                the loaded dungeon
+   * @param numberOfMonsters        number of monsters after resetting the loaded dungeon
+   * @throws IllegalArgumentException if any of the given arguments are null or invalid
+   * @throws IOException              if the file cannot be written
+   */
+  public static void save(Path file, Dungeon dungeon, Player player, int treasureAndArrowPercent,
+                          int numberOfMonsters) throws IllegalArgumentException, IOException {
+    if (file == null || dungeon == null || player == null) {
+      throw new IllegalArgumentException("File, dungeon and player cannot be null");
+    }
+    if (dungeon instanceof OffHeapDungeon && !((OffHeapDungeon) dungeon).hasLazyContent()) {
+      write(file, dungeon, ((OffHeapDungeon) dungeon).getStore(), player,
+              treasureAndArrowPercent, numberOfMonsters);
+      return;
+    }
+    int rows = dungeon.getDimensions().get(0);
+    int columns = dungeon.getDimensions().get(1);
+    try (CellStore copy = CellStore.allocate((long) rows * columns)) {
+      OffHeapDungeon.copyOf(dungeon, copy, treasureAndArrowPercent, numberOfMonsters);
+      write(file, dungeon, copy, player, treasureAndArrowPercent, numberOfMonsters);
+    }
+  }
+
+  // Writes the game to a new file in the same directory and moves it over the given file
+  private static void write(Path file, Dungeon dungeon, CellStore cells, Player player,
+                            int treasureAndArrowPercent, int numberOfMonsters)
+          throws IOException {
+    int rows = dungeon.getDimensions().get(0);
+    int columns = dungeon.getDimensions().get(1);
+
+    byte[] name = player.getName().getBytes(StandardCharsets.UTF_8);
+    List<Treasure> treasure = player.getCurrentTreasure();
+    int playerBytes = Integer.BYTES * 5 + name.length + 2 + treasure.size();
+    long cellsOffset = align(HEADER_BYTES + playerBytes);
+    ByteBuffer header = ByteBuffer.allocateDirect((int) cellsOffset)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(columns);
+    putCoordinates(header, dungeon.getStartCave());
+    putCoordinates(header, dungeon.getEndCave());
+    header.putInt(treasureAndArrowPercent).putInt(numberOfMonsters).putLong(cellsOffset);
+
+    header.putInt(name.length).put(name);
+    putCoordinates(header, player.getCurrentCoordinates());
+    header.putInt(player.getArrowCount());
+    header.put((byte) (player.isPlayerAlive() ? 1 : 0));
+    header.put((byte) (player.hasPlayerWon() ? 1 : 0));
+    header.putInt(treasure.size());
+    for (Treasure item : treasure) {
+      header.put((byte) ALL_TREASURE.indexOf(item));
+    }
+    header.clear();
+
+    Path directory = file.toAbsolutePath().getParent();
+    Path written = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(written, StandardOpenOption.WRITE)) {
+        while (header.hasRemaining()) {
+          channel.write(header);
+        }
+        cells.writeTo(channel, cellsOffset);
+      }
+      Files.move(written, file, StandardCopyOption.REPLACE_EXISTING,
+              StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(written);
+    }
+  }
+
+  /**
+   * Loads a saved game, mapping its locations copy on write. The game must be closed once it is
+   * no longer played.
+   *
+   * @param file file to load from
+   * @return loaded dungeon and player
+   * @throws IllegalArgumentException if the file is null, is not a saved game, or was saved in an
+   *                                  unsupported version
+   * @throws IOException              if the file cannot be read or mapped
+   */
+  public static LoadedGame load(Path file) throws IllegalArgumentException, IOException {
+    if (file == null) {
+      throw new IllegalArgumentException("File cannot be null");
+    }
+    ByteBuffer header = ByteBuffer.allocateDirect(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    ByteBuffer playerState;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      readFully(channel, header, 0);
+      if (header.getInt(0) != MAGIC) {
+        throw new IllegalArgumentException("File is not a saved game");
+      }
+      if (header.getInt(4) != VERSION) {
+        throw new IllegalArgumentException("Unsupported save version " + header.getInt(4));
+      }
+      long cellsOffset = header.getLong(40);
+      if (cellsOffset < HEADER_BYTES || cellsOffset > channel.size()) {
+        throw new IllegalArgumentException("Saved game is damaged");
+      }
+      playerState = ByteBuffer.allocateDirect((int) cellsOffset - HEADER_BYTES)
+              .order(ByteOrder.LITTLE_ENDIAN);
+      readFully(channel, playerState, HEADER_BYTES);
+    }
+
+    int rows = header.getInt(8);
+    int columns = header.getInt(12);
+    if (rows <= 0 || columns <= 0) {
+      throw new IllegalArgumentException("Saved game is damaged");
+    }
+    CellStore cells = CellStore.map(file, header.getLong(40), (long) rows * columns, true);
+    try {
+      OffHeapDungeon dungeon = new OffHeapDungeon(cells, rows, columns,
+              new CaveCoordinates(header.getInt(16), header.getInt(20)),
+              new CaveCoordinates(header.getInt(24), header.getInt(28)),
+              header.getInt(32), header.getInt(36));
+      return new LoadedGame(dungeon, readPlayer(playerState, dungeon));
+    } catch (RuntimeException e) {
+      cells.close();
+      throw e;
+    }
+  }
+
+  // Reads the player section written after the header
+  private static Player readPlayer(ByteBuffer state, Dungeon dungeon)
+          throws IllegalArgumentException {
+    byte[] name = new byte[state.getInt()];
+    state.get(name);
+    Coordinates coordinates = new CaveCoordinates(state.getInt(), state.getInt());
+    int arrows = state.getInt();
+    boolean isAlive = state.get() != 0;
+    boolean hasWon = state.get() != 0;
+    List<Treasure> treasure = new ArrayList<>();
+    for (int count = state.getInt(); count > 0; count--) {
+      int kind = state.get();
+      if (kind < 0 || kind >= ALL_TREASURE.size()) {
+        throw new IllegalArgumentException("Saved game is damaged");
+      }
+      treasure.add(ALL_TREASURE.get(kind));
+    }
+    return new DungeonPlayer(new String(name, StandardCharsets.UTF_8), dungeon, coordinates,
+            treasure, arrows, isAlive, hasWon);
+  }
+
+  private static void putCoordinates(ByteBuffer buffer, Coordinates coordinates) {
+    buffer.putInt(coordinates.getXCoordinates()).putInt(coordinates.getYCoordinates());
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+          throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position);
+      if (read < 0) {
+        throw new IllegalArgumentException("Saved game is too short");
+      }
+      position += read;
+    }
+    buffer.flip();
+  }
+
+  private static long align(long bytes) {
+    return (bytes + CELL_ALIGNMENT - 1) / CELL_ALIGNMENT * CELL_ALIGNMENT;
+  }
+}
@@ -0,0 +1,52 @@
+package dungeonmodel.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import dungeonmodel.dungeon.OffHeapDungeon;
+import dungeonmodel.player.Player;
+
+/**
+ * Game loaded from a file by {@link GameFile}, holding the dungeon mapped over the file and the
+ * player in it.
+ */
+public final class LoadedGame implements Closeable {
+
+  private final OffHeapDungeon dungeon;
+  private final Player player;
+
+  // Created only by GameFile
+  LoadedGame(OffHeapDungeon dungeon, Player player) {
+    this.dungeon = dungeon;
+    this.player = player;
+  }
+
+  /**
+   * Get the loaded dungeon.
+   *
+   * @return dungeon over the saved game
+   */
+  public OffHeapDungeon getDungeon() {
+    return this.dungeon;
+  }
+
+  /**
+   * Get the loaded player, who is in the loaded dungeon.
+   *
+   * @return player of the saved game
+   */
+  public Player getPlayer() {
+    return this.player;
+  }
+
+  /**
+   * Unmaps the saved game. Changes made while playing are dropped, and the file is left as it was
+   * saved.
+   *
+   * @throws IOException if the file cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    this.dungeon.getStore().close();
+  }
+}
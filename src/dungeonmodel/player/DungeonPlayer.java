@@ -7,6 +7,7 @@ import java.util.Random;
 import dungeonmodel.coordinates.Coordinates;
 import dungeonmodel.dungeon.Dungeon;
 import dungeonmodel.dungeon.MonsterSmell;
+import dungeonmodel.dungeon.ZobristKeys;
 import dungeonmodel.treasure.Treasure;
 import dungeonmodel.weapon.Arrow;
 import dungeonmodel.weapon.CrookedArrow;
@@ -25,6 +26,9 @@ public class DungeonPlayer implements Player {
   private Coordinates currentCoordinates;
   private boolean isAlive;
   private boolean hasWon;
+  private int[] treasureCounts;
+  private long stateHash;
+  private final Random random;
 
   /**
    * Creates a player with the provided name.
@@ -33,23 +37,74 @@ public class DungeonPlayer implements Player {
    * @throws IllegalArgumentException if provided name is null or empty
    */
   public DungeonPlayer(String name, Dungeon dungeon) throws IllegalArgumentException {
+    this(name, dungeon, dungeon == null ? null : dungeon.getStartCave(), new ArrayList<>(),
+            STARTING_ARROWS, true, false);
+  }
+
+  /**
+   * Creates a player with the provided name, whose chances of escaping injured monsters are drawn
+   * from the given source, so the same choices in the same dungeon always end the same way.
+   *
+   * @param name    name of the player
+   * @param dungeon dungeon the player is in
+   * @param random  source of the escape chances
+   * @throws IllegalArgumentException if any of the given arguments are null or invalid
+   */
+  public DungeonPlayer(String name, Dungeon dungeon, Random random)
+          throws IllegalArgumentException {
+    this(name, dungeon, dungeon == null ? null : dungeon.getStartCave(), new ArrayList<>(),
+            STARTING_ARROWS, true, false, random);
+  }
+
+  /**
+   * Creates a player in the given state, used to copy or restore a player.
+   *
+   * @param name        name of the player
+   * @param dungeon     dungeon the player is in
+   * @param coordinates current location of the player
+   * @param treasure    treasure held by the player
+   * @param arrowCount  number of arrows held by the player
+   * @param isAlive     true if the player is alive
+   * @param hasWon      true if the player has won
+   * @throws IllegalArgumentException if any of the given arguments are null or invalid
+   */
+  public DungeonPlayer(String name, Dungeon dungeon, Coordinates coordinates,
+                       List<Treasure> treasure, int arrowCount, boolean isAlive, boolean hasWon)
+          throws IllegalArgumentException {
+    this(name, dungeon, coordinates, treasure, arrowCount, isAlive, hasWon, new Random());
+  }
+
+  private DungeonPlayer(String name, Dungeon dungeon, Coordinates coordinates,
+                        List<Treasure> treasure, int arrowCount, boolean isAlive, boolean hasWon,
+                        Random random) throws IllegalArgumentException {
+    if (random == null) {
+      throw new IllegalArgumentException("Random source cannot be null");
+    }
     if (name == null || name.trim().equals("")) {
       throw new IllegalArgumentException("Player name cannot be blank or null");
     }
+    if (dungeon == null) {
+      throw new IllegalArgumentException("Dungeon cannot be null");
+    }
+    if (coordinates == null || treasure == null) {
+      throw new IllegalArgumentException("Coordinates and treasure cannot be null");
+    }
+    if (arrowCount < 0) {
+      throw new IllegalArgumentException("Arrow count cannot be negative");
+    }
     this.name = name;
-    this.currentCoordinates = null;
-    this.currentTreasure = new ArrayList<>();
+    this.currentTreasure = new ArrayList<>(treasure);
     this.crookedArrows = new ArrayList<>();
 
-    for (int count = 0; count < STARTING_ARROWS; count++) {
+    for (int count = 0; count < arrowCount; count++) {
       this.crookedArrows.add(new CrookedArrow());
     }
-    this.isAlive = true;
-    if (dungeon == null) {
-      throw new IllegalArgumentException("Dungeon cannot be null");
-    }
+    this.isAlive = isAlive;
+    this.hasWon = hasWon;
     this.currentDungeon = dungeon;
-    this.currentCoordinates = dungeon.getStartCave();
+    this.currentCoordinates = coordinates;
+    this.random = random;
+    this.computeStateHash();
   }
 
   @Override
@@ -70,19 +125,26 @@ public class DungeonPlayer implements Player {
     }
     this.throwExceptionIfPlayerDead();
     if (this.currentDungeon.getAdjacent(this.currentCoordinates).contains(coordinates)) {
+      this.hashPosition();
       this.currentCoordinates = coordinates;
+      this.hashPosition();
       if (currentDungeon.hasMonster(this.currentCoordinates)) {
         if (currentDungeon.monsterArrowCount(this.currentCoordinates) == 0) {
           this.isAlive = false;
         } else {
-          if (new Random().nextInt(2) == 1) {
+          if (this.random.nextInt(2) == 1) {
             this.isAlive = false;
           }
         }
+        if (!this.isAlive) {
+          this.stateHash ^= ZobristKeys.playerKey(ZobristKeys.ALIVE, 1);
+        }
       }
 
-      if (this.isAlive && this.currentCoordinates.equals(this.currentDungeon.getEndCave())) {
+      if (this.isAlive && !this.hasWon && this.currentDungeon.getStairsDown() == null
+              && this.currentCoordinates.equals(this.currentDungeon.getEndCave())) {
         this.hasWon = true;
+        this.stateHash ^= ZobristKeys.playerKey(ZobristKeys.WON, 1);
       }
 
       return true;
@@ -104,8 +166,12 @@ public class DungeonPlayer implements Player {
   public boolean pickUpTreasure() throws IllegalArgumentException {
     this.throwExceptionIfPlayerDead();
     if (!this.currentDungeon.viewTreasureInCave(this.currentCoordinates).isEmpty()) {
-      this.currentTreasure.addAll(this.currentDungeon.pickupTreasureInCave(
-              this.currentCoordinates));
+      List<Treasure> pickedUp = this.currentDungeon.pickupTreasureInCave(
+              this.currentCoordinates);
+      this.currentTreasure.addAll(pickedUp);
+      for (Treasure treasure : pickedUp) {
+        this.hashTreasure(treasure);
+      }
       return true;
     }
     return false;
@@ -126,7 +192,9 @@ public class DungeonPlayer implements Player {
     this.throwExceptionIfPlayerDead();
     Arrow arrow = this.currentDungeon.pickUpArrow(this.currentCoordinates);
     if (arrow != null) {
+      this.hashArrowCount();
       this.crookedArrows.add(arrow);
+      this.hashArrowCount();
       return true;
     }
     return false;
@@ -149,10 +217,18 @@ public class DungeonPlayer implements Player {
     }
     Arrow someArrow = this.crookedArrows.get(0);
     someArrow.shoot(distance, direction, this.currentCoordinates, this.currentDungeon);
+    this.hashArrowCount();
     this.crookedArrows.remove(0);
+    this.hashArrowCount();
     return someArrow.getCurrentLocation();
   }
 
+  @Override
+  public boolean takeStairs() throws IllegalArgumentException {
+    this.throwExceptionIfPlayerDead();
+    return this.currentDungeon.takeStairs(this.currentCoordinates);
+  }
+
   @Override
   public void resetPlayer() {
     this.currentTreasure = new ArrayList<>();
@@ -165,6 +241,7 @@ public class DungeonPlayer implements Player {
     this.hasWon = false;
     this.currentCoordinates = this.currentDungeon.getStartCave();
     this.currentDungeon.resetDungeon();
+    this.computeStateHash();
   }
 
   @Override
@@ -202,6 +279,51 @@ public class DungeonPlayer implements Player {
     return this.currentDungeon.getWest(this.currentCoordinates);
   }
 
+  @Override
+  public long getStateHash() {
+    return this.stateHash ^ this.currentDungeon.getStateHash();
+  }
+
+  // Computes the hash of the player's own state from scratch
+  private void computeStateHash() {
+    this.stateHash = 0;
+    this.treasureCounts = new int[ZobristKeys.ARROW];
+    this.hashPosition();
+    this.hashArrowCount();
+    if (this.isAlive) {
+      this.stateHash ^= ZobristKeys.playerKey(ZobristKeys.ALIVE, 1);
+    }
+    if (this.hasWon) {
+      this.stateHash ^= ZobristKeys.playerKey(ZobristKeys.WON, 1);
+    }
+    for (Treasure treasure : this.currentTreasure) {
+      this.hashTreasure(treasure);
+    }
+  }
+
+  // Adds or removes the player's location from the state hash
+  private void hashPosition() {
+    this.stateHash ^= ZobristKeys.cellKey(this.currentCoordinates.getXCoordinates(),
+            this.currentCoordinates.getYCoordinates(), ZobristKeys.PLAYER);
+  }
+
+  // Adds or removes the number of arrows held from the state hash
+  private void hashArrowCount() {
+    this.stateHash ^= ZobristKeys.playerKey(ZobristKeys.ARROWS_HELD, this.crookedArrows.size());
+  }
+
+  // Updates the state hash with one more treasure of the given kind being held
+  private void hashTreasure(Treasure treasure) {
+    int feature = ZobristKeys.treasureFeature(treasure);
+    if (this.treasureCounts[feature] > 0) {
+      this.stateHash ^= ZobristKeys.playerKey(ZobristKeys.HELD_TREASURE + feature,
+              this.treasureCounts[feature]);
+    }
+    this.treasureCounts[feature] += 1;
+    this.stateHash ^= ZobristKeys.playerKey(ZobristKeys.HELD_TREASURE + feature,
+            this.treasureCounts[feature]);
+  }
+
   // Private helper method to throw an exception if player is dead
   private void throwExceptionIfPlayerDead() throws IllegalArgumentException {
     if (!this.isAlive) {
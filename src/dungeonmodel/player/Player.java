@@ -40,6 +40,13 @@ public interface Player extends ReadOnlyPlayer {
    */
   Coordinates shootArrow(int distance, Coordinates direction);
 
+  /**
+   * Take the stairs at the current location to another floor, if there are any.
+   *
+   * @return true if the stairs were taken, false if there are none here
+   */
+  boolean takeStairs();
+
   /**
    * Resets the current player.
    * Removes all treasure/items picked up and changes settings to default settings.
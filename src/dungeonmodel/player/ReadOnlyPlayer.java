@@ -110,4 +110,12 @@ public interface ReadOnlyPlayer {
    * @return reachable coordinates to the west of the player, null if none exist
    */
   Coordinates getWest();
+
+  /**
+   * Returns a hash of the game state seen by this player, combining the player's location,
+   * inventory and status with the hash of the dungeon the player is in.
+   *
+   * @return 64 bit hash of the game state
+   */
+  long getStateHash();
 }
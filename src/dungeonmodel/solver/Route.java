@@ -0,0 +1,106 @@
+package dungeonmodel.solver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import dungeonmodel.coordinates.Coordinates;
+
+/**
+ * Result of a route search: the locations to walk through, the treasure caves visited on the way,
+ * the arrows needed to kill a monster guarding the end and whether the route was proven to be the
+ * shortest one.
+ */
+public final class Route {
+
+  private final List<Coordinates> path;
+  private final List<Coordinates> stops;
+  private final int arrowsForEnd;
+  private final boolean optimal;
+
+  /**
+   * Creates a route to an end cave with no live monster.
+   *
+   * @param path    every location on the route, starting with the location searched from
+   * @param stops   treasure caves visited, in the order they are visited
+   * @param optimal true if the search finished and the route is the shortest one
+   */
+  public Route(List<Coordinates> path, List<Coordinates> stops, boolean optimal) {
+    this(path, stops, 0, optimal);
+  }
+
+  /**
+   * Creates a route.
+   *
+   * @param path         every location on the route, starting with the location searched from
+   * @param stops        treasure caves visited, in the order they are visited
+   * @param arrowsForEnd arrows which must still hit the monster in the end cave before the last
+   *                     move, 0 if it holds no live monster
+   * @param optimal      true if the search finished and the route is the shortest one
+   * @throws IllegalArgumentException if path or stops are null or the arrows are negative
+   */
+  public Route(List<Coordinates> path, List<Coordinates> stops, int arrowsForEnd,
+               boolean optimal) throws IllegalArgumentException {
+    if (path == null || stops == null) {
+      throw new IllegalArgumentException("Path and stops cannot be null");
+    }
+    if (arrowsForEnd < 0) {
+      throw new IllegalArgumentException("Arrows cannot be negative");
+    }
+    this.path = Collections.unmodifiableList(new ArrayList<>(path));
+    this.stops = Collections.unmodifiableList(new ArrayList<>(stops));
+    this.arrowsForEnd = arrowsForEnd;
+    this.optimal = optimal;
+  }
+
+  /**
+   * Get every location on the route. Empty if no safe route exists.
+   *
+   * @return locations on the route
+   */
+  public List<Coordinates> getPath() {
+    return this.path;
+  }
+
+  /**
+   * Get the treasure caves visited, in the order they are visited.
+   *
+   * @return treasure caves on the route
+   */
+  public List<Coordinates> getStops() {
+    return this.stops;
+  }
+
+  /**
+   * Get the number of moves needed to walk the route.
+   *
+   * @return length of the route
+   */
+  public int getLength() {
+    return Math.max(0, this.path.size() - 1);
+  }
+
+  /**
+   * Get the number of arrows which must hit the monster in the end cave, shot from the location
+   * before it, so the last move of the route is safe. Zero if the end holds no live monster.
+   *
+   * @return arrows needed to clear the end cave
+   */
+  public int getArrowsForEnd() {
+    return this.arrowsForEnd;
+  }
+
+  /**
+   * Check if the route was proven to be the shortest, which is false if the time budget ran out.
+   *
+   * @return true if the route is optimal
+   */
+  public boolean isOptimal() {
+    return this.optimal;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Route of %d moves through %s", this.getLength(), this.stops);
+  }
+}
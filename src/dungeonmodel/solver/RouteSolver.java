@@ -0,0 +1,309 @@
+package dungeonmodel.solver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.DungeonTopology;
+import dungeonmodel.dungeon.ReadOnlyDungeon;
+import dungeonmodel.path.BreadthFirstSearch;
+import dungeonmodel.treasure.Treasure;
+
+/**
+ * Finds the shortest safe route from a location through the most valuable treasure caves to the
+ * end cave. Caves with a live monster are never walked through, except for the end cave which is
+ * where the route finishes; the route then counts the arrows which must kill that monster before
+ * the last move, so following it does not walk into the monster.
+ * Distances between the caves of interest are found by breadth first searches, and the order of
+ * visiting the treasure caves by a branch and bound search spread over a fork join pool. The
+ * search stops when the time budget runs out, returning the best route found until then.
+ */
+public class RouteSolver {
+
+  private static final int MAX_TREASURE_CAVES = 20;
+  private static final int SPLIT_DEPTH = 2;
+  private static final int MONSTER_HITS = 2;
+
+  private final int maxTreasureCaves;
+  private final long timeBudgetMillis;
+
+  /**
+   * Creates a route solver.
+   *
+   * @param maxTreasureCaves number of most valuable treasure caves the route visits, at most 20
+   * @param timeBudgetMillis time the search may take, in milliseconds
+   * @throws IllegalArgumentException if the number of caves or the budget is out of range
+   */
+  public RouteSolver(int maxTreasureCaves, long timeBudgetMillis)
+          throws IllegalArgumentException {
+    if (maxTreasureCaves < 0 || maxTreasureCaves > MAX_TREASURE_CAVES) {
+      throw new IllegalArgumentException("Number of treasure caves must be between 0 and 20");
+    }
+    if (timeBudgetMillis <= 0) {
+      throw new IllegalArgumentException("Time budget must be positive");
+    }
+    this.maxTreasureCaves = maxTreasureCaves;
+    this.timeBudgetMillis = timeBudgetMillis;
+  }
+
+  /**
+   * Finds a route from the given location to the end cave of the dungeon.
+   *
+   * @param dungeon dungeon to search
+   * @param from    location the route starts from
+   * @return route found, with an empty path if the end cannot be reached safely
+   * @throws IllegalArgumentException if dungeon or location are null
+   */
+  public Route solve(ReadOnlyDungeon dungeon, Coordinates from) throws IllegalArgumentException {
+    if (dungeon == null || from == null) {
+      throw new IllegalArgumentException("Dungeon and location cannot be null");
+    }
+    long deadline = System.nanoTime() + this.timeBudgetMillis * 1_000_000L;
+    DungeonTopology topology = DungeonTopology.of(dungeon);
+    int source = topology.indexOf(from);
+    int end = topology.indexOf(dungeon.getEndCave());
+    boolean[] blocked = new boolean[topology.size()];
+    for (int index = 0; index < topology.size(); index++) {
+      blocked[index] = index != source && dungeon.hasMonster(topology.coordinatesOf(index));
+    }
+
+    int[] sourceParents = new int[topology.size()];
+    int[] sourceDistances = new int[topology.size()];
+    BreadthFirstSearch.search(topology, source, blocked, end, sourceDistances, sourceParents);
+    if (sourceDistances[end] < 0) {
+      return new Route(Collections.emptyList(), Collections.emptyList(), true);
+    }
+
+    List<Integer> treasureCaves = this.selectTreasureCaves(dungeon, topology, source, end,
+            sourceDistances);
+    int stops = treasureCaves.size();
+    int[] points = new int[stops + 2];
+    points[0] = source;
+    for (int stop = 0; stop < stops; stop++) {
+      points[stop + 1] = treasureCaves.get(stop);
+    }
+    points[stops + 1] = end;
+
+    int[][] parents = new int[stops + 1][];
+    int[][] distances = new int[stops + 2][stops + 2];
+    parents[0] = sourceParents;
+    this.fillDistances(distances, 0, sourceDistances, points);
+    for (int point = 1; point <= stops; point++) {
+      int[] pointDistances = new int[topology.size()];
+      parents[point] = new int[topology.size()];
+      BreadthFirstSearch.search(topology, points[point], blocked, end, pointDistances,
+              parents[point]);
+      this.fillDistances(distances, point, pointDistances, points);
+    }
+
+    Search search = new Search(distances, stops, deadline);
+    ForkJoinPool.commonPool().invoke(search.new Branch(new int[stops], 0, 0, 0, 0));
+    int[] order = search.getBestOrder();
+
+    List<Coordinates> path = new ArrayList<>();
+    List<Coordinates> visited = new ArrayList<>();
+    path.add(topology.coordinatesOf(source));
+    int previous = 0;
+    for (int step = 0; step <= stops; step++) {
+      int next = step < stops ? order[step] : stops + 1;
+      this.appendPath(path, topology, parents[previous], points[previous], points[next]);
+      if (step < stops) {
+        visited.add(topology.coordinatesOf(points[next]));
+      }
+      previous = next;
+    }
+    return new Route(path, visited, this.arrowsToKill(dungeon, topology.coordinatesOf(end)),
+            !search.hasTimedOut());
+  }
+
+  // Number of arrows which must still hit a live monster at a location to kill it
+  private int arrowsToKill(ReadOnlyDungeon dungeon, Coordinates location) {
+    if (!dungeon.hasMonster(location)) {
+      return 0;
+    }
+    return Math.max(0, MONSTER_HITS - dungeon.monsterArrowCount(location));
+  }
+
+  // Picks the most valuable treasure caves that can be reached
+  private List<Integer> selectTreasureCaves(ReadOnlyDungeon dungeon, DungeonTopology topology,
+                                            int source, int end, int[] distances) {
+    List<Integer> caves = new ArrayList<>();
+    double[] values = new double[topology.size()];
+    for (int index = 0; index < topology.size(); index++) {
+      if (index == source || index == end || distances[index] < 0) {
+        continue;
+      }
+      for (Treasure treasure : dungeon.viewTreasureInCave(topology.coordinatesOf(index))) {
+        values[index] += treasure.getTreasureValue();
+      }
+      if (values[index] > 0) {
+        caves.add(index);
+      }
+    }
+    caves.sort(Comparator.comparingDouble((Integer index) -> -values[index])
+            .thenComparingInt(index -> index));
+    return new ArrayList<>(caves.subList(0, Math.min(this.maxTreasureCaves, caves.size())));
+  }
+
+  // Copies the distances from one point to every other point into the distance matrix
+  private void fillDistances(int[][] matrix, int from, int[] distances, int[] points) {
+    for (int to = 0; to < points.length; to++) {
+      matrix[from][to] = distances[points[to]];
+    }
+  }
+
+  // Appends the path between two points, excluding the first location, to the route
+  private void appendPath(List<Coordinates> path, DungeonTopology topology, int[] parents,
+                          int from, int to) {
+    List<Coordinates> reversed = new ArrayList<>();
+    for (int index = to; index != from; index = parents[index]) {
+      reversed.add(topology.coordinatesOf(index));
+    }
+    Collections.reverse(reversed);
+    path.addAll(reversed);
+  }
+
+  // Branch and bound search over the orders of visiting the treasure caves. Point 0 is the start,
+  // points 1 to stops are the treasure caves and point stops + 1 is the end.
+  private static final class Search {
+    private final int[][] distances;
+    private final int stops;
+    private final long deadline;
+    private final AtomicInteger bestLength;
+    private final AtomicBoolean timedOut;
+    private int[] bestOrder;
+
+    private Search(int[][] distances, int stops, long deadline) {
+      this.distances = distances;
+      this.stops = stops;
+      this.deadline = deadline;
+      this.timedOut = new AtomicBoolean(false);
+      this.bestOrder = this.greedyOrder();
+      this.bestLength = new AtomicInteger(this.lengthOf(this.bestOrder));
+    }
+
+    // Visits the nearest unvisited treasure cave each time, giving a first route to improve on
+    private int[] greedyOrder() {
+      int[] order = new int[this.stops];
+      boolean[] used = new boolean[this.stops + 1];
+      int current = 0;
+      for (int step = 0; step < this.stops; step++) {
+        int nearest = -1;
+        for (int point = 1; point <= this.stops; point++) {
+          if (!used[point] && (nearest < 0
+                  || this.distances[current][point] < this.distances[current][nearest])) {
+            nearest = point;
+          }
+        }
+        used[nearest] = true;
+        order[step] = nearest;
+        current = nearest;
+      }
+      return order;
+    }
+
+    private int lengthOf(int[] order) {
+      int length = 0;
+      int current = 0;
+      for (int point : order) {
+        length += this.distances[current][point];
+        current = point;
+      }
+      return length + this.distances[current][this.stops + 1];
+    }
+
+    private synchronized void offer(int[] order, int length) {
+      if (length < this.bestLength.get()) {
+        this.bestLength.set(length);
+        this.bestOrder = order.clone();
+      }
+    }
+
+    private synchronized int[] getBestOrder() {
+      return this.bestOrder.clone();
+    }
+
+    private boolean hasTimedOut() {
+      return this.timedOut.get();
+    }
+
+    private boolean outOfTime() {
+      if (!this.timedOut.get() && System.nanoTime() > this.deadline) {
+        this.timedOut.set(true);
+      }
+      return this.timedOut.get();
+    }
+
+    // Lower bound on the length still to go, from a point with the given caves still unvisited
+    private int remainingBound(int from, int visited) {
+      int bound = this.distances[from][this.stops + 1];
+      for (int point = 1; point <= this.stops; point++) {
+        if ((visited & (1 << point)) == 0) {
+          bound = Math.max(bound, this.distances[from][point]);
+        }
+      }
+      return bound;
+    }
+
+    // Extends a partial order, forking the first levels into separate tasks
+    private final class Branch extends RecursiveAction {
+      private static final long serialVersionUID = 1L;
+      private final int[] order;
+      private final int depth;
+      private final int last;
+      private final int visited;
+      private final int length;
+
+      private Branch(int[] order, int depth, int last, int visited, int length) {
+        this.order = order;
+        this.depth = depth;
+        this.last = last;
+        this.visited = visited;
+        this.length = length;
+      }
+
+      @Override
+      protected void compute() {
+        if (this.depth >= SPLIT_DEPTH || this.depth == stops) {
+          extend(this.order, this.depth, this.last, this.visited, this.length);
+          return;
+        }
+        List<Branch> branches = new ArrayList<>();
+        for (int point = 1; point <= stops; point++) {
+          if ((this.visited & (1 << point)) == 0) {
+            int[] next = this.order.clone();
+            next[this.depth] = point;
+            branches.add(new Branch(next, this.depth + 1, point, this.visited | (1 << point),
+                    this.length + distances[this.last][point]));
+          }
+        }
+        invokeAll(branches);
+      }
+    }
+
+    // Depth first branch and bound, pruning orders which cannot beat the best route
+    private void extend(int[] order, int depth, int last, int visited, int length) {
+      if (length + this.remainingBound(last, visited) >= this.bestLength.get()
+              || this.outOfTime()) {
+        return;
+      }
+      if (depth == this.stops) {
+        this.offer(order, length + this.distances[last][this.stops + 1]);
+        return;
+      }
+      for (int point = 1; point <= this.stops; point++) {
+        if ((visited & (1 << point)) == 0) {
+          order[depth] = point;
+          this.extend(order, depth + 1, point, visited | (1 << point),
+                  length + this.distances[last][point]);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,64 @@
+package dungeonmodel.state;
+
+import dungeonmodel.dungeon.Dungeon;
+import dungeonmodel.dungeon.ForkableDungeon;
+import dungeonmodel.dungeon.ReadOnlyDungeon;
+import dungeonmodel.player.DungeonPlayer;
+import dungeonmodel.player.Player;
+import dungeonmodel.player.ReadOnlyPlayer;
+
+/**
+ * Game state backed by a forkable dungeon.
+ * Forking shares the paths of the dungeon and copies only the caves that have changed and the
+ * player's inventory.
+ */
+public class ForkableGameState implements GameState {
+
+  private final ForkableDungeon dungeon;
+  private final Player player;
+
+  /**
+   * Creates a game state copying the given player and the dungeon the player is in.
+   * Copying the dungeon visits every cave once, forks of the created state do not.
+   *
+   * @param player  player to be copied
+   * @param dungeon dungeon the player is in
+   * @throws IllegalArgumentException if player or dungeon are null
+   */
+  public ForkableGameState(ReadOnlyPlayer player, ReadOnlyDungeon dungeon)
+          throws IllegalArgumentException {
+    if (player == null || dungeon == null) {
+      throw new IllegalArgumentException("Player and dungeon cannot be null");
+    }
+    this.dungeon = new ForkableDungeon(dungeon);
+    this.player = copyPlayer(player, this.dungeon);
+  }
+
+  // Creates a state from an already forked dungeon, copying the player into it
+  private ForkableGameState(ForkableDungeon dungeon, ReadOnlyPlayer player) {
+    this.dungeon = dungeon;
+    this.player = copyPlayer(player, dungeon);
+  }
+
+  // Helper method to create a copy of a player inside a given dungeon
+  private static Player copyPlayer(ReadOnlyPlayer player, Dungeon dungeon) {
+    return new DungeonPlayer(player.getName(), dungeon, player.getCurrentCoordinates(),
+            player.getCurrentTreasure(), player.getArrowCount(), player.isPlayerAlive(),
+            player.hasPlayerWon());
+  }
+
+  @Override
+  public Player getPlayer() {
+    return this.player;
+  }
+
+  @Override
+  public Dungeon getDungeon() {
+    return this.dungeon;
+  }
+
+  @Override
+  public GameState fork() {
+    return new ForkableGameState(this.dungeon.fork(), this.player);
+  }
+}
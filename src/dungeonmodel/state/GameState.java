@@ -0,0 +1,34 @@
+package dungeonmodel.state;
+
+import dungeonmodel.dungeon.Dungeon;
+import dungeonmodel.player.Player;
+
+/**
+ * Represents the complete state of a game, a player and the dungeon the player is in.
+ * A game state can be forked, for looking ahead at the result of moves or keeping earlier states
+ * around to undo moves.
+ */
+public interface GameState {
+
+  /**
+   * Get the player of this game state.
+   *
+   * @return player in this state
+   */
+  Player getPlayer();
+
+  /**
+   * Get the dungeon of this game state.
+   *
+   * @return dungeon in this state
+   */
+  Dungeon getDungeon();
+
+  /**
+   * Creates an independent copy of this state. Actions on either state afterwards are not seen
+   * by the other.
+   *
+   * @return forked game state
+   */
+  GameState fork();
+}
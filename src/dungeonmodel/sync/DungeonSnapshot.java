@@ -0,0 +1,254 @@
+package dungeonmodel.sync;
+
+import java.util.Arrays;
+
+import dungeonmodel.dungeon.DungeonTopology;
+import dungeonmodel.dungeon.ReadOnlyDungeon;
+
+/**
+ * Immutable copy of a dungeon at one moment, which any thread can read without locks while the
+ * dungeon it was taken from keeps changing.
+ * The paths never change, so every snapshot of a dungeon shares one {@link DungeonTopology}. The
+ * contents of the locations are kept in pages of {@value #PAGE_SIZE} locations, reached through
+ * directories of {@value #DIRECTORY_SIZE} pages. A snapshot taken after some locations changed
+ * copies only the pages holding them, the directories holding those pages and the small table of
+ * directories, sharing everything else with the snapshot before it, so publishing a snapshot
+ * after an action copies one reference for every {@value #PAGE_SIZE} * {@value #DIRECTORY_SIZE}
+ * locations plus a few small arrays. Each snapshot also lists the pages it copied, so comparing
+ * it with the snapshot it was taken from only reads those pages. Pages are never written once a
+ * snapshot holding them has been created.
+ */
+public final class DungeonSnapshot extends PackedDungeonView {
+
+  /**
+   * Number of locations in each page of contents.
+   */
+  public static final int PAGE_SIZE = 64;
+
+  /**
+   * Number of pages in each directory.
+   */
+  public static final int DIRECTORY_SIZE = 64;
+
+  private static final int PAGE_SHIFT = Integer.numberOfTrailingZeros(PAGE_SIZE);
+  private static final int DIRECTORY_SHIFT = Integer.numberOfTrailingZeros(DIRECTORY_SIZE);
+  private static final int[] NO_PAGES = new int[0];
+
+  private final DungeonTopology topology;
+  private final int start;
+  private final int end;
+  private final int[][][] directories;
+  private final int[][][] parentDirectories;
+  private final int[] copiedPages;
+  private final long stateHash;
+
+  // Creates a snapshot from its parts, which must not change afterwards. The parent directories
+  // are those of the snapshot it was taken from, or null, and the copied pages are in increasing
+  // order
+  private DungeonSnapshot(DungeonTopology topology, int start, int end, int[][][] directories,
+                          int[][][] parentDirectories, int[] copiedPages, long stateHash) {
+    this.topology = topology;
+    this.start = start;
+    this.end = end;
+    this.directories = directories;
+    this.parentDirectories = parentDirectories;
+    this.copiedPages = copiedPages;
+    this.stateHash = stateHash;
+  }
+
+  /**
+   * Takes a snapshot of the whole of a dungeon.
+   *
+   * @param dungeon dungeon to copy
+   * @return snapshot of the dungeon
+   * @throws IllegalArgumentException if the dungeon is null
+   */
+  public static DungeonSnapshot of(ReadOnlyDungeon dungeon) throws IllegalArgumentException {
+    DungeonTopology topology = DungeonTopology.of(dungeon);
+    int size = topology.size();
+    int pageCount = (size + PAGE_SIZE - 1) >> PAGE_SHIFT;
+    int[][][] directories = new int[(pageCount + DIRECTORY_SIZE - 1) >> DIRECTORY_SHIFT][][];
+    long hash = 0;
+    for (int directory = 0; directory < directories.length; directory++) {
+      int firstPage = directory << DIRECTORY_SHIFT;
+      directories[directory] = new int[Math.min(DIRECTORY_SIZE, pageCount - firstPage)][];
+      for (int slot = 0; slot < directories[directory].length; slot++) {
+        int firstIndex = (firstPage + slot) << PAGE_SHIFT;
+        int[] page = new int[Math.min(PAGE_SIZE, size - firstIndex)];
+        for (int offset = 0; offset < page.length; offset++) {
+          int index = firstIndex + offset;
+          page[offset] = SyncCells.contentsOf(dungeon, topology.coordinatesOf(index));
+          hash ^= SyncCells.hashOf(index / topology.getColumns(), index % topology.getColumns(),
+                  page[offset]);
+        }
+        directories[directory][slot] = page;
+      }
+    }
+    return new DungeonSnapshot(topology, topology.indexOf(dungeon.getStartCave()),
+            topology.indexOf(dungeon.getEndCave()), directories, null, NO_PAGES, hash);
+  }
+
+  /**
+   * Takes a snapshot of a dungeon which has changed only at the given locations since this
+   * snapshot was taken of it, sharing the contents of every other location with this snapshot.
+   *
+   * @param dungeon dungeon this snapshot was taken of
+   * @param changes indices of the locations which changed, numbered row by row
+   * @return snapshot of the dungeon, or this snapshot if nothing changed
+   * @throws IllegalArgumentException if the dungeon or changes are null or a location is outside
+   *                                  the dungeon
+   */
+  public DungeonSnapshot withChanges(ReadOnlyDungeon dungeon, int[] changes)
+          throws IllegalArgumentException {
+    if (dungeon == null || changes == null) {
+      throw new IllegalArgumentException("Dungeon and changes cannot be null");
+    }
+    if (changes.length == 0) {
+      return this;
+    }
+    int[][][] newDirectories = this.directories.clone();
+    int[] copied = new int[changes.length];
+    int copiedCount = 0;
+    long hash = this.stateHash;
+    int columns = this.topology.getColumns();
+    for (int index : changes) {
+      if (index < 0 || index >= this.topology.size()) {
+        throw new IllegalArgumentException("Location is outside the dungeon");
+      }
+      int page = index >> PAGE_SHIFT;
+      int directory = page >> DIRECTORY_SHIFT;
+      int slot = page & (DIRECTORY_SIZE - 1);
+      if (newDirectories[directory] == this.directories[directory]) {
+        newDirectories[directory] = newDirectories[directory].clone();
+      }
+      int[] contents = newDirectories[directory][slot];
+      if (contents == this.directories[directory][slot]) {
+        contents = contents.clone();
+        newDirectories[directory][slot] = contents;
+        copied[copiedCount++] = page;
+      }
+      int offset = index & (PAGE_SIZE - 1);
+      int cell = SyncCells.contentsOf(dungeon, this.topology.coordinatesOf(index));
+      hash ^= SyncCells.hashOf(index / columns, index % columns, contents[offset])
+              ^ SyncCells.hashOf(index / columns, index % columns, cell);
+      contents[offset] = cell;
+    }
+    int[] copiedPages = Arrays.copyOf(copied, copiedCount);
+    Arrays.sort(copiedPages);
+    return new DungeonSnapshot(this.topology, this.start, this.end, newDirectories,
+            this.directories, copiedPages, hash);
+  }
+
+  /**
+   * Finds the locations whose contents differ from an older snapshot of the same dungeon. When
+   * the older snapshot is the one this was taken from, only the pages this one copied are read;
+   * otherwise only the directories and pages the two snapshots do not share.
+   *
+   * @param older older snapshot of the same dungeon
+   * @return indices of the locations which differ in increasing order
+   * @throws IllegalArgumentException if the older snapshot is null or of another dungeon
+   */
+  public int[] changedSince(DungeonSnapshot older) throws IllegalArgumentException {
+    if (older == null || older.topology != this.topology) {
+      throw new IllegalArgumentException("Snapshots must be of the same dungeon");
+    }
+    Changes changes = new Changes();
+    if (older == this) {
+      return changes.toArray();
+    }
+    if (older.directories == this.parentDirectories) {
+      for (int page : this.copiedPages) {
+        changes.comparePage(page, this.page(page), older.page(page));
+      }
+      return changes.toArray();
+    }
+    for (int directory = 0; directory < this.directories.length; directory++) {
+      if (this.directories[directory] == older.directories[directory]) {
+        continue;
+      }
+      for (int slot = 0; slot < this.directories[directory].length; slot++) {
+        changes.comparePage((directory << DIRECTORY_SHIFT) + slot,
+                this.directories[directory][slot], older.directories[directory][slot]);
+      }
+    }
+    return changes.toArray();
+  }
+
+  /**
+   * Count the pages of contents this snapshot shares with another snapshot of the same dungeon.
+   *
+   * @param other other snapshot of the same dungeon
+   * @return number of pages shared, out of the locations divided by {@link #PAGE_SIZE} rounded up
+   * @throws IllegalArgumentException if the other snapshot is null or of another dungeon
+   */
+  public int countSharedPages(DungeonSnapshot other) throws IllegalArgumentException {
+    if (other == null || other.topology != this.topology) {
+      throw new IllegalArgumentException("Snapshots must be of the same dungeon");
+    }
+    int shared = 0;
+    for (int directory = 0; directory < this.directories.length; directory++) {
+      for (int slot = 0; slot < this.directories[directory].length; slot++) {
+        if (this.directories[directory][slot] == other.directories[directory][slot]) {
+          shared++;
+        }
+      }
+    }
+    return shared;
+  }
+
+  // Page of contents with the given number
+  private int[] page(int page) {
+    return this.directories[page >> DIRECTORY_SHIFT][page & (DIRECTORY_SIZE - 1)];
+  }
+
+  @Override
+  DungeonTopology topology() {
+    return this.topology;
+  }
+
+  @Override
+  int cell(int index) {
+    return this.page(index >> PAGE_SHIFT)[index & (PAGE_SIZE - 1)];
+  }
+
+  @Override
+  int startIndex() {
+    return this.start;
+  }
+
+  @Override
+  int endIndex() {
+    return this.end;
+  }
+
+  @Override
+  public long getStateHash() {
+    return this.stateHash;
+  }
+
+  // Indices of the locations found to differ, growing as they are added
+  private static final class Changes {
+
+    private int[] indices = new int[16];
+    private int count;
+
+    // Adds the locations of a page whose contents differ between two snapshots
+    private void comparePage(int page, int[] newer, int[] older) {
+      if (newer == older) {
+        return;
+      }
+      for (int offset = 0; offset < newer.length; offset++) {
+        if (newer[offset] != older[offset]) {
+          if (this.count == this.indices.length) {
+            this.indices = Arrays.copyOf(this.indices, this.count * 2);
+          }
+          this.indices[this.count++] = (page << PAGE_SHIFT) + offset;
+        }
+      }
+    }
+
+    private int[] toArray() {
+      return Arrays.copyOf(this.indices, this.count);
+    }
+  }
+}
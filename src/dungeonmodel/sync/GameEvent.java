@@ -0,0 +1,135 @@
+package dungeonmodel.sync;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import dungeonmodel.coordinates.Coordinates;
+
+/**
+ * Change to a game between two snapshots published one after the other, telling views which
+ * parts of the game they need to update instead of having them read all of it again.
+ * Events are found by comparing the two snapshots, so they describe what changed rather than the
+ * actions taken: several actions between two snapshots give the events of their combined change.
+ */
+public final class GameEvent {
+
+  /**
+   * Kinds of changes to a game.
+   */
+  public enum Type {
+    /**
+     * The player is in another location, given by the event.
+     */
+    PLAYER_MOVED,
+    /**
+     * An arrow or treasure was taken from the location given by the event.
+     */
+    ITEM_PICKED,
+    /**
+     * The player shot an arrow from the location given by the event.
+     */
+    ARROW_SHOT,
+    /**
+     * The monster in the location given by the event was hit by an arrow, which may have killed
+     * it and changed the smell of the locations around it.
+     */
+    MONSTER_HIT,
+    /**
+     * The player died or reached the end, in the location given by the event.
+     */
+    GAME_ENDED,
+    /**
+     * The player and dungeon were reset, and everything may have changed. The event gives the
+     * location of the player afterwards.
+     */
+    GAME_RESET
+  }
+
+  private static final int MONSTER_BITS = SyncCells.MONSTER_ALIVE
+          | SyncCells.MAX_HITS << SyncCells.HITS_SHIFT;
+
+  private final Type type;
+  private final Coordinates location;
+
+  // Package private constructor, events are only made by comparing snapshots
+  GameEvent(Type type, Coordinates location) {
+    this.type = type;
+    this.location = location;
+  }
+
+  /**
+   * Get the kind of change.
+   *
+   * @return kind of change
+   */
+  public Type getType() {
+    return this.type;
+  }
+
+  /**
+   * Get the location which changed.
+   *
+   * @return location of the change
+   */
+  public Coordinates getLocation() {
+    return this.location;
+  }
+
+  // Finds the changes from one snapshot to the next, which is of a reset game if reset is true
+  static List<GameEvent> between(PlayerSnapshot previous, PlayerSnapshot next, boolean reset) {
+    if (reset) {
+      return Collections.singletonList(new GameEvent(Type.GAME_RESET,
+              next.getCurrentCoordinates()));
+    }
+    List<GameEvent> events = new ArrayList<>();
+    DungeonSnapshot before = previous.getDungeon();
+    DungeonSnapshot after = next.getDungeon();
+    if (before != after) {
+      for (int index : after.changedSince(before)) {
+        int removed = before.cell(index) & ~after.cell(index);
+        if ((removed & (SyncCells.HAS_ARROW | SyncCells.HAS_TREASURE)) != 0
+                || SyncCells.treasureKinds(removed) != 0) {
+          events.add(new GameEvent(Type.ITEM_PICKED, after.coordinatesOf(index)));
+        }
+        if (((before.cell(index) ^ after.cell(index)) & MONSTER_BITS) != 0) {
+          events.add(new GameEvent(Type.MONSTER_HIT, after.coordinatesOf(index)));
+        }
+      }
+    }
+    if (next.getArrowCount() < previous.getArrowCount()) {
+      events.add(new GameEvent(Type.ARROW_SHOT, previous.getCurrentCoordinates()));
+    }
+    if (!next.getCurrentCoordinates().equals(previous.getCurrentCoordinates())) {
+      events.add(new GameEvent(Type.PLAYER_MOVED, next.getCurrentCoordinates()));
+    }
+    if (previous.isPlayerAlive() && !next.isPlayerAlive()
+            || !previous.hasPlayerWon() && next.hasPlayerWon()) {
+      events.add(new GameEvent(Type.GAME_ENDED, next.getCurrentCoordinates()));
+    }
+    return events;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof GameEvent)) {
+      return false;
+    }
+    GameEvent other = (GameEvent) o;
+    return this.type == other.type && Objects.equals(this.location, other.location);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(this.type, this.location);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s %s", this.type, this.location);
+  }
+}
@@ -0,0 +1,19 @@
+package dungeonmodel.sync;
+
+import java.util.List;
+
+/**
+ * Listener told of the changes to a game each time a {@link SnapshotPublisher} publishes a
+ * snapshot which differs from the one before.
+ */
+public interface GameEventListener {
+
+  /**
+   * Called on the thread which published the snapshot, after it has become the current one.
+   * Listeners which update a user interface should hand the events over to its own thread.
+   *
+   * @param snapshot snapshot published
+   * @param events   changes since the snapshot published before it, in order
+   */
+  void gameChanged(PlayerSnapshot snapshot, List<GameEvent> events);
+}
@@ -0,0 +1,145 @@
+package dungeonmodel.sync;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.DungeonTopology;
+import dungeonmodel.dungeon.MonsterSmell;
+import dungeonmodel.dungeon.ReadOnlyDungeon;
+import dungeonmodel.treasure.Treasure;
+
+// Package private dungeon read from a topology and the packed contents of every location, shared
+// by the mirrors and snapshots which keep a dungeon that way.
+abstract class PackedDungeonView implements ReadOnlyDungeon {
+
+  // Topology of the dungeon
+  abstract DungeonTopology topology();
+
+  // Packed contents of a location, as SyncCells packs them
+  abstract int cell(int index);
+
+  // Index of the start cave
+  abstract int startIndex();
+
+  // Index of the end cave
+  abstract int endIndex();
+
+  Coordinates coordinatesOf(int index) {
+    return this.topology().coordinatesOf(index);
+  }
+
+  int indexOf(Coordinates coordinates) {
+    return this.topology().indexOf(coordinates);
+  }
+
+  private int cell(Coordinates coordinates) {
+    return this.cell(this.indexOf(coordinates));
+  }
+
+  private Coordinates neighbour(Coordinates coordinates, int direction) {
+    int next = this.topology().neighbour(this.indexOf(coordinates), direction);
+    return next < 0 ? null : this.coordinatesOf(next);
+  }
+
+  @Override
+  public List<Integer> getDimensions() {
+    List<Integer> dimensions = new ArrayList<>();
+    dimensions.add(this.topology().getRows());
+    dimensions.add(this.topology().getColumns());
+    return dimensions;
+  }
+
+  @Override
+  public List<Treasure> viewTreasureInCave(Coordinates coordinates) {
+    return SyncCells.treasureOf(this.cell(coordinates));
+  }
+
+  @Override
+  public Coordinates getStartCave() {
+    return this.coordinatesOf(this.startIndex());
+  }
+
+  @Override
+  public Coordinates getEndCave() {
+    return this.coordinatesOf(this.endIndex());
+  }
+
+  @Override
+  public List<Coordinates> getAdjacent(Coordinates coordinates) {
+    List<Coordinates> adjacent = new ArrayList<>();
+    for (int direction : new int[]{DungeonTopology.SOUTH, DungeonTopology.NORTH,
+        DungeonTopology.EAST, DungeonTopology.WEST}) {
+      Coordinates next = this.neighbour(coordinates, direction);
+      if (next != null) {
+        adjacent.add(next);
+      }
+    }
+    return adjacent;
+  }
+
+  @Override
+  public boolean hasArrow(Coordinates coordinates) {
+    return (this.cell(coordinates) & SyncCells.HAS_ARROW) != 0;
+  }
+
+  @Override
+  public boolean hasMonster(Coordinates coordinates) {
+    return (this.cell(coordinates) & SyncCells.MONSTER_ALIVE) != 0;
+  }
+
+  @Override
+  public MonsterSmell getSmell(Coordinates coordinates) {
+    if (this.hasMonster(coordinates)) {
+      return MonsterSmell.STRONG;
+    }
+    int monsterCount = 0;
+    Set<Coordinates> nextAdjacents = new HashSet<>();
+    for (Coordinates adjacent : this.getAdjacent(coordinates)) {
+      if (this.hasMonster(adjacent)) {
+        return MonsterSmell.STRONG;
+      }
+      nextAdjacents.add(adjacent);
+    }
+    for (Coordinates next : nextAdjacents) {
+      for (Coordinates adjacent : this.getAdjacent(next)) {
+        if (this.hasMonster(adjacent)) {
+          monsterCount += 1;
+        }
+      }
+    }
+    if (monsterCount > 1) {
+      return MonsterSmell.STRONG;
+    } else if (monsterCount == 1) {
+      return MonsterSmell.WEAK;
+    }
+    return MonsterSmell.NONE;
+  }
+
+  @Override
+  public int monsterArrowCount(Coordinates coordinates) {
+    return SyncCells.hits(this.cell(coordinates));
+  }
+
+  @Override
+  public Coordinates getNorth(Coordinates coordinates) {
+    return this.neighbour(coordinates, DungeonTopology.NORTH);
+  }
+
+  @Override
+  public Coordinates getSouth(Coordinates coordinates) {
+    return this.neighbour(coordinates, DungeonTopology.SOUTH);
+  }
+
+  @Override
+  public Coordinates getEast(Coordinates coordinates) {
+    return this.neighbour(coordinates, DungeonTopology.EAST);
+  }
+
+  @Override
+  public Coordinates getWest(Coordinates coordinates) {
+    return this.neighbour(coordinates, DungeonTopology.WEST);
+  }
+}
@@ -0,0 +1,138 @@
+package dungeonmodel.sync;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.MonsterSmell;
+import dungeonmodel.player.ReadOnlyPlayer;
+import dungeonmodel.treasure.Treasure;
+
+/**
+ * Immutable copy of a player and the dungeon they explore at one moment, published by a
+ * {@link SnapshotPublisher}, which any thread can read without locks.
+ */
+public final class PlayerSnapshot implements ReadOnlyPlayer {
+
+  private final long version;
+  private final String name;
+  private final Coordinates coordinates;
+  private final int arrowCount;
+  private final List<Treasure> treasure;
+  private final boolean alive;
+  private final boolean won;
+  private final long stateHash;
+  private final DungeonSnapshot dungeon;
+
+  // Package private constructor taking a treasure list which must not change afterwards
+  PlayerSnapshot(long version, ReadOnlyPlayer player, List<Treasure> treasure,
+                 DungeonSnapshot dungeon) {
+    this.version = version;
+    this.name = player.getName();
+    this.coordinates = player.getCurrentCoordinates();
+    this.arrowCount = player.getArrowCount();
+    this.treasure = treasure;
+    this.alive = player.isPlayerAlive();
+    this.won = player.hasPlayerWon();
+    this.stateHash = player.getStateHash();
+    this.dungeon = dungeon;
+  }
+
+  /**
+   * Get the number of the snapshot, counting up from zero for each one published.
+   *
+   * @return number of the snapshot
+   */
+  public long getVersion() {
+    return this.version;
+  }
+
+  /**
+   * Get the snapshot of the dungeon taken with the player.
+   *
+   * @return snapshot of the dungeon
+   */
+  public DungeonSnapshot getDungeon() {
+    return this.dungeon;
+  }
+
+  // The treasure list itself, to share it with the next snapshot when it has not changed
+  List<Treasure> treasure() {
+    return this.treasure;
+  }
+
+  @Override
+  public String getName() {
+    return this.name;
+  }
+
+  @Override
+  public Coordinates getCurrentCoordinates() {
+    return this.coordinates;
+  }
+
+  @Override
+  public List<Coordinates> getPossibleMoves() {
+    return this.dungeon.getAdjacent(this.coordinates);
+  }
+
+  @Override
+  public List<Treasure> getCurrentTreasure() {
+    return new ArrayList<>(this.treasure);
+  }
+
+  @Override
+  public List<Treasure> viewTreasureAtCurrentLocation() {
+    return this.dungeon.viewTreasureInCave(this.coordinates);
+  }
+
+  @Override
+  public boolean currentLocationHasArrow() {
+    return this.dungeon.hasArrow(this.coordinates);
+  }
+
+  @Override
+  public int getArrowCount() {
+    return this.arrowCount;
+  }
+
+  @Override
+  public boolean isPlayerAlive() {
+    return this.alive;
+  }
+
+  @Override
+  public MonsterSmell getSmellInCurrentCave() {
+    return this.dungeon.getSmell(this.coordinates);
+  }
+
+  @Override
+  public boolean hasPlayerWon() {
+    return this.won;
+  }
+
+  @Override
+  public Coordinates getNorth() {
+    return this.dungeon.getNorth(this.coordinates);
+  }
+
+  @Override
+  public Coordinates getSouth() {
+    return this.dungeon.getSouth(this.coordinates);
+  }
+
+  @Override
+  public Coordinates getEast() {
+    return this.dungeon.getEast(this.coordinates);
+  }
+
+  @Override
+  public Coordinates getWest() {
+    return this.dungeon.getWest(this.coordinates);
+  }
+
+  @Override
+  public long getStateHash() {
+    return this.stateHash;
+  }
+}
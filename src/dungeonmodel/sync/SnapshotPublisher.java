@@ -0,0 +1,123 @@
+package dungeonmodel.sync;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import dungeonmodel.player.ReadOnlyPlayer;
+import dungeonmodel.treasure.Treasure;
+
+/**
+ * Publishes an immutable snapshot of a game after each action, so that views, spectators and
+ * exporters can read a consistent game from any thread without locks while the model keeps
+ * changing on its own thread.
+ * The thread which changes the model publishes, read-copy-update style: it builds the next
+ * snapshot from the previous one and the locations the tracked dungeon reports as changed,
+ * sharing everything else, and swaps it in atomically. Readers take whichever snapshot is current
+ * and keep reading it however many are published after it.
+ * Listeners are told what changed from one snapshot to the next as {@link GameEvent}s, so they
+ * can update only what the events name.
+ * The publisher collects the changes of the tracked dungeon, so nothing else may collect them.
+ */
+public final class SnapshotPublisher {
+
+  private final ReadOnlyPlayer player;
+  private final TrackingDungeon dungeon;
+  private final AtomicReference<PlayerSnapshot> current;
+  private final List<GameEventListener> listeners;
+
+  /**
+   * Creates a publisher for a player exploring a tracked dungeon, and publishes the first
+   * snapshot.
+   *
+   * @param player  player whose game is published, exploring the tracked dungeon
+   * @param dungeon dungeon the player explores
+   * @throws IllegalArgumentException if the player or dungeon is null
+   */
+  public SnapshotPublisher(ReadOnlyPlayer player, TrackingDungeon dungeon)
+          throws IllegalArgumentException {
+    if (player == null || dungeon == null) {
+      throw new IllegalArgumentException("Player and dungeon cannot be null");
+    }
+    this.player = player;
+    this.dungeon = dungeon;
+    this.listeners = new CopyOnWriteArrayList<>();
+    dungeon.drainChanges();
+    dungeon.drainReset();
+    this.current = new AtomicReference<>(new PlayerSnapshot(0, player,
+            this.treasureOf(null), DungeonSnapshot.of(dungeon)));
+  }
+
+  /**
+   * Publishes a snapshot of the game as it is now. Must be called by the thread which changes
+   * the game, after the action.
+   *
+   * @return snapshot published
+   */
+  public PlayerSnapshot publish() {
+    PlayerSnapshot previous = this.current.get();
+    int[] changes = this.dungeon.drainChanges();
+    DungeonSnapshot dungeonSnapshot;
+    List<Treasure> treasure;
+    boolean reset = this.dungeon.drainReset();
+    if (reset) {
+      dungeonSnapshot = DungeonSnapshot.of(this.dungeon);
+      treasure = this.treasureOf(null);
+    } else {
+      dungeonSnapshot = previous.getDungeon().withChanges(this.dungeon, changes);
+      treasure = this.treasureOf(previous);
+    }
+    PlayerSnapshot next = new PlayerSnapshot(previous.getVersion() + 1, this.player, treasure,
+            dungeonSnapshot);
+    this.current.set(next);
+    if (!this.listeners.isEmpty()) {
+      List<GameEvent> events = GameEvent.between(previous, next, reset);
+      if (!events.isEmpty()) {
+        for (GameEventListener listener : this.listeners) {
+          listener.gameChanged(next, events);
+        }
+      }
+    }
+    return next;
+  }
+
+  /**
+   * Adds a listener to tell of the changes in each snapshot published from now on.
+   *
+   * @param listener listener to add
+   * @throws IllegalArgumentException if the listener is null
+   */
+  public void addListener(GameEventListener listener) throws IllegalArgumentException {
+    if (listener == null) {
+      throw new IllegalArgumentException("Listener cannot be null");
+    }
+    this.listeners.add(listener);
+  }
+
+  /**
+   * Removes a listener added before, if it is there.
+   *
+   * @param listener listener to remove
+   */
+  public void removeListener(GameEventListener listener) {
+    this.listeners.remove(listener);
+  }
+
+  /**
+   * Get the snapshot published last. Can be called from any thread.
+   *
+   * @return latest snapshot
+   */
+  public PlayerSnapshot getSnapshot() {
+    return this.current.get();
+  }
+
+  // Shares the treasure of the previous snapshot when the player has picked up nothing since
+  private List<Treasure> treasureOf(PlayerSnapshot previous) {
+    List<Treasure> treasure = this.player.getCurrentTreasure();
+    if (previous != null && previous.treasure().size() == treasure.size()) {
+      return previous.treasure();
+    }
+    return List.copyOf(treasure);
+  }
+}
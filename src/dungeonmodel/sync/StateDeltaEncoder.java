@@ -0,0 +1,300 @@
+package dungeonmodel.sync;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import dungeonmodel.coordinates.CaveCoordinates;
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.DungeonTopology;
+import dungeonmodel.dungeon.ZobristKeys;
+import dungeonmodel.player.ReadOnlyPlayer;
+import dungeonmodel.treasure.Treasure;
+
+/**
+ * Encodes the state of a game tick by tick for clients which mirror it, such as spectators or a
+ * remote view. Each tick produces one frame holding only what changed since the frame before:
+ * the locations whose contents changed, and the position, arrows, treasure and status of the
+ * player when they changed. Every so many ticks, and whenever the dungeon is reset, a keyframe
+ * with the whole state is sent instead, so clients can join at any keyframe.
+ * A frame starts with its kind and tick, followed by a byte of flags saying which parts follow.
+ * Numbers are written as varints, seven bits at a time, and changed locations as the gap from the
+ * location before them, so a tick in which the player only moved takes a few bytes whatever the
+ * size of the dungeon.
+ */
+public final class StateDeltaEncoder {
+
+  static final int KEYFRAME = 0;
+  static final int DELTA = 1;
+
+  static final int CELLS = 1;
+  static final int POSITION = 1 << 1;
+  static final int ARROWS = 1 << 2;
+  static final int TREASURE = 1 << 3;
+  static final int STATUS = 1 << 4;
+
+  static final int ALIVE = 1;
+  static final int WON = 1 << 1;
+
+  private final ReadOnlyPlayer player;
+  private final TrackingDungeon dungeon;
+  private final int keyframeInterval;
+  private final int rows;
+  private final int columns;
+  private byte[] buffer;
+  private int size;
+  private long tick;
+  private long lastKeyframe;
+  private int position;
+  private int arrows;
+  private int treasureCount;
+  private int status;
+
+  /**
+   * Creates an encoder for a player exploring a tracked dungeon.
+   *
+   * @param player           player whose game is sent, exploring the tracked dungeon
+   * @param dungeon          dungeon the player explores
+   * @param keyframeInterval number of ticks from one keyframe to the next
+   * @throws IllegalArgumentException if the player or dungeon is null or the interval is not
+   *                                  positive
+   */
+  public StateDeltaEncoder(ReadOnlyPlayer player, TrackingDungeon dungeon, int keyframeInterval)
+          throws IllegalArgumentException {
+    if (player == null || dungeon == null) {
+      throw new IllegalArgumentException("Player and dungeon cannot be null");
+    }
+    if (keyframeInterval <= 0) {
+      throw new IllegalArgumentException("Keyframe interval must be positive");
+    }
+    this.player = player;
+    this.dungeon = dungeon;
+    this.keyframeInterval = keyframeInterval;
+    this.rows = dungeon.getDimensions().get(0);
+    this.columns = dungeon.getDimensions().get(1);
+    this.buffer = new byte[256];
+    this.tick = -1;
+  }
+
+  /**
+   * Get the tick of the last frame encoded.
+   *
+   * @return tick of the last frame, or -1 if none was encoded yet
+   */
+  public long getTick() {
+    return this.tick;
+  }
+
+  /**
+   * Encodes the frame of the next tick: a keyframe if one is due, a delta otherwise.
+   *
+   * @return frame of the tick
+   */
+  public byte[] encodeTick() {
+    this.encode(false);
+    return Arrays.copyOf(this.buffer, this.size);
+  }
+
+  /**
+   * Encodes the next tick as a keyframe, for instance when a client joins.
+   *
+   * @return keyframe of the tick
+   */
+  public byte[] encodeKeyframe() {
+    this.encode(true);
+    return Arrays.copyOf(this.buffer, this.size);
+  }
+
+  /**
+   * Encodes the frame of the next tick and writes it to a stream, preceded by its length as a
+   * varint, as {@link StateMirror#readFrom} reads it.
+   *
+   * @param out stream to write to
+   * @throws IOException if the stream cannot be written
+   */
+  public void writeTick(OutputStream out) throws IOException {
+    this.encode(false);
+    writeFrame(out, this.buffer, this.size);
+  }
+
+  /**
+   * Writes a frame encoded before to a stream, preceded by its length as a varint, as
+   * {@link StateMirror#readFrom} reads it, so that one frame can be sent to several clients.
+   *
+   * @param out   stream to write to
+   * @param frame frame to write
+   * @throws IOException if the stream cannot be written
+   */
+  public static void writeFrame(OutputStream out, byte[] frame) throws IOException {
+    writeFrame(out, frame, frame.length);
+  }
+
+  private static void writeFrame(OutputStream out, byte[] frame, int size) throws IOException {
+    byte[] length = new byte[5];
+    out.write(length, 0, putVarint(length, 0, size));
+    out.write(frame, 0, size);
+  }
+
+  private void encode(boolean forceKeyframe) {
+    this.tick++;
+    int[] changes = this.dungeon.drainChanges();
+    boolean reset = this.dungeon.drainReset();
+    this.size = 0;
+    if (forceKeyframe || reset || this.tick == 0
+            || this.tick - this.lastKeyframe >= this.keyframeInterval
+            || this.player.getCurrentTreasure().size() < this.treasureCount) {
+      this.writeKeyframe();
+    } else {
+      this.writeDelta(changes);
+    }
+  }
+
+  private void writeKeyframe() {
+    this.lastKeyframe = this.tick;
+    this.putByte(KEYFRAME);
+    this.putVarint(this.tick);
+    this.putVarint(this.rows);
+    this.putVarint(this.columns);
+    this.putVarint(this.indexOf(this.dungeon.getStartCave()));
+    this.putVarint(this.indexOf(this.dungeon.getEndCave()));
+    for (int row = 0; row < this.rows; row++) {
+      for (int column = 0; column < this.columns; column++) {
+        Coordinates coordinates = new CaveCoordinates(row, column);
+        this.putCell(coordinates, this.pathsOf(coordinates));
+      }
+    }
+    byte[] name = this.player.getName().getBytes(StandardCharsets.UTF_8);
+    this.putVarint(name.length);
+    this.ensure(name.length);
+    System.arraycopy(name, 0, this.buffer, this.size, name.length);
+    this.size += name.length;
+
+    this.position = this.indexOf(this.player.getCurrentCoordinates());
+    this.arrows = this.player.getArrowCount();
+    this.status = this.statusOf();
+    this.putVarint(this.position);
+    this.putVarint(this.arrows);
+    this.putByte(this.status);
+    this.treasureCount = 0;
+    this.putNewTreasure(this.player.getCurrentTreasure());
+  }
+
+  private void writeDelta(int[] changes) {
+    this.putByte(DELTA);
+    this.putVarint(this.tick);
+    int flagsAt = this.size;
+    this.putByte(0);
+    int flags = 0;
+
+    if (changes.length > 0) {
+      flags |= CELLS;
+      this.putVarint(changes.length);
+      int previous = -1;
+      for (int index : changes) {
+        this.putVarint(index - previous - 1);
+        this.putCell(new CaveCoordinates(index / this.columns, index % this.columns), 0);
+        previous = index;
+      }
+    }
+    int newPosition = this.indexOf(this.player.getCurrentCoordinates());
+    if (newPosition != this.position) {
+      flags |= POSITION;
+      this.position = newPosition;
+      this.putVarint(newPosition);
+    }
+    int newArrows = this.player.getArrowCount();
+    if (newArrows != this.arrows) {
+      flags |= ARROWS;
+      this.arrows = newArrows;
+      this.putVarint(newArrows);
+    }
+    List<Treasure> treasure = this.player.getCurrentTreasure();
+    if (treasure.size() != this.treasureCount) {
+      flags |= TREASURE;
+      this.putNewTreasure(treasure);
+    }
+    int newStatus = this.statusOf();
+    if (newStatus != this.status) {
+      flags |= STATUS;
+      this.status = newStatus;
+      this.putByte(newStatus);
+    }
+    this.buffer[flagsAt] = (byte) flags;
+  }
+
+  // Writes the treasure picked up since the last frame, in the order the player holds it
+  private void putNewTreasure(List<Treasure> treasure) {
+    this.putVarint(treasure.size() - this.treasureCount);
+    for (int item = this.treasureCount; item < treasure.size(); item++) {
+      this.putByte(ZobristKeys.treasureFeature(treasure.get(item)));
+    }
+    this.treasureCount = treasure.size();
+  }
+
+  // Writes the contents of a location as a byte of flags, with the paths in its low bits,
+  // followed by the hits on its monster and the kinds of treasure in it when it has them
+  private void putCell(Coordinates coordinates, int paths) {
+    int cell = SyncCells.contentsOf(this.dungeon, coordinates);
+    this.putByte(cell & 0xFF | paths);
+    if ((cell & SyncCells.HAS_MONSTER) != 0) {
+      this.putVarint(SyncCells.hits(cell));
+    }
+    if ((cell & SyncCells.HAS_TREASURE) != 0) {
+      this.putVarint(SyncCells.treasureKinds(cell));
+    }
+  }
+
+  private int pathsOf(Coordinates coordinates) {
+    int paths = 0;
+    if (this.dungeon.getNorth(coordinates) != null) {
+      paths |= 1 << DungeonTopology.NORTH;
+    }
+    if (this.dungeon.getSouth(coordinates) != null) {
+      paths |= 1 << DungeonTopology.SOUTH;
+    }
+    if (this.dungeon.getEast(coordinates) != null) {
+      paths |= 1 << DungeonTopology.EAST;
+    }
+    if (this.dungeon.getWest(coordinates) != null) {
+      paths |= 1 << DungeonTopology.WEST;
+    }
+    return paths;
+  }
+
+  private int statusOf() {
+    return (this.player.isPlayerAlive() ? ALIVE : 0) | (this.player.hasPlayerWon() ? WON : 0);
+  }
+
+  private int indexOf(Coordinates coordinates) {
+    return coordinates.getXCoordinates() * this.columns + coordinates.getYCoordinates();
+  }
+
+  private void putByte(int value) {
+    this.ensure(1);
+    this.buffer[this.size++] = (byte) value;
+  }
+
+  private void putVarint(long value) {
+    this.ensure(10);
+    this.size = putVarint(this.buffer, this.size, value);
+  }
+
+  // Writes a value seven bits at a time, lowest first, with the top bit set on all but the last
+  static int putVarint(byte[] buffer, int position, long value) {
+    while ((value & ~0x7FL) != 0) {
+      buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    buffer[position++] = (byte) value;
+    return position;
+  }
+
+  private void ensure(int bytes) {
+    if (this.size + bytes > this.buffer.length) {
+      this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2,
+              this.size + bytes));
+    }
+  }
+}
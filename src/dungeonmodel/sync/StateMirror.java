@@ -0,0 +1,448 @@
+package dungeonmodel.sync;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.DungeonTopology;
+import dungeonmodel.dungeon.MonsterSmell;
+import dungeonmodel.dungeon.ReadOnlyDungeon;
+import dungeonmodel.dungeon.ZobristKeys;
+import dungeonmodel.player.ReadOnlyPlayer;
+import dungeonmodel.treasure.Treasure;
+
+/**
+ * Copy of a game kept by a client from the frames of a {@link StateDeltaEncoder}, which can be
+ * read like the dungeon and player it mirrors, for instance by a view.
+ * Each frame changes only what it holds. A delta must follow the frame before it, so after a
+ * missed or broken frame deltas are refused until the next keyframe; the state hash of the mirror
+ * is computed from what it holds, so it can be compared with the hash of the game it mirrors.
+ * The mirror is not thread safe; frames must be applied on the thread which reads it.
+ */
+public final class StateMirror {
+
+  private final MirrorDungeon dungeon;
+  private final MirrorPlayer player;
+  private boolean synced;
+  private long tick;
+  private DungeonTopology topology;
+  private int columns;
+  private int start;
+  private int end;
+  private int[] cells;
+  private long dungeonHash;
+  private String name;
+  private int position;
+  private int arrows;
+  private int status;
+  private List<Treasure> treasure;
+  private byte[] frame;
+  private int read;
+
+  /**
+   * Creates a mirror which waits for its first keyframe.
+   */
+  public StateMirror() {
+    this.dungeon = new MirrorDungeon();
+    this.player = new MirrorPlayer();
+    this.tick = -1;
+  }
+
+  /**
+   * Check if the mirror holds a game, which it does from its first keyframe until a frame fails.
+   *
+   * @return true if the mirror holds a game, false otherwise
+   */
+  public boolean isSynced() {
+    return this.synced;
+  }
+
+  /**
+   * Get the tick of the last frame applied.
+   *
+   * @return tick of the last frame, or -1 if none was applied
+   */
+  public long getTick() {
+    return this.tick;
+  }
+
+  /**
+   * Get the mirrored dungeon. It may only be read once the mirror is synced.
+   *
+   * @return mirrored dungeon
+   */
+  public ReadOnlyDungeon getDungeon() {
+    return this.dungeon;
+  }
+
+  /**
+   * Get the mirrored player. It may only be read once the mirror is synced.
+   *
+   * @return mirrored player
+   */
+  public ReadOnlyPlayer getPlayer() {
+    return this.player;
+  }
+
+  /**
+   * Reads one frame, preceded by its length, from a stream and applies it.
+   *
+   * @param in stream to read from
+   * @return true if a frame was applied, false if the stream ended before a frame
+   * @throws IOException              if the stream cannot be read or ends inside a frame
+   * @throws IllegalArgumentException if the frame cannot be applied
+   */
+  public boolean readFrom(InputStream in) throws IOException, IllegalArgumentException {
+    byte[] next = readFrame(in);
+    if (next == null) {
+      return false;
+    }
+    this.apply(next);
+    return true;
+  }
+
+  /**
+   * Reads one frame, preceded by its length as {@link StateDeltaEncoder#writeTick} writes it,
+   * from a stream without applying it, so it can be applied on another thread.
+   *
+   * @param in stream to read from
+   * @return the frame, or null if the stream ended before a frame
+   * @throws IOException if the stream cannot be read or ends inside a frame
+   */
+  public static byte[] readFrame(InputStream in) throws IOException {
+    int length = 0;
+    for (int shift = 0; ; shift += 7) {
+      int next = in.read();
+      if (next < 0) {
+        if (shift == 0) {
+          return null;
+        }
+        throw new IOException("Stream ended inside a frame");
+      }
+      if (shift > 28) {
+        throw new IOException("Frame length is too large");
+      }
+      length |= (next & 0x7F) << shift;
+      if ((next & 0x80) == 0) {
+        break;
+      }
+    }
+    byte[] frame = in.readNBytes(length);
+    if (frame.length < length) {
+      throw new IOException("Stream ended inside a frame");
+    }
+    return frame;
+  }
+
+  /**
+   * Applies a frame to the mirror.
+   *
+   * @param frame frame made by a {@link StateDeltaEncoder}
+   * @return true if the frame was a keyframe, false if it was a delta
+   * @throws IllegalArgumentException if the frame is null or broken, or is a delta which does not
+   *                                  follow the last frame applied
+   */
+  public boolean apply(byte[] frame) throws IllegalArgumentException {
+    if (frame == null) {
+      throw new IllegalArgumentException("Frame cannot be null");
+    }
+    this.frame = frame;
+    this.read = 0;
+    try {
+      int kind = this.readByte();
+      long frameTick = this.readVarint();
+      if (kind == StateDeltaEncoder.KEYFRAME) {
+        this.applyKeyframe();
+      } else if (kind == StateDeltaEncoder.DELTA) {
+        if (!this.synced || frameTick != this.tick + 1) {
+          throw new IllegalArgumentException("Delta does not follow the last frame applied");
+        }
+        this.applyDelta();
+      } else {
+        throw new IllegalArgumentException("Unknown kind of frame");
+      }
+      if (this.read != frame.length) {
+        throw new IllegalArgumentException("Frame has bytes left over");
+      }
+      this.synced = true;
+      this.tick = frameTick;
+      return kind == StateDeltaEncoder.KEYFRAME;
+    } catch (IllegalArgumentException e) {
+      this.synced = false;
+      throw e;
+    } finally {
+      this.frame = null;
+    }
+  }
+
+  private void applyKeyframe() {
+    int rows = this.readSize();
+    int newColumns = this.readSize();
+    if ((long) rows * newColumns > this.frame.length - this.read) {
+      throw new IllegalArgumentException("Frame is truncated");
+    }
+    int size = rows * newColumns;
+    this.start = this.readIndex(size);
+    this.end = this.readIndex(size);
+    byte[] paths = new byte[size];
+    this.cells = new int[size];
+    this.columns = newColumns;
+    this.dungeonHash = 0;
+    for (int index = 0; index < size; index++) {
+      int flags = this.readByte();
+      paths[index] = (byte) (flags & SyncCells.PATHS);
+      this.setCell(index, this.readCell(flags));
+    }
+    this.topology = DungeonTopology.of(rows, newColumns, paths);
+
+    int nameLength = this.readCount();
+    if (nameLength > this.frame.length - this.read) {
+      throw new IllegalArgumentException("Frame is truncated");
+    }
+    this.name = new String(this.frame, this.read, nameLength, StandardCharsets.UTF_8);
+    this.read += nameLength;
+    this.position = this.readIndex(size);
+    this.arrows = this.readCount();
+    this.status = this.readByte();
+    this.treasure = new ArrayList<>();
+    this.readNewTreasure();
+  }
+
+  private void applyDelta() {
+    int flags = this.readByte();
+    int size = this.cells.length;
+    if ((flags & StateDeltaEncoder.CELLS) != 0) {
+      int count = this.readCount();
+      int index = -1;
+      for (int cell = 0; cell < count; cell++) {
+        long next = index + 1 + this.readVarint();
+        if (next >= size) {
+          throw new IllegalArgumentException("Location is outside the dungeon");
+        }
+        index = (int) next;
+        this.setCell(index, this.readCell(this.readByte()));
+      }
+    }
+    if ((flags & StateDeltaEncoder.POSITION) != 0) {
+      this.position = this.readIndex(size);
+    }
+    if ((flags & StateDeltaEncoder.ARROWS) != 0) {
+      this.arrows = this.readCount();
+    }
+    if ((flags & StateDeltaEncoder.TREASURE) != 0) {
+      this.readNewTreasure();
+    }
+    if ((flags & StateDeltaEncoder.STATUS) != 0) {
+      this.status = this.readByte();
+    }
+  }
+
+  // Reads the contents of a location after its flags, packing them as SyncCells does
+  private int readCell(int flags) {
+    int cell = flags & ~SyncCells.PATHS;
+    if ((flags & SyncCells.HAS_MONSTER) != 0) {
+      cell |= Math.min(this.readCount(), SyncCells.MAX_HITS) << SyncCells.HITS_SHIFT;
+    }
+    if ((flags & SyncCells.HAS_TREASURE) != 0) {
+      long kinds = this.readVarint();
+      if (kinds == 0 || kinds >= 1 << SyncCells.TREASURE_KINDS) {
+        throw new IllegalArgumentException("Unknown kind of treasure");
+      }
+      cell |= (int) kinds << SyncCells.TREASURE_SHIFT;
+    }
+    return cell;
+  }
+
+  private void readNewTreasure() {
+    int count = this.readCount();
+    for (int item = 0; item < count; item++) {
+      int feature = this.readByte();
+      if (feature >= SyncCells.TREASURE_KINDS) {
+        throw new IllegalArgumentException("Unknown kind of treasure");
+      }
+      this.treasure.add(SyncCells.treasureAt(feature));
+    }
+  }
+
+  private void setCell(int index, int cell) {
+    int row = index / this.columns;
+    int column = index % this.columns;
+    this.dungeonHash ^= SyncCells.hashOf(row, column, this.cells[index])
+            ^ SyncCells.hashOf(row, column, cell);
+    this.cells[index] = cell;
+  }
+
+  private int readByte() {
+    if (this.read >= this.frame.length) {
+      throw new IllegalArgumentException("Frame is truncated");
+    }
+    return this.frame[this.read++] & 0xFF;
+  }
+
+  private long readVarint() {
+    long value = 0;
+    for (int shift = 0; shift < Long.SIZE; shift += 7) {
+      int next = this.readByte();
+      value |= (long) (next & 0x7F) << shift;
+      if ((next & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("Number is too long");
+  }
+
+  private int readCount() {
+    long value = this.readVarint();
+    if (value > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Number is too large");
+    }
+    return (int) value;
+  }
+
+  private int readSize() {
+    int value = this.readCount();
+    if (value == 0) {
+      throw new IllegalArgumentException("Size must be positive");
+    }
+    return value;
+  }
+
+  private int readIndex(int size) {
+    int value = this.readCount();
+    if (value >= size) {
+      throw new IllegalArgumentException("Location is outside the dungeon");
+    }
+    return value;
+  }
+
+  // Dungeon read from the mirrored state
+  private final class MirrorDungeon extends PackedDungeonView {
+
+    @Override
+    DungeonTopology topology() {
+      return topology;
+    }
+
+    @Override
+    int cell(int index) {
+      return cells[index];
+    }
+
+    @Override
+    int startIndex() {
+      return start;
+    }
+
+    @Override
+    int endIndex() {
+      return end;
+    }
+
+    @Override
+    public long getStateHash() {
+      return dungeonHash;
+    }
+  }
+
+  // Player read from the mirrored state
+  private final class MirrorPlayer implements ReadOnlyPlayer {
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public Coordinates getCurrentCoordinates() {
+      return dungeon.coordinatesOf(position);
+    }
+
+    @Override
+    public List<Coordinates> getPossibleMoves() {
+      return dungeon.getAdjacent(this.getCurrentCoordinates());
+    }
+
+    @Override
+    public List<Treasure> getCurrentTreasure() {
+      return new ArrayList<>(treasure);
+    }
+
+    @Override
+    public List<Treasure> viewTreasureAtCurrentLocation() {
+      return dungeon.viewTreasureInCave(this.getCurrentCoordinates());
+    }
+
+    @Override
+    public boolean currentLocationHasArrow() {
+      return dungeon.hasArrow(this.getCurrentCoordinates());
+    }
+
+    @Override
+    public int getArrowCount() {
+      return arrows;
+    }
+
+    @Override
+    public boolean isPlayerAlive() {
+      return (status & StateDeltaEncoder.ALIVE) != 0;
+    }
+
+    @Override
+    public MonsterSmell getSmellInCurrentCave() {
+      return dungeon.getSmell(this.getCurrentCoordinates());
+    }
+
+    @Override
+    public boolean hasPlayerWon() {
+      return (status & StateDeltaEncoder.WON) != 0;
+    }
+
+    @Override
+    public Coordinates getNorth() {
+      return dungeon.getNorth(this.getCurrentCoordinates());
+    }
+
+    @Override
+    public Coordinates getSouth() {
+      return dungeon.getSouth(this.getCurrentCoordinates());
+    }
+
+    @Override
+    public Coordinates getEast() {
+      return dungeon.getEast(this.getCurrentCoordinates());
+    }
+
+    @Override
+    public Coordinates getWest() {
+      return dungeon.getWest(this.getCurrentCoordinates());
+    }
+
+    // Computes the hash of the player from scratch, as the mirrored player hashes it
+    @Override
+    public long getStateHash() {
+      Coordinates current = this.getCurrentCoordinates();
+      long hash = ZobristKeys.cellKey(current.getXCoordinates(), current.getYCoordinates(),
+              ZobristKeys.PLAYER);
+      hash ^= ZobristKeys.playerKey(ZobristKeys.ARROWS_HELD, arrows);
+      if (this.isPlayerAlive()) {
+        hash ^= ZobristKeys.playerKey(ZobristKeys.ALIVE, 1);
+      }
+      if (this.hasPlayerWon()) {
+        hash ^= ZobristKeys.playerKey(ZobristKeys.WON, 1);
+      }
+      int[] counts = new int[SyncCells.TREASURE_KINDS];
+      for (Treasure item : treasure) {
+        counts[ZobristKeys.treasureFeature(item)]++;
+      }
+      for (int feature = 0; feature < counts.length; feature++) {
+        if (counts[feature] > 0) {
+          hash ^= ZobristKeys.playerKey(ZobristKeys.HELD_TREASURE + feature, counts[feature]);
+        }
+      }
+      return hash ^ dungeonHash;
+    }
+  }
+}
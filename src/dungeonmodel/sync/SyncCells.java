@@ -0,0 +1,99 @@
+package dungeonmodel.sync;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.DungeonTopology;
+import dungeonmodel.dungeon.ReadOnlyDungeon;
+import dungeonmodel.dungeon.ZobristKeys;
+import dungeonmodel.treasure.Treasure;
+import dungeonmodel.treasure.TreasureFactory;
+
+// Package private helpers for the contents of a location packed into an int, as frames carry
+// them and mirrors and snapshots keep them: paths in the low four bits, then a bit each for an
+// arrow, a monster, treasure and the monster being alive, the hits on the monster in the second
+// byte and a bit per kind of treasure, numbered by ZobristKeys.treasureFeature, above them.
+final class SyncCells {
+
+  static final int PATHS = (1 << DungeonTopology.DIRECTIONS) - 1;
+  static final int HAS_ARROW = 1 << 4;
+  static final int HAS_MONSTER = 1 << 5;
+  static final int HAS_TREASURE = 1 << 6;
+  static final int MONSTER_ALIVE = 1 << 7;
+  static final int HITS_SHIFT = 8;
+  static final int MAX_HITS = 0xFF;
+  static final int TREASURE_SHIFT = 16;
+  static final int TREASURE_KINDS = ZobristKeys.ARROW;
+
+  private static final Treasure[] TREASURE_BY_FEATURE = new Treasure[TREASURE_KINDS];
+
+  static {
+    for (Treasure treasure : TreasureFactory.getAllPossibleTreasure()) {
+      TREASURE_BY_FEATURE[ZobristKeys.treasureFeature(treasure)] = treasure;
+    }
+  }
+
+  private SyncCells() {
+    // only static helpers
+  }
+
+  // Returns the contents of a location of any dungeon, without its paths
+  static int contentsOf(ReadOnlyDungeon dungeon, Coordinates coordinates) {
+    int hits = Math.min(dungeon.monsterArrowCount(coordinates), MAX_HITS);
+    boolean alive = dungeon.hasMonster(coordinates);
+    int cell = 0;
+    if (dungeon.hasArrow(coordinates)) {
+      cell |= HAS_ARROW;
+    }
+    if (alive || hits > 0) {
+      cell |= HAS_MONSTER | hits << HITS_SHIFT;
+    }
+    if (alive) {
+      cell |= MONSTER_ALIVE;
+    }
+    int kinds = 0;
+    for (Treasure item : dungeon.viewTreasureInCave(coordinates)) {
+      kinds |= 1 << ZobristKeys.treasureFeature(item);
+    }
+    if (kinds != 0) {
+      cell |= HAS_TREASURE | kinds << TREASURE_SHIFT;
+    }
+    return cell;
+  }
+
+  static int hits(int cell) {
+    return cell >>> HITS_SHIFT & MAX_HITS;
+  }
+
+  static int treasureKinds(int cell) {
+    return cell >>> TREASURE_SHIFT;
+  }
+
+  static Treasure treasureAt(int feature) {
+    return TREASURE_BY_FEATURE[feature];
+  }
+
+  static List<Treasure> treasureOf(int cell) {
+    List<Treasure> treasure = new ArrayList<>();
+    for (int kinds = treasureKinds(cell); kinds != 0; kinds &= kinds - 1) {
+      treasure.add(TREASURE_BY_FEATURE[Integer.numberOfTrailingZeros(kinds)]);
+    }
+    return treasure;
+  }
+
+  // Returns the hash of every feature in a cell, as the dungeon it came from hashes it
+  static long hashOf(int row, int column, int cell) {
+    long hash = 0;
+    for (int kinds = treasureKinds(cell); kinds != 0; kinds &= kinds - 1) {
+      hash ^= ZobristKeys.cellKey(row, column, Integer.numberOfTrailingZeros(kinds));
+    }
+    if ((cell & HAS_ARROW) != 0) {
+      hash ^= ZobristKeys.cellKey(row, column, ZobristKeys.ARROW);
+    }
+    if ((cell & HAS_MONSTER) != 0) {
+      hash ^= ZobristKeys.cellKey(row, column, ZobristKeys.MONSTER + hits(cell));
+    }
+    return hash;
+  }
+}
@@ -0,0 +1,200 @@
+package dungeonmodel.sync;
+
+import java.util.Arrays;
+import java.util.List;
+
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.Dungeon;
+import dungeonmodel.dungeon.MonsterSmell;
+import dungeonmodel.treasure.Treasure;
+import dungeonmodel.weapon.Arrow;
+
+/**
+ * Dungeon which passes everything on to another dungeon and remembers which locations have changed
+ * since they were last collected, so that only those need to be sent to clients.
+ * Every change of a dungeon goes through picking up treasure or an arrow, an arrow striking or a
+ * reset, so the locations are marked as those happen; a reset or taking the stairs to another
+ * floor changes every location and is remembered on its own instead.
+ * Players must be given this dungeon rather than the one it wraps for their changes to be seen.
+ */
+public final class TrackingDungeon implements Dungeon {
+
+  private final Dungeon dungeon;
+  private final int columns;
+  private final long[] changed;
+  private int[] changes;
+  private int changeCount;
+  private boolean reset;
+
+  /**
+   * Creates a dungeon tracking the changes made to the given dungeon through it.
+   *
+   * @param dungeon dungeon to pass everything on to
+   * @throws IllegalArgumentException if the dungeon is null
+   */
+  public TrackingDungeon(Dungeon dungeon) throws IllegalArgumentException {
+    if (dungeon == null) {
+      throw new IllegalArgumentException("Dungeon cannot be null");
+    }
+    this.dungeon = dungeon;
+    int rows = dungeon.getDimensions().get(0);
+    this.columns = dungeon.getDimensions().get(1);
+    this.changed = new long[(rows * this.columns + Long.SIZE - 1) / Long.SIZE];
+    this.changes = new int[16];
+  }
+
+  /**
+   * Collects the locations changed since they were last collected, numbered row by row, and
+   * forgets them.
+   *
+   * @return indices of the changed locations in increasing order
+   */
+  public int[] drainChanges() {
+    int[] result = Arrays.copyOf(this.changes, this.changeCount);
+    Arrays.sort(result);
+    for (int index : result) {
+      this.changed[index / Long.SIZE] &= ~(1L << index);
+    }
+    this.changeCount = 0;
+    return result;
+  }
+
+  /**
+   * Check if the dungeon was reset since this was last checked, and forget the reset.
+   *
+   * @return true if the dungeon was reset, false otherwise
+   */
+  public boolean drainReset() {
+    boolean result = this.reset;
+    this.reset = false;
+    return result;
+  }
+
+  // Remembers that a location has changed, once however often it changes
+  private void mark(Coordinates coordinates) {
+    int index = coordinates.getXCoordinates() * this.columns + coordinates.getYCoordinates();
+    long bit = 1L << index;
+    if ((this.changed[index / Long.SIZE] & bit) != 0) {
+      return;
+    }
+    this.changed[index / Long.SIZE] |= bit;
+    if (this.changeCount == this.changes.length) {
+      this.changes = Arrays.copyOf(this.changes, this.changes.length * 2);
+    }
+    this.changes[this.changeCount++] = index;
+  }
+
+  @Override
+  public List<Treasure> pickupTreasureInCave(Coordinates coordinates) {
+    List<Treasure> treasure = this.dungeon.pickupTreasureInCave(coordinates);
+    if (!treasure.isEmpty()) {
+      this.mark(coordinates);
+    }
+    return treasure;
+  }
+
+  @Override
+  public Arrow pickUpArrow(Coordinates coordinates) {
+    Arrow arrow = this.dungeon.pickUpArrow(coordinates);
+    if (arrow != null) {
+      this.mark(coordinates);
+    }
+    return arrow;
+  }
+
+  @Override
+  public void arrowStrike(Arrow arrow) {
+    this.dungeon.arrowStrike(arrow);
+    this.mark(arrow.getCurrentLocation());
+  }
+
+  @Override
+  public void resetDungeon() {
+    this.dungeon.resetDungeon();
+    this.reset = true;
+  }
+
+  @Override
+  public Coordinates getStairsDown() {
+    return this.dungeon.getStairsDown();
+  }
+
+  @Override
+  public boolean takeStairs(Coordinates coordinates) {
+    if (!this.dungeon.takeStairs(coordinates)) {
+      return false;
+    }
+    this.reset = true;
+    return true;
+  }
+
+  @Override
+  public List<Integer> getDimensions() {
+    return this.dungeon.getDimensions();
+  }
+
+  @Override
+  public List<Treasure> viewTreasureInCave(Coordinates coordinates) {
+    return this.dungeon.viewTreasureInCave(coordinates);
+  }
+
+  @Override
+  public Coordinates getStartCave() {
+    return this.dungeon.getStartCave();
+  }
+
+  @Override
+  public Coordinates getEndCave() {
+    return this.dungeon.getEndCave();
+  }
+
+  @Override
+  public List<Coordinates> getAdjacent(Coordinates coordinates) {
+    return this.dungeon.getAdjacent(coordinates);
+  }
+
+  @Override
+  public boolean hasArrow(Coordinates coordinates) {
+    return this.dungeon.hasArrow(coordinates);
+  }
+
+  @Override
+  public boolean hasMonster(Coordinates coordinates) {
+    return this.dungeon.hasMonster(coordinates);
+  }
+
+  @Override
+  public MonsterSmell getSmell(Coordinates coordinates) {
+    return this.dungeon.getSmell(coordinates);
+  }
+
+  @Override
+  public int monsterArrowCount(Coordinates coordinates) {
+    return this.dungeon.monsterArrowCount(coordinates);
+  }
+
+  @Override
+  public Coordinates getNorth(Coordinates coordinates) {
+    return this.dungeon.getNorth(coordinates);
+  }
+
+  @Override
+  public Coordinates getSouth(Coordinates coordinates) {
+    return this.dungeon.getSouth(coordinates);
+  }
+
+  @Override
+  public Coordinates getEast(Coordinates coordinates) {
+    return this.dungeon.getEast(coordinates);
+  }
+
+  @Override
+  public Coordinates getWest(Coordinates coordinates) {
+    return this.dungeon.getWest(coordinates);
+  }
+
+  @Override
+  public long getStateHash() {
+    return this.dungeon.getStateHash();
+  }
+}
@@ -0,0 +1,180 @@
+package server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import dungeonmodel.dungeon.DungeonSettings;
+
+/**
+ * Local TCP server hosting many games at once, one {@link GameSession} per connection, each
+ * speaking the commands of the console view. Every session blocks on its own connection, so each
+ * runs on its own thread, started with a small stack so tens of thousands of sessions fit in the
+ * memory of one process. Threads are reused as sessions end. When accepting a connection fails,
+ * for example because the process has run out of file descriptors, the server waits before
+ * trying again, twice as long after each failure in a row up to a second.
+ * The server keeps a registry of the connected sessions and a histogram of how long sessions take
+ * to reply to their commands. A connection may also watch the game of another session, as
+ * {@link GameSession} describes.
+ */
+public final class GameServer implements Closeable {
+
+  private static final int BACKLOG = 4096;
+  private static final long SESSION_STACK_BYTES = 256 * 1024;
+  private static final long MIN_BACKOFF_MILLIS = 5;
+  private static final long MAX_BACKOFF_MILLIS = 1000;
+
+  private final DungeonSettings settings;
+  private final ServerSocket serverSocket;
+  private final ExecutorService sessionThreads;
+  private final SessionRegistry registry;
+  private final LatencyHistogram latencies;
+  private final Thread acceptor;
+  private volatile boolean isClosed;
+
+  /**
+   * Starts a server listening on the loopback address, giving every player a new dungeon of the
+   * given settings.
+   *
+   * @param port     port to listen on, or zero for any free port
+   * @param settings settings of the dungeon of every session
+   * @throws IllegalArgumentException if the settings are null or the port is out of range
+   * @throws IOException              if the port cannot be listened on
+   */
+  public GameServer(int port, DungeonSettings settings)
+          throws IllegalArgumentException, IOException {
+    if (settings == null) {
+      throw new IllegalArgumentException("Settings cannot be null");
+    }
+    if (port < 0 || port > 0xFFFF) {
+      throw new IllegalArgumentException("Port must be between 0 and 65535");
+    }
+    this.settings = settings;
+    this.serverSocket = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress());
+    this.sessionThreads = Executors.newCachedThreadPool(new SessionThreadFactory());
+    this.registry = new SessionRegistry();
+    this.latencies = new LatencyHistogram();
+    this.acceptor = new Thread(this::acceptSessions, "game-server-acceptor");
+    this.acceptor.setDaemon(true);
+    this.acceptor.start();
+  }
+
+  /**
+   * Get the port the server listens on.
+   *
+   * @return port number
+   */
+  public int getPort() {
+    return this.serverSocket.getLocalPort();
+  }
+
+  /**
+   * Get the registry of connected sessions.
+   *
+   * @return session registry
+   */
+  public SessionRegistry getRegistry() {
+    return this.registry;
+  }
+
+  /**
+   * Get the latencies of the replies of every session.
+   *
+   * @return latency histogram in nanoseconds
+   */
+  public LatencyHistogram getLatencies() {
+    return this.latencies;
+  }
+
+  /**
+   * Stops accepting connections and disconnects every session.
+   *
+   * @throws IOException if the server socket cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    this.isClosed = true;
+    this.serverSocket.close();
+    for (GameSession session : this.registry.getSessions()) {
+      try {
+        session.close();
+      } catch (IOException e) {
+        // the session is already disconnected
+      }
+    }
+    this.sessionThreads.shutdown();
+  }
+
+  // Accepts connections until the server is closed, starting a session for each
+  private void acceptSessions() {
+    long backoff = 0;
+    while (!this.isClosed) {
+      Socket connection;
+      try {
+        connection = this.serverSocket.accept();
+      } catch (IOException e) {
+        // the server socket was closed, or accepting fails, as it does for as long as the
+        // process is out of file descriptors, so wait longer each time before trying again
+        backoff = Math.min(MAX_BACKOFF_MILLIS, Math.max(MIN_BACKOFF_MILLIS, backoff * 2));
+        if (!this.pause(backoff)) {
+          return;
+        }
+        continue;
+      }
+      backoff = 0;
+      try {
+        connection.setTcpNoDelay(true);
+      } catch (IOException e) {
+        // the connection failed before its session started, and the next one is accepted
+        closeQuietly(connection);
+        continue;
+      }
+      GameSession session = new GameSession(this.registry.nextId(), connection,
+              this.settings, this.registry, this.latencies);
+      this.registry.register(session);
+      this.sessionThreads.execute(session);
+    }
+  }
+
+  // Waits before accepting again unless the server is closed, returning false if it should stop
+  private boolean pause(long millis) {
+    if (this.isClosed) {
+      return false;
+    }
+    try {
+      Thread.sleep(millis);
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private static void closeQuietly(Socket connection) {
+    try {
+      connection.close();
+    } catch (IOException e) {
+      // nothing more can be done with a connection which failed
+    }
+  }
+
+  // Creates daemon session threads with small stacks
+  private static final class SessionThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(null, runnable, "game-session-" + this.count.incrementAndGet(),
+              SESSION_STACK_BYTES);
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
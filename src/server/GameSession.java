@@ -0,0 +1,301 @@
+package server;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import controller.DungeonGameController;
+import controller.GameController;
+import dungeonmodel.dungeon.DungeonSettings;
+import dungeonmodel.player.DungeonPlayer;
+import dungeonmodel.player.Player;
+import dungeonmodel.player.ReadOnlyPlayer;
+import dungeonmodel.sync.StateDeltaEncoder;
+import dungeonmodel.sync.TrackingDungeon;
+import view.ConsoleView;
+import view.GameView;
+
+/**
+ * One player connected to a {@link GameServer}, playing their own game in their own dungeon over
+ * the commands of the {@link ConsoleView}. The session first asks for the name of the player, then
+ * hands the connection to a console view and controller until the game ends or the connection
+ * closes.
+ * Output is buffered and only sent when the session waits for more input, so a command costs one
+ * write to the socket however many lines it prints. The time from input arriving to the reply
+ * being sent is recorded as the latency of the command.
+ * A connection which answers the name prompt with {@value #WATCH_COMMAND} and the id of another
+ * session watches that game instead of playing: after every command of the player it is sent a
+ * frame of a {@link StateDeltaEncoder}, starting with a keyframe, for a
+ * {@link view.RemoteSwingView} to mirror. The frames are written on the thread of the game, so
+ * a spectator which stops reading holds up the player once the buffers of its connection fill.
+ */
+public final class GameSession implements Runnable, Closeable {
+
+  /**
+   * Answer to the name prompt which makes a connection watch another session, followed by the id
+   * of the session.
+   */
+  public static final String WATCH_COMMAND = "watch ";
+
+  private static final int KEYFRAME_INTERVAL = 64;
+
+  private final long id;
+  private final Socket socket;
+  private final DungeonSettings settings;
+  private final SessionRegistry registry;
+  private final LatencyHistogram latencies;
+  private final Queue<OutputStream> joining;
+  private final List<OutputStream> spectators;
+  private StateDeltaEncoder encoder;
+  private volatile Player player;
+  private volatile long commandCount;
+
+  // Created only by GameServer
+  GameSession(long id, Socket socket, DungeonSettings settings, SessionRegistry registry,
+              LatencyHistogram latencies) {
+    this.id = id;
+    this.socket = socket;
+    this.settings = settings;
+    this.registry = registry;
+    this.latencies = latencies;
+    this.joining = new ConcurrentLinkedQueue<>();
+    this.spectators = new CopyOnWriteArrayList<>();
+  }
+
+  /**
+   * Plays the game of the session until it ends or the connection closes, then closes the
+   * connection.
+   */
+  @Override
+  public void run() {
+    try (Socket connection = this.socket) {
+      BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(),
+              StandardCharsets.UTF_8));
+      Writer out = new BufferedWriter(new OutputStreamWriter(connection.getOutputStream(),
+              StandardCharsets.UTF_8));
+      out.write("Enter Player Name\n");
+      out.flush();
+      String name = in.readLine();
+      if (name == null) {
+        return;
+      }
+      if (name.startsWith(WATCH_COMMAND)) {
+        this.watch(name.substring(WATCH_COMMAND.length()).trim());
+        return;
+      }
+      TrackingDungeon dungeon;
+      try {
+        dungeon = new TrackingDungeon(this.settings.createDungeon());
+        this.player = new DungeonPlayer(name.trim(), dungeon);
+      } catch (IllegalArgumentException iAx) {
+        out.write(iAx.getMessage() + "\n");
+        out.flush();
+        return;
+      }
+      this.encoder = new StateDeltaEncoder(this.player, dungeon, KEYFRAME_INTERVAL);
+      TimedReadable input = new TimedReadable(in, out);
+      GameView view = new WatchedView(new ConsoleView(input, out, this.player));
+      new DungeonGameController(this.player, view).playGame();
+      input.replied();
+    } catch (IOException | IllegalStateException e) {
+      // the connection was dropped, which ends the session
+    } finally {
+      this.registry.unregister(this);
+      this.disconnectSpectators();
+    }
+  }
+
+  /**
+   * Get the id of the session, unique within its server.
+   *
+   * @return session id
+   */
+  public long getId() {
+    return this.id;
+  }
+
+  /**
+   * Get the player of the session.
+   *
+   * @return player, or null if the session has not started its game yet
+   */
+  public ReadOnlyPlayer getPlayer() {
+    return this.player;
+  }
+
+  /**
+   * Get the address the session is connected from.
+   *
+   * @return remote address
+   */
+  public SocketAddress getRemoteAddress() {
+    return this.socket.getRemoteSocketAddress();
+  }
+
+  /**
+   * Get the number of times the session has replied to input.
+   *
+   * @return number of replies
+   */
+  public long getCommandCount() {
+    return this.commandCount;
+  }
+
+  /**
+   * Get the number of connections watching the session.
+   *
+   * @return number of spectators
+   */
+  public int getSpectatorCount() {
+    return this.joining.size() + this.spectators.size();
+  }
+
+  /**
+   * Disconnects the session, which ends its game.
+   *
+   * @throws IOException if the connection cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    this.socket.close();
+  }
+
+  // Sends the frames of the session with the given id to this connection until either ends.
+  // The connection is closed at once if there is no such session
+  private void watch(String id) throws IOException {
+    GameSession watched;
+    try {
+      watched = this.registry.get(Long.parseLong(id));
+    } catch (NumberFormatException nfe) {
+      watched = null;
+    }
+    if (watched == null || watched == this) {
+      return;
+    }
+    OutputStream frames = new BufferedOutputStream(this.socket.getOutputStream());
+    watched.joining.add(frames);
+    try {
+      if (this.registry.get(watched.getId()) == null) {
+        // the game ended while joining, after its spectators were disconnected
+        return;
+      }
+      while (this.socket.getInputStream().read() >= 0) {
+        // nothing is expected from a spectator, so wait for it to disconnect
+      }
+    } finally {
+      watched.joining.remove(frames);
+      watched.spectators.remove(frames);
+    }
+  }
+
+  // Encodes the game once for all the spectators after a command, as a keyframe when one has
+  // just joined, and drops spectators which can no longer be written to
+  private void sendFrame() {
+    if (this.spectators.isEmpty() && this.joining.isEmpty()) {
+      return;
+    }
+    byte[] frame;
+    if (this.joining.isEmpty()) {
+      frame = this.encoder.encodeTick();
+    } else {
+      frame = this.encoder.encodeKeyframe();
+      for (OutputStream joined = this.joining.poll(); joined != null;
+           joined = this.joining.poll()) {
+        this.spectators.add(joined);
+      }
+    }
+    for (OutputStream spectator : this.spectators) {
+      try {
+        StateDeltaEncoder.writeFrame(spectator, frame);
+        spectator.flush();
+      } catch (IOException e) {
+        this.spectators.remove(spectator);
+      }
+    }
+  }
+
+  // Closes the connections of the spectators once the game has ended
+  private void disconnectSpectators() {
+    List<OutputStream> all = new ArrayList<>(this.spectators);
+    all.addAll(this.joining);
+    for (OutputStream spectator : all) {
+      try {
+        spectator.close();
+      } catch (IOException e) {
+        // the spectator is already disconnected
+      }
+    }
+  }
+
+  // Console view of the player which also sends a frame to the spectators after every refresh
+  private final class WatchedView implements GameView {
+
+    private final GameView view;
+
+    private WatchedView(GameView view) {
+      this.view = view;
+    }
+
+    @Override
+    public void startView(GameController controller) {
+      this.view.startView(controller);
+    }
+
+    @Override
+    public void displayMessage(String message) {
+      this.view.displayMessage(message);
+    }
+
+    @Override
+    public void refresh() {
+      this.view.refresh();
+      GameSession.this.sendFrame();
+    }
+  }
+
+  // Flushes the reply to the last input before waiting for more, timing each reply
+  private final class TimedReadable implements Readable {
+
+    private final Readable in;
+    private final Writer out;
+    private long inputArrived;
+
+    private TimedReadable(Readable in, Writer out) {
+      this.in = in;
+      this.out = out;
+    }
+
+    @Override
+    public int read(CharBuffer buffer) throws IOException {
+      this.replied();
+      int read = this.in.read(buffer);
+      this.inputArrived = System.nanoTime();
+      return read;
+    }
+
+    // Sends the reply to the last input and records how long it took
+    private void replied() throws IOException {
+      this.out.flush();
+      if (this.inputArrived != 0) {
+        GameSession.this.latencies.record(System.nanoTime() - this.inputArrived);
+        GameSession.this.commandCount++;
+        this.inputArrived = 0;
+      }
+    }
+  }
+}
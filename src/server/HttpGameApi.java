@@ -0,0 +1,463 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import controller.DungeonGameController;
+import controller.GameController;
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.Dungeon;
+import dungeonmodel.dungeon.DungeonSettings;
+import dungeonmodel.player.DungeonPlayer;
+import dungeonmodel.player.Player;
+import dungeonmodel.player.ReadOnlyPlayer;
+import dungeonmodel.treasure.Treasure;
+import view.GameView;
+
+/**
+ * Embedded HTTP API for playing games from scripts and tools without a view, served on the
+ * loopback address by the JDK's HTTP server. Every game is played through its own controller, and
+ * every reply is the state of the game as JSON, written by a {@link JsonWriter} kept per thread.
+ * The API has these endpoints, taking their arguments as query parameters:
+ * <ul>
+ *   <li>POST /games with rows, columns, interconnectivity, wrapping, percent, monsters and name
+ *   creates a game</li>
+ *   <li>GET /games/{id} gets the state of a game</li>
+ *   <li>POST /games/{id}/move with direction moves the player north, south, east or west</li>
+ *   <li>POST /games/{id}/shoot with direction and distance shoots an arrow</li>
+ *   <li>POST /games/{id}/pickup with item arrow or treasure picks it up</li>
+ *   <li>POST /games/{id}/reset resets the player and dungeon</li>
+ *   <li>DELETE /games/{id} ends a game</li>
+ * </ul>
+ * Invalid requests are answered with status 400 and an error message, unknown games and paths
+ * with 404 and failures of the game with 500.
+ * Requests to the same game are taken one at a time; requests to different games run in parallel
+ * on a pool of threads.
+ * Games no request has named for the idle timeout are ended when a game is created, and when
+ * there are still as many games as allowed the least recently used one is ended to make room.
+ * Replies go out faster with the JDK server's {@code sun.net.httpserver.nodelay} property set, as
+ * the driver does, since it writes the headers and body of a reply separately.
+ */
+public final class HttpGameApi implements Closeable {
+
+  /**
+   * Largest number of games played at once by default.
+   */
+  public static final int MAX_GAMES = 4096;
+
+  /**
+   * Time in milliseconds after which a game no request has named is ended by default.
+   */
+  public static final long IDLE_TIMEOUT_MILLIS = 30 * 60 * 1000;
+
+  private static final String GAMES = "/games";
+  private static final int BACKLOG = 1024;
+
+  private final HttpServer server;
+  private final ExecutorService threads;
+  private final Map<Long, ApiGame> games;
+  private final AtomicLong nextId;
+  private final ThreadLocal<JsonWriter> writers;
+  private final int maxGames;
+  private final long idleTimeoutNanos;
+
+  /**
+   * Starts the API on the loopback address, keeping at most {@value #MAX_GAMES} games and ending
+   * those idle for {@value #IDLE_TIMEOUT_MILLIS} milliseconds.
+   *
+   * @param port    port to listen on, or zero for any free port
+   * @param threads number of threads serving requests
+   * @throws IllegalArgumentException if the port is out of range or there are no threads
+   * @throws IOException              if the port cannot be listened on
+   */
+  public HttpGameApi(int port, int threads) throws IllegalArgumentException, IOException {
+    this(port, threads, MAX_GAMES, IDLE_TIMEOUT_MILLIS);
+  }
+
+  /**
+   * Starts the API on the loopback address.
+   *
+   * @param port              port to listen on, or zero for any free port
+   * @param threads           number of threads serving requests
+   * @param maxGames          largest number of games played at once
+   * @param idleTimeoutMillis time in milliseconds after which a game no request has named is
+   *                          ended
+   * @throws IllegalArgumentException if the port is out of range or any other argument is not
+   *                                  positive
+   * @throws IOException              if the port cannot be listened on
+   */
+  public HttpGameApi(int port, int threads, int maxGames, long idleTimeoutMillis)
+          throws IllegalArgumentException, IOException {
+    if (port < 0 || port > 0xFFFF) {
+      throw new IllegalArgumentException("Port must be between 0 and 65535");
+    }
+    if (threads <= 0) {
+      throw new IllegalArgumentException("Number of threads must always be positive");
+    }
+    if (maxGames <= 0 || idleTimeoutMillis <= 0) {
+      throw new IllegalArgumentException("Game limit and idle timeout must be positive");
+    }
+    this.maxGames = maxGames;
+    this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+    this.games = new ConcurrentHashMap<>();
+    this.nextId = new AtomicLong();
+    this.writers = ThreadLocal.withInitial(JsonWriter::new);
+    this.threads = Executors.newFixedThreadPool(threads);
+    this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+            BACKLOG);
+    this.server.setExecutor(this.threads);
+    this.server.createContext(GAMES, this::handle);
+    this.server.start();
+  }
+
+  /**
+   * Get the port the API listens on.
+   *
+   * @return port number
+   */
+  public int getPort() {
+    return this.server.getAddress().getPort();
+  }
+
+  /**
+   * Get the number of games being played.
+   *
+   * @return number of games
+   */
+  public int getGameCount() {
+    return this.games.size();
+  }
+
+  /**
+   * Stops the API, ending every game.
+   */
+  @Override
+  public void close() {
+    this.server.stop(0);
+    this.threads.shutdown();
+    this.games.clear();
+  }
+
+  // Routes a request by its method and path, replying with the game state or an error
+  private void handle(HttpExchange exchange) throws IOException {
+    JsonWriter json = this.writers.get().reset();
+    int status;
+    try {
+      // the context matches any path starting with /games, so /gamesXYZ has to be refused here
+      String rest = exchange.getRequestURI().getPath().substring(GAMES.length());
+      if (!rest.isEmpty() && !rest.startsWith("/")) {
+        throw new GameNotFoundException("No such path");
+      }
+      String[] path = rest.split("/");
+      Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+      String method = exchange.getRequestMethod();
+      if (path.length <= 1) {
+        requireMethod(method, "POST");
+        status = 201;
+        this.create(query, json);
+      } else {
+        ApiGame game = this.games.get(parseLong(path[1], "game id"));
+        if (game == null) {
+          throw new GameNotFoundException("No such game");
+        }
+        game.touch();
+        status = 200;
+        if (path.length == 2 && method.equals("DELETE")) {
+          this.games.remove(game.id);
+          status = 204;
+        } else if (path.length == 2) {
+          requireMethod(method, "GET");
+          game.writeState(json);
+        } else if (path.length == 3) {
+          requireMethod(method, "POST");
+          game.act(path[2], query, json);
+        } else {
+          throw new GameNotFoundException("No such game");
+        }
+      }
+    } catch (GameNotFoundException e) {
+      status = 404;
+      writeError(json.reset(), e.getMessage());
+    } catch (IllegalArgumentException e) {
+      status = 400;
+      writeError(json.reset(), e.getMessage());
+    } catch (RuntimeException e) {
+      status = 500;
+      writeError(json.reset(), String.valueOf(e.getMessage()));
+    }
+
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    if (status == 204) {
+      exchange.sendResponseHeaders(status, -1);
+    } else {
+      exchange.sendResponseHeaders(status, json.size());
+      try (OutputStream body = exchange.getResponseBody()) {
+        json.writeTo(body);
+      }
+    }
+    exchange.close();
+  }
+
+  // Creates a game from the query and writes its state
+  private void create(Map<String, String> query, JsonWriter json) throws IllegalArgumentException {
+    DungeonSettings settings = new DungeonSettings(parseInt(query, "rows", -1),
+            parseInt(query, "columns", -1), parseInt(query, "interconnectivity", 0),
+            Boolean.parseBoolean(query.get("wrapping")), parseInt(query, "percent", -1),
+            parseInt(query, "monsters", -1));
+    Dungeon dungeon = settings.createDungeon();
+    ApiGame game = new ApiGame(this.nextId.incrementAndGet(),
+            new DungeonPlayer(query.getOrDefault("name", "Player"), dungeon));
+    synchronized (this.games) {
+      this.evictGames();
+      this.games.put(game.id, game);
+    }
+    game.writeState(json);
+  }
+
+  // Ends the games idle for too long, then the least recently used ones until there is room for
+  // one more. Called with the games locked, so creations do not race each other past the limit
+  private void evictGames() {
+    long now = System.nanoTime();
+    ApiGame oldest = null;
+    for (Iterator<ApiGame> games = this.games.values().iterator(); games.hasNext(); ) {
+      ApiGame game = games.next();
+      if (now - game.lastUsed >= this.idleTimeoutNanos) {
+        games.remove();
+      } else if (oldest == null || game.lastUsed - oldest.lastUsed < 0) {
+        oldest = game;
+      }
+    }
+    while (this.games.size() >= this.maxGames && oldest != null) {
+      this.games.remove(oldest.id);
+      oldest = null;
+      for (ApiGame game : this.games.values()) {
+        if (oldest == null || game.lastUsed - oldest.lastUsed < 0) {
+          oldest = game;
+        }
+      }
+    }
+  }
+
+  private static void requireMethod(String method, String expected)
+          throws IllegalArgumentException {
+    if (!method.equals(expected)) {
+      throw new IllegalArgumentException("Expected " + expected + " but was " + method);
+    }
+  }
+
+  private static Map<String, String> parseQuery(String query) {
+    Map<String, String> values = new HashMap<>();
+    if (query == null || query.isEmpty()) {
+      return values;
+    }
+    for (String pair : query.split("&")) {
+      int equals = pair.indexOf('=');
+      String name = equals < 0 ? pair : pair.substring(0, equals);
+      String value = equals < 0 ? "" : pair.substring(equals + 1);
+      values.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+              URLDecoder.decode(value, StandardCharsets.UTF_8));
+    }
+    return values;
+  }
+
+  private static int parseInt(Map<String, String> query, String name, int missing)
+          throws IllegalArgumentException {
+    String value = query.get(name);
+    if (value == null) {
+      if (missing < 0) {
+        throw new IllegalArgumentException("Missing " + name);
+      }
+      return missing;
+    }
+    long number = parseLong(value, name);
+    if (number < Integer.MIN_VALUE || number > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException(name + " is out of range");
+    }
+    return (int) number;
+  }
+
+  private static long parseLong(String value, String name) throws IllegalArgumentException {
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException nEx) {
+      throw new IllegalArgumentException(name + " needs to be a valid integer");
+    }
+  }
+
+  private static void writeError(JsonWriter json, String message) {
+    json.beginObject().name("error").value(message).endObject();
+  }
+
+  private static void writeTreasure(JsonWriter json, List<Treasure> treasure) {
+    json.beginArray();
+    for (Treasure item : treasure) {
+      json.beginObject()
+              .name("type").value(item.getTreasureType().name())
+              .name("quality").value(item.getTreasureQuality().name())
+              .name("value").value((long) item.getTreasureValue())
+              .endObject();
+    }
+    json.endArray();
+  }
+
+  private static void writeCoordinates(JsonWriter json, Coordinates coordinates) {
+    json.beginObject()
+            .name("row").value(coordinates.getXCoordinates())
+            .name("column").value(coordinates.getYCoordinates())
+            .endObject();
+  }
+
+  // Thrown when a request names a game which is not being played, or a path which is not served
+  private static final class GameNotFoundException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private GameNotFoundException(String message) {
+      super(message);
+    }
+  }
+
+  // One game with its controller, and a view keeping the messages of the last action
+  private static final class ApiGame implements GameView {
+
+    private static final String[] DIRECTIONS = {"north", "south", "east", "west"};
+
+    private final long id;
+    private final Player player;
+    private final GameController controller;
+    private final StringBuilder message;
+    private volatile long lastUsed;
+
+    private ApiGame(long id, Player player) {
+      this.id = id;
+      this.player = player;
+      this.controller = new DungeonGameController(player, this);
+      this.message = new StringBuilder();
+      this.touch();
+    }
+
+    // Records that a request named the game, so it is not ended as idle
+    private void touch() {
+      this.lastUsed = System.nanoTime();
+    }
+
+    // Takes an action and writes the state after it
+    private synchronized void act(String action, Map<String, String> query, JsonWriter json)
+            throws IllegalArgumentException {
+      this.message.setLength(0);
+      if (!this.player.isPlayerAlive() && !action.equals("reset")) {
+        throw new IllegalArgumentException("Player is dead, only reset is possible");
+      }
+      switch (action) {
+        case "move":
+          this.controller.movePlayer(this.neighbour(query.get("direction")));
+          break;
+        case "shoot":
+          this.controller.shootArrow(this.neighbour(query.get("direction")),
+                  parseInt(query, "distance", -1));
+          break;
+        case "pickup":
+          if ("arrow".equals(query.get("item"))) {
+            this.controller.pickupArrow();
+          } else if ("treasure".equals(query.get("item"))) {
+            this.controller.pickupTreasure();
+          } else {
+            throw new IllegalArgumentException("Item must be arrow or treasure");
+          }
+          break;
+        case "reset":
+          this.controller.resetPlayerAndDungeon();
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown action " + action);
+      }
+      this.writeState(json);
+    }
+
+    private Coordinates neighbour(String direction) throws IllegalArgumentException {
+      Coordinates[] neighbours = neighboursOf(this.player);
+      for (int index = 0; index < DIRECTIONS.length; index++) {
+        if (DIRECTIONS[index].equals(direction)) {
+          if (neighbours[index] == null) {
+            throw new IllegalArgumentException("No path " + direction);
+          }
+          return neighbours[index];
+        }
+      }
+      throw new IllegalArgumentException("Direction must be north, south, east or west");
+    }
+
+    private static Coordinates[] neighboursOf(ReadOnlyPlayer player) {
+      return new Coordinates[] {player.getNorth(), player.getSouth(), player.getEast(),
+          player.getWest()};
+    }
+
+    private synchronized void writeState(JsonWriter json) {
+      ReadOnlyPlayer player = this.player;
+      json.beginObject().name("id").value(this.id);
+      json.name("message").value(this.message.toString());
+      json.name("player").beginObject()
+              .name("name").value(player.getName())
+              .name("location");
+      writeCoordinates(json, player.getCurrentCoordinates());
+      json.name("arrows").value(player.getArrowCount())
+              .name("alive").value(player.isPlayerAlive())
+              .name("won").value(player.hasPlayerWon())
+              .name("treasure");
+      writeTreasure(json, player.getCurrentTreasure());
+      json.endObject();
+
+      json.name("cave");
+      if (player.isPlayerAlive()) {
+        json.beginObject()
+                .name("arrow").value(player.currentLocationHasArrow())
+                .name("smell").value(player.getSmellInCurrentCave().name())
+                .name("treasure");
+        writeTreasure(json, player.viewTreasureAtCurrentLocation());
+        json.name("moves").beginObject();
+        Coordinates[] neighbours = neighboursOf(player);
+        for (int index = 0; index < DIRECTIONS.length; index++) {
+          if (neighbours[index] != null) {
+            json.name(DIRECTIONS[index]);
+            writeCoordinates(json, neighbours[index]);
+          }
+        }
+        json.endObject().endObject();
+      } else {
+        json.nullValue();
+      }
+      json.endObject();
+    }
+
+    @Override
+    public void startView(GameController controller) {
+      // the API drives the controller itself
+    }
+
+    @Override
+    public void displayMessage(String message) {
+      this.message.append(message);
+    }
+
+    @Override
+    public void refresh() {
+      // the state is written with every reply
+    }
+  }
+}
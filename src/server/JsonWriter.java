@@ -0,0 +1,291 @@
+package server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Streaming JSON writer into a reusable byte buffer. Names and values are written as they are
+ * given, numbers digit by digit and strings character by character as UTF-8, so writing a document
+ * allocates nothing once the buffer has grown to fit it. Commas are placed from one bit per level
+ * of nesting, so at most 64 levels can be open at once.
+ * The writer does not check that the document is well formed beyond its nesting; every name must
+ * be followed by exactly one value.
+ */
+public final class JsonWriter {
+
+  private static final int MAX_DEPTH = Long.SIZE;
+  private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] MIN_LONG =
+          Long.toString(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+
+  private byte[] buffer;
+  private int size;
+  private int depth;
+  private long hasValue;
+  private boolean afterName;
+
+  /**
+   * Creates an empty writer.
+   */
+  public JsonWriter() {
+    this.buffer = new byte[1024];
+  }
+
+  /**
+   * Forgets everything written, keeping the buffer for the next document.
+   *
+   * @return this writer
+   */
+  public JsonWriter reset() {
+    this.size = 0;
+    this.depth = 0;
+    this.hasValue = 0;
+    this.afterName = false;
+    return this;
+  }
+
+  /**
+   * Get the number of bytes written.
+   *
+   * @return size of the document so far
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Writes the document to a stream.
+   *
+   * @param out stream to write to
+   * @throws IOException if the stream cannot be written
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    out.write(this.buffer, 0, this.size);
+  }
+
+  /**
+   * Get the document as a string, mostly for tests and logging.
+   *
+   * @return document written so far
+   */
+  @Override
+  public String toString() {
+    return new String(this.buffer, 0, this.size, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Opens an object.
+   *
+   * @return this writer
+   * @throws IllegalStateException if too many levels are open
+   */
+  public JsonWriter beginObject() throws IllegalStateException {
+    return this.open((byte) '{');
+  }
+
+  /**
+   * Closes the innermost object.
+   *
+   * @return this writer
+   * @throws IllegalStateException if nothing is open
+   */
+  public JsonWriter endObject() throws IllegalStateException {
+    return this.close((byte) '}');
+  }
+
+  /**
+   * Opens an array.
+   *
+   * @return this writer
+   * @throws IllegalStateException if too many levels are open
+   */
+  public JsonWriter beginArray() throws IllegalStateException {
+    return this.open((byte) '[');
+  }
+
+  /**
+   * Closes the innermost array.
+   *
+   * @return this writer
+   * @throws IllegalStateException if nothing is open
+   */
+  public JsonWriter endArray() throws IllegalStateException {
+    return this.close((byte) ']');
+  }
+
+  /**
+   * Writes the name of the next member of an object.
+   *
+   * @param name name of the member
+   * @return this writer
+   */
+  public JsonWriter name(String name) {
+    this.beforeValue();
+    this.string(name);
+    this.put((byte) ':');
+    this.afterName = true;
+    return this;
+  }
+
+  /**
+   * Writes a string value, or null.
+   *
+   * @param value string to write
+   * @return this writer
+   */
+  public JsonWriter value(String value) {
+    if (value == null) {
+      return this.nullValue();
+    }
+    this.beforeValue();
+    this.string(value);
+    return this;
+  }
+
+  /**
+   * Writes a number.
+   *
+   * @param value number to write
+   * @return this writer
+   */
+  public JsonWriter value(long value) {
+    this.beforeValue();
+    if (value == Long.MIN_VALUE) {
+      this.put(MIN_LONG);
+      return this;
+    }
+    if (value < 0) {
+      this.put((byte) '-');
+      value = -value;
+    }
+    int digits = 1;
+    for (long rest = value / 10; rest != 0; rest /= 10) {
+      digits++;
+    }
+    this.ensure(digits);
+    for (int digit = this.size + digits - 1; digit >= this.size; digit--) {
+      this.buffer[digit] = (byte) ('0' + value % 10);
+      value /= 10;
+    }
+    this.size += digits;
+    return this;
+  }
+
+  /**
+   * Writes a boolean.
+   *
+   * @param value boolean to write
+   * @return this writer
+   */
+  public JsonWriter value(boolean value) {
+    this.beforeValue();
+    this.put(value ? TRUE : FALSE);
+    return this;
+  }
+
+  /**
+   * Writes null.
+   *
+   * @return this writer
+   */
+  public JsonWriter nullValue() {
+    this.beforeValue();
+    this.put(NULL);
+    return this;
+  }
+
+  private JsonWriter open(byte bracket) throws IllegalStateException {
+    if (this.depth == MAX_DEPTH) {
+      throw new IllegalStateException("JSON is nested too deeply");
+    }
+    this.beforeValue();
+    this.put(bracket);
+    this.depth++;
+    this.hasValue &= ~(1L << (this.depth - 1));
+    return this;
+  }
+
+  private JsonWriter close(byte bracket) throws IllegalStateException {
+    if (this.depth == 0) {
+      throw new IllegalStateException("Nothing to close");
+    }
+    this.depth--;
+    this.put(bracket);
+    return this;
+  }
+
+  // Separates a value from the one before it at the same level, unless it follows a name
+  private void beforeValue() {
+    if (this.afterName) {
+      this.afterName = false;
+      return;
+    }
+    if (this.depth > 0) {
+      long bit = 1L << (this.depth - 1);
+      if ((this.hasValue & bit) != 0) {
+        this.put((byte) ',');
+      }
+      this.hasValue |= bit;
+    }
+  }
+
+  // Writes a quoted string as UTF-8, escaping quotes, backslashes and control characters
+  private void string(String value) {
+    this.put((byte) '"');
+    for (int index = 0; index < value.length(); index++) {
+      char c = value.charAt(index);
+      this.ensure(6);
+      if (c == '"' || c == '\\') {
+        this.buffer[this.size++] = '\\';
+        this.buffer[this.size++] = (byte) c;
+      } else if (c < 0x20) {
+        this.buffer[this.size++] = '\\';
+        this.buffer[this.size++] = 'u';
+        this.buffer[this.size++] = '0';
+        this.buffer[this.size++] = '0';
+        this.buffer[this.size++] = HEX[c >> 4];
+        this.buffer[this.size++] = HEX[c & 0xF];
+      } else if (c < 0x80) {
+        this.buffer[this.size++] = (byte) c;
+      } else if (c < 0x800) {
+        this.buffer[this.size++] = (byte) (0xC0 | c >> 6);
+        this.buffer[this.size++] = (byte) (0x80 | c & 0x3F);
+      } else if (Character.isHighSurrogate(c) && index + 1 < value.length()
+              && Character.isLowSurrogate(value.charAt(index + 1))) {
+        int codePoint = Character.toCodePoint(c, value.charAt(++index));
+        this.buffer[this.size++] = (byte) (0xF0 | codePoint >> 18);
+        this.buffer[this.size++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+        this.buffer[this.size++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+        this.buffer[this.size++] = (byte) (0x80 | codePoint & 0x3F);
+      } else {
+        this.buffer[this.size++] = (byte) (0xE0 | c >> 12);
+        this.buffer[this.size++] = (byte) (0x80 | c >> 6 & 0x3F);
+        this.buffer[this.size++] = (byte) (0x80 | c & 0x3F);
+      }
+    }
+    this.put((byte) '"');
+  }
+
+  private void put(byte value) {
+    this.ensure(1);
+    this.buffer[this.size++] = value;
+  }
+
+  private void put(byte[] values) {
+    this.ensure(values.length);
+    System.arraycopy(values, 0, this.buffer, this.size, values.length);
+    this.size += values.length;
+  }
+
+  private void ensure(int bytes) {
+    if (this.size + bytes > this.buffer.length) {
+      this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2,
+              this.size + bytes));
+    }
+  }
+}
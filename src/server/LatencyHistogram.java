@@ -0,0 +1,108 @@
+package server;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in nanoseconds which many threads can record into at once without
+ * locking. Values below sixteen get a bucket each, and every power of two above that is split into
+ * sixteen buckets, so a percentile is accurate to within one sixteenth of its value while the
+ * whole range of a long fits in under a thousand counters.
+ */
+public final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts;
+
+  /**
+   * Creates an empty histogram.
+   */
+  public LatencyHistogram() {
+    this.counts = new AtomicLongArray(BUCKETS);
+  }
+
+  /**
+   * Records one latency. Negative latencies are recorded as zero.
+   *
+   * @param nanos latency in nanoseconds
+   */
+  public void record(long nanos) {
+    this.counts.incrementAndGet(bucketOf(Math.max(0, nanos)));
+  }
+
+  /**
+   * Get the number of latencies recorded.
+   *
+   * @return number of latencies
+   */
+  public long getCount() {
+    long count = 0;
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      count += this.counts.get(bucket);
+    }
+    return count;
+  }
+
+  /**
+   * Get the latency which the given percentage of recorded latencies are at or below, rounded up
+   * to the top of its bucket.
+   *
+   * @param percentile percentage of latencies, from 0 to 100
+   * @return latency in nanoseconds, or zero if nothing is recorded
+   * @throws IllegalArgumentException if the percentage is out of range
+   */
+  public long getPercentile(double percentile) throws IllegalArgumentException {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("Percentile must be between zero and hundred");
+    }
+    long[] snapshot = new long[BUCKETS];
+    long total = 0;
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      snapshot[bucket] = this.counts.get(bucket);
+      total += snapshot[bucket];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+    long seen = 0;
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      seen += snapshot[bucket];
+      if (seen >= rank) {
+        return highestOf(bucket);
+      }
+    }
+    return highestOf(BUCKETS - 1);
+  }
+
+  /**
+   * Forgets every recorded latency.
+   */
+  public void clear() {
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      this.counts.set(bucket, 0);
+    }
+  }
+
+  // Bucket of a value, by its highest bit and the four bits below it
+  private static int bucketOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  // Highest value which falls in a bucket
+  private static long highestOf(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+    return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+  }
+}
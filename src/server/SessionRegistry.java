@@ -0,0 +1,80 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registry of the sessions connected to a {@link GameServer}, which sessions join and leave from
+ * their own threads.
+ */
+public final class SessionRegistry {
+
+  private final Map<Long, GameSession> sessions;
+  private final AtomicLong nextId;
+  private final AtomicLong totalSessions;
+
+  /**
+   * Creates an empty registry.
+   */
+  public SessionRegistry() {
+    this.sessions = new ConcurrentHashMap<>();
+    this.nextId = new AtomicLong();
+    this.totalSessions = new AtomicLong();
+  }
+
+  /**
+   * Get the number of sessions connected now.
+   *
+   * @return number of connected sessions
+   */
+  public int getSessionCount() {
+    return this.sessions.size();
+  }
+
+  /**
+   * Get the number of sessions which have ever joined.
+   *
+   * @return number of sessions since the registry was created
+   */
+  public long getTotalSessions() {
+    return this.totalSessions.get();
+  }
+
+  /**
+   * Get the session with the given id.
+   *
+   * @param id id of the session
+   * @return connected session, or null if no session with the id is connected
+   */
+  public GameSession get(long id) {
+    return this.sessions.get(id);
+  }
+
+  /**
+   * Get the sessions connected now.
+   *
+   * @return copy of the connected sessions
+   */
+  public List<GameSession> getSessions() {
+    return new ArrayList<>(this.sessions.values());
+  }
+
+  // Gives a new session its id
+  long nextId() {
+    return this.nextId.incrementAndGet();
+  }
+
+  // Adds a session as soon as it is accepted, before its thread starts
+  void register(GameSession session) {
+    this.sessions.put(session.getId(), session);
+    this.totalSessions.incrementAndGet();
+  }
+
+  // Removes a session once its connection has closed
+  void unregister(GameSession session) {
+    this.sessions.remove(session.getId());
+  }
+}
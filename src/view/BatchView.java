@@ -0,0 +1,172 @@
+package view;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import controller.GameController;
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.player.ReadOnlyPlayer;
+
+/**
+ * View which plays a script of commands as fast as the model allows, for running thousands of
+ * scripted commands where the console view would spend its time prompting and printing.
+ * The script holds the same commands the console view takes: a to pick up an arrow, t to pick up
+ * treasure, m and the number of a move, s and the number of a direction and a distance to shoot,
+ * d to take the stairs and q to quit, separated by whitespace, with # starting a comment. It is
+ * read straight from bytes. Messages are appended to the output as they come, followed by the
+ * final state of the player when the script ends, and the output is flushed once then, so a
+ * buffered writer lets the script run without waiting on output. Refreshes show nothing.
+ * The script stops at its end, when it quits, or when the player dies or wins, as the console
+ * view does. A move or direction with no such number is reported and skipped, since there is no
+ * one to ask again.
+ */
+public class BatchView implements GameView {
+
+  private final ScriptTokenizer script;
+  private final Appendable out;
+  private final ReadOnlyPlayer player;
+  private long commandCount;
+
+  /**
+   * Creates a view playing a script.
+   *
+   * @param script stream to read the script from
+   * @param out    appendable to which output is sent, flushed when the script ends if it can be
+   * @param player player who's playing the game
+   * @throws IllegalArgumentException if any of the given parameters are null
+   */
+  public BatchView(InputStream script, Appendable out, ReadOnlyPlayer player)
+          throws IllegalArgumentException {
+    if (script == null || out == null) {
+      throw new IllegalArgumentException("Script and Appendable can't be null");
+    }
+    if (player == null) {
+      throw new IllegalArgumentException("Player cannot be null");
+    }
+    this.script = new ScriptTokenizer(script);
+    this.out = out;
+    this.player = player;
+  }
+
+  /**
+   * Plays the script through the controller, then sends the final state and flushes the output.
+   *
+   * @param controller controller which the view will interact with
+   * @throws IllegalArgumentException if the controller is null, or the script has a token which
+   *                                  is not a command or number where one is expected
+   * @throws IllegalStateException    if the script cannot be read or the output written
+   */
+  @Override
+  public void startView(GameController controller)
+          throws IllegalArgumentException, IllegalStateException {
+    if (controller == null) {
+      throw new IllegalArgumentException("Controller cannot be null");
+    }
+    try {
+      this.play(controller);
+      this.out.append("Player currently at: ")
+              .append(this.player.getCurrentCoordinates().toString())
+              .append("\nTreasure held by player: \n")
+              .append(this.player.getCurrentTreasure().toString())
+              .append("\nNumber of arrows with player: ")
+              .append(String.valueOf(this.player.getArrowCount())).append('\n');
+      if (this.out instanceof Flushable) {
+        ((Flushable) this.out).flush();
+      }
+    } catch (IOException ioe) {
+      throw new IllegalStateException("Script or output failed", ioe);
+    }
+  }
+
+  @Override
+  public void displayMessage(String message) {
+    if (message == null) {
+      throw new IllegalArgumentException("Message can't be null");
+    }
+    this.write(message);
+  }
+
+  @Override
+  public void refresh() {
+    // nothing is shown until the script ends
+  }
+
+  /**
+   * Get the number of commands played from the script, not counting quitting or commands
+   * skipped.
+   *
+   * @return number of commands played
+   */
+  public long getCommandCount() {
+    return this.commandCount;
+  }
+
+  // Plays commands until the script ends, quits or the game is over
+  private void play(GameController controller) throws IOException {
+    while (this.player.isPlayerAlive() && !this.player.hasPlayerWon()) {
+      int command = this.script.nextCommand();
+      switch (command) {
+        case 'a':
+          controller.pickupArrow();
+          break;
+        case 't':
+          controller.pickupTreasure();
+          break;
+        case 'm':
+          Coordinates moveTo = this.chooseMove(this.script.nextInt());
+          if (moveTo == null) {
+            continue;
+          }
+          controller.movePlayer(moveTo);
+          break;
+        case 's':
+          Coordinates direction = this.chooseMove(this.script.nextInt());
+          int distance = this.script.nextInt();
+          if (direction == null) {
+            continue;
+          }
+          controller.shootArrow(direction, distance);
+          break;
+        case 'd':
+          controller.takeStairs();
+          break;
+        case ScriptTokenizer.END:
+          return;
+        case 'q':
+          this.out.append("Player has quit the game\n");
+          return;
+        default:
+          throw new IllegalArgumentException(String.format("Unknown command %c, line %d",
+                  (char) command, this.script.getLine()));
+      }
+      this.commandCount++;
+    }
+    if (this.player.hasPlayerWon()) {
+      this.out.append("Player has won the game\n");
+    }
+    if (!this.player.isPlayerAlive()) {
+      this.out.append("Player is dead\n");
+    }
+  }
+
+  // Finds the move with a number counted from one, or reports there is none
+  private Coordinates chooseMove(int option) {
+    List<Coordinates> moves = this.player.getPossibleMoves();
+    if (option > 0 && option <= moves.size()) {
+      return moves.get(option - 1);
+    }
+    this.write("Not a valid choice, line " + this.script.getLine() + ", skipped\n");
+    return null;
+  }
+
+  // Appends to the output from where no IOException can be thrown
+  private void write(String text) throws IllegalStateException {
+    try {
+      this.out.append(text);
+    } catch (IOException ioe) {
+      throw new IllegalStateException("Output failed", ioe);
+    }
+  }
+}
@@ -69,6 +69,9 @@ public class ConsoleView implements GameView {
             int distance = this.getArrowDistance();
             controller.shootArrow(direction, distance);
             break;
+          case "d":
+            controller.takeStairs();
+            break;
           default:
             this.renderToOut("Player has quit the game\n");
             break;
@@ -180,6 +183,7 @@ public class ConsoleView implements GameView {
     this.renderToOut("t: Pickup treasure\n");
     this.renderToOut("m: Move to another location\n");
     this.renderToOut("s: Shoot arrow\n");
+    this.renderToOut("d: Take stairs\n");
     this.renderToOut("q: Quit game\n");
     this.renderToOut("Enter your choice\n");
 
@@ -192,7 +196,8 @@ public class ConsoleView implements GameView {
       } else if (!(returnValue.equalsIgnoreCase("a")
               || returnValue.equalsIgnoreCase("t")
               || returnValue.equalsIgnoreCase("m")
-              || returnValue.equalsIgnoreCase("s"))) {
+              || returnValue.equalsIgnoreCase("s")
+              || returnValue.equalsIgnoreCase("d"))) {
         this.renderToOut("Invalid input, please enter one of the available choices\n");
       } else {
         validInput = true;
@@ -5,8 +5,10 @@ import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Image;
+import java.awt.Rectangle;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -21,17 +23,22 @@ import dungeonmodel.coordinates.Coordinates;
 import dungeonmodel.dungeon.MonsterSmell;
 import dungeonmodel.dungeon.ReadOnlyDungeon;
 import dungeonmodel.player.ReadOnlyPlayer;
+import dungeonmodel.sync.GameEvent;
 import dungeonmodel.treasure.GemTypes;
 import dungeonmodel.treasure.Treasure;
 
 // Panel where all the dungeon caves are rendered to the screen
 // Package private as it is used internally by the swing view.
 class DungeonPanel extends JPanel {
-  private final ReadOnlyPlayer player;
-  private final ReadOnlyDungeon dungeon;
-  private final Set<Coordinates> discoveredCells;
+  private ReadOnlyPlayer player;
+  private ReadOnlyDungeon dungeon;
+  private final int columns;
+  private final long[] discoveredCells;
   private final List<Coordinates> arrowLandedCells;
+  private final List<Coordinates> routeCells;
   static final int CAVE_PIXELS = 64;
+  private static final Color ROUTE_COLOR = new Color(255, 215, 0, 140);
+  private static final int ROUTE_MARK_PIXELS = 12;
 
   // Package private constructor of the class
   DungeonPanel(ReadOnlyPlayer player, ReadOnlyDungeon dungeon) {
@@ -40,28 +47,72 @@ class DungeonPanel extends JPanel {
     this.setBackground(Color.LIGHT_GRAY);
     this.setPreferredSize(new Dimension(CAVE_PIXELS * dungeon.getDimensions().get(1),
             CAVE_PIXELS * dungeon.getDimensions().get(0)));
-    this.discoveredCells = new HashSet<>();
-    this.discoveredCells.add(player.getCurrentCoordinates());
+    // one bit per location, numbered row by row as in DungeonTopology and DungeonBitboard
+    this.columns = dungeon.getDimensions().get(1);
+    this.discoveredCells = new long[(dungeon.getDimensions().get(0) * this.columns + 63) >>> 6];
+    this.discover(player.getCurrentCoordinates());
     this.arrowLandedCells = new ArrayList<>();
+    this.routeCells = new ArrayList<>();
   }
 
   @Override
   protected void paintComponent(Graphics g) {
     super.paintComponent(g);
-    this.paintCaves(g);
-    this.paintSmells(g);
+    Rectangle area = this.paintedArea(g);
+    List<Coordinates> discovered = this.discoveredIn(area);
+    this.paintCaves(g, area);
+    this.paintSmells(g, discovered);
     this.paintArrowLanded(g);
+    this.paintRoute(g);
     this.paintPlayer(g);
-    this.paintArrowInCave(g);
-    this.paintTreasure(g);
-    this.paintMonster(g);
+    this.paintArrowInCave(g, discovered);
+    this.paintTreasure(g, discovered);
+    this.paintMonster(g, discovered);
+  }
+
+  // Rows and columns of the caves inside the area being painted, as x and y of a rectangle
+  private Rectangle paintedArea(Graphics g) {
+    int totalRows = this.dungeon.getDimensions().get(0);
+    int totalColumns = this.dungeon.getDimensions().get(1);
+    Rectangle clip = g.getClipBounds();
+    if (clip == null) {
+      clip = new Rectangle(0, 0, totalColumns * CAVE_PIXELS, totalRows * CAVE_PIXELS);
+    }
+    int firstRow = Math.max(0, clip.y / CAVE_PIXELS);
+    int firstColumn = Math.max(0, clip.x / CAVE_PIXELS);
+    int lastRow = Math.min(totalRows, (clip.y + clip.height) / CAVE_PIXELS + 1);
+    int lastColumn = Math.min(totalColumns, (clip.x + clip.width) / CAVE_PIXELS + 1);
+    return new Rectangle(firstColumn, firstRow, Math.max(0, lastColumn - firstColumn),
+            Math.max(0, lastRow - firstRow));
+  }
+
+  // Discovered caves among the given rows and columns
+  private List<Coordinates> discoveredIn(Rectangle area) {
+    List<Coordinates> discovered = new ArrayList<>();
+    for (int row = area.y; row < area.y + area.height; row++) {
+      for (int col = area.x; col < area.x + area.width; col++) {
+        if (this.isDiscovered(row, col)) {
+          discovered.add(new CaveCoordinates(row, col));
+        }
+      }
+    }
+    return discovered;
+  }
+
+  private boolean isDiscovered(int row, int column) {
+    int index = row * this.columns + column;
+    return (this.discoveredCells[index >>> 6] & (1L << index)) != 0;
+  }
+
+  private void discover(Coordinates coordinates) {
+    int index = coordinates.getXCoordinates() * this.columns + coordinates.getYCoordinates();
+    this.discoveredCells[index >>> 6] |= 1L << index;
   }
 
   // Method to draw smells in a cave
-  private void paintSmells(Graphics g) {
+  private void paintSmells(Graphics g, List<Coordinates> discovered) {
     Graphics2D g2d = (Graphics2D) g;
-    for (Coordinates coordinate:
-         this.discoveredCells) {
+    for (Coordinates coordinate : discovered) {
       if (dungeon.getSmell(coordinate).equals(MonsterSmell.STRONG)) {
         g2d.drawImage(this.getStrongSmellImage(),
                 coordinate.getYCoordinates() * CAVE_PIXELS,
@@ -75,13 +126,11 @@ class DungeonPanel extends JPanel {
     }
   }
 
-  // Method to draw cave
-  private void paintCaves(Graphics g) {
-    int totalRows = this.dungeon.getDimensions().get(0);
-    int totalColumns = this.dungeon.getDimensions().get(1);
-    for (int row = 0; row < totalRows; row ++) {
-      for (int col = 0; col < totalColumns; col ++) {
-        if (this.discoveredCells.contains(new CaveCoordinates(row, col))) {
+  // Method to draw cave, only visiting the caves inside the area being painted
+  private void paintCaves(Graphics g, Rectangle area) {
+    for (int row = area.y; row < area.y + area.height; row ++) {
+      for (int col = area.x; col < area.x + area.width; col ++) {
+        if (this.isDiscovered(row, col)) {
           this.paintDiscoveredCave(new CaveCoordinates(row, col), g);
         }
         else {
@@ -94,13 +143,7 @@ class DungeonPanel extends JPanel {
 
   // Cheat method to make all caves visible
   void makeAllCavesVisible() {
-    int totalRows = this.dungeon.getDimensions().get(0);
-    int totalColumns = this.dungeon.getDimensions().get(1);
-    for (int row = 0; row < totalRows; row ++) {
-      for (int col = 0; col < totalColumns; col ++) {
-        this.discoveredCells.add(new CaveCoordinates(row, col));
-      }
-    }
+    Arrays.fill(this.discoveredCells, -1L);
   }
 
   // Method to paint caves already visited by player
@@ -141,9 +184,65 @@ class DungeonPanel extends JPanel {
     return res.toString();
   }
 
+  // Package private method to show a newer snapshot of the same game
+  void showState(ReadOnlyPlayer player, ReadOnlyDungeon dungeon) {
+    this.player = player;
+    this.dungeon = dungeon;
+    this.updatePlayerLocation();
+  }
+
+  // Package private method to show a newer snapshot of the same game, repainting only the caves
+  // the changes since the last one shown affect
+  void showEvents(ReadOnlyPlayer player, ReadOnlyDungeon dungeon, List<GameEvent> events) {
+    Coordinates previous = this.player.getCurrentCoordinates();
+    this.showState(player, dungeon);
+    for (GameEvent event : events) {
+      switch (event.getType()) {
+        case PLAYER_MOVED:
+          this.repaintCave(previous);
+          this.repaintCave(event.getLocation());
+          this.followRoute(event.getLocation());
+          break;
+        case MONSTER_HIT:
+          // the smell changes up to two caves away when the monster dies
+          for (Coordinates near : this.dungeon.getAdjacent(event.getLocation())) {
+            for (Coordinates further : this.dungeon.getAdjacent(near)) {
+              this.repaintCave(further);
+            }
+            this.repaintCave(near);
+          }
+          this.repaintCave(event.getLocation());
+          break;
+        case GAME_RESET:
+          // the player starts over, so nothing found before the reset is known any more
+          Arrays.fill(this.discoveredCells, 0);
+          this.arrowLandedCells.clear();
+          this.clearRoute();
+          this.updatePlayerLocation();
+          this.repaint();
+          break;
+        default:
+          this.repaintCave(event.getLocation());
+          break;
+      }
+    }
+  }
+
+  // Asks for only the area of one cave to be painted again
+  private void repaintCave(Coordinates coordinates) {
+    this.repaint(coordinates.getYCoordinates() * CAVE_PIXELS,
+            coordinates.getXCoordinates() * CAVE_PIXELS, CAVE_PIXELS, CAVE_PIXELS);
+  }
+
+  // Whether any of a cave is inside the area being painted
+  private static boolean isPainted(Graphics g, Coordinates coordinates) {
+    return g.hitClip(coordinates.getYCoordinates() * CAVE_PIXELS,
+            coordinates.getXCoordinates() * CAVE_PIXELS, CAVE_PIXELS, CAVE_PIXELS);
+  }
+
   // Package private method to update the player's current location
   void updatePlayerLocation() {
-    this.discoveredCells.add(this.player.getCurrentCoordinates());
+    this.discover(this.player.getCurrentCoordinates());
     this.arrowLandedCells.removeIf(element ->
             (element.equals(this.player.getCurrentCoordinates())));
   }
@@ -156,6 +255,9 @@ class DungeonPanel extends JPanel {
 
     for (Coordinates coordinate:
          landed) {
+      if (!isPainted(g, coordinate)) {
+        continue;
+      }
       int occurrence = Collections.frequency(this.arrowLandedCells, coordinate);
 
       if (occurrence >= 2) {
@@ -176,6 +278,50 @@ class DungeonPanel extends JPanel {
   // Package private method to add a location to the list of arrows landed
   void addArrowLandedLocation(Coordinates coordinates) {
     this.arrowLandedCells.add(coordinates);
+    this.repaintCave(coordinates);
+  }
+
+  // Package private method to show a route hint, replacing any route shown before
+  void showRoute(List<Coordinates> route) {
+    this.clearRoute();
+    this.routeCells.addAll(route);
+    for (Coordinates coordinate : this.routeCells) {
+      this.repaintCave(coordinate);
+    }
+  }
+
+  // Drops the part of the route hint the player has walked, or the whole route once the player
+  // leaves it
+  private void followRoute(Coordinates location) {
+    int reached = this.routeCells.indexOf(location);
+    if (reached < 0) {
+      this.clearRoute();
+      return;
+    }
+    for (Coordinates walked : this.routeCells.subList(0, reached)) {
+      this.repaintCave(walked);
+    }
+    this.routeCells.subList(0, reached).clear();
+  }
+
+  // Removes the route hint, repainting the caves it marked
+  private void clearRoute() {
+    for (Coordinates coordinate : this.routeCells) {
+      this.repaintCave(coordinate);
+    }
+    this.routeCells.clear();
+  }
+
+  // Method to paint a mark in every cave of the route hint
+  private void paintRoute(Graphics g) {
+    Graphics2D g2d = (Graphics2D) g;
+    g2d.setColor(ROUTE_COLOR);
+    int offset = (CAVE_PIXELS - ROUTE_MARK_PIXELS) / 2;
+    for (Coordinates coordinate : this.routeCells) {
+      g2d.fillOval(coordinate.getYCoordinates() * CAVE_PIXELS + offset,
+              coordinate.getXCoordinates() * CAVE_PIXELS + offset,
+              ROUTE_MARK_PIXELS, ROUTE_MARK_PIXELS);
+    }
   }
 
   // Method to paint a player's icon in a cave
@@ -187,10 +333,9 @@ class DungeonPanel extends JPanel {
   }
 
   // Method to paint the arrow in a cave
-  private void  paintArrowInCave(Graphics g) {
+  private void paintArrowInCave(Graphics g, List<Coordinates> discovered) {
     Graphics2D g2d = (Graphics2D) g;
-    for (Coordinates coordinate:
-         this.discoveredCells) {
+    for (Coordinates coordinate : discovered) {
       if (dungeon.hasArrow(coordinate)) {
         g2d.drawImage(this.getArrowImage(),
                 (coordinate.getYCoordinates() * CAVE_PIXELS) + 25,
@@ -200,9 +345,9 @@ class DungeonPanel extends JPanel {
   }
 
   // Method to paint the treasure in a cave
-  private void paintTreasure(Graphics g) {
+  private void paintTreasure(Graphics g, List<Coordinates> discovered) {
     Graphics2D g2d = (Graphics2D) g;
-    for (Coordinates coordinates : this.discoveredCells) {
+    for (Coordinates coordinates : discovered) {
       if (!dungeon.viewTreasureInCave(coordinates).isEmpty()) {
         boolean sapphirePresent = false;
         boolean rubyPresent = false;
@@ -241,9 +386,9 @@ class DungeonPanel extends JPanel {
   }
 
   // Method to paint the monster in a cave
-  private void paintMonster(Graphics g) {
+  private void paintMonster(Graphics g, List<Coordinates> discovered) {
     Graphics2D g2d = (Graphics2D) g;
-    for (Coordinates coordinates : this.discoveredCells) {
+    for (Coordinates coordinates : discovered) {
       if (this.dungeon.hasMonster(coordinates)) {
         g2d.drawImage(this.getOtyughImage(),
                 coordinates.getYCoordinates() * CAVE_PIXELS + 15,
@@ -1,16 +1,28 @@
 package view;
 
 import java.awt.Color;
+import java.util.List;
 
 import javax.swing.JPanel;
 import javax.swing.JTextArea;
+import javax.swing.text.BadLocationException;
 
 import dungeonmodel.player.ReadOnlyPlayer;
+import dungeonmodel.sync.GameEvent;
 import dungeonmodel.treasure.Treasure;
 
 // Package private class to display current player and game state to the user
 class InfoPanel extends JPanel {
-  private final ReadOnlyPlayer player;
+  private static final int NAME = 0;
+  private static final int LOCATION = 1;
+  private static final int ARROWS = 2;
+  private static final int MOVES = 3;
+  private static final int TREASURE = 4;
+  private static final int LOCATION_TREASURE = 5;
+  private static final int LOCATION_ARROW = 6;
+  private static final int SMELL = 7;
+  private static final int LINES = 8;
+  private ReadOnlyPlayer player;
   private final JTextArea infoText;
 
   // Constructor, takes player as input
@@ -23,55 +35,106 @@ class InfoPanel extends JPanel {
     updateInfo();
   }
 
-  // Package private method to update the information panel
-  void updateInfo() {
-    infoText.setText(textField());
+  // Package private method to show a newer snapshot of the same player
+  void updateInfo(ReadOnlyPlayer player) {
+    this.player = player;
+    updateInfo();
   }
 
-  // Display state in a text field
-  private String textField() {
+  // Package private method to update the information panel
+  void updateInfo() {
     StringBuilder result = new StringBuilder();
-    String playerName = player.getName();
-    int playerArrows = player.getArrowCount();
-    StringBuilder currentTreasure = new StringBuilder();
-    StringBuilder locationTreasure = new StringBuilder();
-    for (Treasure treasure: player.getCurrentTreasure()) {
-      currentTreasure.append(treasure.getTreasureType())
-              .append(" : ").append(treasure.getTreasureQuality()).append(" ");
+    for (int line = 0; line < LINES; line++) {
+      result.append(this.lineText(line)).append("\n");
     }
+    infoText.setText(result.toString());
+  }
 
-    for (Treasure treasure: player.viewTreasureAtCurrentLocation()) {
-      locationTreasure.append(treasure.getTreasureType())
-              .append(" : ").append(treasure.getTreasureQuality()).append(" ");
+  // Package private method to show a newer snapshot of the same player, rewriting only the lines
+  // the changes since the last one shown affect
+  void showEvents(ReadOnlyPlayer player, List<GameEvent> events) {
+    this.player = player;
+    boolean[] affected = new boolean[LINES];
+    for (GameEvent event : events) {
+      switch (event.getType()) {
+        case PLAYER_MOVED:
+          mark(affected, LOCATION, MOVES, LOCATION_TREASURE, LOCATION_ARROW, SMELL);
+          break;
+        case ITEM_PICKED:
+          mark(affected, ARROWS, TREASURE, LOCATION_TREASURE, LOCATION_ARROW);
+          break;
+        case ARROW_SHOT:
+          mark(affected, ARROWS);
+          break;
+        case MONSTER_HIT:
+          mark(affected, SMELL);
+          break;
+        case GAME_RESET:
+          this.updateInfo();
+          return;
+        default:
+          break;
+      }
     }
+    for (int line = 0; line < LINES; line++) {
+      if (affected[line]) {
+        this.replaceLine(line);
+      }
+    }
+  }
 
-    String arrowFound;
+  // Marks lines as affected
+  private static void mark(boolean[] affected, int... lines) {
+    for (int line : lines) {
+      affected[line] = true;
+    }
+  }
 
-    if (player.currentLocationHasArrow()) {
-      arrowFound = "Current location has 1 Arrow";
+  // Replaces the text of one line, leaving its line break
+  private void replaceLine(int line) {
+    try {
+      int start = infoText.getLineStartOffset(line);
+      int end = infoText.getLineEndOffset(line) - 1;
+      infoText.replaceRange(this.lineText(line), start, end);
+    } catch (BadLocationException e) {
+      throw new IllegalStateException("Information panel has lost its lines", e);
     }
-    else {
-      arrowFound = "Current location has no arrows";
+  }
+
+  // Text of one line of the panel
+  private String lineText(int line) {
+    switch (line) {
+      case NAME:
+        return String.format("Player Name: %s", player.getName());
+      case LOCATION:
+        return String.format("Player Location: %s", player.getCurrentCoordinates().toString());
+      case ARROWS:
+        return String.format("Player Arrow Count: %s", player.getArrowCount());
+      case MOVES:
+        return String.format("Can move to: %s", player.getPossibleMoves().toString());
+      case TREASURE:
+        return String.format("Player Treasure: %s", describe(player.getCurrentTreasure()));
+      case LOCATION_TREASURE:
+        return String.format("Treasure At Location: %s",
+                describe(player.viewTreasureAtCurrentLocation()));
+      case LOCATION_ARROW:
+        if (player.currentLocationHasArrow()) {
+          return "Current location has 1 Arrow";
+        }
+        return "Current location has no arrows";
+      default:
+        return String.format("Smell of monsters nearby: %s",
+                player.getSmellInCurrentCave().toString());
     }
+  }
 
-    result.append(String.format("Player Name: %s", playerName));
-    result.append("\n");
-    result.append(String.format("Player Location: %s",
-            player.getCurrentCoordinates().toString()));
-    result.append("\n");
-    result.append(String.format("Player Arrow Count: %s", playerArrows));
-    result.append("\n");
-    result.append(String.format("Can move to: %s", player.getPossibleMoves().toString()));
-    result.append("\n");
-    result.append(String.format("Player Treasure: %s", currentTreasure));
-    result.append("\n");
-    result.append(String.format("Treasure At Location: %s", locationTreasure));
-    result.append("\n");
-    result.append(arrowFound);
-    result.append("\n");
-    result.append(String.format("Smell of monsters nearby: %s",
-            player.getSmellInCurrentCave().toString()));
-    result.append("\n");
+  // Lists treasure as its type and quality
+  private static String describe(List<Treasure> treasures) {
+    StringBuilder result = new StringBuilder();
+    for (Treasure treasure : treasures) {
+      result.append(treasure.getTreasureType())
+              .append(" : ").append(treasure.getTreasureQuality()).append(" ");
+    }
     return result.toString();
   }
 
@@ -0,0 +1,136 @@
+package view;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import javax.swing.BoxLayout;
+import javax.swing.JFrame;
+import javax.swing.JScrollPane;
+import javax.swing.JSplitPane;
+import javax.swing.SwingUtilities;
+
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.ReadOnlyDungeon;
+import dungeonmodel.sync.StateMirror;
+
+/**
+ * Swing view of a game played elsewhere, drawn from the frames of a
+ * {@link dungeonmodel.sync.StateDeltaEncoder} read from a stream, for instance to watch a game
+ * played on a server. Frames are read on a background thread and applied on the Swing thread, so
+ * each one only changes what it holds and the panels redraw from the mirrored state.
+ * The panels are only laid out again when a keyframe brings a dungeon of other dimensions or
+ * another start cave, so the caves the spectator has seen discovered stay shown across the
+ * keyframes of one game.
+ */
+public class RemoteSwingView extends JFrame {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final int DIVIDER_LOCATION = 400;
+  private static final int FINAL_HEIGHT = 640;
+  private static final int FINAL_WIDTH = 640;
+  private static final int INFO_SCROLL_HEIGHT = 200;
+  private static final int DUNGEON_SCROLL_HEIGHT = 400;
+
+  private final StateMirror mirror;
+  private final InputStream frames;
+  private DungeonPanel dungeonPanel;
+  private InfoPanel infoPanel;
+  private List<Integer> dimensions;
+  private Coordinates startCave;
+
+  /**
+   * Creates a view of the game whose frames are read from the given stream.
+   *
+   * @param frames stream of frames, each preceded by its length
+   * @throws IllegalArgumentException if the stream is null
+   */
+  public RemoteSwingView(InputStream frames) throws IllegalArgumentException {
+    if (frames == null) {
+      throw new IllegalArgumentException("Stream cannot be null");
+    }
+    this.frames = frames;
+    this.mirror = new StateMirror();
+    this.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+    this.setTitle("Dungeon Game - Watching");
+    this.setBackground(Color.LIGHT_GRAY);
+    this.setPreferredSize(new Dimension(FINAL_WIDTH, FINAL_HEIGHT));
+  }
+
+  /**
+   * Shows the view and starts reading frames until the stream ends or breaks.
+   */
+  public void startView() {
+    this.pack();
+    this.setVisible(true);
+    Thread reader = new Thread(this::readFrames, "remote-view-reader");
+    reader.setDaemon(true);
+    reader.start();
+  }
+
+  // Reads frames on the background thread and hands each to the Swing thread
+  private void readFrames() {
+    try {
+      while (true) {
+        byte[] frame = StateMirror.readFrame(this.frames);
+        if (frame == null) {
+          break;
+        }
+        SwingUtilities.invokeLater(() -> this.apply(frame));
+      }
+    } catch (IOException e) {
+      SwingUtilities.invokeLater(() -> this.setTitle("Dungeon Game - " + e.getMessage()));
+      return;
+    }
+    SwingUtilities.invokeLater(() -> this.setTitle("Dungeon Game - Game over"));
+  }
+
+  // Applies a frame on the Swing thread, waiting for the next keyframe if one was missed
+  private void apply(byte[] frame) {
+    boolean keyframe;
+    try {
+      keyframe = this.mirror.apply(frame);
+    } catch (IllegalArgumentException e) {
+      return;
+    }
+    if (keyframe && this.isNewDungeon()) {
+      this.layOut();
+    } else {
+      this.refresh();
+    }
+  }
+
+  // Whether the mirrored dungeon differs from the one the panels were laid out for
+  private boolean isNewDungeon() {
+    ReadOnlyDungeon dungeon = this.mirror.getDungeon();
+    return this.dungeonPanel == null || !dungeon.getDimensions().equals(this.dimensions)
+            || !dungeon.getStartCave().equals(this.startCave);
+  }
+
+  private void layOut() {
+    this.dimensions = this.mirror.getDungeon().getDimensions();
+    this.startCave = this.mirror.getDungeon().getStartCave();
+    this.getContentPane().removeAll();
+    this.dungeonPanel = new DungeonPanel(this.mirror.getPlayer(), this.mirror.getDungeon());
+    this.infoPanel = new InfoPanel(this.mirror.getPlayer());
+    JScrollPane infoScrollPane = new JScrollPane(this.infoPanel);
+    infoScrollPane.setPreferredSize(new Dimension(FINAL_WIDTH, INFO_SCROLL_HEIGHT));
+    JScrollPane dungeonScrollPanel = new JScrollPane(this.dungeonPanel);
+    dungeonScrollPanel.setPreferredSize(new Dimension(FINAL_WIDTH, DUNGEON_SCROLL_HEIGHT));
+    JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT, dungeonScrollPanel,
+            infoScrollPane);
+    splitPane.setDividerLocation(DIVIDER_LOCATION);
+    this.getContentPane().setLayout(new BoxLayout(this.getContentPane(), BoxLayout.Y_AXIS));
+    this.getContentPane().add(splitPane);
+    this.pack();
+  }
+
+  private void refresh() {
+    this.infoPanel.updateInfo();
+    this.dungeonPanel.showState(this.mirror.getPlayer(), this.mirror.getDungeon());
+    this.dungeonPanel.repaint();
+  }
+}
@@ -0,0 +1,104 @@
+package view;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// Package private tokenizer reading a command script straight from the bytes of a stream, with
+// no Scanner, regular expressions or strings in between. Tokens are separated by whitespace, and
+// a # starts a comment running to the end of its line. Commands are single letters and arguments
+// unsigned decimal integers.
+final class ScriptTokenizer {
+
+  static final int END = -1;
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final InputStream in;
+  private final byte[] buffer;
+  private int position;
+  private int limit;
+  private int line;
+
+  ScriptTokenizer(InputStream in) {
+    this.in = in;
+    this.buffer = new byte[BUFFER_SIZE];
+    this.line = 1;
+  }
+
+  // Reads the next command letter in lower case, or END at the end of the script
+  int nextCommand() throws IOException {
+    int first = this.skipToToken();
+    if (first == END) {
+      return END;
+    }
+    this.position++;
+    int next = this.peek();
+    if (next != END && !isSeparator(next)) {
+      throw new IllegalArgumentException("Commands are single letters, line " + this.line);
+    }
+    return Character.toLowerCase(first);
+  }
+
+  // Reads the next argument of a command
+  int nextInt() throws IOException {
+    int digit = this.skipToToken();
+    if (digit < '0' || digit > '9') {
+      throw new IllegalArgumentException("Expected a number, line " + this.line);
+    }
+    int value = 0;
+    while (digit >= '0' && digit <= '9') {
+      if (value > (Integer.MAX_VALUE - (digit - '0')) / 10) {
+        throw new IllegalArgumentException("Number too large, line " + this.line);
+      }
+      value = value * 10 + digit - '0';
+      this.position++;
+      digit = this.peek();
+    }
+    if (digit != END && !isSeparator(digit)) {
+      throw new IllegalArgumentException("Expected a number, line " + this.line);
+    }
+    return value;
+  }
+
+  // Line the tokenizer has reached, counting from one
+  int getLine() {
+    return this.line;
+  }
+
+  // Skips whitespace and comments, returning the first byte of the next token without taking it
+  private int skipToToken() throws IOException {
+    while (true) {
+      int next = this.peek();
+      if (next == '#') {
+        while (next != END && next != '\n') {
+          this.position++;
+          next = this.peek();
+        }
+      }
+      if (next == END || !isSeparator(next)) {
+        return next;
+      }
+      if (next == '\n') {
+        this.line++;
+      }
+      this.position++;
+    }
+  }
+
+  // Returns the next byte without taking it, refilling the buffer when it has all been read
+  private int peek() throws IOException {
+    if (this.position == this.limit) {
+      this.limit = this.in.read(this.buffer, 0, this.buffer.length);
+      this.position = 0;
+      if (this.limit <= 0) {
+        this.limit = 0;
+        return END;
+      }
+    }
+    return this.buffer[this.position] & 0xFF;
+  }
+
+  // Whether a byte ends a token
+  private static boolean isSeparator(int b) {
+    return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '#';
+  }
+}
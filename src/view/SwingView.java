@@ -10,8 +10,11 @@ import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.JFrame;
 import javax.swing.JSplitPane;
@@ -25,17 +28,27 @@ import javax.swing.JComboBox;
 import javax.swing.JTextField;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 
-import controller.DungeonGameController;
 import controller.GameController;
+import controller.QueuedGameController;
 import dungeonmodel.coordinates.CaveCoordinates;
 import dungeonmodel.coordinates.Coordinates;
 import dungeonmodel.dungeon.Dungeon;
-import dungeonmodel.dungeon.DungeonImpl;
+import dungeonmodel.dungeon.DungeonSettings;
+import dungeonmodel.dungeon.DungeonTopology;
 import dungeonmodel.dungeon.ReadOnlyDungeon;
+import dungeonmodel.persistence.DungeonCatalogue;
 import dungeonmodel.player.DungeonPlayer;
 import dungeonmodel.player.Player;
 import dungeonmodel.player.ReadOnlyPlayer;
+import dungeonmodel.solver.Route;
+import dungeonmodel.solver.RouteSolver;
+import dungeonmodel.sync.GameEvent;
+import dungeonmodel.sync.PlayerSnapshot;
+import dungeonmodel.sync.SnapshotPublisher;
+import dungeonmodel.sync.TrackingDungeon;
 
 /**
  * Implementation of the GameView as a Swing UI.
@@ -47,13 +60,18 @@ public class SwingView extends JFrame implements GameView, MouseListener,
 
   private boolean sPressed;
   private GameController controller;
+  private QueuedGameController model;
   private ReadOnlyPlayer player;
   private ReadOnlyDungeon dungeon;
+  private SnapshotPublisher snapshots;
   private JSplitPane splitPane;
   private JScrollPane dungeonScrollPanel;
   private DungeonPanel dungeonPanel;
   private InfoPanel infoPanel;
   private boolean wonMessagePrinted;
+  private boolean hintRunning;
+  private final DungeonCatalogue catalogue;
+  private final Random random;
   private static final int DIVIDER_LOCATION = 400;
   private static final int START_WIDTH = 400;
   private static final int START_HEIGHT = 100;
@@ -61,12 +79,26 @@ public class SwingView extends JFrame implements GameView, MouseListener,
   private static final int FINAL_WIDTH = 640;
   private static final int INFO_SCROLL_HEIGHT = 200;
   private static final int DUNGEON_SCROLL_HEIGHT = 400;
+  private static final int HINT_TREASURE_CAVES = 8;
+  private static final long HINT_TIME_BUDGET_MILLIS = 500;
 
   /**
    * Public constructor of the view.
    * Starts an empty view, which gets populated when the player starts a game.
    */
   public SwingView() {
+    this(null);
+  }
+
+  /**
+   * Constructor of the view which opens dungeons from a catalogue of pre-generated dungeons when
+   * the catalogue has the settings chosen by the player, and generates them otherwise.
+   *
+   * @param catalogue catalogue to open dungeons from, or null to always generate them
+   */
+  public SwingView(DungeonCatalogue catalogue) {
+    this.catalogue = catalogue;
+    this.random = new Random();
     this.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
     createStartGameMenu();
     this.setSize(START_WIDTH, START_HEIGHT);
@@ -85,9 +117,11 @@ public class SwingView extends JFrame implements GameView, MouseListener,
     JMenuItem quitGame = new JMenuItem("Exit");
     JMenuItem help = new JMenuItem("Help");
     JMenuItem cheat = new JMenuItem("Cheat");
+    JMenuItem hint = new JMenuItem("Hint");
     options.add(help);
     options.add(quitGame);
     options.add(cheat);
+    options.add(hint);
     JMenuItem newConfiguration = new JMenuItem("New Settings");
     startGame.add(newConfiguration);
     JMenuItem sameConfiguration = new JMenuItem("Same Settings");
@@ -100,17 +134,26 @@ public class SwingView extends JFrame implements GameView, MouseListener,
     quitGame.addActionListener(this);
     help.addActionListener(this);
     cheat.addActionListener(this);
+    hint.addActionListener(this);
     newConfiguration.addActionListener(this);
     sameConfiguration.addActionListener(this);
   }
 
   // Helper method to initialize model and controller based on user input and passes
   // control to the controller
-  private void initializeAndStartGame(Player player, Dungeon dungeon) {
-    this.player = player;
-    this.dungeon = dungeon;
-    GameController controller = new DungeonGameController(player, this);
-    controller.playGame();
+  // The view only reads the immutable snapshots published after each action, never the model,
+  // which the controller changes on its own thread
+  private void initializeAndStartGame(Player player, TrackingDungeon dungeon) {
+    if (this.model != null) {
+      this.model.close();
+    }
+    SnapshotPublisher publisher = new SnapshotPublisher(player, dungeon);
+    publisher.addListener((snapshot, events) -> this.gameChanged(publisher, snapshot, events));
+    this.snapshots = publisher;
+    this.player = this.snapshots.getSnapshot();
+    this.dungeon = this.snapshots.getSnapshot().getDungeon();
+    this.model = new QueuedGameController(player, this);
+    this.model.playGame();
   }
 
 
@@ -147,15 +190,63 @@ public class SwingView extends JFrame implements GameView, MouseListener,
     if (message == null) {
       throw new IllegalArgumentException("Message cannot be null");
     }
-    JOptionPane.showMessageDialog(null, message, "Info",
-            JOptionPane.INFORMATION_MESSAGE);
+    if (SwingUtilities.isEventDispatchThread()) {
+      this.displayInfoPane(message, "Info");
+    } else {
+      SwingUtilities.invokeLater(() -> this.displayInfoPane(message, "Info"));
+    }
   }
 
+  /**
+   * Publishes a snapshot of the game after an action. The changes it holds come back as events
+   * and are shown on the Swing thread, so the controller may change the model on a thread of its
+   * own.
+   */
   @Override
   public void refresh() {
-    this.infoPanel.updateInfo();
-    this.dungeonPanel.updatePlayerLocation();
+    this.snapshots.publish();
+  }
+
+  // Hands the changes in a published snapshot over to the Swing thread
+  private void gameChanged(SnapshotPublisher publisher, PlayerSnapshot snapshot,
+                           List<GameEvent> events) {
+    if (SwingUtilities.isEventDispatchThread()) {
+      this.showEvents(publisher, snapshot, events);
+    } else {
+      SwingUtilities.invokeLater(() -> this.showEvents(publisher, snapshot, events));
+    }
+  }
+
+  // Updates only the parts of the panels the changes in a snapshot affect, on the Swing thread,
+  // unless a new game has been started since it was published
+  private void showEvents(SnapshotPublisher publisher, PlayerSnapshot snapshot,
+                          List<GameEvent> events) {
+    if (publisher != this.snapshots || this.infoPanel == null) {
+      return;
+    }
+    this.player = snapshot;
+    this.dungeon = snapshot.getDungeon();
+    this.infoPanel.showEvents(snapshot, events);
+    this.dungeonPanel.showEvents(snapshot, snapshot.getDungeon(), events);
+    this.checkWon(snapshot);
+  }
+
+  // Redraws all of the latest snapshot of the game, on the Swing thread
+  private void redraw() {
+    PlayerSnapshot snapshot = this.snapshots.getSnapshot();
+    this.player = snapshot;
+    this.dungeon = snapshot.getDungeon();
+    this.infoPanel.updateInfo(snapshot);
+    this.dungeonPanel.showState(snapshot, snapshot.getDungeon());
     this.dungeonPanel.repaint();
+    this.checkWon(snapshot);
+  }
+
+  // Lets the user know the first time the game shows them at the end
+  private void checkWon(PlayerSnapshot snapshot) {
+    if (snapshot.hasPlayerWon() && !this.wonMessagePrinted) {
+      this.printWonMessage();
+    }
   }
 
   @Override
@@ -165,17 +256,13 @@ public class SwingView extends JFrame implements GameView, MouseListener,
     Coordinates moveTo = new CaveCoordinates((int)Math.floor(xCoordinates),
             (int)Math.floor(yCoordinates));
     controller.movePlayer(moveTo);
-    this.refresh();
-    if (this.player.hasPlayerWon() && !this.wonMessagePrinted) {
-      this.printWonMessage();
-    }
   }
 
   // Prints a message to let the user know if they have won the game
   private void printWonMessage() {
+    this.wonMessagePrinted = true;
     this.displayInfoPane("Congratulations, you have reached the end and won the game! "
             + "You can continue exploring if you wish.", "Congratulations!");
-    this.wonMessagePrinted = true;
   }
 
   @Override
@@ -227,7 +314,11 @@ public class SwingView extends JFrame implements GameView, MouseListener,
           displayInfoPane(infoMessage, "Error");
         }
         else {
+          // the reset returns once its snapshot is published, so the new panel starts from it
           controller.resetPlayerAndDungeon();
+          PlayerSnapshot snapshot = this.snapshots.getSnapshot();
+          this.player = snapshot;
+          this.dungeon = snapshot.getDungeon();
           dungeonPanel = new DungeonPanel(player, dungeon);
           dungeonScrollPanel = new JScrollPane(dungeonPanel);
           splitPane.setDividerLocation(DIVIDER_LOCATION);
@@ -243,7 +334,9 @@ public class SwingView extends JFrame implements GameView, MouseListener,
                 + "To Restart: Options -> Start Game -> Same Settings\n"
                 + "To Move: Press Arrow Keys\n"
                 + "To Shoot: Press S and Arrow Key of Direction together\n"
-                + "To Pickup Treasure: Press T\nTo Pickup Arrow: Press A";
+                + "To Pickup Treasure: Press T\nTo Pickup Arrow: Press A\n"
+                + "To Take Stairs: Press D\n"
+                + "To Show A Route To The End: Options -> Hint";
         displayInfoPane(infoMessage, "Help");
         break;
       case "Exit":
@@ -259,7 +352,17 @@ public class SwingView extends JFrame implements GameView, MouseListener,
           String message = "All caves will be visible now! Enjoy!";
           displayInfoPane(message, "Info");
           this.dungeonPanel.makeAllCavesVisible();
-          this.refresh();
+          this.redraw();
+        }
+        break;
+      case "Hint":
+        if (player == null || dungeon == null) {
+          String message = "You need to have started a game using Options "
+                  + "-> Start Game -> New Settings in order to get a hint!";
+          displayInfoPane(message, "Error");
+        }
+        else {
+          this.showRouteHint();
         }
         break;
       default:
@@ -268,6 +371,57 @@ public class SwingView extends JFrame implements GameView, MouseListener,
     }
   }
 
+  // Finds the shortest safe route through the most valuable treasure to the end off the Swing
+  // thread, from the latest snapshot, and shows it if the game is still where it was searched
+  // from once it is found
+  private void showRouteHint() {
+    if (this.hintRunning) {
+      return;
+    }
+    SnapshotPublisher publisher = this.snapshots;
+    PlayerSnapshot snapshot = publisher.getSnapshot();
+    this.hintRunning = true;
+    new SwingWorker<Route, Void>() {
+      @Override
+      protected Route doInBackground() {
+        return new RouteSolver(HINT_TREASURE_CAVES, HINT_TIME_BUDGET_MILLIS)
+                .solve(snapshot.getDungeon(), snapshot.getCurrentCoordinates());
+      }
+
+      @Override
+      protected void done() {
+        hintRunning = false;
+        try {
+          showRoute(publisher, snapshot, get());
+        } catch (InterruptedException | ExecutionException e) {
+          displayInfoPane("Could not find a route: " + e.getMessage(), "Hint");
+        }
+      }
+    }.execute();
+  }
+
+  // Shows a route found from a snapshot, on the Swing thread, unless the game moved on since
+  private void showRoute(SnapshotPublisher publisher, PlayerSnapshot snapshot, Route route) {
+    if (publisher != this.snapshots
+            || publisher.getSnapshot().getVersion() != snapshot.getVersion()) {
+      displayInfoPane("The game changed while the route was found, ask again!", "Hint");
+      return;
+    }
+    if (route.getPath().isEmpty()) {
+      displayInfoPane("There is no safe route to the end from here!", "Hint");
+      return;
+    }
+    this.dungeonPanel.showRoute(route.getPath());
+    String message = String.format("Route to the end: %d moves, through %d treasure caves.",
+            route.getLength(), route.getStops().size());
+    if (route.getArrowsForEnd() > 0) {
+      message += String.format("\nAn Otyugh guards the end: hit it with %d arrows from the cave "
+              + "before it first. You hold %d.", route.getArrowsForEnd(),
+              snapshot.getArrowCount());
+    }
+    displayInfoPane(message, "Hint");
+  }
+
   // Popup to get game configuration for a new game
   // https://stackoverflow.com/questions/3002787/simple-popup-java-form-with-at-least-two-fields
   private Map<String, String> getGameSettings() {
@@ -361,10 +515,18 @@ public class SwingView extends JFrame implements GameView, MouseListener,
     isWrapping = settings.get("wrapping").equals("Yes");
 
     try {
-      Dungeon testDungeon = new DungeonImpl(rows, columns, interconnectivity, isWrapping,
-              treasureArrowPercent, numOfMonsters);
-      Player testPlayer = new DungeonPlayer(settings.get("name"), testDungeon);
-      initializeAndStartGame(testPlayer, testDungeon);
+      DungeonSettings dungeonSettings = new DungeonSettings(rows, columns, interconnectivity,
+              isWrapping, treasureArrowPercent, numOfMonsters);
+      Dungeon testDungeon = null;
+      if (this.catalogue != null) {
+        testDungeon = this.catalogue.open(dungeonSettings, this.random);
+      }
+      if (testDungeon == null) {
+        testDungeon = dungeonSettings.createDungeon();
+      }
+      TrackingDungeon trackedDungeon = new TrackingDungeon(testDungeon);
+      Player testPlayer = new DungeonPlayer(settings.get("name"), trackedDungeon);
+      initializeAndStartGame(testPlayer, trackedDungeon);
       return true;
     }
     catch (IllegalArgumentException iAx) {
@@ -410,6 +572,9 @@ public class SwingView extends JFrame implements GameView, MouseListener,
           this.displayInfoPane(iEx.getMessage(), "Error");
         }
       }
+      if (e.getKeyChar() == 'd') {
+        this.controller.takeStairs();
+      }
     }
   }
 
@@ -427,68 +592,57 @@ public class SwingView extends JFrame implements GameView, MouseListener,
       // Arrow Key Left - Move West
       if (e.getKeyCode() == 37) {
         if (!this.sPressed) {
-          if ((this.player.getWest() != null)) {
-            this.controller.movePlayer(player.getWest());
-          }
+          this.model.movePlayerTowards(DungeonTopology.WEST);
         }
         else {
-          this.handleShoot(this.player.getWest());
+          this.handleShoot(this.player.getWest(), DungeonTopology.WEST);
         }
       }
       // Arrow Key Up - Move North
       if (e.getKeyCode() == 38) {
         if (!this.sPressed) {
-          if ((this.player.getNorth() != null)) {
-            this.controller.movePlayer(player.getNorth());
-          }
+          this.model.movePlayerTowards(DungeonTopology.NORTH);
         }
         else {
-          this.handleShoot(this.player.getNorth());
+          this.handleShoot(this.player.getNorth(), DungeonTopology.NORTH);
         }
       }
       // Arrow Key Right - Move East
       if (e.getKeyCode() == 39) {
         if (!this.sPressed) {
-          if ((this.player.getEast() != null)) {
-            this.controller.movePlayer(player.getEast());
-          }
+          this.model.movePlayerTowards(DungeonTopology.EAST);
         }
         else {
-          this.handleShoot(this.player.getEast());
+          this.handleShoot(this.player.getEast(), DungeonTopology.EAST);
         }
       }
       // Arrow Key Down - Move South
       if (e.getKeyCode() == 40) {
         if (!this.sPressed) {
-          if ((this.player.getSouth() != null)) {
-            this.controller.movePlayer(player.getSouth());
-          }
+          this.model.movePlayerTowards(DungeonTopology.SOUTH);
         }
         else {
-          this.handleShoot(this.player.getSouth());
+          this.handleShoot(this.player.getSouth(), DungeonTopology.SOUTH);
         }
       }
-      if (this.player.hasPlayerWon() && !this.wonMessagePrinted) {
-        this.printWonMessage();
-      }
     }
   }
 
-  // Handles the shoot input
-  private void handleShoot(Coordinates direction) {
+  // Handles the shoot input, checking the direction against the latest snapshot and shooting
+  // towards it once the moves queued before have been made
+  private void handleShoot(Coordinates neighbour, int direction) {
     this.sPressed = false;
-    if ((direction != null)) {
+    if ((neighbour != null)) {
       boolean valid = false;
       while (!valid) {
         String distance = this.getShootDistance();
         if (distance != null) {
           try {
             int distanceInt = Integer.parseInt(distance);
-            Coordinates landed = this.controller.shootArrow(direction, distanceInt);
+            Coordinates landed = this.model.shootArrowTowards(direction, distanceInt);
             valid = true;
             if (landed != null) {
               this.dungeonPanel.addArrowLandedLocation(landed);
-              this.refresh();
             }
           }
           catch (NumberFormatException nEx) {
@@ -0,0 +1,41 @@
+import java.util.List;
+import java.util.Random;
+
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.player.Player;
+
+/**
+ * Random actions shared by the tests which play a game to check what is published about it.
+ */
+public final class RandomActions {
+
+  private RandomActions() {
+  }
+
+  /**
+   * Takes a random action, ignoring actions the player cannot take.
+   *
+   * @param player the player to act
+   * @param random the source of the action and where it is aimed
+   */
+  public static void act(Player player, Random random) {
+    List<Coordinates> moves = player.getPossibleMoves();
+    Coordinates towards = moves.get(random.nextInt(moves.size()));
+    switch (random.nextInt(4)) {
+      case 0:
+        player.pickUpArrow();
+        break;
+      case 1:
+        player.pickUpTreasure();
+        break;
+      case 2:
+        if (player.getArrowCount() > 0) {
+          player.shootArrow(1 + random.nextInt(3), towards);
+        }
+        break;
+      default:
+        player.moveTo(towards);
+        break;
+    }
+  }
+}
@@ -0,0 +1,184 @@
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import controller.DungeonGameController;
+import controller.GameJournal;
+import dungeonmodel.dungeon.DungeonSettings;
+import dungeonmodel.player.Player;
+import view.BatchView;
+import view.ConsoleView;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Class to test playing scripts of console commands in batch.
+ */
+public class TestBatchView {
+
+  private static final DungeonSettings SETTINGS = new DungeonSettings(10, 12, 5, true, 70, 4);
+
+  /**
+   * Test expected exception when creating a batch view without a script.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullScript() {
+    new BatchView(null, new StringBuilder(), GameJournal.createPlayer(SETTINGS, "Batch", 1));
+  }
+
+  /**
+   * Test expected exception when the script has a command the console does not know.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownCommand() {
+    play("a t x a", 1, new StringBuilder());
+  }
+
+  /**
+   * Test expected exception when a command has no number where one is expected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testMissingNumber() {
+    play("m a", 1, new StringBuilder());
+  }
+
+  /**
+   * Test expected exception when a number does not fit in an int, including numbers which would
+   * wrap around to a positive value.
+   */
+  @Test
+  public void testNumberTooLarge() {
+    for (String number : new String[] {"2147483648", "4294967300", "9999999999"}) {
+      try {
+        play("m " + number, 1, new StringBuilder());
+        fail("Accepted " + number);
+      } catch (IllegalArgumentException expected) {
+        assertTrue(expected.getMessage().startsWith("Number too large"));
+      }
+    }
+  }
+
+  /**
+   * Test that the largest int is read as a number, here a move which does not exist.
+   */
+  @Test
+  public void testLargestNumber() {
+    StringBuilder out = new StringBuilder();
+    play("m 2147483647", 1, out);
+    assertTrue(out.toString().contains("Not a valid choice, line 1, skipped\n"));
+  }
+
+  /**
+   * Test that comments and any whitespace are skipped, and that output is sent in one go at the
+   * end with the state of the player.
+   */
+  @Test
+  public void testCommentsAndOutput() {
+    StringBuilder out = new StringBuilder();
+    Player player = play("# pick up everything\r\na\tt  # twice\n\n a\nq\na a a", 2, out);
+    assertTrue(out.toString().contains("Player has quit the game\n"));
+    assertTrue(out.toString().endsWith("Number of arrows with player: "
+            + player.getArrowCount() + "\n"));
+  }
+
+  /**
+   * Test that a random script played in batch leaves the game as the console view does when it
+   * is fed the same commands.
+   */
+  @Test
+  public void testSameGameAsConsole() {
+    for (long seed = 0; seed < 20; seed++) {
+      String script = randomScript(new Random(seed), 2000);
+      Player batch = play(script, seed, new StringBuilder());
+
+      Player console = GameJournal.createPlayer(SETTINGS, "Batch", seed);
+      new DungeonGameController(console, new ConsoleView(new StringReader(script),
+              new StringBuilder(), console)).playGame();
+      assertEquals(console.getStateHash(), batch.getStateHash());
+      assertEquals(console.getCurrentCoordinates(), batch.getCurrentCoordinates());
+      assertEquals(console.getArrowCount(), batch.getArrowCount());
+    }
+  }
+
+  /**
+   * Test that a move with no such number is skipped instead of ending the script.
+   */
+  @Test
+  public void testInvalidMoveSkipped() {
+    StringBuilder out = new StringBuilder();
+    Player player = GameJournal.createPlayer(SETTINGS, "Batch", 3);
+    BatchView view = new BatchView(stream("m 9\na\nm 0\nt"), out, player);
+    new DungeonGameController(player, view).playGame();
+    assertEquals(2, view.getCommandCount());
+    assertTrue(out.toString().contains("Not a valid choice, line 1, skipped\n"));
+    assertTrue(out.toString().contains("Not a valid choice, line 3, skipped\n"));
+  }
+
+  /**
+   * Test that messages are written as the script plays, and the output is flushed once at the
+   * end.
+   */
+  @Test
+  public void testOutputWrittenAsPlayed() {
+    Player player = GameJournal.createPlayer(SETTINGS, "Batch", 4);
+    CountingWriter out = new CountingWriter();
+    BatchView view = new BatchView(stream("m 9\nq"), out, player);
+    view.displayMessage("Before\n");
+    assertEquals("Before\n", out.toString());
+    new DungeonGameController(player, view).playGame();
+    assertTrue(out.toString().startsWith("Before\nNot a valid choice, line 1, skipped\n"
+            + "Player has quit the game\nPlayer currently at: "));
+    assertEquals(1, out.flushes);
+  }
+
+  // Plays a script in a game created from a seed and returns its player
+  private static Player play(String script, long seed, StringBuilder out) {
+    Player player = GameJournal.createPlayer(SETTINGS, "Batch", seed);
+    new DungeonGameController(player, new BatchView(stream(script), out, player)).playGame();
+    return player;
+  }
+
+  private static ByteArrayInputStream stream(String script) {
+    return new ByteArrayInputStream(script.getBytes(StandardCharsets.UTF_8));
+  }
+
+  // Builds a script of commands which are always valid: moves and directions are numbered 1,
+  // which every cave has
+  private static String randomScript(Random random, int commands) {
+    StringBuilder script = new StringBuilder();
+    for (int i = 0; i < commands; i++) {
+      switch (random.nextInt(5)) {
+        case 0:
+          script.append("a\n");
+          break;
+        case 1:
+          script.append("t\n");
+          break;
+        case 2:
+          script.append("s 1 ").append(1 + random.nextInt(3)).append('\n');
+          break;
+        default:
+          script.append("m 1\n");
+          break;
+      }
+    }
+    return script.toString();
+  }
+
+  // Writer which counts how often it is flushed
+  private static final class CountingWriter extends StringWriter {
+
+    private int flushes;
+
+    @Override
+    public void flush() {
+      this.flushes++;
+    }
+  }
+}
@@ -0,0 +1,95 @@
+import org.junit.Test;
+
+import dungeonmodel.dungeon.CaveGraph;
+import dungeonmodel.dungeon.Dungeon;
+import dungeonmodel.dungeon.DungeonImpl;
+import dungeonmodel.dungeon.DungeonTopology;
+import dungeonmodel.path.BreadthFirstSearch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class to test expected functionality of the tunnel contracted cave graph.
+ */
+public class TestCaveGraph {
+
+  /**
+   * Test expected exception when building a graph of a null topology.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullTopology() {
+    CaveGraph.of((DungeonTopology) null);
+  }
+
+  /**
+   * Test that the nodes are exactly the locations which are not tunnels, and that the start and
+   * end caves are nodes.
+   */
+  @Test
+  public void testNodesAreCaves() {
+    Dungeon dungeon = new DungeonImpl(12, 12, 4, true, 50, 1);
+    CaveGraph graph = CaveGraph.of(dungeon);
+    DungeonTopology topology = graph.getTopology();
+    int caves = 0;
+    for (int index = 0; index < topology.size(); index++) {
+      assertEquals(topology.isTunnel(index), graph.nodeOf(index) < 0);
+      if (!topology.isTunnel(index)) {
+        assertEquals(index, graph.getLocation(graph.nodeOf(index)));
+        caves++;
+      }
+    }
+    assertEquals(caves, graph.getNodeCount());
+    assertTrue(graph.nodeOf(topology.indexOf(dungeon.getStartCave())) >= 0);
+    assertTrue(graph.nodeOf(topology.indexOf(dungeon.getEndCave())) >= 0);
+  }
+
+  /**
+   * Test that every edge walks through tunnels only, one move at a time, and that it is kept from
+   * both of its ends with the same weight.
+   */
+  @Test
+  public void testEdgesFollowTunnels() {
+    Dungeon dungeon = new DungeonImpl(15, 10, 3, false, 50, 1);
+    CaveGraph graph = CaveGraph.of(dungeon);
+    DungeonTopology topology = graph.getTopology();
+    for (int node = 0; node < graph.getNodeCount(); node++) {
+      for (int direction = 0; direction < DungeonTopology.DIRECTIONS; direction++) {
+        int target = graph.getTarget(node, direction);
+        assertEquals(topology.neighbour(graph.getLocation(node), direction) < 0, target < 0);
+        if (target < 0) {
+          continue;
+        }
+        int[] tunnels = graph.getTunnels(node, direction);
+        assertEquals(tunnels.length + 1, graph.getWeight(node, direction));
+        for (int tunnel : tunnels) {
+          assertTrue(topology.isTunnel(tunnel));
+        }
+        boolean keptFromTarget = false;
+        for (int back = 0; back < DungeonTopology.DIRECTIONS; back++) {
+          keptFromTarget |= graph.getTarget(target, back) == node
+                  && graph.getWeight(target, back) == graph.getWeight(node, direction);
+        }
+        assertTrue(keptFromTarget);
+      }
+    }
+  }
+
+  /**
+   * Test that distances between caves over the graph match a search over every location.
+   */
+  @Test
+  public void testDistancesMatchSearch() {
+    Dungeon dungeon = new DungeonImpl(20, 20, 10, true, 50, 1);
+    CaveGraph graph = CaveGraph.of(dungeon);
+    DungeonTopology topology = graph.getTopology();
+    int[] distances = new int[topology.size()];
+    for (int source = 0; source < graph.getNodeCount(); source += 7) {
+      BreadthFirstSearch.search(topology, graph.getLocation(source), distances, null);
+      int[] graphDistances = graph.distancesFrom(source);
+      for (int node = 0; node < graph.getNodeCount(); node++) {
+        assertEquals(distances[graph.getLocation(node)], graphDistances[node]);
+      }
+    }
+  }
+}
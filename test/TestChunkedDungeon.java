@@ -0,0 +1,137 @@
+import org.junit.Test;
+
+import dungeonmodel.coordinates.CaveCoordinates;
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.ChunkedDungeon;
+import dungeonmodel.dungeon.DungeonTopology;
+import dungeonmodel.path.BreadthFirstSearch;
+import dungeonmodel.player.DungeonPlayer;
+import dungeonmodel.player.Player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class to test expected functionality of the endless chunked dungeon.
+ */
+public class TestChunkedDungeon {
+
+  /**
+   * Test expected exception when there are too few chunks.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testTooFewChunks() {
+    new ChunkedDungeon(3, 20, 1, 8, 1);
+  }
+
+  /**
+   * Test expected exception when building the topology of a dungeon with more locations than an
+   * int can number, instead of generating every chunk.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testTopologyTooLarge() {
+    DungeonTopology.of(new ChunkedDungeon(ChunkedDungeon.MAX_CHUNKS_PER_SIDE, 50, 2, 8, 1));
+  }
+
+  /**
+   * Test expected exception when reading outside the dungeon.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testOutsideDungeon() {
+    new ChunkedDungeon(4, 20, 1, 8, 1).hasArrow(new CaveCoordinates(64, 0));
+  }
+
+  /**
+   * Test that the whole dungeon is connected, paths lead back the way they came across chunk
+   * borders and wrapping edges, and only a few chunks stay in memory.
+   */
+  @Test
+  public void testConnectedAcrossChunks() {
+    ChunkedDungeon dungeon = new ChunkedDungeon(5, 20, 2, 3, 11);
+    DungeonTopology topology = DungeonTopology.of(dungeon);
+    assertTrue(dungeon.getResidentChunkCount() <= 3);
+    int[] distances = new int[topology.size()];
+    BreadthFirstSearch.search(topology, topology.indexOf(dungeon.getStartCave()), distances,
+            null);
+    for (int index = 0; index < topology.size(); index++) {
+      assertTrue(distances[index] >= 0);
+      for (int direction = 0; direction < DungeonTopology.DIRECTIONS; direction++) {
+        int next = topology.neighbour(index, direction);
+        if (next >= 0) {
+          assertEquals(index, topology.neighbour(next, DungeonTopology.opposite(direction)));
+        }
+      }
+    }
+    assertTrue(distances[topology.indexOf(dungeon.getEndCave())] >= 5);
+    assertFalse(dungeon.hasMonster(dungeon.getStartCave()));
+    assertTrue(dungeon.hasMonster(dungeon.getEndCave()));
+  }
+
+  /**
+   * Test that the same seed gives the same dungeon, even when chunks are generated in a different
+   * order.
+   */
+  @Test
+  public void testSeedGivesSameDungeon() {
+    ChunkedDungeon first = new ChunkedDungeon(1000, 30, 3, 4, 99);
+    ChunkedDungeon second = new ChunkedDungeon(1000, 30, 3, 64, 99);
+    assertEquals(first.getStartCave(), second.getStartCave());
+    assertEquals(first.getEndCave(), second.getEndCave());
+    for (int row = 40; row >= 0; row--) {
+      for (int column = 0; column < 40; column++) {
+        Coordinates coordinates = new CaveCoordinates(row * 37, column * 53);
+        assertEquals(second.getAdjacent(coordinates), first.getAdjacent(coordinates));
+        assertEquals(second.viewTreasureInCave(coordinates),
+                first.viewTreasureInCave(coordinates));
+        assertEquals(second.hasArrow(coordinates), first.hasArrow(coordinates));
+        assertEquals(second.hasMonster(coordinates), first.hasMonster(coordinates));
+      }
+    }
+    assertEquals(4, first.getResidentChunkCount());
+  }
+
+  /**
+   * Test that changes to an evicted chunk are kept and restored, and that resetting forgets them.
+   */
+  @Test
+  public void testEvictedChangesAreKept() {
+    ChunkedDungeon dungeon = new ChunkedDungeon(8, 100, 0, 2, 5);
+    Coordinates start = dungeon.getStartCave();
+    assertTrue(dungeon.hasArrow(start));
+    long hash = dungeon.getStateHash();
+    dungeon.pickUpArrow(start);
+    assertFalse(dungeon.hasArrow(start));
+    for (int chunk = 1; chunk < 8; chunk++) {
+      dungeon.hasArrow(new CaveCoordinates(chunk * ChunkedDungeon.CHUNK_SIZE, 0));
+    }
+    assertEquals(2, dungeon.getResidentChunkCount());
+    assertEquals(1, dungeon.getSavedChunkCount());
+    assertFalse(dungeon.hasArrow(start));
+    assertEquals(0, dungeon.getSavedChunkCount());
+
+    dungeon.resetDungeon();
+    assertEquals(0, dungeon.getResidentChunkCount());
+    assertTrue(dungeon.hasArrow(start));
+    assertTrue(hash != dungeon.getStateHash());
+  }
+
+  /**
+   * Test that a player can walk through the largest dungeon while only a few chunks are kept.
+   */
+  @Test
+  public void testPlayerMoves() {
+    ChunkedDungeon dungeon = new ChunkedDungeon(ChunkedDungeon.MAX_CHUNKS_PER_SIDE, 50, 1, 16, 3);
+    Player player = new DungeonPlayer("Test", dungeon);
+    for (int step = 0; step < 200 && player.isPlayerAlive(); step++) {
+      Coordinates next = player.getPossibleMoves().get(step % player.getPossibleMoves().size());
+      if (dungeon.hasMonster(next)) {
+        continue;
+      }
+      player.pickUpTreasure();
+      player.moveTo(next);
+      assertEquals(next, player.getCurrentCoordinates());
+    }
+    assertTrue(dungeon.getResidentChunkCount() <= 16);
+  }
+}
@@ -0,0 +1,212 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import dungeonmodel.coordinates.CaveCoordinates;
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.ConcurrentDungeon;
+import dungeonmodel.dungeon.Dungeon;
+import dungeonmodel.dungeon.DungeonImpl;
+import dungeonmodel.player.DungeonPlayer;
+import dungeonmodel.player.Player;
+import dungeonmodel.treasure.Treasure;
+import dungeonmodel.weapon.Arrow;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class to stress the concurrent dungeon with many threads racing for the same locations.
+ */
+public class TestConcurrentDungeon {
+
+  private static final int THREADS = 8;
+
+  /**
+   * Test expected exception when copying no dungeon.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullDungeon() {
+    new ConcurrentDungeon(null, 50, 1);
+  }
+
+  /**
+   * Test expected exception when the treasure percentage is out of range.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidPercent() {
+    new ConcurrentDungeon(new DungeonImpl(5, 5, 0, false, 50, 1), 0, 1);
+  }
+
+  /**
+   * Test that a copy reads the same as the dungeon it was copied from, including its hash.
+   */
+  @Test
+  public void testCopyMatchesDungeon() {
+    Dungeon dungeon = new DungeonImpl(9, 11, 6, true, 60, 5);
+    Dungeon copy = new ConcurrentDungeon(dungeon, 60, 5);
+    for (int row = 0; row < 9; row++) {
+      for (int column = 0; column < 11; column++) {
+        Coordinates coordinates = new CaveCoordinates(row, column);
+        assertEquals(dungeon.getAdjacent(coordinates), copy.getAdjacent(coordinates));
+        assertEquals(dungeon.getSouth(coordinates), copy.getSouth(coordinates));
+        assertEquals(dungeon.getEast(coordinates), copy.getEast(coordinates));
+        assertEquals(new HashSet<>(dungeon.viewTreasureInCave(coordinates)),
+                new HashSet<>(copy.viewTreasureInCave(coordinates)));
+        assertEquals(dungeon.hasArrow(coordinates), copy.hasArrow(coordinates));
+        assertEquals(dungeon.hasMonster(coordinates), copy.hasMonster(coordinates));
+        assertEquals(dungeon.getSmell(coordinates), copy.getSmell(coordinates));
+      }
+    }
+    assertEquals(dungeon.getStartCave(), copy.getStartCave());
+    assertEquals(dungeon.getEndCave(), copy.getEndCave());
+    assertEquals(dungeon.getStateHash(), copy.getStateHash());
+  }
+
+  /**
+   * Test that when every thread grabs the same treasure and arrow at once, exactly one thread gets
+   * each of them, round after round, and that the hash still matches the contents afterwards.
+   *
+   * @throws Exception if a thread fails
+   */
+  @Test
+  public void testRacingPickups() throws Exception {
+    ConcurrentDungeon dungeon = new ConcurrentDungeon(8, 8, 4, true, 100, 1);
+    List<Coordinates> locations = new ArrayList<>();
+    for (int row = 0; row < 8; row++) {
+      for (int column = 0; column < 8; column++) {
+        locations.add(new CaveCoordinates(row, column));
+      }
+    }
+    int rounds = 50;
+    AtomicInteger treasureWins = new AtomicInteger();
+    AtomicInteger treasureTaken = new AtomicInteger();
+    AtomicInteger arrowWins = new AtomicInteger();
+    int expectedTreasureWins = 0;
+    int expectedTreasure = 0;
+    int expectedArrows = 0;
+    ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+    try {
+      for (int round = 0; round < rounds; round++) {
+        dungeon.resetDungeon();
+        for (Coordinates location : locations) {
+          int treasure = dungeon.viewTreasureInCave(location).size();
+          expectedTreasure += treasure;
+          expectedTreasureWins += treasure > 0 ? 1 : 0;
+          expectedArrows += dungeon.hasArrow(location) ? 1 : 0;
+        }
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+        List<Future<?>> racers = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+          racers.add(pool.submit(() -> {
+            start.await();
+            for (Coordinates location : locations) {
+              List<Treasure> treasure = dungeon.pickupTreasureInCave(location);
+              if (!treasure.isEmpty()) {
+                treasureWins.incrementAndGet();
+                treasureTaken.addAndGet(treasure.size());
+              }
+              if (dungeon.pickUpArrow(location) != null) {
+                arrowWins.incrementAndGet();
+              }
+            }
+            return null;
+          }));
+        }
+        for (Future<?> racer : racers) {
+          racer.get();
+        }
+        for (Coordinates location : locations) {
+          assertTrue(dungeon.viewTreasureInCave(location).isEmpty());
+          assertFalse(dungeon.hasArrow(location));
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+    assertEquals(expectedTreasureWins, treasureWins.get());
+    assertEquals(expectedTreasure, treasureTaken.get());
+    assertEquals(expectedArrows, arrowWins.get());
+    assertEquals(new ConcurrentDungeon(dungeon, 100, 1).getStateHash(), dungeon.getStateHash());
+  }
+
+  /**
+   * Test that no hit is lost when every thread shoots the same monster at once.
+   *
+   * @throws Exception if a thread fails
+   */
+  @Test
+  public void testRacingHits() throws Exception {
+    ConcurrentDungeon dungeon = new ConcurrentDungeon(6, 6, 2, false, 50, 1);
+    Coordinates end = dungeon.getEndCave();
+    Arrow arrow = new LandedArrow(end);
+    int hitsEach = 30;
+    CyclicBarrier start = new CyclicBarrier(THREADS);
+    ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Future<?>> shooters = new ArrayList<>();
+      for (int thread = 0; thread < THREADS; thread++) {
+        shooters.add(pool.submit(() -> {
+          start.await();
+          for (int hit = 0; hit < hitsEach; hit++) {
+            dungeon.arrowStrike(arrow);
+          }
+          return null;
+        }));
+      }
+      for (Future<?> shooter : shooters) {
+        shooter.get();
+      }
+    } finally {
+      pool.shutdown();
+    }
+    assertEquals(THREADS * hitsEach, dungeon.monsterArrowCount(end));
+    assertFalse(dungeon.hasMonster(end));
+    assertEquals(new ConcurrentDungeon(dungeon, 50, 1).getStateHash(), dungeon.getStateHash());
+  }
+
+  /**
+   * Test that players sharing a dungeon see each other's pickups.
+   */
+  @Test
+  public void testPlayersShareDungeon() {
+    ConcurrentDungeon dungeon = new ConcurrentDungeon(6, 6, 2, false, 100, 1);
+    Player first = new DungeonPlayer("First", dungeon);
+    Player second = new DungeonPlayer("Second", dungeon);
+    assertEquals(first.getCurrentCoordinates(), second.getCurrentCoordinates());
+    boolean hadArrow = dungeon.hasArrow(dungeon.getStartCave());
+    assertEquals(hadArrow, first.pickUpArrow());
+    assertFalse(second.pickUpArrow());
+    assertFalse(second.currentLocationHasArrow());
+    assertEquals(hadArrow ? 4 : 3, first.getArrowCount());
+    assertEquals(3, second.getArrowCount());
+  }
+
+  // Arrow which has already landed, to strike the dungeon without flying
+  private static final class LandedArrow implements Arrow {
+
+    private final Coordinates location;
+
+    private LandedArrow(Coordinates location) {
+      this.location = location;
+    }
+
+    @Override
+    public void shoot(int distance, Coordinates direction, Coordinates source, Dungeon dungeon) {
+      // already landed
+    }
+
+    @Override
+    public Coordinates getCurrentLocation() {
+      return this.location;
+    }
+  }
+}
@@ -0,0 +1,100 @@
+import org.junit.Test;
+
+import java.util.List;
+
+import dungeonmodel.coordinates.CaveCoordinates;
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.Dungeon;
+import dungeonmodel.dungeon.DungeonImpl;
+import dungeonmodel.dungeon.DungeonTopology;
+import dungeonmodel.path.BreadthFirstSearch;
+import dungeonmodel.path.DistanceOracle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class to test expected functionality of the distance oracle.
+ */
+public class TestDistanceOracle {
+
+  /**
+   * Test expected exception when creating an oracle over a null dungeon.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullDungeon() {
+    new DistanceOracle(null);
+  }
+
+  /**
+   * Test expected exception when querying a location outside the dungeon.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testOutsideDungeon() {
+    Dungeon dungeon = new DungeonImpl(5, 5, 0, false, 50, 1);
+    new DistanceOracle(dungeon).distance(dungeon.getStartCave(), new CaveCoordinates(5, 0));
+  }
+
+  /**
+   * Test that distances and paths of a small dungeon, kept in a matrix, match a breadth first
+   * search.
+   */
+  @Test
+  public void testSmallDungeonMatchesSearch() {
+    Dungeon dungeon = new DungeonImpl(6, 7, 3, true, 50, 1);
+    DistanceOracle oracle = new DistanceOracle(dungeon);
+    this.checkAgainstSearch(dungeon, oracle, 1);
+  }
+
+  /**
+   * Test that distances and paths of a large dungeon, answered by shortest path trees, match a
+   * breadth first search.
+   */
+  @Test
+  public void testLargeDungeonMatchesSearch() {
+    Dungeon dungeon = new DungeonImpl(40, 40, 20, false, 50, 1);
+    DistanceOracle oracle = new DistanceOracle(dungeon);
+    assertTrue(oracle.getTopology().size() > DistanceOracle.ALL_PAIRS_LIMIT);
+    this.checkAgainstSearch(dungeon, oracle, 97);
+  }
+
+  /**
+   * Test that the distance between the start and end caves is the length of the path between them
+   * in either direction.
+   */
+  @Test
+  public void testStartToEnd() {
+    Dungeon dungeon = new DungeonImpl(40, 40, 0, true, 50, 1);
+    DistanceOracle oracle = new DistanceOracle(dungeon);
+    int distance = oracle.distance(dungeon.getStartCave(), dungeon.getEndCave());
+    assertTrue(distance >= 5);
+    assertEquals(distance, oracle.distance(dungeon.getEndCave(), dungeon.getStartCave()));
+    List<Coordinates> path = oracle.path(dungeon.getEndCave(), dungeon.getStartCave());
+    assertEquals(distance + 1, path.size());
+    assertEquals(dungeon.getEndCave(), path.get(0));
+    assertEquals(dungeon.getStartCave(), path.get(path.size() - 1));
+    oracle.invalidate();
+    assertEquals(distance, oracle.distance(dungeon.getStartCave(), dungeon.getEndCave()));
+  }
+
+  // Compares the oracle with a search from every location whose index is a multiple of the step
+  private void checkAgainstSearch(Dungeon dungeon, DistanceOracle oracle, int step) {
+    DungeonTopology topology = DungeonTopology.of(dungeon);
+    int[] distances = new int[topology.size()];
+    for (int source = 0; source < topology.size(); source += step) {
+      BreadthFirstSearch.search(topology, source, distances, null);
+      Coordinates from = topology.coordinatesOf(source);
+      for (int target = 0; target < topology.size(); target += step) {
+        Coordinates to = topology.coordinatesOf(target);
+        assertEquals(distances[target], oracle.distance(from, to));
+        List<Coordinates> path = oracle.path(from, to);
+        assertEquals(distances[target] + 1, path.size());
+        assertEquals(from, path.get(0));
+        assertEquals(to, path.get(path.size() - 1));
+        for (int move = 1; move < path.size(); move++) {
+          assertTrue(dungeon.getAdjacent(path.get(move - 1)).contains(path.get(move)));
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,153 @@
+import org.junit.Test;
+
+import java.util.List;
+
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.Dungeon;
+import dungeonmodel.dungeon.DungeonBitboard;
+import dungeonmodel.dungeon.DungeonImpl;
+import dungeonmodel.dungeon.DungeonTopology;
+import dungeonmodel.path.BreadthFirstSearch;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class to test expected functionality of the dungeon bitboard.
+ */
+public class TestDungeonBitboard {
+
+  /**
+   * Test expected exception when using a set of the wrong size.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testWrongSizeSet() {
+    DungeonBitboard bitboard = DungeonBitboard.of(new DungeonImpl(10, 10, 0, false, 50, 1));
+    bitboard.expand(new long[1]);
+  }
+
+  /**
+   * Test that the contents read match the dungeon.
+   */
+  @Test
+  public void testContents() {
+    Dungeon dungeon = new DungeonImpl(9, 13, 5, true, 40, 6);
+    DungeonBitboard bitboard = DungeonBitboard.of(dungeon);
+    DungeonTopology topology = bitboard.getTopology();
+    for (int index = 0; index < topology.size(); index++) {
+      Coordinates coordinates = topology.coordinatesOf(index);
+      assertEquals(dungeon.hasMonster(coordinates),
+              bitboard.contains(bitboard.getMonsters(), coordinates));
+      assertEquals(dungeon.hasArrow(coordinates),
+              bitboard.contains(bitboard.getArrows(), coordinates));
+      assertEquals(!dungeon.viewTreasureInCave(coordinates).isEmpty(),
+              bitboard.contains(bitboard.getTreasure(), coordinates));
+    }
+    assertEquals(6, DungeonBitboard.count(bitboard.getMonsters()));
+  }
+
+  /**
+   * Test that the smell worked out for the whole dungeon matches the smell of each cave, with and
+   * without wrapping and after monsters are killed.
+   */
+  @Test
+  public void testSmellMatchesDungeon() {
+    for (int attempt = 0; attempt < 10; attempt++) {
+      Dungeon dungeon = new DungeonImpl(6 + attempt, 7, attempt, attempt % 2 == 0, 50,
+              3 + attempt);
+      DungeonBitboard bitboard = DungeonBitboard.of(dungeon);
+      this.checkSmell(dungeon, bitboard);
+      dungeon.resetDungeon();
+      this.checkSmell(dungeon, bitboard.refresh(dungeon));
+    }
+  }
+
+  /**
+   * Test that moving a single location into a reused set reaches exactly its neighbour through
+   * the path in that direction, including across wrapping edges.
+   */
+  @Test
+  public void testMoveIntoMatchesNeighbours() {
+    Dungeon dungeon = new DungeonImpl(7, 70, 40, true, 50, 1);
+    DungeonBitboard bitboard = DungeonBitboard.of(dungeon);
+    DungeonTopology topology = bitboard.getTopology();
+    long[] moved = bitboard.emptySet();
+    for (int index = 0; index < topology.size(); index++) {
+      long[] from = bitboard.setOf(List.of(topology.coordinatesOf(index)));
+      for (int direction = 0; direction < DungeonTopology.DIRECTIONS; direction++) {
+        bitboard.move(from, direction, moved);
+        assertArrayEquals(bitboard.move(from, direction), moved);
+        int next = topology.neighbour(index, direction);
+        if (next < 0) {
+          assertEquals(0, DungeonBitboard.count(moved));
+        } else {
+          assertEquals(List.of(topology.coordinatesOf(next)), bitboard.toCoordinates(moved));
+        }
+      }
+    }
+  }
+
+  /**
+   * Test expected exception when moving a set into itself.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testMoveIntoSameSet() {
+    DungeonBitboard bitboard = DungeonBitboard.of(new DungeonImpl(10, 10, 0, false, 50, 1));
+    long[] set = bitboard.emptySet();
+    bitboard.move(set, DungeonTopology.NORTH, set);
+  }
+
+  /**
+   * Test that locations within a number of moves match a breadth first search, and that every
+   * location is reachable when all are passable.
+   */
+  @Test
+  public void testWithinMovesMatchesSearch() {
+    Dungeon dungeon = new DungeonImpl(17, 11, 8, true, 50, 1);
+    DungeonBitboard bitboard = DungeonBitboard.of(dungeon);
+    DungeonTopology topology = bitboard.getTopology();
+    int start = topology.indexOf(dungeon.getStartCave());
+    int[] distances = new int[topology.size()];
+    BreadthFirstSearch.search(topology, start, distances, null);
+    long[] from = bitboard.setOf(List.of(dungeon.getStartCave()));
+    for (int moves = 0; moves < 12; moves++) {
+      long[] within = bitboard.withinMoves(from, moves);
+      for (int index = 0; index < topology.size(); index++) {
+        assertEquals(distances[index] <= moves,
+                bitboard.contains(within, topology.coordinatesOf(index)));
+      }
+    }
+
+    long[] all = bitboard.withinMoves(from, topology.size());
+    assertEquals(topology.size(), DungeonBitboard.count(all));
+    assertEquals(topology.size(), DungeonBitboard.count(bitboard.reachable(from, all)));
+    assertEquals(1, DungeonBitboard.count(bitboard.reachable(from, bitboard.emptySet())));
+  }
+
+  /**
+   * Test that arrows in a set of discovered locations are found by intersecting the sets.
+   */
+  @Test
+  public void testArrowsInDiscoveredArea() {
+    Dungeon dungeon = new DungeonImpl(8, 8, 0, false, 100, 1);
+    DungeonBitboard bitboard = DungeonBitboard.of(dungeon);
+    long[] discovered = bitboard.withinMoves(
+            bitboard.setOf(List.of(dungeon.getStartCave())), 2);
+    List<Coordinates> found = bitboard.toCoordinates(
+            DungeonBitboard.and(bitboard.getArrows(), discovered));
+    for (Coordinates coordinates : found) {
+      assertTrue(dungeon.hasArrow(coordinates));
+      assertTrue(bitboard.contains(discovered, coordinates));
+    }
+    assertTrue(dungeon.hasArrow(dungeon.getStartCave()) == found.contains(dungeon.getStartCave()));
+  }
+
+  private void checkSmell(Dungeon dungeon, DungeonBitboard bitboard) {
+    DungeonTopology topology = bitboard.getTopology();
+    for (int index = 0; index < topology.size(); index++) {
+      Coordinates coordinates = topology.coordinatesOf(index);
+      assertEquals(dungeon.getSmell(coordinates), bitboard.getSmell(coordinates));
+    }
+  }
+}
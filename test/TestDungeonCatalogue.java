@@ -0,0 +1,213 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+import dungeonmodel.dungeon.DungeonSettings;
+import dungeonmodel.dungeon.DungeonTopology;
+import dungeonmodel.dungeon.OffHeapDungeon;
+import dungeonmodel.path.BreadthFirstSearch;
+import dungeonmodel.persistence.DungeonCatalogue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Class to test the catalogue of pre-generated dungeons.
+ */
+public class TestDungeonCatalogue {
+
+  private static final DungeonSettings SMALL = new DungeonSettings(6, 8, 0, false, 50, 1);
+  private static final DungeonSettings WRAPPING = new DungeonSettings(7, 5, 2, true, 40, 2);
+
+  /**
+   * Test expected exception when building a catalogue without dungeons.
+   *
+   * @throws IOException if the file cannot be used
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testBuildNoDungeons() throws IOException {
+    Path file = Files.createTempFile("dungeons", ".catalogue");
+    try {
+      DungeonCatalogue.build(file, Arrays.asList(SMALL), 0);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Test expected exception when the catalogue would be too large to map, before any dungeon is
+   * generated or written.
+   *
+   * @throws IOException if the file cannot be used
+   */
+  @Test
+  public void testBuildTooLarge() throws IOException {
+    Path file = Files.createTempFile("dungeons", ".catalogue");
+    try {
+      DungeonCatalogue.build(file, Arrays.asList(new DungeonSettings(30000, 30000, 0, false, 40,
+              2)), 1);
+      fail("Built a catalogue too large to map");
+    } catch (IllegalArgumentException expected) {
+      assertEquals(0, Files.size(file));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Test expected exception when opening a file which is not a catalogue.
+   *
+   * @throws IOException if the file cannot be used
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testOpenOtherFile() throws IOException {
+    Path file = Files.createTempFile("dungeons", ".catalogue");
+    try {
+      Files.write(file, new byte[64]);
+      DungeonCatalogue.open(file);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Test that every settings built into a catalogue can be looked up, and other settings cannot.
+   *
+   * @throws IOException if the file cannot be used
+   */
+  @Test
+  public void testLookupBySettings() throws IOException {
+    Path file = Files.createTempFile("dungeons", ".catalogue");
+    try {
+      DungeonCatalogue.build(file, Arrays.asList(SMALL, WRAPPING), 20);
+      try (DungeonCatalogue catalogue = DungeonCatalogue.open(file)) {
+        assertEquals(new HashSet<>(Arrays.asList(SMALL, WRAPPING)), catalogue.getSettings());
+        assertTrue(catalogue.contains(new DungeonSettings(6, 8, 0, false, 50, 1)));
+        assertEquals(20, catalogue.count(SMALL, 0, Integer.MAX_VALUE));
+        assertEquals(20, catalogue.count(WRAPPING, 0, Integer.MAX_VALUE));
+
+        DungeonSettings missing = new DungeonSettings(6, 8, 1, false, 50, 1);
+        assertFalse(catalogue.contains(missing));
+        assertEquals(0, catalogue.count(missing, 0, Integer.MAX_VALUE));
+        assertNull(catalogue.open(missing, new Random(1)));
+
+        OffHeapDungeon dungeon = catalogue.open(WRAPPING, new Random(2));
+        assertNotNull(dungeon);
+        assertEquals(Arrays.asList(7, 5), dungeon.getDimensions());
+        assertTrue(dungeon.hasMonster(dungeon.getEndCave()));
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Test that dungeons opened by difficulty have a shortest path from start to end in the range,
+   * and that counts across ranges add up.
+   *
+   * @throws IOException if the file cannot be used
+   */
+  @Test
+  public void testLookupByDifficulty() throws IOException {
+    Path file = Files.createTempFile("dungeons", ".catalogue");
+    try {
+      DungeonCatalogue.build(file, Arrays.asList(SMALL), 50);
+      try (DungeonCatalogue catalogue = DungeonCatalogue.open(file)) {
+        int total = 0;
+        Random random = new Random(3);
+        for (int difficulty = 0; difficulty <= 48; difficulty++) {
+          int count = catalogue.count(SMALL, difficulty, difficulty);
+          total += count;
+          OffHeapDungeon dungeon = catalogue.open(SMALL, difficulty, difficulty, random);
+          if (count == 0) {
+            assertNull(dungeon);
+          } else {
+            assertEquals(difficulty, shortestPath(dungeon));
+          }
+        }
+        assertEquals(50, total);
+        assertEquals(0, catalogue.count(SMALL, 5, 4));
+        assertEquals(50, catalogue.count(SMALL, Integer.MIN_VALUE, Integer.MAX_VALUE));
+        assertNotNull(catalogue.open(SMALL, Integer.MIN_VALUE, Integer.MAX_VALUE, random));
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Test that a catalogue cut short or with a damaged count in its index is refused as damaged,
+   * rather than read past the end of the file.
+   *
+   * @throws IOException if the file cannot be used
+   */
+  @Test
+  public void testOpenDamagedCatalogue() throws IOException {
+    Path file = Files.createTempFile("dungeons", ".catalogue");
+    try {
+      DungeonCatalogue.build(file, Arrays.asList(SMALL), 10);
+      byte[] written = Files.readAllBytes(file);
+      int indexOffset = ByteBuffer.wrap(written, 16, 8).order(ByteOrder.LITTLE_ENDIAN).getInt();
+      byte[] damagedCount = written.clone();
+      damagedCount[indexOffset + 26] = 0x10;
+      byte[][] damaged = {Arrays.copyOf(written, written.length - 4),
+          Arrays.copyOf(written, indexOffset + 20), damagedCount};
+      for (byte[] contents : damaged) {
+        Files.write(file, contents);
+        try (DungeonCatalogue catalogue = DungeonCatalogue.open(file)) {
+          fail("Opened a damaged catalogue of " + contents.length + " bytes");
+        } catch (IllegalArgumentException expected) {
+          assertEquals("Catalogue is damaged", expected.getMessage());
+        }
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Test that dungeons opened from the same record are independent of each other.
+   *
+   * @throws IOException if the file cannot be used
+   */
+  @Test
+  public void testOpenedDungeonsAreIndependent() throws IOException {
+    Path file = Files.createTempFile("dungeons", ".catalogue");
+    try {
+      DungeonCatalogue.build(file, Arrays.asList(SMALL), 1);
+      try (DungeonCatalogue catalogue = DungeonCatalogue.open(file)) {
+        OffHeapDungeon first = catalogue.open(SMALL, new Random(4));
+        OffHeapDungeon second = catalogue.open(SMALL, new Random(5));
+        assertEquals(first.getStartCave(), second.getStartCave());
+        assertEquals(first.getEndCave(), second.getEndCave());
+        assertEquals(first.getStateHash(), second.getStateHash());
+        first.pickUpArrow(first.getStartCave());
+        first.pickupTreasureInCave(first.getStartCave());
+        first.getStore().set(1, 0);
+        assertEquals(second.getStore().get(1),
+                catalogue.open(SMALL, new Random(6)).getStore().get(1));
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  private static int shortestPath(OffHeapDungeon dungeon) {
+    DungeonTopology topology = DungeonTopology.of(dungeon);
+    int[] distances = new int[topology.size()];
+    BreadthFirstSearch.search(topology, topology.indexOf(dungeon.getStartCave()), distances,
+            null);
+    return distances[topology.indexOf(dungeon.getEndCave())];
+  }
+}
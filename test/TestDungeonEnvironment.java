@@ -0,0 +1,192 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import dungeonmodel.dungeon.Dungeon;
+import dungeonmodel.dungeon.DungeonImpl;
+import dungeonmodel.environment.DungeonEnvironment;
+import dungeonmodel.environment.EnvironmentAction;
+import dungeonmodel.environment.GameEnvironment;
+import dungeonmodel.environment.VectorizedEnvironment;
+import dungeonmodel.player.DungeonPlayer;
+import dungeonmodel.player.Player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class to test expected functionality of the game environments.
+ */
+public class TestDungeonEnvironment {
+
+  /**
+   * Test expected exception when creating an environment with a null player.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullPlayer() {
+    new DungeonEnvironment(null);
+  }
+
+  /**
+   * Test expected exception when the observation buffer is too small.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testSmallBuffer() {
+    Dungeon dungeon = new DungeonImpl(5, 5, 0, false, 50, 1);
+    GameEnvironment environment = new DungeonEnvironment(new DungeonPlayer("Test", dungeon));
+    environment.reset(new int[DungeonEnvironment.OBSERVATION_SIZE - 1], 0);
+  }
+
+  /**
+   * Test that reset observation matches the player's state at the start cave.
+   */
+  @Test
+  public void testResetObservation() {
+    Dungeon dungeon = new DungeonImpl(5, 5, 0, false, 50, 1);
+    Player player = new DungeonPlayer("Test", dungeon);
+    GameEnvironment environment = new DungeonEnvironment(player);
+    int[] observation = new int[environment.getObservationSize()];
+    environment.reset(observation, 0);
+    assertEquals(dungeon.getStartCave(), player.getCurrentCoordinates());
+    assertEquals(player.getNorth() != null ? 1 : 0,
+            observation[DungeonEnvironment.PATH_NORTH]);
+    assertEquals(player.getSouth() != null ? 1 : 0,
+            observation[DungeonEnvironment.PATH_SOUTH]);
+    assertEquals(player.getEast() != null ? 1 : 0,
+            observation[DungeonEnvironment.PATH_EAST]);
+    assertEquals(player.getWest() != null ? 1 : 0,
+            observation[DungeonEnvironment.PATH_WEST]);
+    assertEquals(3, observation[DungeonEnvironment.ARROWS_HELD]);
+    assertEquals(1, observation[DungeonEnvironment.ALIVE]);
+    assertEquals(0, observation[DungeonEnvironment.WON]);
+    assertEquals(player.viewTreasureAtCurrentLocation().size(),
+            observation[DungeonEnvironment.TREASURE_COUNT]);
+  }
+
+  /**
+   * Test that moving along an open path moves the player and invalid moves are penalised.
+   */
+  @Test
+  public void testMoveStep() {
+    Dungeon dungeon = new DungeonImpl(5, 5, 0, false, 50, 1);
+    Player player = new DungeonPlayer("Test", dungeon);
+    GameEnvironment environment = new DungeonEnvironment(player);
+    int[] observation = new int[environment.getObservationSize()];
+    environment.reset(observation, 0);
+
+    EnvironmentAction open = null;
+    EnvironmentAction closed = null;
+    if (player.getNorth() != null) {
+      open = EnvironmentAction.MOVE_NORTH;
+    } else {
+      closed = EnvironmentAction.MOVE_NORTH;
+    }
+    if (player.getSouth() != null) {
+      open = EnvironmentAction.MOVE_SOUTH;
+    } else {
+      closed = EnvironmentAction.MOVE_SOUTH;
+    }
+    if (player.getEast() != null) {
+      open = EnvironmentAction.MOVE_EAST;
+    } else {
+      closed = EnvironmentAction.MOVE_EAST;
+    }
+
+    if (closed != null) {
+      double reward = environment.step(closed, observation, 0);
+      assertTrue(reward < 0);
+      assertEquals(dungeon.getStartCave(), player.getCurrentCoordinates());
+    }
+    if (open != null) {
+      environment.step(open, observation, 0);
+      assertFalse(dungeon.getStartCave().equals(player.getCurrentCoordinates()));
+      assertEquals(player.isPlayerAlive() ? 1 : 0, observation[DungeonEnvironment.ALIVE]);
+    }
+  }
+
+  /**
+   * Test that picking up treasure is rewarded with its value.
+   */
+  @Test
+  public void testPickupTreasureReward() {
+    Dungeon dungeon = new DungeonImpl(5, 5, 0, false, 100, 1);
+    Player player = new DungeonPlayer("Test", dungeon);
+    GameEnvironment environment = new DungeonEnvironment(player);
+    int[] observation = new int[environment.getObservationSize()];
+    environment.reset(observation, 0);
+    double expected = 0;
+    for (int i = 0; i < player.viewTreasureAtCurrentLocation().size(); i++) {
+      expected += player.viewTreasureAtCurrentLocation().get(i).getTreasureValue();
+    }
+    double reward = environment.step(EnvironmentAction.PICKUP_TREASURE, observation, 0);
+    assertEquals(expected, reward, 0.001);
+    assertEquals(0, observation[DungeonEnvironment.TREASURE_COUNT]);
+  }
+
+  /**
+   * Test that shooting uses up arrows until none are left.
+   */
+  @Test
+  public void testShootStep() {
+    Dungeon dungeon = new DungeonImpl(5, 5, 0, false, 50, 1);
+    Player player = new DungeonPlayer("Test", dungeon);
+    GameEnvironment environment = new DungeonEnvironment(player);
+    int[] observation = new int[environment.getObservationSize()];
+    environment.reset(observation, 0);
+    EnvironmentAction shoot = player.getNorth() != null ? EnvironmentAction.SHOOT_NORTH
+            : player.getSouth() != null ? EnvironmentAction.SHOOT_SOUTH
+            : player.getEast() != null ? EnvironmentAction.SHOOT_EAST
+            : EnvironmentAction.SHOOT_WEST;
+    for (int count = 2; count >= 0; count--) {
+      environment.step(shoot, observation, 0);
+      assertEquals(count, observation[DungeonEnvironment.ARROWS_HELD]);
+    }
+    double reward = environment.step(shoot, observation, 0);
+    assertTrue(reward < 0);
+    assertEquals(0, observation[DungeonEnvironment.ARROWS_HELD]);
+  }
+
+  /**
+   * Test that a vectorized environment writes every observation and resets ended episodes.
+   */
+  @Test
+  public void testVectorizedStep() {
+    List<GameEnvironment> environments = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      Dungeon dungeon = new DungeonImpl(5, 5, 0, false, 50, 1);
+      environments.add(new DungeonEnvironment(new DungeonPlayer("Test", dungeon)));
+    }
+    VectorizedEnvironment vectorized = new VectorizedEnvironment(environments);
+    vectorized.reset();
+    int[] observations = vectorized.getObservations();
+    assertEquals(4 * DungeonEnvironment.OBSERVATION_SIZE, observations.length);
+
+    EnvironmentAction[] actions = new EnvironmentAction[vectorized.size()];
+    EnvironmentAction[] all = EnvironmentAction.values();
+    for (int step = 0; step < 500; step++) {
+      for (int i = 0; i < actions.length; i++) {
+        actions[i] = all[(step * 7 + i) % all.length];
+      }
+      vectorized.step(actions);
+      assertTrue(observations == vectorized.getObservations());
+      for (int i = 0; i < actions.length; i++) {
+        assertEquals(1, observations[i * DungeonEnvironment.OBSERVATION_SIZE
+                + DungeonEnvironment.ALIVE]);
+      }
+    }
+  }
+
+  /**
+   * Test expected exception when the number of actions does not match the environments.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testVectorizedWrongActionCount() {
+    List<GameEnvironment> environments = new ArrayList<>();
+    Dungeon dungeon = new DungeonImpl(5, 5, 0, false, 50, 1);
+    environments.add(new DungeonEnvironment(new DungeonPlayer("Test", dungeon)));
+    VectorizedEnvironment vectorized = new VectorizedEnvironment(environments);
+    vectorized.step(new EnvironmentAction[2]);
+  }
+}
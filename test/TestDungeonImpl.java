@@ -677,6 +677,33 @@ public class TestDungeonImpl {
     }
   }
 
+  /**
+   * Test that the same seed gives the same paths, contents, start and end caves, before and after
+   * resetting, and that another seed gives another dungeon.
+   */
+  @Test
+  public void testSeedGivesSameDungeon() {
+    Dungeon first = new DungeonImpl(8, 9, 4, true, 60, 3, 21);
+    Dungeon second = new DungeonImpl(8, 9, 4, true, 60, 3, 21);
+    for (int round = 0; round < 2; round++) {
+      assertEquals(first.getStartCave(), second.getStartCave());
+      assertEquals(first.getEndCave(), second.getEndCave());
+      assertEquals(first.getStateHash(), second.getStateHash());
+      for (int row = 0; row < 8; row++) {
+        for (int col = 0; col < 9; col++) {
+          Coordinates coordinates = new CaveCoordinates(row, col);
+          assertEquals(first.getAdjacent(coordinates), second.getAdjacent(coordinates));
+          assertEquals(first.viewTreasureInCave(coordinates),
+                  second.viewTreasureInCave(coordinates));
+        }
+      }
+      first.resetDungeon();
+      second.resetDungeon();
+    }
+    assertNotEquals(first.getStateHash(),
+            new DungeonImpl(8, 9, 4, true, 60, 3, 22).getStateHash());
+  }
+
   /**
    * Test that reset dungeon works as expected.S
    */
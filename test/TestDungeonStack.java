@@ -0,0 +1,196 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.stream.Stream;
+
+import controller.DungeonGameController;
+import controller.GameController;
+import dungeonmodel.coordinates.CaveCoordinates;
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.DungeonStack;
+import dungeonmodel.player.DungeonPlayer;
+import dungeonmodel.player.Player;
+import dungeonmodel.sync.SnapshotPublisher;
+import dungeonmodel.sync.TrackingDungeon;
+import view.GameView;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class to test expected functionality of the multi floor dungeon stack.
+ */
+public class TestDungeonStack {
+
+  /**
+   * Test expected exception when the depth is not positive.
+   *
+   * @throws IOException if the spill directory cannot be created
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidDepth() throws IOException {
+    Path directory = Files.createTempDirectory("floors");
+    try {
+      new DungeonStack(6, 6, 0, false, 50, 1, 0, directory);
+    } finally {
+      Files.deleteIfExists(directory);
+    }
+  }
+
+  /**
+   * Test expected exception when the spill directory does not exist.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testMissingSpillDirectory() {
+    new DungeonStack(6, 6, 0, false, 50, 1, 3, Path.of("no-such-directory"));
+  }
+
+  /**
+   * Test that stairs line up between floors, that only the floors near the current one are kept
+   * in memory, and that the stairs down are in the end cave of every floor but the last.
+   *
+   * @throws IOException if the spill directory cannot be used
+   */
+  @Test
+  public void testStairsLineUp() throws IOException {
+    Path directory = Files.createTempDirectory("floors");
+    try (DungeonStack stack = new DungeonStack(6, 7, 2, true, 40, 2, 6, directory)) {
+      assertNull(stack.getStairsUp());
+      for (int floor = 0; floor < 5; floor++) {
+        assertEquals(floor, stack.getCurrentFloor());
+        Coordinates stairs = stack.getStairsDown();
+        assertEquals(stack.getEndCave(), stairs);
+        assertFalse(stack.takeStairs(stack.getAdjacent(stairs).get(0)));
+        assertTrue(stack.takeStairs(stairs));
+        assertEquals(stairs, stack.getStairsUp());
+        assertTrue(stack.getResidentFloorCount() <= 3);
+        assertFalse(stack.getAdjacent(stairs).isEmpty());
+      }
+      assertEquals(5, stack.getCurrentFloor());
+      assertNull(stack.getStairsDown());
+      assertNotNull(stack.getEndCave());
+      assertTrue(stack.hasMonster(stack.getEndCave()));
+      assertEquals(2, stack.getResidentFloorCount());
+    } finally {
+      Files.deleteIfExists(directory);
+    }
+  }
+
+  /**
+   * Test that changes to a floor written out of memory are there when the floor is read back, and
+   * that resetting goes back to the first floor with new contents.
+   *
+   * @throws IOException if the spill directory cannot be used
+   */
+  @Test
+  public void testFloorsReadBack() throws IOException {
+    Path directory = Files.createTempDirectory("floors");
+    try (DungeonStack stack = new DungeonStack(6, 6, 1, false, 100, 1, 4, directory)) {
+      Coordinates start = stack.getStartCave();
+      assertNotNull(stack.pickUpArrow(start));
+      assertFalse(stack.pickupTreasureInCave(start).isEmpty());
+      long hash = stack.getStateHash();
+
+      Coordinates[] stairs = new Coordinates[3];
+      for (int floor = 0; floor < 3; floor++) {
+        stairs[floor] = stack.getStairsDown();
+        stack.takeStairs(stairs[floor]);
+      }
+      assertTrue(hash != stack.getStateHash());
+      for (int floor = 2; floor >= 0; floor--) {
+        assertTrue(stack.takeStairs(stairs[floor]));
+      }
+      assertEquals(0, stack.getCurrentFloor());
+      assertFalse(stack.hasArrow(start));
+      assertTrue(stack.viewTreasureInCave(start).isEmpty());
+      for (int row = 0; row < 6; row++) {
+        for (int column = 0; column < 6; column++) {
+          Coordinates coordinates = new CaveCoordinates(row, column);
+          assertTrue(coordinates.equals(start) || stack.hasArrow(coordinates));
+        }
+      }
+
+      stack.takeStairs(stairs[0]);
+      stack.resetDungeon();
+      assertEquals(0, stack.getCurrentFloor());
+      assertTrue(stack.hasArrow(start));
+      assertFalse(stack.viewTreasureInCave(start).isEmpty());
+    } finally {
+      try (Stream<Path> files = Files.list(directory)) {
+        assertEquals(0, files.count());
+      }
+      Files.deleteIfExists(directory);
+    }
+  }
+
+  /**
+   * Test that a player only wins in the end cave of the last floor, and goes down the stairs in
+   * the end cave of the floors above through the controller, which publishes the new floor.
+   *
+   * @throws IOException if the spill directory cannot be used
+   */
+  @Test
+  public void testPlayerTakesStairs() throws IOException {
+    Path directory = Files.createTempDirectory("floors");
+    try (DungeonStack stack = new DungeonStack(6, 7, 2, true, 40, 2, 2, directory)) {
+      TrackingDungeon tracked = new TrackingDungeon(stack);
+      Player player = enterEndCave(tracked);
+      assertFalse(player.hasPlayerWon());
+      SnapshotPublisher publisher = new SnapshotPublisher(player, tracked);
+      new DungeonGameController(player, new PublishingView(publisher)).takeStairs();
+      assertEquals(1, stack.getCurrentFloor());
+      assertEquals(stack.getStairsUp(), publisher.getSnapshot().getCurrentCoordinates());
+      assertEquals(stack.getEndCave(), publisher.getSnapshot().getDungeon().getEndCave());
+
+      player = enterEndCave(tracked);
+      assertTrue(player.hasPlayerWon());
+      assertFalse(player.takeStairs());
+    } finally {
+      Files.deleteIfExists(directory);
+    }
+  }
+
+  // Puts a player next to the end cave of the current floor, kills its monster and moves in
+  private static Player enterEndCave(TrackingDungeon dungeon) {
+    Coordinates end = dungeon.getEndCave();
+    Coordinates next = dungeon.getAdjacent(end).get(0);
+    Player player = new DungeonPlayer("Stairs", dungeon, next, new ArrayList<>(), 2, true, false);
+    assertEquals(end, player.shootArrow(1, end));
+    assertEquals(end, player.shootArrow(1, end));
+    assertFalse(dungeon.hasMonster(end));
+    assertTrue(player.moveTo(end));
+    assertTrue(player.isPlayerAlive());
+    return player;
+  }
+
+  // View which publishes a snapshot on every refresh
+  private static final class PublishingView implements GameView {
+
+    private final SnapshotPublisher publisher;
+
+    private PublishingView(SnapshotPublisher publisher) {
+      this.publisher = publisher;
+    }
+
+    @Override
+    public void startView(GameController controller) {
+      // nothing to start
+    }
+
+    @Override
+    public void displayMessage(String message) {
+      // messages are not checked
+    }
+
+    @Override
+    public void refresh() {
+      this.publisher.publish();
+    }
+  }
+}
@@ -0,0 +1,138 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import dungeonmodel.dungeon.CellStore;
+import dungeonmodel.dungeon.DungeonTopology;
+import dungeonmodel.dungeon.EllerDungeonGenerator;
+import dungeonmodel.dungeon.OffHeapDungeon;
+import dungeonmodel.path.BreadthFirstSearch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class to test expected functionality of the row streaming dungeon generator.
+ */
+public class TestEllerDungeonGenerator {
+
+  /**
+   * Test expected exception when asking for more interconnectivity than there are edges.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testTooMuchInterconnectivity() {
+    new EllerDungeonGenerator(4, 4, 10, false, 50, 1, 1);
+  }
+
+  /**
+   * Test expected exception when the store is too small.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testStoreTooSmall() {
+    new EllerDungeonGenerator(6, 6, 0, false, 50, 1, 1).generate(CellStore.allocate(35));
+  }
+
+  /**
+   * Test that generated dungeons are connected and have exactly the spanning tree edges plus the
+   * requested extra edges, with and without wrapping.
+   */
+  @Test
+  public void testSpanningTreePlusExtraEdges() {
+    int[][] settings = {{10, 10, 0, 0}, {10, 10, 9, 0}, {12, 7, 30, 1}, {6, 20, 0, 1},
+        {30, 3, 5, 1}};
+    for (int[] setting : settings) {
+      for (long seed = 0; seed < 5; seed++) {
+        EllerDungeonGenerator generator = new EllerDungeonGenerator(setting[0], setting[1],
+                setting[2], setting[3] == 1, 50, 2, seed);
+        OffHeapDungeon dungeon = generator.generate(CellStore.allocate(generator.requiredCells()));
+        DungeonTopology topology = DungeonTopology.of(dungeon);
+        int pathEnds = 0;
+        for (int index = 0; index < topology.size(); index++) {
+          pathEnds += Integer.bitCount(topology.getPaths(index));
+          for (int direction = 0; direction < DungeonTopology.DIRECTIONS; direction++) {
+            int next = topology.neighbour(index, direction);
+            if (next >= 0) {
+              assertEquals(index, topology.neighbour(next, DungeonTopology.opposite(direction)));
+            }
+          }
+        }
+        assertEquals(2 * (topology.size() - 1 + setting[2]), pathEnds);
+
+        int[] distances = new int[topology.size()];
+        BreadthFirstSearch.search(topology, topology.indexOf(dungeon.getStartCave()), distances,
+                null);
+        for (int distance : distances) {
+          assertTrue(distance >= 0);
+        }
+        int end = topology.indexOf(dungeon.getEndCave());
+        assertTrue(distances[end] >= 5);
+        assertFalse(topology.isTunnel(end));
+        assertFalse(topology.isTunnel(topology.indexOf(dungeon.getStartCave())));
+        assertTrue(dungeon.hasMonster(dungeon.getEndCave()));
+      }
+    }
+  }
+
+  /**
+   * Test that the end cave is picked among all the caves far enough from the start, not only
+   * among the nearest of them.
+   */
+  @Test
+  public void testEndCaveNotOnlyAtMinimumDistance() {
+    int farther = 0;
+    for (long seed = 0; seed < 20; seed++) {
+      EllerDungeonGenerator generator = new EllerDungeonGenerator(15, 15, 0, false, 50, 1, seed);
+      OffHeapDungeon dungeon = generator.generate(CellStore.allocate(generator.requiredCells()));
+      DungeonTopology topology = DungeonTopology.of(dungeon);
+      int[] distances = new int[topology.size()];
+      BreadthFirstSearch.search(topology, topology.indexOf(dungeon.getStartCave()), distances,
+              null);
+      if (distances[topology.indexOf(dungeon.getEndCave())] > 5) {
+        farther++;
+      }
+    }
+    assertTrue(farther > 10);
+  }
+
+  /**
+   * Test that the same seed always generates the same paths.
+   */
+  @Test
+  public void testSeedGivesSamePaths() {
+    OffHeapDungeon first = new EllerDungeonGenerator(15, 15, 4, true, 50, 1, 42)
+            .generate(CellStore.allocate(225));
+    OffHeapDungeon second = new EllerDungeonGenerator(15, 15, 4, true, 50, 1, 42)
+            .generate(CellStore.allocate(225));
+    DungeonTopology firstTopology = DungeonTopology.of(first);
+    DungeonTopology secondTopology = DungeonTopology.of(second);
+    for (int index = 0; index < firstTopology.size(); index++) {
+      assertEquals(firstTopology.getPaths(index), secondTopology.getPaths(index));
+    }
+    assertEquals(first.getStartCave(), second.getStartCave());
+    assertEquals(first.getEndCave(), second.getEndCave());
+  }
+
+  /**
+   * Test generating straight into a memory mapped file.
+   *
+   * @throws IOException if the file cannot be used
+   */
+  @Test
+  public void testGenerateIntoFile() throws IOException {
+    Path file = Files.createTempFile("dungeon", ".cells");
+    try {
+      EllerDungeonGenerator generator = new EllerDungeonGenerator(200, 300, 50, true, 20, 30, 7);
+      try (CellStore store = CellStore.map(file, generator.requiredCells())) {
+        OffHeapDungeon dungeon = generator.generate(store);
+        assertEquals(200, (int) dungeon.getDimensions().get(0));
+        assertEquals(300, (int) dungeon.getDimensions().get(1));
+      }
+      assertEquals(200L * 300 * CellStore.CELL_BYTES, Files.size(file));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+}
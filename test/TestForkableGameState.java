@@ -0,0 +1,154 @@
+import org.junit.Test;
+
+import java.util.List;
+
+import dungeonmodel.coordinates.CaveCoordinates;
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.Dungeon;
+import dungeonmodel.dungeon.DungeonImpl;
+import dungeonmodel.dungeon.ForkableDungeon;
+import dungeonmodel.player.DungeonPlayer;
+import dungeonmodel.player.Player;
+import dungeonmodel.state.ForkableGameState;
+import dungeonmodel.state.GameState;
+import dungeonmodel.weapon.Arrow;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class to test expected functionality of forkable dungeons and game states.
+ */
+public class TestForkableGameState {
+
+  /**
+   * Test expected exception when creating a forkable dungeon from null.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullDungeon() {
+    new ForkableDungeon(null);
+  }
+
+  /**
+   * Test that a forkable dungeon has the same paths and contents as the dungeon it copies.
+   */
+  @Test
+  public void testCopiesDungeon() {
+    Dungeon dungeon = new DungeonImpl(6, 7, 3, true, 50, 3);
+    Dungeon forkable = new ForkableDungeon(dungeon);
+    assertEquals(dungeon.getDimensions(), forkable.getDimensions());
+    assertEquals(dungeon.getStartCave(), forkable.getStartCave());
+    assertEquals(dungeon.getEndCave(), forkable.getEndCave());
+    for (int row = 0; row < 6; row++) {
+      for (int column = 0; column < 7; column++) {
+        Coordinates coordinates = new CaveCoordinates(row, column);
+        assertEquals(dungeon.getAdjacent(coordinates), forkable.getAdjacent(coordinates));
+        assertEquals(dungeon.viewTreasureInCave(coordinates),
+                forkable.viewTreasureInCave(coordinates));
+        assertEquals(dungeon.hasArrow(coordinates), forkable.hasArrow(coordinates));
+        assertEquals(dungeon.hasMonster(coordinates), forkable.hasMonster(coordinates));
+        assertEquals(dungeon.getSmell(coordinates), forkable.getSmell(coordinates));
+      }
+    }
+  }
+
+  /**
+   * Test that changes to a fork are not seen by the original and the reverse.
+   */
+  @Test
+  public void testForkIsIndependent() {
+    Dungeon dungeon = new DungeonImpl(5, 5, 0, false, 100, 1);
+    ForkableDungeon original = new ForkableDungeon(dungeon);
+    Coordinates start = original.getStartCave();
+    assertFalse(original.viewTreasureInCave(start).isEmpty());
+
+    ForkableDungeon fork = original.fork();
+    fork.pickupTreasureInCave(start);
+    assertTrue(fork.viewTreasureInCave(start).isEmpty());
+    assertFalse(original.viewTreasureInCave(start).isEmpty());
+    assertEquals(1, fork.changedCaveCount());
+    assertEquals(0, original.changedCaveCount());
+
+    original.pickupTreasureInCave(start);
+    ForkableDungeon secondFork = original.fork();
+    assertTrue(secondFork.viewTreasureInCave(start).isEmpty());
+    assertEquals(1, secondFork.changedCaveCount());
+  }
+
+  /**
+   * Test that arrows hitting a monster in a fork leave the original monster untouched.
+   */
+  @Test
+  public void testForkMonsterHits() {
+    Dungeon dungeon = new DungeonImpl(5, 5, 0, false, 50, 1);
+    ForkableDungeon original = new ForkableDungeon(dungeon);
+    ForkableDungeon fork = original.fork();
+    Player player = new DungeonPlayer("Test", fork);
+    Coordinates end = fork.getEndCave();
+    fork.arrowStrike(new FixedArrow(end));
+    assertEquals(1, fork.monsterArrowCount(end));
+    assertEquals(0, original.monsterArrowCount(end));
+    assertTrue(original.hasMonster(end));
+    assertEquals(3, player.getArrowCount());
+  }
+
+  /**
+   * Test that forking a game state copies the player, and moves are independent.
+   */
+  @Test
+  public void testGameStateFork() {
+    Dungeon dungeon = new DungeonImpl(5, 5, 0, false, 50, 1);
+    Player player = new DungeonPlayer("Test", dungeon);
+    GameState state = new ForkableGameState(player, dungeon);
+    GameState fork = state.fork();
+    assertEquals(player.getCurrentCoordinates(), fork.getPlayer().getCurrentCoordinates());
+    assertEquals("Test", fork.getPlayer().getName());
+
+    Coordinates next = fork.getPlayer().getPossibleMoves().get(0);
+    fork.getPlayer().moveTo(next);
+    assertEquals(next, fork.getPlayer().getCurrentCoordinates());
+    assertEquals(dungeon.getStartCave(), state.getPlayer().getCurrentCoordinates());
+
+    if (fork.getPlayer().isPlayerAlive()) {
+      fork.getPlayer().shootArrow(1, fork.getPlayer().getPossibleMoves().get(0));
+      assertEquals(2, fork.getPlayer().getArrowCount());
+    }
+    assertEquals(3, state.getPlayer().getArrowCount());
+  }
+
+  /**
+   * Test that resetting a forkable dungeon restores its initial contents.
+   */
+  @Test
+  public void testResetRestoresContents() {
+    Dungeon dungeon = new DungeonImpl(5, 5, 0, false, 100, 1);
+    ForkableDungeon forkable = new ForkableDungeon(dungeon);
+    Coordinates start = forkable.getStartCave();
+    List<?> treasure = forkable.viewTreasureInCave(start);
+    forkable.pickupTreasureInCave(start);
+    forkable.resetDungeon();
+    assertEquals(treasure, forkable.viewTreasureInCave(start));
+    assertEquals(0, forkable.changedCaveCount());
+  }
+
+  // Arrow which has always landed at a fixed location
+  private static class FixedArrow implements Arrow {
+    private final Coordinates location;
+
+    FixedArrow(Coordinates location) {
+      this.location = location;
+    }
+
+    @Override
+    public void shoot(int distance, Coordinates direction, Coordinates source,
+                      Dungeon dungeon) {
+      // arrow never moves
+    }
+
+    @Override
+    public Coordinates getCurrentLocation() {
+      return this.location;
+    }
+  }
+}
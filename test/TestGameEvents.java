@@ -0,0 +1,190 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import dungeonmodel.coordinates.CaveCoordinates;
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.CellStore;
+import dungeonmodel.dungeon.DungeonImpl;
+import dungeonmodel.dungeon.EllerDungeonGenerator;
+import dungeonmodel.player.DungeonPlayer;
+import dungeonmodel.player.Player;
+import dungeonmodel.sync.GameEvent;
+import dungeonmodel.sync.GameEventListener;
+import dungeonmodel.sync.PlayerSnapshot;
+import dungeonmodel.sync.SnapshotPublisher;
+import dungeonmodel.sync.TrackingDungeon;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class to test the events telling listeners what changed between published snapshots.
+ */
+public class TestGameEvents {
+
+  /**
+   * Test expected exception when adding no listener.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullListener() {
+    TrackingDungeon dungeon = new TrackingDungeon(new DungeonImpl(5, 5, 0, false, 50, 1));
+    new SnapshotPublisher(new DungeonPlayer("Nobody", dungeon, new Random(1)), dungeon)
+            .addListener(null);
+  }
+
+  /**
+   * Test that moving and picking up give one event each at the right location, and that
+   * publishing without a change tells listeners nothing.
+   */
+  @Test
+  public void testMoveAndPickup() {
+    TrackingDungeon dungeon = new TrackingDungeon(new DungeonImpl(8, 8, 4, true, 100, 1));
+    Player player = new DungeonPlayer("Mover", dungeon, new Random(2));
+    SnapshotPublisher publisher = new SnapshotPublisher(player, dungeon);
+    Recorder recorder = new Recorder();
+    publisher.addListener(recorder);
+
+    publisher.publish();
+    assertTrue(recorder.events.isEmpty());
+
+    Coordinates start = player.getCurrentCoordinates();
+    player.pickUpArrow();
+    publisher.publish();
+    assertEquals(List.of(event(GameEvent.Type.ITEM_PICKED, start)), describe(recorder.take()));
+
+    Coordinates next = player.getPossibleMoves().get(0);
+    player.moveTo(next);
+    PlayerSnapshot moved = publisher.publish();
+    assertSame(moved, recorder.snapshot);
+    if (player.isPlayerAlive()) {
+      assertEquals(List.of(event(GameEvent.Type.PLAYER_MOVED, next)), describe(recorder.take()));
+    } else {
+      assertEquals(List.of(event(GameEvent.Type.PLAYER_MOVED, next),
+              event(GameEvent.Type.GAME_ENDED, next)), describe(recorder.take()));
+    }
+
+    publisher.removeListener(recorder);
+    player.resetPlayer();
+    publisher.publish();
+    assertTrue(recorder.events.isEmpty());
+  }
+
+  /**
+   * Test that a reset gives a single event in place of everything it changed.
+   */
+  @Test
+  public void testReset() {
+    TrackingDungeon dungeon = new TrackingDungeon(new DungeonImpl(8, 8, 4, true, 100, 3));
+    Player player = new DungeonPlayer("Reset", dungeon, new Random(3));
+    SnapshotPublisher publisher = new SnapshotPublisher(player, dungeon);
+    Recorder recorder = new Recorder();
+    publisher.addListener(recorder);
+    player.pickUpTreasure();
+    player.moveTo(player.getPossibleMoves().get(0));
+    player.resetPlayer();
+    publisher.publish();
+    assertEquals(List.of(event(GameEvent.Type.GAME_RESET, player.getCurrentCoordinates())),
+            describe(recorder.take()));
+  }
+
+  /**
+   * Test that the events of a random game name every change between snapshots: each location,
+   * position, arrow count and end of the game which differs has its event.
+   */
+  @Test
+  public void testEventsCoverChanges() {
+    Random random = new Random(48);
+    EllerDungeonGenerator generator = new EllerDungeonGenerator(12, 12, 8, true, 80, 6, 48);
+    TrackingDungeon dungeon = new TrackingDungeon(
+            generator.generateWithLazyContent(CellStore.allocate(generator.requiredCells())));
+    Player player = new DungeonPlayer("Watched", dungeon, new Random(4));
+    SnapshotPublisher publisher = new SnapshotPublisher(player, dungeon);
+    Recorder recorder = new Recorder();
+    publisher.addListener(recorder);
+    int hits = 0;
+    for (int step = 0; step < 2000; step++) {
+      PlayerSnapshot previous = publisher.getSnapshot();
+      if (!player.isPlayerAlive()) {
+        player.resetPlayer();
+        publisher.publish();
+        assertEquals(GameEvent.Type.GAME_RESET, recorder.take().get(0).getType());
+        continue;
+      }
+      RandomActions.act(player, random);
+      PlayerSnapshot next = publisher.publish();
+      List<GameEvent> events = recorder.take();
+      List<String> described = describe(events);
+      assertEquals(!previous.getCurrentCoordinates().equals(next.getCurrentCoordinates()),
+              described.contains(event(GameEvent.Type.PLAYER_MOVED,
+                      next.getCurrentCoordinates())));
+      assertEquals(next.getArrowCount() < previous.getArrowCount(),
+              described.contains(event(GameEvent.Type.ARROW_SHOT,
+                      previous.getCurrentCoordinates())));
+      assertEquals(previous.isPlayerAlive() && !next.isPlayerAlive(),
+              described.contains(event(GameEvent.Type.GAME_ENDED, next.getCurrentCoordinates())));
+      for (int index : next.getDungeon().changedSince(previous.getDungeon())) {
+        Coordinates location = coordinatesOf(next, index);
+        boolean named = false;
+        for (GameEvent event : events) {
+          named |= event.getLocation().equals(location)
+                  && (event.getType() == GameEvent.Type.ITEM_PICKED
+                  || event.getType() == GameEvent.Type.MONSTER_HIT);
+          if (event.getType() == GameEvent.Type.MONSTER_HIT) {
+            hits++;
+          }
+        }
+        assertTrue("Change at " + location + " has no event", named);
+      }
+      if (events.isEmpty()) {
+        assertEquals(previous.getStateHash(), next.getStateHash());
+        assertEquals(previous.getDungeon().getStateHash(), next.getDungeon().getStateHash());
+      }
+    }
+    assertTrue(hits > 0);
+  }
+
+  // Coordinates of a location numbered row by row
+  private static Coordinates coordinatesOf(PlayerSnapshot snapshot, int index) {
+    int columns = snapshot.getDungeon().getDimensions().get(1);
+    return new CaveCoordinates(index / columns, index % columns);
+  }
+
+  // Describes events by their type and location, to compare them with what is expected
+  private static List<String> describe(List<GameEvent> events) {
+    List<String> described = new ArrayList<>();
+    for (GameEvent event : events) {
+      described.add(event.getType() + " " + event.getLocation());
+    }
+    return described;
+  }
+
+  // Describes the event expected
+  private static String event(GameEvent.Type type, Coordinates location) {
+    return type + " " + location;
+  }
+
+  // Listener which keeps the events it is told of
+  private static final class Recorder implements GameEventListener {
+
+    private final List<GameEvent> events = new ArrayList<>();
+    private PlayerSnapshot snapshot;
+
+    @Override
+    public void gameChanged(PlayerSnapshot snapshot, List<GameEvent> events) {
+      assertFalse(events.isEmpty());
+      this.snapshot = snapshot;
+      this.events.addAll(events);
+    }
+
+    List<GameEvent> take() {
+      List<GameEvent> taken = new ArrayList<>(this.events);
+      this.events.clear();
+      return taken;
+    }
+  }
+}
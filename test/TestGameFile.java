@@ -0,0 +1,200 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import dungeonmodel.coordinates.CaveCoordinates;
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.CellStore;
+import dungeonmodel.dungeon.Dungeon;
+import dungeonmodel.dungeon.DungeonImpl;
+import dungeonmodel.dungeon.EllerDungeonGenerator;
+import dungeonmodel.dungeon.OffHeapDungeon;
+import dungeonmodel.dungeon.ReadOnlyDungeon;
+import dungeonmodel.persistence.GameFile;
+import dungeonmodel.persistence.LoadedGame;
+import dungeonmodel.player.DungeonPlayer;
+import dungeonmodel.player.Player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class to test saving games to files and loading them back.
+ */
+public class TestGameFile {
+
+  /**
+   * Test expected exception when saving without a player.
+   *
+   * @throws IOException if the file cannot be used
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testSaveNullPlayer() throws IOException {
+    Path file = Files.createTempFile("game", ".save");
+    try {
+      GameFile.save(file, new DungeonImpl(6, 6, 0, false, 50, 1), null, 50, 1);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Test expected exception when loading a file which is not a saved game.
+   *
+   * @throws IOException if the file cannot be used
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testLoadOtherFile() throws IOException {
+    Path file = Files.createTempFile("game", ".save");
+    try {
+      Files.write(file, new byte[64]);
+      GameFile.load(file);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Test that a game played for a while loads back with the same dungeon and player.
+   *
+   * @throws IOException if the file cannot be used
+   */
+  @Test
+  public void testRoundTrip() throws IOException {
+    Dungeon dungeon = new DungeonImpl(8, 9, 5, true, 100, 3);
+    Player player = new DungeonPlayer("Saver", dungeon);
+    player.pickUpTreasure();
+    player.pickUpArrow();
+    player.shootArrow(1, player.getPossibleMoves().get(0));
+    Path file = Files.createTempFile("game", ".save");
+    try {
+      GameFile.save(file, dungeon, player, 100, 3);
+      try (LoadedGame game = GameFile.load(file)) {
+        this.assertSameDungeon(dungeon, game.getDungeon());
+        Player loaded = game.getPlayer();
+        assertEquals("Saver", loaded.getName());
+        assertEquals(player.getCurrentCoordinates(), loaded.getCurrentCoordinates());
+        assertEquals(player.getArrowCount(), loaded.getArrowCount());
+        assertEquals(new HashSet<>(player.getCurrentTreasure()),
+                new HashSet<>(loaded.getCurrentTreasure()));
+        assertEquals(player.isPlayerAlive(), loaded.isPlayerAlive());
+        assertEquals(player.hasPlayerWon(), loaded.hasPlayerWon());
+        assertEquals(player.getStateHash(), loaded.getStateHash());
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Test that playing a loaded game leaves the saved file as it was.
+   *
+   * @throws IOException if the file cannot be used
+   */
+  @Test
+  public void testLoadedGameLeavesFile() throws IOException {
+    Dungeon dungeon = new DungeonImpl(6, 6, 2, false, 100, 1);
+    Path file = Files.createTempFile("game", ".save");
+    try {
+      GameFile.save(file, dungeon, new DungeonPlayer("Saver", dungeon), 100, 1);
+      byte[] saved = Files.readAllBytes(file);
+      try (LoadedGame game = GameFile.load(file)) {
+        Player player = game.getPlayer();
+        assertTrue(player.pickUpArrow());
+        assertFalse(game.getDungeon().hasArrow(player.getCurrentCoordinates()));
+        game.getDungeon().resetDungeon();
+      }
+      assertTrue(Arrays.equals(saved, Files.readAllBytes(file)));
+      try (LoadedGame game = GameFile.load(file)) {
+        assertTrue(game.getDungeon().hasArrow(game.getPlayer().getCurrentCoordinates()));
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Test that a loaded game can be saved back to the file it is mapped from, and still reads the
+   * same after the file is replaced.
+   *
+   * @throws IOException if the file cannot be used
+   */
+  @Test
+  public void testSaveOverLoadedFile() throws IOException {
+    EllerDungeonGenerator generator = new EllerDungeonGenerator(300, 300, 100, true, 40, 20, 4);
+    OffHeapDungeon dungeon = generator.generate(CellStore.allocate(generator.requiredCells()));
+    Path file = Files.createTempFile("game", ".save");
+    try {
+      GameFile.save(file, dungeon, new DungeonPlayer("Saver", dungeon), 40, 20);
+      try (LoadedGame game = GameFile.load(file)) {
+        Player player = game.getPlayer();
+        player.pickUpTreasure();
+        GameFile.save(file, game.getDungeon(), player, 40, 20);
+        try (LoadedGame saved = GameFile.load(file)) {
+          this.assertSameDungeon(game.getDungeon(), saved.getDungeon());
+          assertEquals(player.getStateHash(), saved.getPlayer().getStateHash());
+        }
+      }
+      try (DirectoryStream<Path> left = Files.newDirectoryStream(file.getParent(),
+              file.getFileName() + "*.tmp")) {
+        assertFalse(left.iterator().hasNext());
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Test saving and loading a large dungeon straight from its store.
+   *
+   * @throws IOException if the file cannot be used
+   */
+  @Test
+  public void testLargeDungeon() throws IOException {
+    EllerDungeonGenerator generator = new EllerDungeonGenerator(1000, 1000, 1000, true, 20, 50,
+            3);
+    OffHeapDungeon dungeon = generator.generate(CellStore.allocate(generator.requiredCells()));
+    Player player = new DungeonPlayer("Saver", dungeon);
+    Path file = Files.createTempFile("game", ".save");
+    try {
+      GameFile.save(file, dungeon, player, 20, 50);
+      try (LoadedGame game = GameFile.load(file)) {
+        assertEquals(dungeon.getStateHash(), game.getDungeon().getStateHash());
+        assertEquals(dungeon.getEndCave(), game.getDungeon().getEndCave());
+        for (int step = 0; step < 1000; step++) {
+          Coordinates coordinates = new CaveCoordinates(step * 31 % 1000, step * 17 % 1000);
+          assertEquals(dungeon.getAdjacent(coordinates),
+                  game.getDungeon().getAdjacent(coordinates));
+          assertEquals(dungeon.viewTreasureInCave(coordinates),
+                  game.getDungeon().viewTreasureInCave(coordinates));
+        }
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  private void assertSameDungeon(ReadOnlyDungeon expected, ReadOnlyDungeon actual) {
+    assertEquals(expected.getDimensions(), actual.getDimensions());
+    assertEquals(expected.getStartCave(), actual.getStartCave());
+    assertEquals(expected.getEndCave(), actual.getEndCave());
+    for (int row = 0; row < expected.getDimensions().get(0); row++) {
+      for (int column = 0; column < expected.getDimensions().get(1); column++) {
+        Coordinates coordinates = new CaveCoordinates(row, column);
+        assertEquals(expected.getAdjacent(coordinates), actual.getAdjacent(coordinates));
+        assertEquals(new HashSet<>(expected.viewTreasureInCave(coordinates)),
+                new HashSet<>(actual.viewTreasureInCave(coordinates)));
+        assertEquals(expected.hasArrow(coordinates), actual.hasArrow(coordinates));
+        assertEquals(expected.monsterArrowCount(coordinates),
+                actual.monsterArrowCount(coordinates));
+      }
+    }
+    assertEquals(expected.getStateHash(), actual.getStateHash());
+  }
+}
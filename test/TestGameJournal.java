@@ -0,0 +1,200 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import controller.DungeonGameController;
+import controller.GameController;
+import controller.GameJournal;
+import controller.GameReplay;
+import dungeonmodel.coordinates.CaveCoordinates;
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.DungeonSettings;
+import dungeonmodel.player.Player;
+import view.GameView;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class to test recording games in a journal and replaying them.
+ */
+public class TestGameJournal {
+
+  private static final DungeonSettings SETTINGS = new DungeonSettings(12, 14, 6, true, 60, 8);
+
+  /**
+   * Test expected exception when replaying a file which is not a journal.
+   *
+   * @throws IOException if the file cannot be used
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testOpenOtherFile() throws IOException {
+    Path file = Files.createTempFile("game", ".journal");
+    try {
+      Files.write(file, new byte[64]);
+      GameReplay.open(file);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Test that the same settings and seed always create the same game.
+   */
+  @Test
+  public void testSeedCreatesSameGame() {
+    Player first = GameJournal.createPlayer(SETTINGS, "Test", 42);
+    Player second = GameJournal.createPlayer(SETTINGS, "Test", 42);
+    assertEquals(first.getStateHash(), second.getStateHash());
+    assertEquals(first.getCurrentCoordinates(), second.getCurrentCoordinates());
+    assertTrue(first.getStateHash() != GameJournal.createPlayer(SETTINGS, "Test", 43)
+            .getStateHash());
+  }
+
+  /**
+   * Test that replaying a journal gives exactly the recorded game, across many seeds so deaths,
+   * escapes, shots, resets and attempts to take stairs are all replayed.
+   *
+   * @throws IOException if the file cannot be used
+   */
+  @Test
+  public void testReplayMatchesRecordedGame() throws IOException {
+    Path file = Files.createTempFile("game", ".journal");
+    try {
+      for (long seed = 0; seed < 20; seed++) {
+        Player player = GameJournal.createPlayer(SETTINGS, "Test", seed);
+        try (GameJournal journal = GameJournal.create(file, SETTINGS, "Test", seed)) {
+          play(new DungeonGameController(player, new IgnoringView(), journal), player,
+                  new Random(seed), 300);
+        }
+        GameReplay replay = GameReplay.open(file);
+        assertEquals(SETTINGS, replay.getSettings());
+        assertEquals("Test", replay.getPlayerName());
+        assertEquals(seed, replay.getSeed());
+        assertEquals(300, replay.getActionCount());
+
+        Player replayed = replay.replay();
+        assertEquals(player.getStateHash(), replayed.getStateHash());
+        assertEquals(player.getCurrentCoordinates(), replayed.getCurrentCoordinates());
+        assertEquals(player.isPlayerAlive(), replayed.isPlayerAlive());
+        assertEquals(player.getArrowCount(), replayed.getArrowCount());
+        assertEquals(player.getCurrentTreasure(), replayed.getCurrentTreasure());
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Test that moves towards a neighbour take one byte each.
+   *
+   * @throws IOException if the file cannot be used
+   */
+  @Test
+  public void testMovesTakeOneByte() throws IOException {
+    Path file = Files.createTempFile("game", ".journal");
+    try {
+      Player player = GameJournal.createPlayer(SETTINGS, "Test", 7);
+      long headerBytes;
+      try (GameJournal journal = GameJournal.create(file, SETTINGS, "Test", 7)) {
+        headerBytes = Files.size(file);
+        GameController controller = new DungeonGameController(player, new IgnoringView(),
+                journal);
+        Coordinates start = player.getCurrentCoordinates();
+        Coordinates next = player.getPossibleMoves().get(0);
+        controller.movePlayer(next);
+        controller.movePlayer(start);
+      }
+      assertEquals(headerBytes + 2, Files.size(file));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Test that a journal cut short by a crash replays every complete action, and can be reopened
+   * to keep recording the recovered game.
+   *
+   * @throws IOException if the file cannot be used
+   */
+  @Test
+  public void testRecoverFromCutShortJournal() throws IOException {
+    Path file = Files.createTempFile("game", ".journal");
+    try {
+      Player player = GameJournal.createPlayer(SETTINGS, "Test", 11);
+      try (GameJournal journal = GameJournal.create(file, SETTINGS, "Test", 11)) {
+        GameController controller = new DungeonGameController(player, new IgnoringView(),
+                journal);
+        controller.pickupTreasure();
+        controller.shootArrow(new CaveCoordinates(0, 0), 300);
+      }
+      byte[] written = Files.readAllBytes(file);
+      Files.write(file, Arrays.copyOf(written, written.length - 1));
+
+      GameReplay replay = GameReplay.open(file);
+      assertEquals(1, replay.getActionCount());
+      Player recovered = replay.replay();
+      try (GameJournal journal = replay.reopen()) {
+        GameController controller = new DungeonGameController(recovered, new IgnoringView(),
+                journal);
+        controller.pickupArrow();
+        controller.movePlayer(recovered.getPossibleMoves().get(0));
+      }
+      GameReplay reopened = GameReplay.open(file);
+      assertEquals(3, reopened.getActionCount());
+      assertEquals(recovered.getStateHash(), reopened.replay().getStateHash());
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  // Takes random actions, including some moves and shots which are not to a neighbour and some
+  // attempts to take stairs, and resets whenever the player has died
+  private static void play(GameController controller, Player player, Random random,
+                           int actions) {
+    for (int action = 0; action < actions; action++) {
+      List<Coordinates> moves = player.getPossibleMoves();
+      Coordinates target = moves.get(random.nextInt(moves.size()));
+      int choice = random.nextInt(20);
+      if (choice == 0 || !player.isPlayerAlive()) {
+        controller.resetPlayerAndDungeon();
+      } else if (choice < 3) {
+        controller.pickupArrow();
+      } else if (choice < 5) {
+        controller.pickupTreasure();
+      } else if (choice < 8) {
+        controller.shootArrow(target, random.nextInt(5) - 1);
+      } else if (choice == 8) {
+        controller.movePlayer(new CaveCoordinates(random.nextInt(20), random.nextInt(20)));
+      } else if (choice == 9) {
+        controller.takeStairs();
+      } else {
+        controller.movePlayer(target);
+      }
+    }
+  }
+
+  // View which ignores the game
+  private static final class IgnoringView implements GameView {
+
+    @Override
+    public void startView(GameController controller) {
+      // nothing to start
+    }
+
+    @Override
+    public void displayMessage(String message) {
+      // nothing to show
+    }
+
+    @Override
+    public void refresh() {
+      // nothing to refresh
+    }
+  }
+}
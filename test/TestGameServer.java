@@ -0,0 +1,189 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import dungeonmodel.dungeon.DungeonSettings;
+import dungeonmodel.sync.StateMirror;
+import server.GameServer;
+import server.GameSession;
+import server.LatencyHistogram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class to test the multi-session game server and its latency histogram.
+ */
+public class TestGameServer {
+
+  private static final DungeonSettings SETTINGS = new DungeonSettings(6, 6, 2, false, 50, 1);
+
+  /**
+   * Test expected exception when asking for a percentile out of range.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidPercentile() {
+    new LatencyHistogram().getPercentile(101);
+  }
+
+  /**
+   * Test that percentiles are accurate to within their bucket.
+   */
+  @Test
+  public void testPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getPercentile(99));
+    for (long value = 1; value <= 100_000; value++) {
+      histogram.record(value * 1000);
+    }
+    assertEquals(100_000, histogram.getCount());
+    long median = histogram.getPercentile(50);
+    long tail = histogram.getPercentile(99);
+    assertTrue(median >= 50_000_000 && median <= 50_000_000 * 17 / 16);
+    assertTrue(tail >= 99_000_000 && tail <= 99_000_000 * 17 / 16);
+    assertTrue(histogram.getPercentile(100) >= 100_000_000);
+    histogram.record(Long.MAX_VALUE);
+    assertEquals(Long.MAX_VALUE, histogram.getPercentile(100));
+    histogram.clear();
+    assertEquals(0, histogram.getCount());
+  }
+
+  /**
+   * Test expected exception when starting a server without settings.
+   *
+   * @throws IOException if the server cannot listen
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullSettings() throws IOException {
+    new GameServer(0, null);
+  }
+
+  /**
+   * Test that many clients can play their own games at once over the console commands, and that
+   * every session leaves the registry when its game ends.
+   *
+   * @throws Exception if a client fails
+   */
+  @Test
+  public void testConcurrentSessions() throws Exception {
+    int clients = 200;
+    ExecutorService pool = Executors.newFixedThreadPool(32);
+    try (GameServer server = new GameServer(0, SETTINGS)) {
+      List<Future<String>> transcripts = new ArrayList<>();
+      for (int client = 0; client < clients; client++) {
+        String name = "Player" + client;
+        transcripts.add(pool.submit(() -> play(server.getPort(), name + "\na\nt\nq\n")));
+      }
+      for (Future<String> transcript : transcripts) {
+        String output = transcript.get();
+        assertTrue(output.startsWith("Enter Player Name"));
+        assertTrue(output.contains("Player has quit the game"));
+      }
+      long deadline = System.currentTimeMillis() + 10_000;
+      while (server.getRegistry().getSessionCount() > 0
+              && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(0, server.getRegistry().getSessionCount());
+      assertEquals(clients, server.getRegistry().getTotalSessions());
+      assertTrue(server.getLatencies().getCount() >= clients);
+      assertTrue(server.getLatencies().getPercentile(99) > 0);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Test that closing the server disconnects sessions still playing.
+   *
+   * @throws Exception if the client fails
+   */
+  @Test
+  public void testCloseDisconnectsSessions() throws Exception {
+    GameServer server = new GameServer(0, SETTINGS);
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+      socket.getOutputStream().write("Waiting\n".getBytes(StandardCharsets.UTF_8));
+      long deadline = System.currentTimeMillis() + 10_000;
+      while (server.getRegistry().getSessions().isEmpty()
+              || server.getRegistry().getSessions().get(0).getPlayer() == null) {
+        assertTrue(System.currentTimeMillis() < deadline);
+        Thread.sleep(10);
+      }
+      assertEquals("Waiting", server.getRegistry().getSessions().get(0).getPlayer().getName());
+      server.close();
+      InputStream in = socket.getInputStream();
+      while (in.read() >= 0) {
+        // read until the server disconnects
+      }
+    }
+  }
+
+  /**
+   * Test that a connection watching a session is sent frames from which it mirrors the game, and
+   * is disconnected when the game ends.
+   *
+   * @throws Exception if a client fails
+   */
+  @Test
+  public void testSpectatorMirrorsGame() throws Exception {
+    try (GameServer server = new GameServer(0, SETTINGS);
+         Socket playing = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+      OutputStream commands = playing.getOutputStream();
+      commands.write("Watched\n".getBytes(StandardCharsets.UTF_8));
+      commands.flush();
+      long deadline = System.currentTimeMillis() + 10_000;
+      while (server.getRegistry().getSessions().isEmpty()
+              || server.getRegistry().getSessions().get(0).getPlayer() == null) {
+        assertTrue(System.currentTimeMillis() < deadline);
+        Thread.sleep(10);
+      }
+      GameSession session = server.getRegistry().getSessions().get(0);
+
+      try (Socket watching = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+        InputStream frames = watching.getInputStream();
+        while (frames.read() != '\n') {
+          // skip the prompt for a name
+        }
+        watching.getOutputStream().write((GameSession.WATCH_COMMAND + session.getId() + "\n")
+                .getBytes(StandardCharsets.UTF_8));
+        while (session.getSpectatorCount() == 0) {
+          assertTrue(System.currentTimeMillis() < deadline);
+          Thread.sleep(10);
+        }
+        commands.write("a\nt\nq\n".getBytes(StandardCharsets.UTF_8));
+        commands.flush();
+
+        StateMirror mirror = new StateMirror();
+        int count = 0;
+        while (mirror.readFrom(frames)) {
+          count++;
+        }
+        assertEquals(2, count);
+        assertEquals("Watched", mirror.getPlayer().getName());
+        assertEquals(session.getPlayer().getStateHash(), mirror.getPlayer().getStateHash());
+        assertEquals(session.getPlayer().getCurrentCoordinates(),
+                mirror.getPlayer().getCurrentCoordinates());
+      }
+    }
+  }
+
+  // Sends every command at once and reads the whole game until the server disconnects
+  private static String play(int port, String commands) throws IOException {
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+      OutputStream out = socket.getOutputStream();
+      out.write(commands.getBytes(StandardCharsets.UTF_8));
+      out.flush();
+      return new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -0,0 +1,84 @@
+import org.junit.Test;
+
+import java.util.List;
+
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.Dungeon;
+import dungeonmodel.dungeon.DungeonImpl;
+import dungeonmodel.dungeon.DungeonTopology;
+import dungeonmodel.path.BreadthFirstSearch;
+import dungeonmodel.path.HierarchicalPathfinder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class to test expected functionality of the hierarchical pathfinder.
+ */
+public class TestHierarchicalPathfinder {
+
+  /**
+   * Test expected exception when the cluster size is not positive.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidClusterSize() {
+    new HierarchicalPathfinder(new DungeonImpl(5, 5, 0, false, 50, 1), 0);
+  }
+
+  /**
+   * Test expected exception when querying a null location.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullLocation() {
+    Dungeon dungeon = new DungeonImpl(5, 5, 0, false, 50, 1);
+    new HierarchicalPathfinder(dungeon, 2).distance(null, dungeon.getEndCave());
+  }
+
+  /**
+   * Test that paths found through clusters of several sizes are shortest paths, in dungeons with
+   * and without wrapping.
+   */
+  @Test
+  public void testMatchesSearch() {
+    Dungeon wrapping = new DungeonImpl(37, 41, 30, true, 50, 1);
+    Dungeon plain = new DungeonImpl(30, 30, 0, false, 50, 1);
+    for (int clusterSize : new int[]{1, 6, 10, 50}) {
+      this.checkAgainstSearch(wrapping, new HierarchicalPathfinder(wrapping, clusterSize), 31);
+      this.checkAgainstSearch(plain, new HierarchicalPathfinder(plain, clusterSize), 29);
+    }
+  }
+
+  /**
+   * Test that a path from a location to itself is just that location.
+   */
+  @Test
+  public void testSameLocation() {
+    Dungeon dungeon = new DungeonImpl(10, 10, 2, false, 50, 1);
+    HierarchicalPathfinder pathfinder = new HierarchicalPathfinder(dungeon, 4);
+    assertEquals(0, pathfinder.distance(dungeon.getStartCave(), dungeon.getStartCave()));
+    assertEquals(List.of(dungeon.getStartCave()),
+            pathfinder.path(dungeon.getStartCave(), dungeon.getStartCave()));
+    assertTrue(pathfinder.getEntranceCount() > 0);
+  }
+
+  // Compares the pathfinder with a search from every location whose index is a multiple of step
+  private void checkAgainstSearch(Dungeon dungeon, HierarchicalPathfinder pathfinder, int step) {
+    DungeonTopology topology = DungeonTopology.of(dungeon);
+    int[] distances = new int[topology.size()];
+    for (int source = 0; source < topology.size(); source += step) {
+      BreadthFirstSearch.search(topology, source, distances, null);
+      Coordinates from = topology.coordinatesOf(source);
+      for (int target = 0; target < topology.size(); target += step) {
+        Coordinates to = topology.coordinatesOf(target);
+        assertEquals(distances[target], pathfinder.distance(from, to));
+        List<Coordinates> path = pathfinder.path(from, to);
+        assertEquals(distances[target] + 1, path.size());
+        assertEquals(from, path.get(0));
+        assertEquals(to, path.get(path.size() - 1));
+        for (int move = 1; move < path.size(); move++) {
+          assertTrue(dungeon.getAdjacent(path.get(move - 1)).contains(path.get(move)));
+        }
+      }
+    }
+  }
+}
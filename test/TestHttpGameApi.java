@@ -0,0 +1,185 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import server.HttpGameApi;
+import server.JsonWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class to test the HTTP API and the JSON writer behind it.
+ */
+public class TestHttpGameApi {
+
+  private static final String SETTINGS = "?rows=6&columns=6&interconnectivity=2&percent=50"
+          + "&monsters=1&name=Test";
+
+  /**
+   * Test that nested objects and arrays get commas only between their values.
+   */
+  @Test
+  public void testJsonNesting() {
+    JsonWriter json = new JsonWriter();
+    json.beginObject().name("a").value(1).name("b").beginArray().value(true).value(false)
+            .nullValue().beginObject().endObject().endArray().name("c").beginArray().endArray()
+            .endObject();
+    assertEquals("{\"a\":1,\"b\":[true,false,null,{}],\"c\":[]}", json.toString());
+    json.reset().beginArray().value(-42).value(0).value(Long.MIN_VALUE).value(Long.MAX_VALUE)
+            .endArray();
+    assertEquals("[-42,0,-9223372036854775808,9223372036854775807]", json.toString());
+  }
+
+  /**
+   * Test that strings are escaped and encoded as UTF-8.
+   */
+  @Test
+  public void testJsonStrings() {
+    JsonWriter json = new JsonWriter();
+    json.value("quote \" slash \\ line\n \u00e9 \u20ac \ud83d\ude00");
+    assertEquals("\"quote \\\" slash \\\\ line\\u000a \u00e9 \u20ac \ud83d\ude00\"",
+            json.toString());
+    StringBuilder longString = new StringBuilder();
+    for (int count = 0; count < 2000; count++) {
+      longString.append("\u20ac\"");
+    }
+    json.reset().value(longString.toString());
+    assertEquals(2000 * 5 + 2, json.size());
+  }
+
+  /**
+   * Test expected exception when closing more than was opened.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testJsonUnbalanced() {
+    new JsonWriter().beginArray().endArray().endArray();
+  }
+
+  /**
+   * Test creating a game, playing it and ending it over HTTP.
+   *
+   * @throws Exception if a request fails
+   */
+  @Test
+  public void testPlayOverHttp() throws Exception {
+    try (HttpGameApi api = new HttpGameApi(0, 2)) {
+      String games = "http://localhost:" + api.getPort() + "/games";
+      HttpResponse<String> created = send("POST", games + SETTINGS);
+      assertEquals(201, created.statusCode());
+      assertTrue(created.body().startsWith("{\"id\":1,\"message\":\"\",\"player\":{\"name\":"
+              + "\"Test\",\"location\":{"));
+      assertTrue(created.body().contains("\"arrows\":3,\"alive\":true,\"won\":false"));
+      assertEquals(1, api.getGameCount());
+
+      HttpResponse<String> state = send("GET", games + "/1");
+      assertEquals(200, state.statusCode());
+      assertTrue(state.body().contains("\"moves\":{"));
+
+      HttpResponse<String> pickup = send("POST", games + "/1/pickup?item=arrow");
+      assertEquals(200, pickup.statusCode());
+      assertTrue(pickup.body().contains("arrow"));
+
+      assertEquals(400, send("POST", games + "/1/pickup?item=sword").statusCode());
+      assertEquals(400, send("POST", games + "/1/move?direction=up").statusCode());
+      assertEquals(400, send("POST", games + "/1/shoot?direction=north").statusCode());
+      assertEquals(400, send("GET", games + "?rows=6").statusCode());
+      assertEquals(404, send("GET", games + "/2").statusCode());
+
+      assertEquals(204, send("DELETE", games + "/1").statusCode());
+      assertEquals(0, api.getGameCount());
+      assertEquals(404, send("GET", games + "/1").statusCode());
+    }
+  }
+
+  /**
+   * Test that invalid settings are answered with the error of the model.
+   *
+   * @throws Exception if a request fails
+   */
+  @Test
+  public void testInvalidSettings() throws Exception {
+    try (HttpGameApi api = new HttpGameApi(0, 1)) {
+      HttpResponse<String> response = send("POST", "http://localhost:" + api.getPort()
+              + "/games?rows=6&columns=6&percent=500&monsters=1");
+      assertEquals(400, response.statusCode());
+      assertEquals("{\"error\":\"Treasure percentage must be between one and hundred\"}",
+              response.body());
+    }
+  }
+
+  /**
+   * Test that numbers too large for an int are refused rather than cut down to one that fits.
+   *
+   * @throws Exception if a request fails
+   */
+  @Test
+  public void testNumberOutOfRange() throws Exception {
+    try (HttpGameApi api = new HttpGameApi(0, 1)) {
+      HttpResponse<String> response = send("POST", "http://localhost:" + api.getPort()
+              + "/games?rows=4294967302&columns=6&percent=50&monsters=1");
+      assertEquals(400, response.statusCode());
+      assertEquals("{\"error\":\"rows is out of range\"}", response.body());
+      assertEquals(0, api.getGameCount());
+    }
+  }
+
+  /**
+   * Test that the least recently used game is ended to make room for a new one, and that idle
+   * games are ended.
+   *
+   * @throws Exception if a request fails
+   */
+  @Test
+  public void testGamesEvicted() throws Exception {
+    try (HttpGameApi api = new HttpGameApi(0, 1, 2, 60_000)) {
+      String games = "http://localhost:" + api.getPort() + "/games";
+      assertEquals(201, send("POST", games + SETTINGS).statusCode());
+      assertEquals(201, send("POST", games + SETTINGS).statusCode());
+      assertEquals(200, send("GET", games + "/1").statusCode());
+      assertEquals(201, send("POST", games + SETTINGS).statusCode());
+      assertEquals(2, api.getGameCount());
+      assertEquals(200, send("GET", games + "/1").statusCode());
+      assertEquals(404, send("GET", games + "/2").statusCode());
+      assertEquals(200, send("GET", games + "/3").statusCode());
+    }
+    try (HttpGameApi api = new HttpGameApi(0, 1, 10, 1)) {
+      String games = "http://localhost:" + api.getPort() + "/games";
+      assertEquals(201, send("POST", games + SETTINGS).statusCode());
+      Thread.sleep(10);
+      assertEquals(201, send("POST", games + SETTINGS).statusCode());
+      assertEquals(1, api.getGameCount());
+      assertEquals(404, send("GET", games + "/1").statusCode());
+    }
+  }
+
+  /**
+   * Test that paths which only start with the games path are not served.
+   *
+   * @throws Exception if a request fails
+   */
+  @Test
+  public void testOtherPaths() throws Exception {
+    try (HttpGameApi api = new HttpGameApi(0, 1)) {
+      String games = "http://localhost:" + api.getPort() + "/games";
+      HttpResponse<String> response = send("POST", games + "XYZ" + SETTINGS);
+      assertEquals(404, response.statusCode());
+      assertEquals("{\"error\":\"No such path\"}", response.body());
+      assertEquals(404, send("GET", games + "1").statusCode());
+      assertEquals(0, api.getGameCount());
+      assertEquals(201, send("POST", games + "/" + SETTINGS).statusCode());
+      assertEquals(1, api.getGameCount());
+    }
+  }
+
+  private static HttpResponse<String> send(String method, String uri)
+          throws IOException, InterruptedException {
+    return HttpClient.newHttpClient().send(HttpRequest.newBuilder(URI.create(uri))
+            .method(method, HttpRequest.BodyPublishers.noBody()).build(),
+            HttpResponse.BodyHandlers.ofString());
+  }
+}
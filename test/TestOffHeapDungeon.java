@@ -0,0 +1,294 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+
+import dungeonmodel.coordinates.CaveCoordinates;
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.CellStore;
+import dungeonmodel.dungeon.Dungeon;
+import dungeonmodel.dungeon.DungeonImpl;
+import dungeonmodel.dungeon.EllerDungeonGenerator;
+import dungeonmodel.dungeon.OffHeapDungeon;
+import dungeonmodel.dungeon.ReadOnlyDungeon;
+import dungeonmodel.player.DungeonPlayer;
+import dungeonmodel.player.Player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class to test expected functionality of the off heap dungeon and its cell store.
+ */
+public class TestOffHeapDungeon {
+
+  /**
+   * Test expected exception when a store has no cells.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testEmptyStore() {
+    CellStore.allocate(0);
+  }
+
+  /**
+   * Test expected exception when reading outside a store.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testOutsideStore() {
+    CellStore.allocate(10).get(10);
+  }
+
+  /**
+   * Test expected exception when the store is too small for the dungeon.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testStoreTooSmall() {
+    OffHeapDungeon.copyOf(new DungeonImpl(5, 5, 0, false, 50, 1), CellStore.allocate(24), 50, 1);
+  }
+
+  /**
+   * Test that a copy reads the same as the dungeon it was copied from, including its hash.
+   */
+  @Test
+  public void testCopyMatchesDungeon() {
+    Dungeon dungeon = new DungeonImpl(9, 11, 6, true, 60, 5);
+    Dungeon copy = OffHeapDungeon.copyOf(dungeon, CellStore.allocate(99), 60, 5);
+    this.assertSameDungeon(dungeon, copy);
+  }
+
+  /**
+   * Test that a player can play in the copy, and that changes are seen the same way as in the
+   * original dungeon.
+   */
+  @Test
+  public void testPlayMatchesDungeon() {
+    Dungeon dungeon = new DungeonImpl(6, 6, 2, false, 100, 1);
+    Dungeon copy = OffHeapDungeon.copyOf(dungeon, CellStore.allocate(36), 100, 1);
+    Player player = new DungeonPlayer("Original", dungeon);
+    Player other = new DungeonPlayer("Copy", copy);
+    player.pickUpTreasure();
+    other.pickUpTreasure();
+    player.pickUpArrow();
+    other.pickUpArrow();
+    assertEquals(new HashSet<>(player.getCurrentTreasure()),
+            new HashSet<>(other.getCurrentTreasure()));
+    Coordinates next = player.getPossibleMoves().get(0);
+    player.shootArrow(1, next);
+    other.shootArrow(1, next);
+    this.assertSameDungeon(dungeon, copy);
+    assertTrue(copy.viewTreasureInCave(copy.getStartCave()).isEmpty());
+    assertFalse(copy.hasArrow(copy.getStartCave()));
+    assertNull(copy.pickUpArrow(copy.getStartCave()));
+  }
+
+  /**
+   * Test that resetting places exactly the expected number of arrows, treasure caves and
+   * monsters, with a monster in the end cave and none in the start cave.
+   */
+  @Test
+  public void testResetCounts() {
+    Dungeon dungeon = new DungeonImpl(12, 10, 4, true, 35, 7);
+    OffHeapDungeon copy = OffHeapDungeon.copyOf(dungeon, CellStore.allocate(120), 35, 7);
+    for (int attempt = 0; attempt < 5; attempt++) {
+      copy.resetDungeon();
+      int arrows = 0;
+      int treasureCaves = 0;
+      int monsters = 0;
+      int caves = 0;
+      for (int row = 0; row < 12; row++) {
+        for (int column = 0; column < 10; column++) {
+          Coordinates coordinates = new CaveCoordinates(row, column);
+          arrows += copy.hasArrow(coordinates) ? 1 : 0;
+          treasureCaves += copy.viewTreasureInCave(coordinates).isEmpty() ? 0 : 1;
+          monsters += copy.hasMonster(coordinates) ? 1 : 0;
+          caves += copy.getAdjacent(coordinates).size() == 2 ? 0 : 1;
+          if (copy.getAdjacent(coordinates).size() == 2) {
+            assertTrue(copy.viewTreasureInCave(coordinates).isEmpty());
+            assertFalse(copy.hasMonster(coordinates));
+          }
+        }
+      }
+      assertEquals((int) (0.35 * 120), arrows);
+      assertEquals((int) (0.35 * caves), treasureCaves);
+      assertEquals(7, monsters);
+      assertTrue(copy.hasMonster(copy.getEndCave()));
+      assertFalse(copy.hasMonster(copy.getStartCave()));
+    }
+  }
+
+  /**
+   * Test that a dungeon kept in a mapped file can be read back by mapping the file again.
+   *
+   * @throws IOException if the file cannot be used
+   */
+  @Test
+  public void testMappedFileRoundTrip() throws IOException {
+    Path file = Files.createTempFile("dungeon", ".cells");
+    try {
+      Dungeon dungeon = new DungeonImpl(8, 8, 3, false, 50, 3);
+      try (CellStore store = CellStore.map(file, 64)) {
+        assertTrue(store.isMapped());
+        OffHeapDungeon.copyOf(dungeon, store, 50, 3);
+      }
+      assertEquals(64L * CellStore.CELL_BYTES, Files.size(file));
+      try (CellStore store = CellStore.map(file, 64)) {
+        Dungeon reopened = new OffHeapDungeon(store, 8, 8, dungeon.getStartCave(),
+                dungeon.getEndCave(), 50, 3);
+        this.assertSameDungeon(dungeon, reopened);
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Test that lazy contents place exactly the expected number of arrows, treasure caves and
+   * monsters once every location is read, and nothing before that.
+   */
+  @Test
+  public void testLazyContentCounts() {
+    Dungeon dungeon = new DungeonImpl(12, 10, 4, true, 35, 7);
+    CellStore store = OffHeapDungeon.copyOf(dungeon, CellStore.allocate(120), 35, 7).getStore();
+    for (long seed = 0; seed < 5; seed++) {
+      OffHeapDungeon lazy = new OffHeapDungeon(store, 12, 10, dungeon.getStartCave(),
+              dungeon.getEndCave(), 35, 7, seed);
+      assertEquals(0, lazy.getMaterialisedCount());
+      int arrows = 0;
+      int treasureCaves = 0;
+      int monsters = 0;
+      int caves = 0;
+      for (int row = 0; row < 12; row++) {
+        for (int column = 0; column < 10; column++) {
+          Coordinates coordinates = new CaveCoordinates(row, column);
+          arrows += lazy.hasArrow(coordinates) ? 1 : 0;
+          treasureCaves += lazy.viewTreasureInCave(coordinates).isEmpty() ? 0 : 1;
+          monsters += lazy.hasMonster(coordinates) ? 1 : 0;
+          caves += lazy.getAdjacent(coordinates).size() == 2 ? 0 : 1;
+        }
+      }
+      assertEquals(120, lazy.getMaterialisedCount());
+      assertEquals((int) (0.35 * 120), arrows);
+      assertEquals((int) (0.35 * caves), treasureCaves);
+      assertEquals(7, monsters);
+      assertTrue(lazy.hasMonster(lazy.getEndCave()));
+      assertFalse(lazy.hasMonster(lazy.getStartCave()));
+    }
+  }
+
+  /**
+   * Test that lazy contents place exactly the expected number of treasure caves and monsters in a
+   * dungeon whose caves are counted over several blocks and superblocks of locations.
+   */
+  @Test
+  public void testLazyContentCountsOverBlocks() {
+    EllerDungeonGenerator generator = new EllerDungeonGenerator(300, 400, 100, true, 40, 50, 9);
+    OffHeapDungeon lazy = generator.generateWithLazyContent(CellStore.allocate(120000));
+    lazy.resetDungeon();
+    int treasureCaves = 0;
+    int monsters = 0;
+    int caves = 0;
+    for (int row = 0; row < 300; row++) {
+      for (int column = 0; column < 400; column++) {
+        Coordinates coordinates = new CaveCoordinates(row, column);
+        treasureCaves += lazy.viewTreasureInCave(coordinates).isEmpty() ? 0 : 1;
+        monsters += lazy.hasMonster(coordinates) ? 1 : 0;
+        caves += lazy.getAdjacent(coordinates).size() == 2 ? 0 : 1;
+      }
+    }
+    assertEquals((int) (0.4 * caves), treasureCaves);
+    assertEquals(50, monsters);
+  }
+
+  /**
+   * Test that lazy contents depend only on the seed and not on the order locations are read in,
+   * that reading them leaves the hash alone, and that resetting places new contents.
+   */
+  @Test
+  public void testLazyContentFromSeed() {
+    EllerDungeonGenerator generator = new EllerDungeonGenerator(300, 400, 100, true, 40, 50, 8);
+    OffHeapDungeon generated = generator.generateWithLazyContent(CellStore.allocate(120000));
+    Coordinates startCave = generated.getStartCave();
+    Coordinates endCave = generated.getEndCave();
+    OffHeapDungeon forwards = new OffHeapDungeon(OffHeapDungeon.copyOf(generated,
+            CellStore.allocate(120000), 40, 50).getStore(), 300, 400, startCave, endCave, 40, 50,
+            77);
+    OffHeapDungeon backwards = new OffHeapDungeon(OffHeapDungeon.copyOf(generated,
+            CellStore.allocate(120000), 40, 50).getStore(), 300, 400, startCave, endCave, 40, 50,
+            77);
+    assertEquals(120000, generated.getMaterialisedCount());
+    long hash = forwards.getStateHash();
+    for (int step = 0; step < 200; step++) {
+      Coordinates coordinates = new CaveCoordinates(step * 7 % 300, step * 13 % 400);
+      Coordinates mirrored = new CaveCoordinates(299 - step * 7 % 300, 399 - step * 13 % 400);
+      forwards.hasArrow(coordinates);
+      backwards.viewTreasureInCave(mirrored);
+    }
+    for (int step = 199; step >= 0; step--) {
+      Coordinates coordinates = new CaveCoordinates(step * 7 % 300, step * 13 % 400);
+      assertEquals(forwards.hasArrow(coordinates), backwards.hasArrow(coordinates));
+      assertEquals(forwards.viewTreasureInCave(coordinates),
+              backwards.viewTreasureInCave(coordinates));
+      assertEquals(forwards.hasMonster(coordinates), backwards.hasMonster(coordinates));
+    }
+    assertTrue(forwards.getMaterialisedCount() <= 400);
+    assertEquals(hash, forwards.getStateHash());
+    assertEquals(hash, backwards.getStateHash());
+
+    Coordinates start = forwards.getStartCave();
+    boolean changed = !forwards.pickupTreasureInCave(start).isEmpty()
+            || forwards.pickUpArrow(start) != null;
+    assertEquals(changed, hash != forwards.getStateHash());
+    forwards.resetDungeon();
+    assertEquals(0, forwards.getMaterialisedCount());
+    assertTrue(hash != forwards.getStateHash());
+    assertTrue(forwards.hasMonster(forwards.getEndCave()));
+  }
+
+  /**
+   * Test that a dungeon with lazy contents hashes the same as a copy of it without lazy contents,
+   * before and after changes and after resetting.
+   */
+  @Test
+  public void testLazyContentHashMatchesCopy() {
+    EllerDungeonGenerator generator = new EllerDungeonGenerator(40, 50, 20, true, 60, 12, 5);
+    OffHeapDungeon lazy = generator.generateWithLazyContent(CellStore.allocate(2000));
+    for (int round = 0; round < 2; round++) {
+      long hash = lazy.getStateHash();
+      assertEquals(0, lazy.getMaterialisedCount());
+      assertEquals(OffHeapDungeon.copyOf(lazy, CellStore.allocate(2000), 60, 12).getStateHash(),
+              hash);
+      Coordinates start = lazy.getStartCave();
+      lazy.pickupTreasureInCave(start);
+      lazy.pickUpArrow(start);
+      assertEquals(OffHeapDungeon.copyOf(lazy, CellStore.allocate(2000), 60, 12).getStateHash(),
+              lazy.getStateHash());
+      lazy.resetDungeon();
+    }
+  }
+
+  private void assertSameDungeon(ReadOnlyDungeon expected, ReadOnlyDungeon actual) {
+    assertEquals(expected.getDimensions(), actual.getDimensions());
+    assertEquals(expected.getStartCave(), actual.getStartCave());
+    assertEquals(expected.getEndCave(), actual.getEndCave());
+    for (int row = 0; row < expected.getDimensions().get(0); row++) {
+      for (int column = 0; column < expected.getDimensions().get(1); column++) {
+        Coordinates coordinates = new CaveCoordinates(row, column);
+        assertEquals(expected.getAdjacent(coordinates), actual.getAdjacent(coordinates));
+        assertEquals(expected.getNorth(coordinates), actual.getNorth(coordinates));
+        assertEquals(expected.getWest(coordinates), actual.getWest(coordinates));
+        assertEquals(new HashSet<>(expected.viewTreasureInCave(coordinates)),
+                new HashSet<>(actual.viewTreasureInCave(coordinates)));
+        assertEquals(expected.hasArrow(coordinates), actual.hasArrow(coordinates));
+        assertEquals(expected.hasMonster(coordinates), actual.hasMonster(coordinates));
+        assertEquals(expected.monsterArrowCount(coordinates),
+                actual.monsterArrowCount(coordinates));
+        assertEquals(expected.getSmell(coordinates), actual.getSmell(coordinates));
+      }
+    }
+    assertEquals(expected.getStateHash(), actual.getStateHash());
+  }
+}
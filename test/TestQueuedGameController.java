@@ -0,0 +1,258 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import controller.DungeonGameController;
+import controller.GameController;
+import controller.GameJournal;
+import controller.QueuedGameController;
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.DungeonSettings;
+import dungeonmodel.dungeon.DungeonTopology;
+import dungeonmodel.player.Player;
+import view.GameView;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class to test the controller which runs the game on a model thread in batches of commands.
+ */
+public class TestQueuedGameController {
+
+  private static final DungeonSettings SETTINGS = new DungeonSettings(10, 10, 6, true, 60, 1);
+
+  /**
+   * Test expected exception when creating a controller without a view.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullView() {
+    new QueuedGameController(newPlayer(1), null);
+  }
+
+  /**
+   * Test expected exception when moving towards a direction which does not exist.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidDirection() {
+    try (QueuedGameController controller = new QueuedGameController(newPlayer(1),
+            new CountingView())) {
+      controller.movePlayerTowards(DungeonTopology.DIRECTIONS);
+    }
+  }
+
+  /**
+   * Test expected exception when queueing a command after closing the controller.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testClosed() {
+    QueuedGameController controller = new QueuedGameController(newPlayer(1), new CountingView());
+    controller.close();
+    controller.pickupArrow();
+  }
+
+  /**
+   * Test that commands queued while the view is busy run in batches followed by a single
+   * refresh each, with every message kept in order.
+   *
+   * @throws InterruptedException if the test is interrupted
+   */
+  @Test
+  public void testCommandsAreBatched() throws InterruptedException {
+    CountingView view = new CountingView();
+    view.blockFirstRefresh();
+    Player player = newPlayer(2);
+    QueuedGameController controller = new QueuedGameController(player, view);
+    controller.pickupArrow();
+    assertTrue(view.awaitBlocked());
+    Random random = new Random(47);
+    int commands = 1;
+    for (int i = 0; i < 1000; i++) {
+      controller.movePlayerTowards(random.nextInt(DungeonTopology.DIRECTIONS));
+      commands++;
+      if (i % 10 == 0) {
+        controller.pickupTreasure();
+        commands++;
+      }
+    }
+    view.release();
+    controller.close();
+
+    assertEquals(commands, controller.getCommandCount());
+    assertEquals(controller.getBatchCount(), view.getRefreshCount());
+    int expectedBatches = 1 + (commands - 1 + QueuedGameController.MAX_BATCH - 1)
+            / QueuedGameController.MAX_BATCH;
+    assertEquals(expectedBatches, controller.getBatchCount());
+    List<String> messages = view.getMessages();
+    assertTrue(messages.get(0).toLowerCase().contains("arrow"));
+    assertTrue(messages.size() > 100);
+  }
+
+  /**
+   * Test that moves towards directions queued one after the other play the same game as moving
+   * on the game directly.
+   */
+  @Test
+  public void testSameGameAsDirectController() {
+    Player queuedPlayer = newPlayer(3);
+    Player directPlayer = newPlayer(3);
+    GameController direct = new DungeonGameController(directPlayer, new CountingView());
+    Random random = new Random(48);
+    try (QueuedGameController controller = new QueuedGameController(queuedPlayer,
+            new CountingView())) {
+      for (int i = 0; i < 500 && directPlayer.isPlayerAlive(); i++) {
+        int direction = random.nextInt(DungeonTopology.DIRECTIONS);
+        controller.movePlayerTowards(direction);
+        Coordinates next = neighbour(directPlayer, direction);
+        if (next != null) {
+          direct.movePlayer(next);
+        }
+        if (i % 7 == 0) {
+          controller.pickupArrow();
+          direct.pickupArrow();
+        }
+        if (i % 50 == 0) {
+          int shot = random.nextInt(DungeonTopology.DIRECTIONS);
+          Coordinates landed = controller.shootArrowTowards(shot, 2);
+          Coordinates towards = neighbour(directPlayer, shot);
+          assertEquals(towards == null ? null : direct.shootArrow(towards, 2), landed);
+        }
+      }
+    }
+    assertEquals(directPlayer.getStateHash(), queuedPlayer.getStateHash());
+    assertEquals(directPlayer.getCurrentCoordinates(), queuedPlayer.getCurrentCoordinates());
+  }
+
+  /**
+   * Test that shooting waits for the moves queued before it and returns where the arrow landed,
+   * and that resetting waits until the game has been reset.
+   */
+  @Test
+  public void testBlockingCommands() {
+    Player player = newPlayer(4);
+    Coordinates start = player.getCurrentCoordinates();
+    try (QueuedGameController controller = new QueuedGameController(player,
+            new CountingView())) {
+      for (int i = 0; i < 20; i++) {
+        controller.movePlayerTowards(i % DungeonTopology.DIRECTIONS);
+      }
+      controller.shootArrowTowards(DungeonTopology.NORTH, 1);
+      assertTrue(controller.getCommandCount() >= 20);
+      controller.resetPlayerAndDungeon();
+      assertEquals(start, player.getCurrentCoordinates());
+      assertTrue(player.isPlayerAlive());
+    }
+  }
+
+  /**
+   * Test that input threads can queue commands at the same time without losing any.
+   *
+   * @throws Exception if a thread fails
+   */
+  @Test
+  public void testConcurrentInput() throws Exception {
+    CountingView view = new CountingView();
+    ExecutorService pool = Executors.newFixedThreadPool(3);
+    QueuedGameController controller = new QueuedGameController(newPlayer(5), view);
+    try {
+      List<Future<?>> inputs = new ArrayList<>();
+      for (int thread = 0; thread < 3; thread++) {
+        inputs.add(pool.submit(() -> {
+          for (int i = 0; i < 400; i++) {
+            controller.pickupArrow();
+          }
+        }));
+      }
+      for (Future<?> input : inputs) {
+        input.get();
+      }
+    } finally {
+      pool.shutdown();
+      controller.close();
+    }
+    assertEquals(1200, controller.getCommandCount());
+    assertEquals(1200, view.getMessages().size());
+    assertEquals(controller.getBatchCount(), view.getRefreshCount());
+    assertFalse(controller.getBatchCount() > 1200);
+  }
+
+  private static Coordinates neighbour(Player player, int direction) {
+    switch (direction) {
+      case DungeonTopology.NORTH:
+        return player.getNorth();
+      case DungeonTopology.SOUTH:
+        return player.getSouth();
+      case DungeonTopology.EAST:
+        return player.getEast();
+      default:
+        return player.getWest();
+    }
+  }
+
+  private static Player newPlayer(long seed) {
+    return GameJournal.createPlayer(SETTINGS, "Queued", seed);
+  }
+
+  // View which counts refreshes and keeps messages, and can hold up the first refresh
+  private static final class CountingView implements GameView {
+
+    private final List<String> messages = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch blocked = new CountDownLatch(1);
+    private final CountDownLatch released = new CountDownLatch(1);
+    private volatile boolean blockFirst;
+    private volatile int refreshes;
+
+    void blockFirstRefresh() {
+      this.blockFirst = true;
+    }
+
+    boolean awaitBlocked() throws InterruptedException {
+      return this.blocked.await(10, TimeUnit.SECONDS);
+    }
+
+    void release() {
+      this.released.countDown();
+    }
+
+    int getRefreshCount() {
+      return this.refreshes;
+    }
+
+    List<String> getMessages() {
+      return new ArrayList<>(this.messages);
+    }
+
+    @Override
+    public void startView(GameController controller) {
+      // nothing to start
+    }
+
+    @Override
+    public void displayMessage(String message) {
+      this.messages.add(message);
+    }
+
+    @Override
+    public void refresh() {
+      this.refreshes++;
+      if (this.blockFirst) {
+        this.blockFirst = false;
+        this.blocked.countDown();
+        try {
+          this.released.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+}
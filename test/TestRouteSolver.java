@@ -0,0 +1,96 @@
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.Dungeon;
+import dungeonmodel.dungeon.DungeonImpl;
+import dungeonmodel.solver.Route;
+import dungeonmodel.solver.RouteSolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class to test expected functionality of the treasure route solver.
+ */
+public class TestRouteSolver {
+
+  /**
+   * Test expected exception when asking for too many treasure caves.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testTooManyTreasureCaves() {
+    new RouteSolver(21, 100);
+  }
+
+  /**
+   * Test expected exception when the time budget is not positive.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidBudget() {
+    new RouteSolver(5, 0);
+  }
+
+  /**
+   * Test expected exception when solving from a null location.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullLocation() {
+    Dungeon dungeon = new DungeonImpl(5, 5, 0, false, 50, 1);
+    new RouteSolver(5, 100).solve(dungeon, null);
+  }
+
+  /**
+   * Test expected exception when a route needs a negative number of arrows.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeArrowsForEnd() {
+    new Route(Collections.emptyList(), Collections.emptyList(), -1, true);
+  }
+
+  /**
+   * Test that a route is a connected walk from the start to the end, avoiding live monsters and
+   * visiting every stop, and counts the arrows the monster guarding the end needs.
+   */
+  @Test
+  public void testRouteIsSafeWalk() {
+    for (int attempt = 0; attempt < 10; attempt++) {
+      Dungeon dungeon = new DungeonImpl(8, 8, 4, attempt % 2 == 0, 50, 3);
+      Route route = new RouteSolver(6, 2000).solve(dungeon, dungeon.getStartCave());
+      List<Coordinates> path = route.getPath();
+      if (path.isEmpty()) {
+        continue;
+      }
+      assertEquals(dungeon.getStartCave(), path.get(0));
+      assertEquals(dungeon.getEndCave(), path.get(path.size() - 1));
+      for (int step = 1; step < path.size(); step++) {
+        assertTrue(dungeon.getAdjacent(path.get(step - 1)).contains(path.get(step)));
+        if (step < path.size() - 1) {
+          assertFalse(dungeon.hasMonster(path.get(step)));
+        }
+      }
+      for (Coordinates stop : route.getStops()) {
+        assertTrue(path.contains(stop));
+        assertFalse(dungeon.viewTreasureInCave(stop).isEmpty());
+      }
+      assertTrue(route.isOptimal());
+      assertEquals(2, route.getArrowsForEnd());
+    }
+  }
+
+  /**
+   * Test that a route visiting no treasure is a shortest path to the end.
+   */
+  @Test
+  public void testNoTreasureIsShortestPath() {
+    Dungeon dungeon = new DungeonImpl(6, 6, 0, false, 50, 1);
+    Route withoutTreasure = new RouteSolver(0, 1000).solve(dungeon, dungeon.getStartCave());
+    Route withTreasure = new RouteSolver(4, 1000).solve(dungeon, dungeon.getStartCave());
+    assertTrue(withoutTreasure.getStops().isEmpty());
+    assertTrue(withoutTreasure.getLength() >= 5);
+    assertTrue(withTreasure.getLength() >= withoutTreasure.getLength());
+  }
+}
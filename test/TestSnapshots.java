@@ -0,0 +1,229 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import dungeonmodel.coordinates.CaveCoordinates;
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.DungeonImpl;
+import dungeonmodel.dungeon.ReadOnlyDungeon;
+import dungeonmodel.player.DungeonPlayer;
+import dungeonmodel.player.Player;
+import dungeonmodel.sync.DungeonSnapshot;
+import dungeonmodel.sync.PlayerSnapshot;
+import dungeonmodel.sync.SnapshotPublisher;
+import dungeonmodel.sync.TrackingDungeon;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class to test immutable snapshots of games and publishing them to other threads.
+ */
+public class TestSnapshots {
+
+  /**
+   * Test expected exception when taking a snapshot of no dungeon.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullDungeon() {
+    DungeonSnapshot.of(null);
+  }
+
+  /**
+   * Test expected exception when publishing without a player.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullPlayer() {
+    new SnapshotPublisher(null, new TrackingDungeon(new DungeonImpl(5, 5, 0, false, 50, 1)));
+  }
+
+  /**
+   * Test that a snapshot reads the same as the dungeon it was taken of, including its hash.
+   */
+  @Test
+  public void testSnapshotMatchesDungeon() {
+    DungeonImpl dungeon = new DungeonImpl(9, 11, 6, true, 60, 5);
+    assertSameDungeon(dungeon, DungeonSnapshot.of(dungeon));
+  }
+
+  /**
+   * Test that a snapshot after a change copies only the page of the change, and that the
+   * snapshot before it keeps showing the dungeon as it was.
+   */
+  @Test
+  public void testChangesShareUnchangedPages() {
+    TrackingDungeon dungeon = new TrackingDungeon(new DungeonImpl(30, 30, 10, true, 100, 1));
+    DungeonSnapshot before = DungeonSnapshot.of(dungeon);
+    int pages = (30 * 30 + DungeonSnapshot.PAGE_SIZE - 1) / DungeonSnapshot.PAGE_SIZE;
+    assertSame(before, before.withChanges(dungeon, new int[0]));
+    assertEquals(pages, before.countSharedPages(before));
+
+    Coordinates location = new CaveCoordinates(20, 7);
+    assertTrue(dungeon.hasArrow(location));
+    dungeon.pickUpArrow(location);
+    int[] changes = dungeon.drainChanges();
+    DungeonSnapshot after = before.withChanges(dungeon, changes);
+    assertEquals(pages - 1, after.countSharedPages(before));
+    assertArrayEquals(new int[]{20 * 30 + 7}, after.changedSince(before));
+    assertTrue(before.hasArrow(location));
+    assertFalse(after.hasArrow(location));
+    assertSameDungeon(dungeon, after);
+  }
+
+  /**
+   * Test that changes found between snapshots spread over several directories of pages are the
+   * same whether the snapshots follow on from each other or are further apart.
+   */
+  @Test
+  public void testChangesAcrossDirectories() {
+    TrackingDungeon dungeon = new TrackingDungeon(new DungeonImpl(90, 100, 10, true, 100, 1));
+    DungeonSnapshot first = DungeonSnapshot.of(dungeon);
+    DungeonSnapshot previous = first;
+    HashSet<Integer> changed = new HashSet<>();
+    for (int row = 0; row < 90; row += 7) {
+      for (int column = 0; column < 100; column += 13) {
+        Coordinates location = new CaveCoordinates(row, column);
+        if (dungeon.hasArrow(location)) {
+          dungeon.pickUpArrow(location);
+          DungeonSnapshot next = previous.withChanges(dungeon, dungeon.drainChanges());
+          assertArrayEquals(new int[]{row * 100 + column}, next.changedSince(previous));
+          assertEquals(0, next.changedSince(next).length);
+          changed.add(row * 100 + column);
+          previous = next;
+        }
+      }
+    }
+    assertTrue(changed.size() > 1);
+    int[] sinceFirst = previous.changedSince(first);
+    assertEquals(changed.size(), sinceFirst.length);
+    for (int index = 0; index < sinceFirst.length; index++) {
+      assertTrue(changed.contains(sinceFirst[index]));
+      assertTrue(index == 0 || sinceFirst[index - 1] < sinceFirst[index]);
+    }
+    assertSameDungeon(dungeon, previous);
+  }
+
+  /**
+   * Test that every snapshot published during a random game matches the game at that moment, and
+   * keeps matching it after later actions.
+   */
+  @Test
+  public void testPublishedSnapshots() {
+    Random random = new Random(46);
+    TrackingDungeon dungeon = new TrackingDungeon(new DungeonImpl(12, 12, 8, true, 70, 4));
+    Player player = new DungeonPlayer("Published", dungeon, new Random(3));
+    SnapshotPublisher publisher = new SnapshotPublisher(player, dungeon);
+    PlayerSnapshot first = publisher.getSnapshot();
+    long firstHash = player.getStateHash();
+    assertEquals(firstHash, first.getStateHash());
+    assertEquals(0, first.getVersion());
+
+    for (int step = 1; step <= 500; step++) {
+      if (!player.isPlayerAlive() || random.nextInt(200) == 0) {
+        player.resetPlayer();
+      } else {
+        RandomActions.act(player, random);
+      }
+      PlayerSnapshot snapshot = publisher.publish();
+      assertSame(snapshot, publisher.getSnapshot());
+      assertEquals(step, snapshot.getVersion());
+      assertEquals(player.getStateHash(), snapshot.getStateHash());
+      assertEquals(dungeon.getStateHash(), snapshot.getDungeon().getStateHash());
+      assertEquals(player.getCurrentCoordinates(), snapshot.getCurrentCoordinates());
+      assertEquals(player.getCurrentTreasure(), snapshot.getCurrentTreasure());
+      assertEquals(player.getArrowCount(), snapshot.getArrowCount());
+      assertEquals(player.getSmellInCurrentCave(), snapshot.getSmellInCurrentCave());
+    }
+    assertSameDungeon(dungeon, publisher.getSnapshot().getDungeon());
+    assertEquals(firstHash, first.getStateHash());
+    assertEquals(first.getDungeon().getStateHash(),
+            DungeonSnapshot.of(first.getDungeon()).getStateHash());
+  }
+
+  /**
+   * Test that readers on other threads always see a whole snapshot while the game is played and
+   * published on its own thread.
+   *
+   * @throws Exception if a thread fails
+   */
+  @Test
+  public void testReadersSeeConsistentSnapshots() throws Exception {
+    TrackingDungeon dungeon = new TrackingDungeon(new DungeonImpl(16, 16, 12, true, 80, 3));
+    Player player = new DungeonPlayer("Watched", dungeon, new Random(5));
+    SnapshotPublisher publisher = new SnapshotPublisher(player, dungeon);
+    AtomicBoolean playing = new AtomicBoolean(true);
+    ExecutorService pool = Executors.newFixedThreadPool(3);
+    try {
+      List<Future<Long>> readers = new ArrayList<>();
+      for (int reader = 0; reader < 2; reader++) {
+        readers.add(pool.submit(() -> {
+          long reads = 0;
+          long version = -1;
+          while (playing.get() || reads == 0) {
+            PlayerSnapshot snapshot = publisher.getSnapshot();
+            assertTrue(snapshot.getVersion() >= version);
+            version = snapshot.getVersion();
+            DungeonSnapshot copy = DungeonSnapshot.of(snapshot.getDungeon());
+            assertEquals(copy.getStateHash(), snapshot.getDungeon().getStateHash());
+            assertFalse(snapshot.getPossibleMoves().isEmpty());
+            reads++;
+          }
+          return reads;
+        }));
+      }
+      Future<?> model = pool.submit(() -> {
+        Random random = new Random(47);
+        for (int step = 0; step < 3000; step++) {
+          if (!player.isPlayerAlive()) {
+            player.resetPlayer();
+          } else {
+            RandomActions.act(player, random);
+          }
+          publisher.publish();
+        }
+        playing.set(false);
+        return null;
+      });
+      model.get();
+      for (Future<Long> reader : readers) {
+        assertTrue(reader.get() > 0);
+      }
+    } finally {
+      playing.set(false);
+      pool.shutdown();
+    }
+    assertEquals(3000, publisher.getSnapshot().getVersion());
+    assertEquals(player.getStateHash(), publisher.getSnapshot().getStateHash());
+  }
+
+  private static void assertSameDungeon(ReadOnlyDungeon expected, ReadOnlyDungeon actual) {
+    assertEquals(expected.getDimensions(), actual.getDimensions());
+    assertEquals(expected.getStartCave(), actual.getStartCave());
+    assertEquals(expected.getEndCave(), actual.getEndCave());
+    for (int row = 0; row < expected.getDimensions().get(0); row++) {
+      for (int column = 0; column < expected.getDimensions().get(1); column++) {
+        Coordinates coordinates = new CaveCoordinates(row, column);
+        assertEquals(expected.getAdjacent(coordinates), actual.getAdjacent(coordinates));
+        assertEquals(expected.getNorth(coordinates), actual.getNorth(coordinates));
+        assertEquals(new HashSet<>(expected.viewTreasureInCave(coordinates)),
+                new HashSet<>(actual.viewTreasureInCave(coordinates)));
+        assertEquals(expected.hasArrow(coordinates), actual.hasArrow(coordinates));
+        assertEquals(expected.hasMonster(coordinates), actual.hasMonster(coordinates));
+        assertEquals(expected.monsterArrowCount(coordinates),
+                actual.monsterArrowCount(coordinates));
+        assertEquals(expected.getSmell(coordinates), actual.getSmell(coordinates));
+      }
+    }
+    assertEquals(expected.getStateHash(), actual.getStateHash());
+  }
+}
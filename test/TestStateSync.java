@@ -0,0 +1,216 @@
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+import dungeonmodel.coordinates.CaveCoordinates;
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.DungeonImpl;
+import dungeonmodel.dungeon.ReadOnlyDungeon;
+import dungeonmodel.player.DungeonPlayer;
+import dungeonmodel.player.Player;
+import dungeonmodel.player.ReadOnlyPlayer;
+import dungeonmodel.sync.StateDeltaEncoder;
+import dungeonmodel.sync.StateMirror;
+import dungeonmodel.sync.TrackingDungeon;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class to test encoding a game as keyframes and deltas and mirroring it from them.
+ */
+public class TestStateSync {
+
+  /**
+   * Test expected exception when the keyframe interval is not positive.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidInterval() {
+    TrackingDungeon dungeon = new TrackingDungeon(new DungeonImpl(5, 5, 0, false, 50, 1));
+    new StateDeltaEncoder(new DungeonPlayer("Test", dungeon), dungeon, 0);
+  }
+
+  /**
+   * Test that changes are collected once each, in order, and forgotten once collected.
+   */
+  @Test
+  public void testTrackingChanges() {
+    TrackingDungeon dungeon = new TrackingDungeon(new DungeonImpl(6, 6, 2, false, 100, 1));
+    for (int row = 5; row >= 0; row--) {
+      for (int column = 0; column < 6; column++) {
+        dungeon.pickUpArrow(new CaveCoordinates(row, column));
+        dungeon.pickUpArrow(new CaveCoordinates(row, column));
+      }
+    }
+    int[] changes = dungeon.drainChanges();
+    assertTrue(changes.length > 0);
+    for (int change = 1; change < changes.length; change++) {
+      assertTrue(changes[change - 1] < changes[change]);
+    }
+    assertEquals(0, dungeon.drainChanges().length);
+    assertFalse(dungeon.drainReset());
+    dungeon.resetDungeon();
+    assertTrue(dungeon.drainReset());
+    assertFalse(dungeon.drainReset());
+  }
+
+  /**
+   * Test that a mirror fed every frame of a random game always matches the game, including its
+   * state hash, and that deltas stay small.
+   */
+  @Test
+  public void testMirrorFollowsGame() {
+    Random random = new Random(45);
+    TrackingDungeon dungeon = new TrackingDungeon(new DungeonImpl(10, 12, 6, true, 60, 4));
+    Player player = new DungeonPlayer("Mirrored", dungeon, new Random(7));
+    StateDeltaEncoder encoder = new StateDeltaEncoder(player, dungeon, 50);
+    StateMirror mirror = new StateMirror();
+    assertTrue(mirror.apply(encoder.encodeTick()));
+    assertSameGame(player, dungeon, mirror);
+
+    int keyframes = 0;
+    int deltaBytes = 0;
+    for (int step = 0; step < 2000; step++) {
+      if (!player.isPlayerAlive() || random.nextInt(300) == 0) {
+        player.resetPlayer();
+      } else {
+        RandomActions.act(player, random);
+      }
+      byte[] frame = encoder.encodeTick();
+      if (mirror.apply(frame)) {
+        keyframes++;
+      } else {
+        deltaBytes += frame.length;
+      }
+      assertEquals(encoder.getTick(), mirror.getTick());
+      assertEquals(player.getStateHash(), mirror.getPlayer().getStateHash());
+      assertEquals(player.getCurrentCoordinates(), mirror.getPlayer().getCurrentCoordinates());
+      assertEquals(player.getArrowCount(), mirror.getPlayer().getArrowCount());
+      assertEquals(player.getCurrentTreasure(), mirror.getPlayer().getCurrentTreasure());
+      assertEquals(player.isPlayerAlive(), mirror.getPlayer().isPlayerAlive());
+      assertEquals(player.hasPlayerWon(), mirror.getPlayer().hasPlayerWon());
+      assertEquals(player.getSmellInCurrentCave(), mirror.getPlayer().getSmellInCurrentCave());
+    }
+    assertSameGame(player, dungeon, mirror);
+    assertTrue(keyframes >= 2000 / 50);
+    assertTrue(deltaBytes / (2000 - keyframes) < 10);
+  }
+
+  /**
+   * Test that a tick without changes and a tick with only a move take a few bytes.
+   */
+  @Test
+  public void testDeltaSize() {
+    TrackingDungeon dungeon = new TrackingDungeon(new DungeonImpl(30, 30, 10, false, 50, 1));
+    Player player = new DungeonPlayer("Small", dungeon);
+    StateDeltaEncoder encoder = new StateDeltaEncoder(player, dungeon, 1000);
+    assertTrue(encoder.encodeTick().length > 900);
+    assertArrayEquals(new byte[]{1, 1, 0}, encoder.encodeTick());
+    player.moveTo(player.getPossibleMoves().get(0));
+    assertTrue(encoder.encodeTick().length <= 6);
+  }
+
+  /**
+   * Test that a mirror refuses deltas until its first keyframe and after a missed frame.
+   */
+  @Test
+  public void testMissedFrames() {
+    TrackingDungeon dungeon = new TrackingDungeon(new DungeonImpl(6, 6, 2, false, 50, 1));
+    Player player = new DungeonPlayer("Late", dungeon);
+    StateDeltaEncoder encoder = new StateDeltaEncoder(player, dungeon, 10);
+    StateMirror mirror = new StateMirror();
+    byte[] keyframe = encoder.encodeTick();
+    assertRefused(mirror, encoder.encodeTick());
+    assertTrue(mirror.apply(keyframe));
+    encoder.encodeTick();
+    assertRefused(mirror, encoder.encodeTick());
+    assertFalse(mirror.isSynced());
+    assertRefused(mirror, encoder.encodeTick());
+    assertTrue(mirror.apply(encoder.encodeKeyframe()));
+    assertFalse(mirror.apply(encoder.encodeTick()));
+    assertTrue(mirror.isSynced());
+  }
+
+  /**
+   * Test that broken frames are refused.
+   */
+  @Test
+  public void testBrokenFrames() {
+    TrackingDungeon dungeon = new TrackingDungeon(new DungeonImpl(6, 6, 2, false, 50, 1));
+    StateDeltaEncoder encoder = new StateDeltaEncoder(new DungeonPlayer("Broken", dungeon),
+            dungeon, 10);
+    byte[] keyframe = encoder.encodeTick();
+    StateMirror mirror = new StateMirror();
+    assertRefused(mirror, Arrays.copyOf(keyframe, keyframe.length - 1));
+    assertRefused(mirror, Arrays.copyOf(keyframe, keyframe.length + 1));
+    assertRefused(mirror, new byte[]{7, 0});
+    assertRefused(mirror, new byte[0]);
+    assertRefused(mirror, new byte[]{0, 0, 127, 127, 0, 0});
+    assertTrue(mirror.apply(keyframe));
+  }
+
+  /**
+   * Test that frames written to a stream are read back one at a time.
+   *
+   * @throws Exception if the stream fails
+   */
+  @Test
+  public void testStream() throws Exception {
+    TrackingDungeon dungeon = new TrackingDungeon(new DungeonImpl(20, 20, 5, true, 80, 3));
+    Player player = new DungeonPlayer("Streamed", dungeon);
+    StateDeltaEncoder encoder = new StateDeltaEncoder(player, dungeon, 5);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (int tick = 0; tick < 12; tick++) {
+      player.pickUpArrow();
+      player.pickUpTreasure();
+      player.moveTo(player.getPossibleMoves().get(0));
+      encoder.writeTick(out);
+    }
+    StateMirror mirror = new StateMirror();
+    ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+    int frames = 0;
+    while (mirror.readFrom(in)) {
+      frames++;
+    }
+    assertEquals(12, frames);
+    assertSameGame(player, dungeon, mirror);
+  }
+
+  private static void assertRefused(StateMirror mirror, byte[] frame) {
+    try {
+      mirror.apply(frame);
+    } catch (IllegalArgumentException e) {
+      return;
+    }
+    throw new AssertionError("Frame should have been refused");
+  }
+
+  private static void assertSameGame(ReadOnlyPlayer player, ReadOnlyDungeon dungeon,
+                                     StateMirror mirror) {
+    ReadOnlyDungeon copy = mirror.getDungeon();
+    assertEquals(dungeon.getDimensions(), copy.getDimensions());
+    assertEquals(dungeon.getStartCave(), copy.getStartCave());
+    assertEquals(dungeon.getEndCave(), copy.getEndCave());
+    for (int row = 0; row < dungeon.getDimensions().get(0); row++) {
+      for (int column = 0; column < dungeon.getDimensions().get(1); column++) {
+        Coordinates coordinates = new CaveCoordinates(row, column);
+        assertEquals(dungeon.getAdjacent(coordinates), copy.getAdjacent(coordinates));
+        assertEquals(dungeon.getWest(coordinates), copy.getWest(coordinates));
+        assertEquals(new HashSet<>(dungeon.viewTreasureInCave(coordinates)),
+                new HashSet<>(copy.viewTreasureInCave(coordinates)));
+        assertEquals(dungeon.hasArrow(coordinates), copy.hasArrow(coordinates));
+        assertEquals(dungeon.hasMonster(coordinates), copy.hasMonster(coordinates));
+        assertEquals(dungeon.monsterArrowCount(coordinates), copy.monsterArrowCount(coordinates));
+      }
+    }
+    assertEquals(dungeon.getStateHash(), copy.getStateHash());
+    assertEquals(player.getName(), mirror.getPlayer().getName());
+    assertEquals(player.getStateHash(), mirror.getPlayer().getStateHash());
+  }
+}
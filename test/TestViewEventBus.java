@@ -0,0 +1,273 @@
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import controller.DungeonGameController;
+import controller.GameController;
+import controller.ViewEventBus;
+import controller.ViewEventListener;
+import controller.ViewEventMetrics;
+import controller.ViewEventRecorder;
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.DungeonImpl;
+import dungeonmodel.player.DungeonPlayer;
+import dungeonmodel.player.Player;
+import view.GameView;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class to test several views and listeners following one game through a ring of events.
+ */
+public class TestViewEventBus {
+
+  /**
+   * Test expected exception when the capacity is not a power of two.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidCapacity() {
+    new ViewEventBus(new ListView(), 100);
+  }
+
+  /**
+   * Test expected exception when subscribing to a closed bus.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testSubscribeAfterClose() {
+    ViewEventBus bus = new ViewEventBus(new ListView());
+    bus.close();
+    bus.subscribe(new ViewEventMetrics(), "late");
+  }
+
+  /**
+   * Test that the main view and every subscriber see the same events in the same order.
+   */
+  @Test
+  public void testFanOut() {
+    ListView main = new ListView();
+    ListView other = new ListView();
+    ListListener listener = new ListListener();
+    ViewEventMetrics metrics = new ViewEventMetrics();
+    ViewEventBus bus = new ViewEventBus(main, 512);
+    bus.subscribe(other, "other");
+    bus.subscribe(listener, "listener");
+    bus.subscribe(metrics, "metrics");
+    for (int i = 0; i < 200; i++) {
+      bus.displayMessage("message " + i);
+      bus.refresh();
+    }
+    bus.close();
+
+    assertEquals(400, bus.getPublishedCount());
+    assertEquals(400, main.events.size());
+    assertEquals(main.events, other.events);
+    assertEquals(main.events, listener.events);
+    assertEquals(0, listener.dropped);
+    for (int i = 0; i < listener.sequences.size(); i++) {
+      assertEquals(i, (long) listener.sequences.get(i));
+    }
+    assertEquals(200, metrics.getMessageCount());
+    assertEquals(200, metrics.getRefreshCount());
+    assertEquals(400, metrics.getLag().getCount());
+  }
+
+  /**
+   * Test that a subscriber which stops reading never holds up publishing, and afterwards is told
+   * how many events it missed and reads the newest ones in order.
+   *
+   * @throws InterruptedException if the test is interrupted
+   */
+  @Test
+  public void testSlowSubscriberDropsEvents() throws InterruptedException {
+    ListView main = new ListView();
+    ViewEventBus bus = new ViewEventBus(main, 16);
+    CountDownLatch reading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ListListener slow = new ListListener() {
+      @Override
+      public void messageDisplayed(long sequence, long published, String message) {
+        if (sequence == 0) {
+          reading.countDown();
+          await(release);
+        }
+        super.messageDisplayed(sequence, published, message);
+      }
+    };
+    bus.subscribe(slow, "slow");
+    bus.displayMessage("first");
+    assertTrue(reading.await(10, TimeUnit.SECONDS));
+    for (int i = 1; i < 1000; i++) {
+      bus.displayMessage("message " + i);
+    }
+    assertEquals(1000, main.events.size());
+    release.countDown();
+    bus.close();
+
+    assertEquals(1000, slow.events.size() + slow.dropped);
+    assertTrue(slow.dropped >= 1000 - 1 - 16);
+    assertEquals("message 999", slow.events.get(slow.events.size() - 1));
+    for (int i = 1; i < slow.sequences.size(); i++) {
+      assertTrue(slow.sequences.get(i) > slow.sequences.get(i - 1));
+    }
+  }
+
+  /**
+   * Test that a subscriber which throws is unsubscribed and reported, while the other subscribers
+   * keep reading every event.
+   */
+  @Test
+  public void testThrowingSubscriberRemoved() {
+    ListView main = new ListView();
+    ListListener other = new ListListener();
+    ListListener failing = new ListListener() {
+      @Override
+      public void refreshed(long sequence, long published) {
+        throw new IllegalStateException("broken listener");
+      }
+    };
+    ByteArrayOutputStream errors = new ByteArrayOutputStream();
+    PrintStream standardError = System.err;
+    System.setErr(new PrintStream(errors, true));
+    try {
+      ViewEventBus bus = new ViewEventBus(main, 256);
+      bus.subscribe(failing, "failing");
+      bus.subscribe(other, "other");
+      for (int i = 0; i < 100; i++) {
+        bus.displayMessage("message " + i);
+        bus.refresh();
+      }
+      bus.close();
+      assertEquals(1, bus.getSubscriberCount());
+    } finally {
+      System.setErr(standardError);
+    }
+    assertEquals(main.events, other.events);
+    assertEquals(1, failing.events.size());
+    assertTrue(errors.toString().contains("Subscriber failing stopped at event 1: "
+            + "java.lang.IllegalStateException: broken listener"));
+  }
+
+  /**
+   * Test that a recorder following a game played through the bus writes a line for every
+   * message and refresh of the game.
+   */
+  @Test
+  public void testRecordGame() {
+    Player player = new DungeonPlayer("Recorded", new DungeonImpl(8, 8, 4, true, 60, 2),
+            new Random(6));
+    ListView main = new ListView();
+    StringBuilder recorded = new StringBuilder();
+    ViewEventRecorder recorder = new ViewEventRecorder(recorded);
+    ViewEventBus bus = new ViewEventBus(main, 4096);
+    bus.subscribe(recorder, "recorder");
+    GameController controller = new DungeonGameController(player, bus);
+    Random random = new Random(49);
+    for (int step = 0; step < 300 && player.isPlayerAlive(); step++) {
+      List<Coordinates> moves = player.getPossibleMoves();
+      if (random.nextBoolean()) {
+        controller.movePlayer(moves.get(random.nextInt(moves.size())));
+      } else {
+        controller.pickupArrow();
+      }
+    }
+    bus.close();
+
+    String[] lines = recorded.toString().split("\n");
+    assertEquals(bus.getPublishedCount(), lines.length);
+    assertEquals(bus.getPublishedCount(), recorder.getRecordedCount());
+    assertEquals(main.events.size(), lines.length);
+    for (int i = 0; i < lines.length; i++) {
+      assertTrue(lines[i].startsWith(i + "\t"));
+      assertEquals(main.events.get(i).equals("refresh"), lines[i].endsWith("\trefresh"));
+    }
+  }
+
+  /**
+   * Test that the recorder writes times the same whatever the default locale, and does not count
+   * the lines saying how many events were dropped.
+   */
+  @Test
+  public void testRecorderLines() {
+    Locale locale = Locale.getDefault();
+    Locale.setDefault(Locale.GERMANY);
+    try {
+      StringBuilder recorded = new StringBuilder();
+      ViewEventRecorder recorder = new ViewEventRecorder(recorded);
+      recorder.messageDisplayed(0, System.nanoTime(), " Hello\nthere ");
+      recorder.eventsDropped(3);
+      recorder.refreshed(4, System.nanoTime());
+      String[] lines = recorded.toString().split("\n");
+      assertEquals(3, lines.length);
+      assertTrue(lines[0], lines[0].matches("0\t\\d+\\.\\d{3}\tmessage\tHello there"));
+      assertEquals("dropped\t3", lines[1]);
+      assertTrue(lines[2], lines[2].matches("4\t\\d+\\.\\d{3}\trefresh"));
+      assertEquals(2, recorder.getRecordedCount());
+    } finally {
+      Locale.setDefault(locale);
+    }
+  }
+
+  // Waits for a latch, giving up after a while
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // View which keeps what it was shown
+  private static final class ListView implements GameView {
+
+    private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public void startView(GameController controller) {
+      // nothing to start
+    }
+
+    @Override
+    public void displayMessage(String message) {
+      this.events.add(message);
+    }
+
+    @Override
+    public void refresh() {
+      this.events.add("refresh");
+    }
+  }
+
+  // Listener which keeps what it read
+  private static class ListListener implements ViewEventListener {
+
+    final List<String> events = new ArrayList<>();
+    final List<Long> sequences = new ArrayList<>();
+    long dropped;
+
+    @Override
+    public void messageDisplayed(long sequence, long published, String message) {
+      this.events.add(message);
+      this.sequences.add(sequence);
+    }
+
+    @Override
+    public void refreshed(long sequence, long published) {
+      this.events.add("refresh");
+      this.sequences.add(sequence);
+    }
+
+    @Override
+    public void eventsDropped(long count) {
+      this.dropped += count;
+    }
+  }
+}
@@ -0,0 +1,134 @@
+import org.junit.Test;
+
+import dungeonmodel.coordinates.Coordinates;
+import dungeonmodel.dungeon.Dungeon;
+import dungeonmodel.dungeon.DungeonImpl;
+import dungeonmodel.dungeon.ForkableDungeon;
+import dungeonmodel.dungeon.ZobristKeys;
+import dungeonmodel.player.DungeonPlayer;
+import dungeonmodel.player.Player;
+import dungeonmodel.state.ForkableGameState;
+import dungeonmodel.state.GameState;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class to test that state hashes are kept up to date by dungeons and players.
+ */
+public class TestZobristHash {
+
+  /**
+   * Test that a copy of a dungeon has the same hash, and that it follows the same changes.
+   */
+  @Test
+  public void testDungeonCopyHash() {
+    Dungeon dungeon = new DungeonImpl(5, 5, 0, false, 100, 1);
+    Dungeon copy = new ForkableDungeon(dungeon);
+    assertEquals(dungeon.getStateHash(), copy.getStateHash());
+
+    Coordinates start = dungeon.getStartCave();
+    long before = dungeon.getStateHash();
+    dungeon.pickupTreasureInCave(start);
+    assertNotEquals(before, dungeon.getStateHash());
+    copy.pickupTreasureInCave(start);
+    assertEquals(dungeon.getStateHash(), copy.getStateHash());
+  }
+
+  /**
+   * Test that the features of the player are numbered apart from those of a location, including
+   * a monster with any number of hits it can survive.
+   */
+  @Test
+  public void testPlayerFeaturesApartFromCellFeatures() {
+    assertTrue(ZobristKeys.HELD_TREASURE > ZobristKeys.MONSTER + 2);
+    assertTrue(ZobristKeys.HELD_TREASURE > ZobristKeys.PLAYER);
+  }
+
+  /**
+   * Test that picking up nothing leaves the hash unchanged.
+   */
+  @Test
+  public void testNoChangeKeepsHash() {
+    Dungeon dungeon = new DungeonImpl(5, 5, 0, false, 100, 1);
+    Coordinates start = dungeon.getStartCave();
+    dungeon.pickupTreasureInCave(start);
+    long hash = dungeon.getStateHash();
+    dungeon.pickupTreasureInCave(start);
+    assertEquals(hash, dungeon.getStateHash());
+  }
+
+  /**
+   * Test that a player moving away and back with no other change has the same hash.
+   */
+  @Test
+  public void testPlayerMoveBackRestoresHash() {
+    for (int attempt = 0; attempt < 20; attempt++) {
+      Dungeon dungeon = new DungeonImpl(5, 5, 0, false, 50, 1);
+      Player player = new DungeonPlayer("Test", dungeon);
+      long start = player.getStateHash();
+      Coordinates startCave = player.getCurrentCoordinates();
+      Coordinates next = player.getPossibleMoves().get(0);
+      if (dungeon.hasMonster(next)) {
+        continue;
+      }
+      player.moveTo(next);
+      assertNotEquals(start, player.getStateHash());
+      player.moveTo(startCave);
+      assertEquals(start, player.getStateHash());
+    }
+  }
+
+  /**
+   * Test that picking up items and shooting change the player's hash.
+   */
+  @Test
+  public void testPlayerActionsChangeHash() {
+    Dungeon dungeon = new DungeonImpl(5, 5, 0, false, 100, 1);
+    Player player = new DungeonPlayer("Test", dungeon);
+    long hash = player.getStateHash();
+    player.pickUpTreasure();
+    assertNotEquals(hash, player.getStateHash());
+    hash = player.getStateHash();
+    player.shootArrow(1, player.getPossibleMoves().get(0));
+    assertNotEquals(hash, player.getStateHash());
+  }
+
+  /**
+   * Test that forks of a game state hash the same until they diverge, and that reaching the same
+   * state by different orders of actions gives the same hash.
+   */
+  @Test
+  public void testForkHash() {
+    Dungeon dungeon = new DungeonImpl(5, 5, 0, false, 100, 1);
+    Player player = new DungeonPlayer("Test", dungeon);
+    GameState state = new ForkableGameState(player, dungeon);
+    assertEquals(player.getStateHash(), state.getPlayer().getStateHash());
+
+    GameState first = state.fork();
+    GameState second = state.fork();
+    assertEquals(first.getPlayer().getStateHash(), second.getPlayer().getStateHash());
+
+    first.getPlayer().pickUpTreasure();
+    assertNotEquals(first.getPlayer().getStateHash(), second.getPlayer().getStateHash());
+
+    first.getPlayer().pickUpArrow();
+    second.getPlayer().pickUpArrow();
+    second.getPlayer().pickUpTreasure();
+    assertEquals(first.getPlayer().getStateHash(), second.getPlayer().getStateHash());
+  }
+
+  /**
+   * Test that resetting gives the same hash as a newly created player in the reset dungeon.
+   */
+  @Test
+  public void testResetHash() {
+    Dungeon dungeon = new DungeonImpl(5, 5, 0, false, 100, 1);
+    Player player = new DungeonPlayer("Test", dungeon);
+    player.pickUpTreasure();
+    player.resetPlayer();
+    Player fresh = new DungeonPlayer("Other", dungeon);
+    assertEquals(fresh.getStateHash(), player.getStateHash());
+  }
+}